@@ -0,0 +1,85 @@
+package ch.epfl.gameboj;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+/**
+ * Measures the reads and writes of the bus of a booted GameBoy, in each region
+ * of the address space.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BusBenchmark {
+    private static final int ACCESSES = 256;
+
+    /**
+     * The regions of the address space, with the addresses accessed in each.
+     * The registers accessed in the IO region are the scroll registers, whose
+     * writes have no side effect.
+     */
+    public enum Region {
+        ROM(0x0150, 0x100), ROM_BANK(0x4000, 0x100), VIDEO_RAM(0x8000, 0x100),
+        WORK_RAM(0xC000, 0x100), ECHO_RAM(0xE000, 0x100), OAM(0xFE00, 0xA0),
+        IO(0xFF42, 2), HIGH_RAM(0xFF80, 0x7F);
+
+        private final int start, size;
+
+        private Region(int start, int size) {
+            this.start = start;
+            this.size = size;
+        }
+    }
+
+    @Param
+    public Region region;
+
+    private Bus bus;
+    private final int[] addresses = new int[ACCESSES];
+
+    @Setup
+    public void setup() throws IOException {
+        // A 0-type cartridge, whose rom writes are ignored.
+        final GameBoy gb = new GameBoy(Cartridge.ofFile(
+                new File(Roms.DIRECTORY, "tetris.gb")));
+        gb.runUntil(60 * GameBoy.CYCLES_PER_FRAME);
+        bus = gb.bus();
+        for (int i = 0; i < ACCESSES; ++i)
+            addresses[i] = region.start + (i * 7) % region.size;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public int read() {
+        int sum = 0;
+        for (int address : addresses)
+            sum += bus.read(address);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public void write() {
+        for (int i = 0; i < ACCESSES; ++i)
+            bus.write(addresses[i], i & 0xFF);
+    }
+}
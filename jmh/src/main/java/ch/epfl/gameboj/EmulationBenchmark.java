@@ -0,0 +1,80 @@
+package ch.epfl.gameboj;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController.Rendering;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+
+/**
+ * Measures the time needed to emulate a whole frame of the roms of the
+ * repository, after their title screen.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmulationBenchmark {
+    private static final int SKIPPED_FRAMES = 600;
+
+    @Param({ "tetris.gb", "supermarioland.gb", "bomberman.gb", "2048.gb", "zelda.gb",
+            "donkeykong.gb", "supermarioland2.gb", "flappyboy.gb", "tasmaniaStory.gb" })
+    public String rom;
+
+    @Param({ "SYNCHRONOUS" })
+    public Rendering rendering;
+
+    private GameBoy gb;
+    private ByteBuffer start;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        gb = new GameBoy(Cartridge.ofFile(new File(Roms.DIRECTORY, rom)), rendering);
+        // Leaving the title screen.
+        for (int f = 1; f <= SKIPPED_FRAMES; ++f) {
+            if (f % 100 == 50)
+                gb.joypad().keyPressed(Key.START);
+            else if (f % 100 == 55)
+                gb.joypad().keyReleased(Key.START);
+            gb.runUntil(f * GameBoy.CYCLES_PER_FRAME);
+        }
+        start = ByteBuffer.allocate(gb.snapshotSize());
+        gb.snapshot(start);
+        start.flip();
+    }
+
+    /*
+     * Every iteration starts from the same state, so that they are comparable
+     * and the count of cycles does not grow too much.
+     */
+    @Setup(Level.Iteration)
+    public void restart() {
+        // Restoring from a view of the snapshot, whose position is left at 0.
+        gb.restore(start.duplicate());
+    }
+
+    @Benchmark
+    public LcdImage frame() {
+        gb.runUntil(gb.cycles() + GameBoy.CYCLES_PER_FRAME);
+        return gb.lcdController().currentImage();
+    }
+}
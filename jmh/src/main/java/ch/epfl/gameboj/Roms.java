@@ -0,0 +1,14 @@
+package ch.epfl.gameboj;
+
+/**
+ * The location of the roms used by the benchmarks : the root of the
+ * repository, unless the property gameboj.roms gives another directory.
+ */
+public final class Roms {
+    /**
+     * The directory containing the roms.
+     */
+    public static final String DIRECTORY = System.getProperty("gameboj.roms", "..");
+
+    private Roms() {}
+}
@@ -0,0 +1,91 @@
+package ch.epfl.gameboj.bits;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the operations of bit vectors of the sizes of the lines of the
+ * screen (160 pixels) and of the background (256 pixels).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitVectorBenchmark {
+
+    @Param({ "160", "256" })
+    public int size;
+
+    private BitVector a, b;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        final Random rng = new Random(2018);
+        bytes = new byte[size / Byte.SIZE];
+        rng.nextBytes(bytes);
+        a = build();
+        rng.nextBytes(bytes);
+        b = build();
+    }
+
+    @Benchmark
+    public BitVector build() {
+        final BitVector.Builder builder = new BitVector.Builder(size);
+        for (int i = 0; i < bytes.length; ++i)
+            builder.setByte(i, Byte.toUnsignedInt(bytes[i]));
+        return builder.build();
+    }
+
+    @Benchmark
+    public BitVector and() {
+        return a.and(b);
+    }
+
+    @Benchmark
+    public BitVector or() {
+        return a.or(b);
+    }
+
+    @Benchmark
+    public BitVector not() {
+        return a.not();
+    }
+
+    @Benchmark
+    public BitVector shift() {
+        return a.shift(13);
+    }
+
+    @Benchmark
+    public BitVector extractWrapped() {
+        return a.extractWrapped(-37, 160);
+    }
+
+    @Benchmark
+    public BitVector extractZeroExtended() {
+        return a.extractZeroExtended(37, 160);
+    }
+
+    @Benchmark
+    public boolean testBits() {
+        boolean result = false;
+        for (int i = 0; i < size; ++i)
+            result ^= a.testBit(i);
+        return result;
+    }
+}
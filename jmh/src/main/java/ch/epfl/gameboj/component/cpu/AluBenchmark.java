@@ -0,0 +1,102 @@
+package ch.epfl.gameboj.component.cpu;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.component.cpu.Alu.RotDir;
+
+/**
+ * Measures the operations of the Alu, on random operands.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AluBenchmark {
+    private static final int OPERANDS = 1024;
+
+    private final int[] left = new int[OPERANDS];
+    private final int[] right = new int[OPERANDS];
+    private final int[] left16 = new int[OPERANDS];
+    private final int[] right16 = new int[OPERANDS];
+
+    @Setup
+    public void setup() {
+        final Random rng = new Random(2018);
+        for (int i = 0; i < OPERANDS; ++i) {
+            left[i] = rng.nextInt(0x100);
+            right[i] = rng.nextInt(0x100);
+            left16[i] = rng.nextInt(0x10000);
+            right16[i] = rng.nextInt(0x10000);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERANDS)
+    public int add() {
+        int sum = 0;
+        for (int i = 0; i < OPERANDS; ++i)
+            sum += Alu.add(left[i], right[i], (i & 1) != 0);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERANDS)
+    public int sub() {
+        int sum = 0;
+        for (int i = 0; i < OPERANDS; ++i)
+            sum += Alu.sub(left[i], right[i], (i & 1) != 0);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERANDS)
+    public int add16() {
+        int sum = 0;
+        for (int i = 0; i < OPERANDS; ++i)
+            sum += Alu.add16H(left16[i], right16[i]);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERANDS)
+    public int logic() {
+        int sum = 0;
+        for (int i = 0; i < OPERANDS; ++i)
+            sum += Alu.and(left[i], right[i]) ^ Alu.or(left[i], right[i]) ^ Alu.xor(left[i], right[i]);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERANDS)
+    public int bcdAdjust() {
+        int sum = 0;
+        for (int i = 0; i < OPERANDS; ++i)
+            sum += Alu.bcdAdjust(left[i], (i & 1) != 0, (i & 2) != 0, (i & 4) != 0);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERANDS)
+    public int shiftsAndRotations() {
+        int sum = 0;
+        for (int i = 0; i < OPERANDS; ++i)
+            sum += Alu.rotate(RotDir.LEFT, left[i], (i & 1) != 0) ^ Alu.shiftRightA(left[i])
+                    ^ Alu.swap(right[i]);
+        return sum;
+    }
+}
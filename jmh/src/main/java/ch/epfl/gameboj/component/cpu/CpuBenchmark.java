@@ -0,0 +1,114 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static ch.epfl.gameboj.component.cpu.Opcode.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.cpu.Opcode.Kind;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+/**
+ * Measures the time needed by the cpu to simulate a cycle, running endless
+ * loops of different mixes of instructions from a ram covering the whole
+ * address space.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CpuBenchmark {
+    private static final int CYCLES = 4096;
+    private static final int LOOP = 0x0010;
+    private static final int SUBROUTINE = 0x0100;
+
+    /**
+     * The mixes of instructions run by the cpu.
+     */
+    public enum Mix {
+        /** Arithmetic and logic operations on registers. */
+        ALU(INC_A, ADD_A_B, SUB_A_C, AND_A_C, OR_A_D, XOR_A_B, DEC_B, LD_B_C),
+        /** Loads between registers and memory. */
+        LOAD(LD_A_B, LD_B_C, LD_HLR_A, LD_A_HLR, PUSH_BC, POP_BC, LD_A_B),
+        /** Calls and returns. */
+        BRANCH(CALL_N16, NOP, CALL_N16, INC_A),
+        /** Prefixed bit operations. */
+        PREFIXED(BIT_0_A, RL_B, SET_3_C, RES_7_D, SWAP_E);
+
+        private final Opcode[] opcodes;
+
+        private Mix(Opcode... opcodes) {
+            this.opcodes = opcodes;
+        }
+    }
+
+    @Param
+    public Mix mix;
+
+    private Cpu cpu;
+    private long cycle;
+
+    @Setup
+    public void setup() {
+        final ByteArrayOutputStream program = new ByteArrayOutputStream();
+        emit(program, LD_SP_N16, 0xDFF0);
+        emit(program, LD_HL_N16, 0xC000);
+        emit(program, JP_N16, LOOP);
+        while (program.size() < LOOP)
+            program.write(NOP.encoding);
+        for (Opcode o : mix.opcodes)
+            emit(program, o, SUBROUTINE);
+        emit(program, JP_N16, LOOP);
+        while (program.size() < SUBROUTINE)
+            program.write(NOP.encoding);
+        emit(program, RET, 0);
+
+        final Ram ram = new Ram(0x10000);
+        final byte[] bytes = program.toByteArray();
+        for (int i = 0; i < bytes.length; ++i)
+            ram.write(i, Byte.toUnsignedInt(bytes[i]));
+        final Bus bus = new Bus();
+        cpu = new Cpu();
+        cpu.attachTo(bus);
+        new RamController(ram, 0).attachTo(bus);
+        cycle = 0;
+    }
+
+    // Emits the given instruction, followed by its argument if it has one.
+    private static void emit(ByteArrayOutputStream s, Opcode o, int argument) {
+        if (o.kind == Kind.PREFIXED)
+            s.write(0xCB);
+        s.write(o.encoding);
+        if (o.totalBytes == (o.kind == Kind.PREFIXED ? 2 : 1) + 1)
+            s.write(argument);
+        else if (o.totalBytes == (o.kind == Kind.PREFIXED ? 2 : 1) + 2) {
+            s.write(argument & 0xFF);
+            s.write(argument >> 8);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CYCLES)
+    public long cycles() {
+        for (int i = 0; i < CYCLES; ++i)
+            cpu.cycle(cycle++);
+        return cycle;
+    }
+}
@@ -0,0 +1,121 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_HEIGHT;
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_WIDTH;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.RegisterFile;
+import ch.epfl.gameboj.Roms;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController.LcdReg;
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * Measures the composition of the lines and images of the screen, from the
+ * video memories and registers of a game at a given frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LcdBenchmark {
+
+    @Param({ "supermarioland.gb", "zelda.gb" })
+    public String rom;
+
+    @Param({ "600" })
+    public int frames;
+
+    private LineRenderer renderer;
+    private FrameComposer composer;
+    private long regs;
+    private LcdImage image;
+
+    @Setup
+    public void setup() throws IOException {
+        final GameBoy gb = new GameBoy(Cartridge.ofFile(new File(Roms.DIRECTORY, rom)));
+        gb.runUntil(frames * GameBoy.CYCLES_PER_FRAME);
+
+        // Copying the state of the controller at the end of the image.
+        final Bus bus = gb.bus();
+        final Ram videoRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
+        for (int i = 0; i < videoRam.size(); ++i)
+            videoRam.write(i, bus.read(AddressMap.VIDEO_RAM_START + i));
+        final Ram objectRam = new Ram(AddressMap.OAM_RAM_SIZE);
+        for (int i = 0; i < objectRam.size(); ++i)
+            objectRam.write(i, bus.read(AddressMap.OAM_START + i));
+        final RegisterFile<LcdReg> file = new RegisterFile<>(LcdReg.values());
+        for (LcdReg r : LcdReg.values())
+            file.set(r, bus.read(AddressMap.REGS_LCDC_START + r.index()));
+        regs = LineRenderer.snapshot(file);
+        renderer = new LineRenderer(videoRam, objectRam);
+        composer = new FrameComposer(videoRam, objectRam, ForkJoinPool.commonPool());
+        image = gb.lcdController().currentImage();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LCD_HEIGHT)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int line() {
+        int winY = 0;
+        int sum = 0;
+        for (int line = 0; line < LCD_HEIGHT; ++line) {
+            sum += renderer.computeLine(line, winY, regs).size();
+            if (LineRenderer.windowVisible(line, regs))
+                winY += 1;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public LcdImage frameSynchronous() {
+        final LcdImage.Builder builder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+        int winY = 0;
+        for (int line = 0; line < LCD_HEIGHT; ++line) {
+            builder.setLine(line, renderer.computeLine(line, winY, regs));
+            if (LineRenderer.windowVisible(line, regs))
+                winY += 1;
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public LcdImage frameParallel() {
+        composer.newImage();
+        int winY = 0;
+        for (int line = 0; line < LCD_HEIGHT; ++line) {
+            composer.line(line, winY, regs);
+            if (LineRenderer.windowVisible(line, regs))
+                winY += 1;
+        }
+        return composer.endImage();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long hash64() {
+        return image.hash64();
+    }
+}
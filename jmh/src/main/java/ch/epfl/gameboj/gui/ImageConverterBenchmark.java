@@ -0,0 +1,54 @@
+package ch.epfl.gameboj.gui;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Roms;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+
+/**
+ * Measures the conversion of an image of the screen to a JavaFX image. The
+ * JavaFX toolkit is started first, which needs a display.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageConverterBenchmark {
+    private LcdImage image;
+
+    @Setup
+    public void setup() throws IOException {
+        try {
+            Platform.startup(() -> {});
+        } catch (IllegalStateException e) {
+            // The toolkit is already started.
+        }
+        final GameBoy gb = new GameBoy(Cartridge.ofFile(new File(Roms.DIRECTORY, "supermarioland.gb")));
+        gb.runUntil(600 * GameBoy.CYCLES_PER_FRAME);
+        image = gb.lcdController().currentImage();
+    }
+
+    @Benchmark
+    public Image convert() {
+        return ImageConverter.convert(image);
+    }
+}
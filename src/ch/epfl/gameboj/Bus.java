@@ -1,9 +1,12 @@
 package ch.epfl.gameboj;
 
+import static ch.epfl.gameboj.Preconditions.STRICT;
 import static ch.epfl.gameboj.Preconditions.checkBits16;
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 import ch.epfl.gameboj.component.Component;
@@ -17,9 +20,9 @@ import ch.epfl.gameboj.component.Component;
 public final class Bus {
 
     /**
-     * The (dynamic) array containing all the bus' components
+     * The array containing all the bus' components, replaced when a component is attached or detached
      */
-    private final ArrayList<Component> components = new ArrayList<Component>();
+    private Component[] components = new Component[0];
 
     /**
      * Attach a component to the Bus, by adding it to the components list.
@@ -28,8 +31,33 @@ public final class Bus {
      */
     public void attach(Component component) {
         Objects.requireNonNull(component);
-        components.add(component);
-        
+        components = Arrays.copyOf(components, components.length + 1);
+        components[components.length - 1] = component;
+    }
+
+    /**
+     * Attach a component to the Bus before all the others, so that it sees
+     * every read and write, for example to watch the accesses. A component
+     * returning NO_DATA lets the others be read.
+     * @param component, the component to attach.
+     * @throws NullPointerException if the component is null.
+     */
+    public void attachFirst(Component component) {
+        Objects.requireNonNull(component);
+        final Component[] newComponents = new Component[components.length + 1];
+        newComponents[0] = component;
+        System.arraycopy(components, 0, newComponents, 1, components.length);
+        components = newComponents;
+    }
+
+    /**
+     * Detach a component from the Bus, if it is attached.
+     * @param component, the component to detach.
+     */
+    public void detach(Component component) {
+        final List<Component> list = new ArrayList<>(Arrays.asList(components));
+        if (list.remove(component))
+            components = list.toArray(new Component[0]);
     }
 
     /**
@@ -40,19 +68,27 @@ public final class Bus {
      */
     public int read(int address) {
         checkBits16(address);
-        int value = 0xFF;
-        if (components.size() != 0) {
-            boolean found = false;
-            int i = 0;
-            do {
-                if ((components.get(i)).read(address) != Component.NO_DATA) {
-                    value = (components.get(i)).read(address);
-                    found = true; //a value has been found. This is to make the loop stop after one value has been found.
-                }
-                i++;
-            } while (!found && i < components.size());
+        return readUnchecked(address);
+    }
+
+    /**
+     * Reads through all the bus' components at a given address, which is only
+     * checked in strict mode. To be used by the components whose addresses are
+     * valid by construction, like the cpu.
+     * @param address , the 16-bit address to read at
+     * @return the data stored at the address. If no component stores data at the address, returns 0xFF.
+     * @throws IllegalArgumentException in strict mode, if the address is not a 16-bit number.
+     * @see Preconditions#STRICT
+     */
+    public int readUnchecked(int address) {
+        if (STRICT)
+            checkBits16(address);
+        for (Component c : components) {
+            final int value = c.read(address);
+            if (value != Component.NO_DATA)
+                return value;
         }
-        return value;
+        return 0xFF;
     }
 
     /**
@@ -64,8 +100,25 @@ public final class Bus {
     public void write(int address, int data) {
         checkBits16(address);
         checkBits8(data);
-        for (int i = 0; i < components.size(); i++) {
-            (components.get(i)).write(address, data);
+        writeUnchecked(address, data);
+    }
+
+    /**
+     * Writes at a given address in all components, the address and the data
+     * being only checked in strict mode. To be used by the components whose
+     * addresses and data are valid by construction, like the cpu.
+     * @param address , the 16-bit address in which to write
+     * @param data , the 8-bit data to store at the address
+     * @throws IllegalArgumentException in strict mode, if the address is not a 16-bit number, or the data not an 8-bit one
+     * @see Preconditions#STRICT
+     */
+    public void writeUnchecked(int address, int data) {
+        if (STRICT) {
+            checkBits16(address);
+            checkBits8(data);
+        }
+        for (Component c : components) {
+            c.write(address, data);
         }
     }
 }
@@ -0,0 +1,305 @@
+package ch.epfl.gameboj;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+import ch.epfl.gameboj.component.Component;
+
+/**
+ * A profiler of the accesses to a bus, counting the reads and the writes of
+ * each address. It tells which regions of the memory a game uses the most,
+ * and which addresses, for example the registers polled in a loop.
+ *
+ * The profiler watches the bus only while it is enabled, by being attached
+ * before all the other components and reading nothing, and can be enabled
+ * and disabled at any time. Once disabled, it is detached and costs nothing.
+ * The reads of the DMA and of the tools peeking the memory through the bus
+ * are counted like those of the cpu.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public final class BusProfiler implements AddressMap {
+
+    /**
+     * The regions of the memory.
+     */
+    public enum Region {
+        ROM0(0x0000, 0x4000),
+        ROMX(0x4000, 0x8000),
+        VRAM(VIDEO_RAM_START, VIDEO_RAM_END),
+        CART_RAM(0xA000, WORK_RAM_START),
+        WRAM(WORK_RAM_START, WORK_RAM_END),
+        ECHO(ECHO_RAM_START, ECHO_RAM_END),
+        OAM(OAM_START, OAM_END),
+        UNUSABLE(OAM_END, REGS_START),
+        IO(REGS_START, HIGH_RAM_START),
+        HRAM(HIGH_RAM_START, HIGH_RAM_END),
+        IE(REG_IE, REG_IE + 1);
+
+        private final int start, end;
+
+        private Region(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Gets the first address of the region.
+         * @return the 16-bit start of the region.
+         */
+        public int start() {
+            return start;
+        }
+
+        /**
+         * Gets the address after the last one of the region.
+         * @return the end of the region.
+         */
+        public int end() {
+            return end;
+        }
+
+        /**
+         * Gets the region of the given address.
+         * @param address : the 16-bit address.
+         * @return the region containing the address.
+         * @throws IllegalArgumentException if the address is not a 16-bit number.
+         */
+        public static Region of(int address) {
+            Preconditions.checkBits16(address);
+            int i = 0;
+            while (address >= REGIONS[i].end)
+                ++i;
+            return REGIONS[i];
+        }
+    }
+
+    private static final Region[] REGIONS = Region.values();
+
+    /**
+     * An address of the memory, and its counts.
+     */
+    public static final class HotAddress {
+        private final int address;
+        private final long reads, writes;
+
+        private HotAddress(int address, long reads, long writes) {
+            this.address = address;
+            this.reads = reads;
+            this.writes = writes;
+        }
+
+        /**
+         * Gets the address.
+         * @return the 16-bit address.
+         */
+        public int address() {
+            return address;
+        }
+
+        /**
+         * Gets the region of the address.
+         * @return the region.
+         */
+        public Region region() {
+            return Region.of(address);
+        }
+
+        /**
+         * Gets the number of reads of the address.
+         * @return the number of reads.
+         */
+        public long reads() {
+            return reads;
+        }
+
+        /**
+         * Gets the number of writes of the address.
+         * @return the number of writes.
+         */
+        public long writes() {
+            return writes;
+        }
+
+        /**
+         * Gets the number of accesses to the address.
+         * @return the number of reads and writes.
+         */
+        public long accesses() {
+            return reads + writes;
+        }
+
+        /**
+         * Gets the address in hexadecimal, like "FF44".
+         */
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%04X", address);
+        }
+    }
+
+    private final Bus bus;
+    private final long[] reads = new long[0x10000];
+    private final long[] writes = new long[0x10000];
+    private boolean enabled;
+
+    // The component counting the accesses, attached before all the others.
+    private final Component counter = new Component() {
+        @Override
+        public int read(int address) {
+            ++reads[address];
+            return NO_DATA;
+        }
+
+        @Override
+        public void write(int address, int data) {
+            ++writes[address];
+        }
+    };
+
+    /**
+     * Creates a profiler of the given bus, disabled.
+     * @param bus : the bus.
+     * @throws NullPointerException if the bus is null.
+     */
+    public BusProfiler(Bus bus) {
+        this.bus = Objects.requireNonNull(bus);
+    }
+
+    /**
+     * Starts or stops counting the accesses to the bus, keeping the counts.
+     * @param enabled : true to count the accesses, false to stop.
+     */
+    public void setEnabled(boolean enabled) {
+        if (enabled == this.enabled)
+            return;
+        if (enabled)
+            bus.attachFirst(counter);
+        else
+            bus.detach(counter);
+        this.enabled = enabled;
+    }
+
+    /**
+     * Tells whether the accesses to the bus are being counted.
+     * @return true if the profiler is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the number of reads of the given address.
+     * @param address : the 16-bit address.
+     * @return the number of reads.
+     * @throws IllegalArgumentException if the address is not a 16-bit number.
+     */
+    public long reads(int address) {
+        Preconditions.checkBits16(address);
+        return reads[address];
+    }
+
+    /**
+     * Gets the number of writes of the given address.
+     * @param address : the 16-bit address.
+     * @return the number of writes.
+     * @throws IllegalArgumentException if the address is not a 16-bit number.
+     */
+    public long writes(int address) {
+        Preconditions.checkBits16(address);
+        return writes[address];
+    }
+
+    /**
+     * Gets the number of reads of the given region.
+     * @param region : the region.
+     * @return the number of reads of the addresses of the region.
+     */
+    public long reads(Region region) {
+        return sum(reads, region);
+    }
+
+    /**
+     * Gets the number of writes of the given region.
+     * @param region : the region.
+     * @return the number of writes of the addresses of the region.
+     */
+    public long writes(Region region) {
+        return sum(writes, region);
+    }
+
+    private static long sum(long[] counts, Region region) {
+        long s = 0;
+        for (int a = region.start; a < region.end; ++a)
+            s += counts[a];
+        return s;
+    }
+
+    /**
+     * Gets the addresses accessed the most.
+     * @param k : the maximum number of addresses.
+     * @return the addresses accessed, by decreasing number of accesses.
+     * @throws IllegalArgumentException if k is negative.
+     */
+    public List<HotAddress> hotAddresses(int k) {
+        Preconditions.checkArgument(k >= 0);
+        final Comparator<HotAddress> byAccesses = Comparator.comparingLong(HotAddress::accesses);
+        // The k addresses accessed the most so far, the least accessed first.
+        final PriorityQueue<HotAddress> top = new PriorityQueue<>(byAccesses);
+        for (int a = 0; a < reads.length && k > 0; ++a) {
+            final long accesses = reads[a] + writes[a];
+            if (accesses == 0 || (top.size() == k && accesses <= top.peek().accesses()))
+                continue;
+            if (top.size() == k)
+                top.poll();
+            top.add(new HotAddress(a, reads[a], writes[a]));
+        }
+        final List<HotAddress> hot = new ArrayList<>(top);
+        hot.sort(byAccesses.reversed());
+        return hot;
+    }
+
+    /**
+     * Forgets all the counts.
+     */
+    public void reset() {
+        Arrays.fill(reads, 0);
+        Arrays.fill(writes, 0);
+    }
+
+    /**
+     * Writes a report of the reads and writes of each region, and of the k
+     * addresses accessed the most.
+     * @param out : where to write the report.
+     * @param k : the number of addresses reported.
+     * @throws IOException if the report cannot be written.
+     * @throws IllegalArgumentException if k is negative.
+     */
+    public void writeReport(Appendable out, int k) throws IOException {
+        long total = 0;
+        for (int a = 0; a < reads.length; ++a)
+            total += reads[a] + writes[a];
+        out.append(String.format(Locale.ROOT, "%d accesses%n%nregions%n", total));
+        for (Region r : REGIONS) {
+            final long rd = reads(r), wr = writes(r);
+            out.append(String.format(Locale.ROOT, "  %-8s %14d %14d %6.2f %%%n",
+                    r, rd, wr, percent(rd + wr, total)));
+        }
+        out.append(String.format(Locale.ROOT, "%nhot addresses%n"));
+        for (HotAddress h : hotAddresses(k)) {
+            out.append(String.format(Locale.ROOT, "  %s  %-8s %14d %14d %6.2f %%%n",
+                    h, h.region(), h.reads(), h.writes(), percent(h.accesses(), total)));
+        }
+    }
+
+    private static double percent(long n, long total) {
+        return total == 0 ? 0 : 100.0 * n / total;
+    }
+}
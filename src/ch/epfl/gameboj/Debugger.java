@@ -0,0 +1,433 @@
+package ch.epfl.gameboj;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntPredicate;
+
+import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.cpu.Cpu;
+import ch.epfl.gameboj.component.cpu.CpuObserver;
+import ch.epfl.gameboj.component.cpu.Opcode;
+import ch.epfl.gameboj.component.cpu.SymbolTable;
+
+/**
+ * The debugger of a GameBoy, running it until the cpu reaches a breakpoint,
+ * the memory is accessed at a watchpoint, or a condition holds.
+ *
+ * A breakpoint stops the GameBoy right before the instruction at its address,
+ * in a given rom bank or in any. A watchpoint stops it right after the cycle
+ * at which its range of addresses is read or written through the bus, which
+ * includes the reads of the DMA. A condition is checked after each
+ * instruction, or, for a condition on the value of a byte of memory, after
+ * each write of this byte only.
+ *
+ * The instrumentation costs something only while running with the debugger:
+ * the cpu is then observed only if there are breakpoints or a condition, and
+ * the accesses to the bus are watched only if there are watchpoints. Running
+ * the GameBoy with GameBoy.runUntil is unaffected.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public final class Debugger {
+
+    /**
+     * The kinds of accesses to the memory watched.
+     */
+    public enum Access {
+        READ, WRITE, READ_WRITE
+    }
+
+    /**
+     * The reasons of a stop.
+     */
+    public enum Reason {
+        CYCLE, BREAKPOINT, WATCHPOINT, CONDITION
+    }
+
+    /**
+     * The state of the GameBoy when the debugger stopped it.
+     */
+    public static final class Stop {
+        private final Reason reason;
+        private final long cycle;
+        private final int address;
+        private final Access access;
+        private final int value;
+
+        private Stop(Reason reason, long cycle, int address, Access access, int value) {
+            this.reason = reason;
+            this.cycle = cycle;
+            this.address = address;
+            this.access = access;
+            this.value = value;
+        }
+
+        /**
+         * Gets the reason of the stop.
+         * @return the reason.
+         */
+        public Reason reason() {
+            return reason;
+        }
+
+        /**
+         * Gets the cycle at which the GameBoy stopped, the next one it runs.
+         * @return the cycle.
+         */
+        public long cycle() {
+            return cycle;
+        }
+
+        /**
+         * Gets the address which caused the stop: the address of the next
+         * instruction, or the address accessed at a watchpoint or written for
+         * a condition on the memory.
+         * @return the 16-bit address.
+         */
+        public int address() {
+            return address;
+        }
+
+        /**
+         * Gets the access which caused a stop at a watchpoint.
+         * @return READ or WRITE, or null if the stop was not at a watchpoint.
+         */
+        public Access access() {
+            return access;
+        }
+
+        /**
+         * Gets the byte written, for a stop at a write or for a condition on
+         * the memory.
+         * @return the byte written, or -1 if there is none.
+         */
+        public int value() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            final String where = String.format("%04X", address);
+            switch (reason) {
+            case WATCHPOINT:
+                return access + " of " + where + (value >= 0 ? String.format(" (%02X)", value) : "")
+                        + " at cycle " + cycle;
+            case CYCLE:
+                return "cycle " + cycle;
+            default:
+                return reason + " at " + where + ", cycle " + cycle;
+            }
+        }
+    }
+
+    // The flags of the addresses of the watchpoints.
+    private static final int WATCH_READ = 1, WATCH_WRITE = 2;
+
+    private final GameBoy gameBoy;
+    private final Cpu cpu;
+    private final Bus bus;
+
+    // The addresses of the breakpoints of any bank, and of those of a given bank.
+    private final boolean[] anyBank = new boolean[0x10000];
+    private final boolean[] someBank = new boolean[0x10000];
+    private final Set<Integer> bankBreakpoints = new HashSet<>();
+    private int breakpoints;
+    private final byte[] watched = new byte[0x10000];
+    private int watchpoints;
+
+    // The condition of the current run, checked after each instruction, or null.
+    private BooleanSupplier condition;
+    // The address of the current condition on the memory, or -1.
+    private int conditionAddress = -1;
+    private IntPredicate memoryCondition;
+    private boolean checking;
+
+    // The stop of the current run, read by GameBoy after each cycle.
+    Stop stop;
+
+    private final CpuObserver observer = new CpuObserver() {
+        @Override
+        public void instructionExecuted(int pc, Opcode opcode, int cycles) {
+            reached(cpu.pc());
+        }
+
+        @Override
+        public void interrupted(Cpu.Interrupt interrupt, int pc, int handler, int cycles) {
+            reached(handler);
+        }
+    };
+
+    // The component watching the bus, attached before all the others.
+    private final Component watch = new Component() {
+        @Override
+        public int read(int address) {
+            if ((watched[address] & WATCH_READ) != 0 && !checking && stop == null)
+                stop = new Stop(Reason.WATCHPOINT, gameBoy.cycles() + 1, address, Access.READ, -1);
+            return NO_DATA;
+        }
+
+        @Override
+        public void write(int address, int data) {
+            if (stop != null)
+                return;
+            if ((watched[address] & WATCH_WRITE) != 0)
+                stop = new Stop(Reason.WATCHPOINT, gameBoy.cycles() + 1, address, Access.WRITE, data);
+            else if (address == conditionAddress && memoryCondition.test(data))
+                stop = new Stop(Reason.CONDITION, gameBoy.cycles() + 1, address, null, data);
+        }
+    };
+
+    Debugger(GameBoy gameBoy) {
+        this.gameBoy = gameBoy;
+        this.cpu = gameBoy.cpu();
+        this.bus = gameBoy.bus();
+    }
+
+    // Checks the breakpoints and the condition once the cpu is about to run the given address.
+    private void reached(int pc) {
+        if (stop != null)
+            return;
+        if (anyBank[pc] || (someBank[pc]
+                && bankBreakpoints.contains(key(gameBoy.cartridge().romBank(pc), pc)))) {
+            stop = new Stop(Reason.BREAKPOINT, gameBoy.cycles() + 1, pc, null, -1);
+        } else if (condition != null) {
+            checking = true;
+            try {
+                if (condition.getAsBoolean())
+                    stop = new Stop(Reason.CONDITION, gameBoy.cycles() + 1, pc, null, -1);
+            } finally {
+                checking = false;
+            }
+        }
+    }
+
+    private static int key(int bank, int address) {
+        return bank << 16 | address;
+    }
+
+    /**
+     * Adds a breakpoint at the given address, in any rom bank.
+     * @param address : the 16-bit address.
+     * @throws IllegalArgumentException if the address is not a 16-bit number.
+     */
+    public void addBreakpoint(int address) {
+        Preconditions.checkBits16(address);
+        if (!anyBank[address]) {
+            anyBank[address] = true;
+            ++breakpoints;
+        }
+    }
+
+    /**
+     * Adds a breakpoint at the given address of the given rom bank.
+     * @param bank : the rom bank.
+     * @param address : the 16-bit address.
+     * @throws IllegalArgumentException if the address is not a 16-bit number,
+     * or the bank is negative.
+     */
+    public void addBreakpoint(int bank, int address) {
+        Preconditions.checkBits16(address);
+        Preconditions.checkArgument(bank >= 0);
+        if (bankBreakpoints.add(key(bank, address))) {
+            someBank[address] = true;
+            ++breakpoints;
+        }
+    }
+
+    /**
+     * Adds a breakpoint at the address of the given name.
+     * @param symbols : the symbols of the game.
+     * @param name : the name of the address.
+     * @throws IllegalArgumentException if no address has this name.
+     */
+    public void addBreakpoint(SymbolTable symbols, String name) {
+        final int address = symbols.address(name);
+        Preconditions.checkArgument(address >= 0);
+        addBreakpoint(symbols.bank(name), address);
+    }
+
+    /**
+     * Removes the breakpoint of any rom bank at the given address, and those
+     * of every bank at this address.
+     * @param address : the 16-bit address.
+     * @throws IllegalArgumentException if the address is not a 16-bit number.
+     */
+    public void removeBreakpoint(int address) {
+        Preconditions.checkBits16(address);
+        if (anyBank[address]) {
+            anyBank[address] = false;
+            --breakpoints;
+        }
+        if (someBank[address]) {
+            someBank[address] = false;
+            breakpoints -= bankBreakpoints.size();
+            bankBreakpoints.removeIf(k -> (k & 0xFFFF) == address);
+            breakpoints += bankBreakpoints.size();
+        }
+    }
+
+    /**
+     * Adds a watchpoint on the given range of addresses.
+     * @param access : the accesses watched.
+     * @param start : the first address watched.
+     * @param end : the address after the last one watched.
+     * @throws IllegalArgumentException if the range is empty or not within
+     * the 16-bit addresses.
+     * @throws NullPointerException if the access is null.
+     */
+    public void addWatchpoint(Access access, int start, int end) {
+        Objects.requireNonNull(access);
+        Preconditions.checkArgument(0 <= start && start < end && end <= 0x10000);
+        final int flags = access == Access.READ ? WATCH_READ
+                : access == Access.WRITE ? WATCH_WRITE : WATCH_READ | WATCH_WRITE;
+        for (int a = start; a < end; ++a) {
+            if (watched[a] == 0)
+                ++watchpoints;
+            watched[a] |= flags;
+        }
+    }
+
+    /**
+     * Removes the watchpoints on the given range of addresses.
+     * @param start : the first address.
+     * @param end : the address after the last one.
+     * @throws IllegalArgumentException if the range is empty or not within
+     * the 16-bit addresses.
+     */
+    public void removeWatchpoint(int start, int end) {
+        Preconditions.checkArgument(0 <= start && start < end && end <= 0x10000);
+        for (int a = start; a < end; ++a) {
+            if (watched[a] != 0)
+                --watchpoints;
+            watched[a] = 0;
+        }
+    }
+
+    /**
+     * Removes all the breakpoints and watchpoints.
+     */
+    public void clear() {
+        Arrays.fill(anyBank, false);
+        Arrays.fill(someBank, false);
+        Arrays.fill(watched, (byte) 0);
+        bankBreakpoints.clear();
+        breakpoints = watchpoints = 0;
+    }
+
+    /**
+     * Runs the GameBoy until the given cycle (excluded), or until it reaches a
+     * breakpoint or a watchpoint.
+     * @param cycle : the cycle until which the GameBoy is to be run.
+     * @return the reason of the stop and the state of the GameBoy.
+     * @throws IllegalArgumentException if the cycle has already been run.
+     */
+    public Stop runUntil(long cycle) {
+        return run(cycle);
+    }
+
+    /**
+     * Runs the GameBoy until the given condition holds, checked after each
+     * instruction and before the first one, or until the given cycle
+     * (excluded), a breakpoint or a watchpoint.
+     * @param condition : the condition, for example on the registers or the memory.
+     * @param cycle : the cycle until which the GameBoy is to be run.
+     * @return the reason of the stop and the state of the GameBoy.
+     * @throws IllegalArgumentException if the cycle has already been run.
+     * @throws NullPointerException if the condition is null.
+     */
+    public Stop runUntil(BooleanSupplier condition, long cycle) {
+        Preconditions.checkArgument(gameBoy.cycles() <= cycle);
+        if (condition.getAsBoolean())
+            return new Stop(Reason.CONDITION, gameBoy.cycles(), cpu.pc(), null, -1);
+        this.condition = condition;
+        try {
+            return run(cycle);
+        } finally {
+            this.condition = null;
+        }
+    }
+
+    /**
+     * Runs the GameBoy until the byte at the given address satisfies the given
+     * condition, checked before running and after each write of this byte, or
+     * until the given cycle (excluded), a breakpoint or a watchpoint. This
+     * costs much less than checking the byte after each instruction.
+     * @param address : the 16-bit address of the byte.
+     * @param condition : the condition on the value of the byte.
+     * @param cycle : the cycle until which the GameBoy is to be run.
+     * @return the reason of the stop and the state of the GameBoy.
+     * @throws IllegalArgumentException if the address is not a 16-bit number,
+     * or the cycle has already been run.
+     * @throws NullPointerException if the condition is null.
+     */
+    public Stop runUntilMemory(int address, IntPredicate condition, long cycle) {
+        Preconditions.checkBits16(address);
+        Preconditions.checkArgument(gameBoy.cycles() <= cycle);
+        final int value = bus.read(address);
+        if (condition.test(value))
+            return new Stop(Reason.CONDITION, gameBoy.cycles(), address, null, value);
+        memoryCondition = condition;
+        conditionAddress = address;
+        try {
+            return run(cycle);
+        } finally {
+            memoryCondition = null;
+            conditionAddress = -1;
+        }
+    }
+
+    // Runs the GameBoy, instrumented only as needed.
+    private Stop run(long cycle) {
+        Preconditions.checkArgument(gameBoy.cycles() <= cycle);
+        stop = null;
+        final CpuObserver previous = cpu.observer();
+        final boolean observing = breakpoints > 0 || condition != null;
+        final boolean watching = watchpoints > 0 || conditionAddress >= 0;
+        if (observing)
+            cpu.setObserver(previous == null ? observer : CpuObserver.both(previous, observer));
+        if (watching)
+            bus.attachFirst(watch);
+        try {
+            gameBoy.runUntil(cycle, this);
+        } finally {
+            if (observing)
+                cpu.setObserver(previous);
+            if (watching)
+                bus.detach(watch);
+        }
+        final Stop s = stop != null ? stop : new Stop(Reason.CYCLE, gameBoy.cycles(), cpu.pc(), null, -1);
+        stop = null;
+        return s;
+    }
+
+    /**
+     * Gets a condition on the byte at the given address of the bus, which
+     * holds when it has the given value, for runUntil.
+     * @param address : the 16-bit address.
+     * @param value : the value.
+     * @return the condition.
+     * @throws IllegalArgumentException if the address is not a 16-bit number
+     * or the value not an 8-bit one.
+     */
+    public BooleanSupplier memoryEquals(int address, int value) {
+        Preconditions.checkBits16(address);
+        Preconditions.checkBits8(value);
+        return () -> bus.read(address) == value;
+    }
+
+    /**
+     * Gets a condition which holds when the cpu is about to run the
+     * instruction at the given address, in any rom bank, for runUntil.
+     * @param address : the 16-bit address.
+     * @return the condition.
+     * @throws IllegalArgumentException if the address is not a 16-bit number.
+     */
+    public BooleanSupplier pcEquals(int address) {
+        Preconditions.checkBits16(address);
+        return () -> cpu.pc() == address;
+    }
+}
@@ -1,5 +1,11 @@
 package ch.epfl.gameboj;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Objects;
 
 import ch.epfl.gameboj.component.Joypad;
@@ -7,6 +13,7 @@ import ch.epfl.gameboj.component.Timer;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.LcdController.Rendering;
 import ch.epfl.gameboj.component.memory.BootRomController;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.RamController;
@@ -17,20 +24,46 @@ import ch.epfl.gameboj.component.memory.RamController;
  * @author Adrien Laydu, Michael Tasev
  *
  */
-public final class GameBoy implements AddressMap {
+public final class GameBoy implements AddressMap, Closeable {
 
     // A couple useful constants.
     public static final long CYCLES_PER_SECOND = 1L << 20;
     public static final double CYCLES_PER_NANOSECOND = (double)(CYCLES_PER_SECOND /1e9);
+    public static final long CYCLES_PER_FRAME = 17_556;
+
+    /**
+     * The version of the format of the snapshots, changed each time the state
+     * of a component changes.
+     */
+    public static final int SNAPSHOT_VERSION = 1;
+
+    // The first bytes of a snapshot, "GBJS".
+    private static final int SNAPSHOT_MAGIC = 0x47424A53;
+    // The magic number, the version, the size, the checksums of the rom and the cycles.
+    private static final int SNAPSHOT_HEADER_SIZE = Integer.BYTES + Short.BYTES
+            + Integer.BYTES + 3 + Long.BYTES;
+    // The address of the checksums in the header of the rom.
+    private static final int ROM_CHECKSUMS = 0x14D;
 
     private final Bus bus;
     private final Cpu cpu;
 
+    private final Cartridge cartridge;
     private final Timer timer;
     private final LcdController lcdController;
     private final Joypad joypad;
+    private final BootRomController bootRomController;
+    private final Ram workRam;
+
+    private final int romChecksums;
+    private final int snapshotSize;
+
+    private long cycles;
 
-    private int cycles;
+    private GameBoyMetrics metrics;
+    private long nextSample;
+
+    private Debugger debugger;
 
     /**
      * Creates a new GameBoy with the given cartridge.
@@ -39,10 +72,31 @@ public final class GameBoy implements AddressMap {
      *            : the initial cartridge of the GameBoy
      */
     public GameBoy(Cartridge cartridge) {
-        Objects.requireNonNull(cartridge);
+        this(cartridge, Rendering.SYNCHRONOUS);
+    }
+
+    /**
+     * Creates a new GameBoy with the given cartridge, whose screen lines are
+     * composed in the given way.
+     * 
+     * @param cartridge
+     *            : the initial cartridge of the GameBoy
+     * @param rendering
+     *            : the way the lines of the screen are composed
+     * @throws NullPointerException
+     *             if the cartridge or the rendering is null
+     */
+    public GameBoy(Cartridge cartridge, Rendering rendering) {
+        this(cartridge, rendering, romChecksums(cartridge));
+    }
+
+    private GameBoy(Cartridge cartridge, Rendering rendering, int romChecksums) {
+        this.cartridge = Objects.requireNonNull(cartridge);
+        this.romChecksums = romChecksums;
 
         // Creating the work RAM.
         final Ram ram = new Ram(WORK_RAM_SIZE);
+        workRam = ram;
 
         // The echo RAM has the same reference as the work RAM to be able to
         // write in one and read in the other.
@@ -59,11 +113,12 @@ public final class GameBoy implements AddressMap {
         cpu = new Cpu();
         bus = new Bus();
         timer = new Timer(cpu);
-        lcdController = new LcdController(cpu);
+        lcdController = new LcdController(cpu, rendering);
         joypad = new Joypad(cpu);
 
         // The boot rom controller of the GameBoy.
         final BootRomController BRC = new BootRomController(cartridge);
+        bootRomController = BRC;
 
         // Attaching our components.
         ramController.attachTo(bus);
@@ -76,6 +131,17 @@ public final class GameBoy implements AddressMap {
         lcdController.attachTo(bus);
         joypad.attachTo(bus);
 
+        snapshotSize = SNAPSHOT_HEADER_SIZE + cpu.stateSize() + timer.stateSize()
+                + lcdController.stateSize() + joypad.stateSize()
+                + bootRomController.stateSize() + workRam.stateSize()
+                + cartridge.stateSize();
+    }
+
+    // Identifies the cartridge in the snapshots, read before any bank is switched.
+    private static int romChecksums(Cartridge cartridge) {
+        return cartridge.read(ROM_CHECKSUMS) << 16
+                | cartridge.read(ROM_CHECKSUMS + 1) << 8
+                | cartridge.read(ROM_CHECKSUMS + 2);
     }
 
     /**
@@ -88,14 +154,118 @@ public final class GameBoy implements AddressMap {
      */
     public void runUntil(long cycle) {
         Preconditions.checkArgument(cycles <= cycle);
+        if (metrics != null) {
+            runMeasured(cycle);
+            return;
+        }
+        while (cycles < cycle) {
+            timer.cycle(cycles);
+            cartridge.cycle(cycles);
+            cpu.cycle(cycles);
+            lcdController.cycle(cycles);
+            cycles += 1;
+        }
+    }
+
+    // Runs the GameBoy like runUntil, timing the components (see GameBoyMetrics).
+    private void runMeasured(long cycle) {
+        final long start = System.nanoTime();
+        final long allocated = GameBoyMetrics.allocatedBytes();
+        final long startCycles = cycles;
+        // The GameBoy may have been restored to an earlier cycle.
+        nextSample = Math.min(nextSample, cycles + GameBoyMetrics.SAMPLE_INTERVAL);
+        long timerNanos = 0, samples = 0, clockNanos = 0, timerSampled = 0, cartridgeSampled = 0;
+        while (cycles < cycle) {
+            if (cycles >= timer.nextOverflowCycle()) {
+                // The overflows of TIMA, the only work of the timer, are timed exactly.
+                final long t = System.nanoTime();
+                timer.cycle(cycles);
+                timerNanos += System.nanoTime() - t;
+                cartridge.cycle(cycles);
+            } else if (cycles >= nextSample) {
+                // Repeating the cycle of the timer, when TIMA does not overflow, or of the
+                // cartridge does not change them, so that they can be timed by batches.
+                // The first time measured is the cost of System.nanoTime itself.
+                final long t0 = System.nanoTime();
+                final long t1 = System.nanoTime();
+                for (int i = 0; i < GameBoyMetrics.SAMPLE_BATCH; ++i)
+                    timer.cycle(cycles);
+                final long t2 = System.nanoTime();
+                for (int i = 0; i < GameBoyMetrics.SAMPLE_BATCH; ++i)
+                    cartridge.cycle(cycles);
+                final long t3 = System.nanoTime();
+                clockNanos += t1 - t0;
+                timerSampled += t2 - t1;
+                cartridgeSampled += t3 - t2;
+                samples += 1;
+                nextSample = cycles + metrics.nextSampleDistance();
+            } else {
+                timer.cycle(cycles);
+                cartridge.cycle(cycles);
+            }
+            cpu.cycle(cycles);
+            // The work of the lcd controller is timed exactly by itself.
+            lcdController.cycle(cycles);
+            cycles += 1;
+        }
+        final long bytes = allocated < 0 ? -1 : GameBoyMetrics.allocatedBytes() - allocated;
+        metrics.ran(cycles - startCycles, System.nanoTime() - start, bytes, timerNanos,
+                samples, clockNanos, timerSampled, cartridgeSampled);
+    }
+
+    // Runs the GameBoy like runUntil, until the debugger stops it (see Debugger).
+    void runUntil(long cycle, Debugger debugger) {
         while (cycles < cycle) {
             timer.cycle(cycles);
+            cartridge.cycle(cycles);
             cpu.cycle(cycles);
             lcdController.cycle(cycles);
             cycles += 1;
+            if (debugger.stop != null)
+                return;
         }
     }
 
+    // Moves the timeline of a GameBoy which has not run yet to the given cycle (see Soak),
+    // the components running as if the cycles before it had never existed.
+    void startAt(long cycle) {
+        Preconditions.checkArgument(cycles == 0 && cycle >= 0);
+        timer.startAt(cycle);
+        cartridge.startAt(cycle);
+        cpu.startAt(cycle);
+        lcdController.startAt(cycle);
+        cycles = cycle;
+        nextSample = cycle;
+    }
+
+    /**
+     * Gets the debugger of the GameBoy, which runs it until a breakpoint, a
+     * watchpoint or a condition. Running the GameBoy with runUntil is not
+     * slowed down by the debugger, whose runs are not measured by the metrics.
+     * 
+     * @return the debugger of the GameBoy.
+     */
+    public Debugger debugger() {
+        if (debugger == null)
+            debugger = new Debugger(this);
+        return debugger;
+    }
+
+    /**
+     * Starts measuring the speed of the GameBoy and the time spent in its
+     * components, which slows it down by a few percent.
+     * 
+     * @return the metrics of the GameBoy, which can then be registered as an
+     *         MBean.
+     */
+    public GameBoyMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new GameBoyMetrics(lcdController);
+            nextSample = cycles;
+        }
+        return metrics;
+    }
+
     /**
      * Gets the GameBoy's bus.
      * 
@@ -114,12 +284,21 @@ public final class GameBoy implements AddressMap {
         return cpu;
     }
 
+    /**
+     * Gets the GameBoy's cartridge.
+     * 
+     * @return the GameBoy's cartridge.
+     */
+    public Cartridge cartridge() {
+        return cartridge;
+    }
+
     /**
      * Gets the number of cycle the GameBoy has processed yet.
      * 
-     * @return an integer, the number of cycles processed.
+     * @return a long, the number of cycles processed.
      */
-    public int cycles() {
+    public long cycles() {
         return cycles;
     }
 
@@ -149,4 +328,142 @@ public final class GameBoy implements AddressMap {
     public Joypad joypad() {
         return joypad;
     }
+
+    /**
+     * Creates a new GameBoy in the same state as this one, which then runs
+     * independently of it.
+     * 
+     * The memories (work RAM, video RAM, OAM and cartridge RAM) are not
+     * copied but shared by both GameBoys in pages of 256 bytes, a page being
+     * copied by a GameBoy only when it writes it for the first time (see
+     * Ram.shareFrom). Forking is thus much cheaper than restoring a snapshot.
+     * The fork may run on another thread, but this GameBoy must not be running
+     * while it is forked. The RAM of the fork is never saved in a file, and the
+     * image being drawn is not copied, like with restore. With pipelined
+     * rendering, the video memories still have to be sent to the worker of the
+     * fork.
+     * 
+     * @return a fork of this GameBoy.
+     */
+    public GameBoy fork() {
+        final GameBoy fork = new GameBoy(cartridge.fork(),
+                lcdController.rendering(), romChecksums);
+        fork.cycles = cycles;
+
+        // The other components have no memory worth sharing, their states are copied.
+        final ByteBuffer states = ByteBuffer.allocate(cpu.stateSize()
+                + timer.stateSize() + joypad.stateSize()
+                + bootRomController.stateSize());
+        cpu.saveState(states);
+        timer.saveState(states);
+        joypad.saveState(states);
+        bootRomController.saveState(states);
+        states.flip();
+        fork.cpu.loadState(states);
+        fork.timer.loadState(states);
+        fork.joypad.loadState(states);
+        fork.bootRomController.loadState(states);
+
+        fork.lcdController.copyStateFrom(lcdController);
+        fork.workRam.shareFrom(workRam);
+        return fork;
+    }
+
+    /**
+     * Gets the size of the snapshots of this GameBoy, which only depends on
+     * its cartridge.
+     * 
+     * @return the size of a snapshot, in bytes.
+     */
+    public int snapshotSize() {
+        return snapshotSize;
+    }
+
+    /**
+     * Writes a snapshot of the whole state of the GameBoy in the given buffer,
+     * at its position, which is advanced by snapshotSize() bytes. The state of
+     * the GameBoy is not modified, and no memory is allocated.
+     * 
+     * The snapshot starts with a header containing the magic number "GBJS",
+     * the version of the format, the size of the snapshot, the checksums of the
+     * rom and the number of cycles simulated, followed by the states of the
+     * components. All values are big-endian.
+     * 
+     * @param buffer
+     *            : the buffer in which to write the snapshot.
+     * @throws BufferOverflowException
+     *             if the buffer has less than snapshotSize() bytes remaining.
+     */
+    public void snapshot(ByteBuffer buffer) {
+        if (buffer.remaining() < snapshotSize)
+            throw new BufferOverflowException();
+        final ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(SNAPSHOT_MAGIC).putShort((short) SNAPSHOT_VERSION)
+                .putInt(snapshotSize);
+        buffer.put((byte) (romChecksums >> 16)).put((byte) (romChecksums >> 8))
+                .put((byte) romChecksums);
+        buffer.putLong(cycles);
+        cpu.saveState(buffer);
+        timer.saveState(buffer);
+        lcdController.saveState(buffer);
+        joypad.saveState(buffer);
+        bootRomController.saveState(buffer);
+        workRam.saveState(buffer);
+        cartridge.saveState(buffer);
+        buffer.order(order);
+    }
+
+    /**
+     * Restores the whole state of the GameBoy from a snapshot read in the given
+     * buffer, at its position, which is advanced by snapshotSize() bytes. No
+     * memory is allocated. The images of the screen are not part of the
+     * snapshot.
+     * 
+     * @param buffer
+     *            : the buffer containing the snapshot.
+     * @throws BufferUnderflowException
+     *             if the buffer has less than snapshotSize() bytes remaining.
+     * @throws IllegalArgumentException
+     *             if the buffer does not contain a snapshot of this version,
+     *             taken with the same cartridge. The GameBoy and the buffer are
+     *             then left unchanged.
+     */
+    public void restore(ByteBuffer buffer) {
+        if (buffer.remaining() < snapshotSize)
+            throw new BufferUnderflowException();
+        final ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        final int start = buffer.position();
+        final boolean valid = buffer.getInt(start) == SNAPSHOT_MAGIC
+                && buffer.getShort(start + Integer.BYTES) == SNAPSHOT_VERSION
+                && buffer.getInt(start + Integer.BYTES + Short.BYTES) == snapshotSize
+                && (buffer.getInt(start + 2 * Integer.BYTES + Short.BYTES - 1) & 0xFFFFFF) == romChecksums;
+        if (!valid) {
+            buffer.order(order);
+            throw new IllegalArgumentException("not a snapshot of this GameBoy");
+        }
+        buffer.position(start + SNAPSHOT_HEADER_SIZE - Long.BYTES);
+        cycles = buffer.getLong();
+        cpu.loadState(buffer);
+        timer.loadState(buffer);
+        lcdController.loadState(buffer);
+        joypad.loadState(buffer);
+        bootRomController.loadState(buffer);
+        workRam.loadState(buffer);
+        cartridge.loadState(buffer);
+        buffer.order(order);
+    }
+
+    /**
+     * Closes the file in which the RAM of the cartridge is saved, if any (see
+     * Cartridge.close). The GameBoy should not run afterwards.
+     * 
+     * @throws IOException
+     *             if the save file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        cartridge.close();
+    }
 }
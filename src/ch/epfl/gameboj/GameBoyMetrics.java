@@ -0,0 +1,229 @@
+package ch.epfl.gameboj;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Hashtable;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * The metrics of a GameBoy, telling how fast it runs and where the time of
+ * the host goes, which can be published as an MBean.
+ *
+ * The lcd controller and the timer have nothing to do during most cycles,
+ * and the work they do on the others is timed exactly: the timing of the
+ * screen, the composition of the lines and the DMA by the lcd controller,
+ * and the overflows of TIMA by the GameBoy. The other cycles of the timer and
+ * those of the cartridge cost less than System.nanoTime, so one of them every
+ * SAMPLE_INTERVAL cycles (on average) is repeated SAMPLE_BATCH times, which
+ * does not change the components, and the whole batch is timed. The interval
+ * between two samples varies randomly, so that the samples do not always
+ * fall on the same cycle of an instruction or of a line. The cost of
+ * System.nanoTime, measured in each sample, is removed from the sum of the
+ * batches. The rest of the time spent running, without the time spent in the
+ * samples, is the time spent in the cpu. The metrics are updated at the end
+ * of each call to GameBoy.runUntil, and can be read from any thread.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public final class GameBoyMetrics implements GameBoyMetricsMBean {
+
+    /**
+     * The mean number of cycles between two samples, a power of two.
+     */
+    public static final int SAMPLE_INTERVAL = 256;
+
+    // The number of times a cycle is repeated in a sample.
+    static final int SAMPLE_BATCH = 64;
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private final LcdController lcdController;
+    private int random = 0x2545F491;
+
+    // The totals since the last reset, written only by the thread running the GameBoy.
+    private volatile long cycles, runNanos, allocatedBytes, timerNanos;
+    private volatile long samples, clockSampled, timerSampled, cartridgeSampled;
+    // The counters of the lcd controller at the last run, and at the last reset.
+    private volatile long images, timingNanos, compositionNanos, dmaNanos;
+    private volatile long imagesReset, timingReset, compositionReset, dmaReset;
+
+    private ObjectName name;
+
+    GameBoyMetrics(LcdController lcdController) {
+        this.lcdController = lcdController;
+        lcdController.setMeasured(true);
+        images = imagesReset = lcdController.imageCount();
+        timingNanos = timingReset = lcdController.timingNanos();
+        compositionNanos = compositionReset = lcdController.compositionNanos();
+        dmaNanos = dmaReset = lcdController.dmaNanos();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) threads;
+            if (t.isThreadAllocatedMemorySupported() && t.isThreadAllocatedMemoryEnabled()) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Gets the number of bytes allocated by the current thread so far, or -1
+     * if the JVM cannot count them.
+     */
+    static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    /*
+     * Gets the number of cycles until the next sample, between half and one
+     * and a half SAMPLE_INTERVAL.
+     */
+    int nextSampleDistance() {
+        random ^= random << 13;
+        random ^= random >>> 17;
+        random ^= random << 5;
+        return SAMPLE_INTERVAL / 2 + (random & (SAMPLE_INTERVAL - 1));
+    }
+
+    /*
+     * Adds the measures of a call to runUntil: the cycles run, the time spent,
+     * the bytes allocated, the time spent in the overflows of the timer, the
+     * number of samples, and the times measured in them, for System.nanoTime
+     * alone and for the batches of the timer and of the cartridge.
+     */
+    synchronized void ran(long cycles, long nanos, long bytes, long timer, long samples,
+            long clock, long timerBatches, long cartridgeBatches) {
+        this.cycles += cycles;
+        this.runNanos += nanos;
+        this.allocatedBytes = (bytes < 0 || allocatedBytes < 0) ? -1 : allocatedBytes + bytes;
+        timerNanos += timer;
+        this.samples += samples;
+        clockSampled += clock;
+        timerSampled += timerBatches;
+        cartridgeSampled += cartridgeBatches;
+        images = lcdController.imageCount();
+        timingNanos = lcdController.timingNanos();
+        compositionNanos = lcdController.compositionNanos();
+        dmaNanos = lcdController.dmaNanos();
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server, under the name
+     * "ch.epfl.gameboj:type=GameBoy,name=" followed by the given name.
+     * @param name : the name of the GameBoy, for example the name of its rom.
+     * @throws JMException if the metrics cannot be registered, for example
+     * if the name is already used.
+     */
+    public synchronized void register(String name) throws JMException {
+        final Hashtable<String, String> properties = new Hashtable<>();
+        properties.put("type", "GameBoy");
+        properties.put("name", ObjectName.quote(name));
+        final ObjectName objectName = new ObjectName("ch.epfl.gameboj", properties);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        this.name = objectName;
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server, if they were
+     * registered.
+     * @throws JMException if the metrics cannot be unregistered.
+     */
+    public synchronized void unregister() throws JMException {
+        if (name != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            name = null;
+        }
+    }
+
+    @Override
+    public long getCycles() {
+        return cycles;
+    }
+
+    @Override
+    public long getFrames() {
+        return images - imagesReset;
+    }
+
+    @Override
+    public long getRunNanos() {
+        return runNanos;
+    }
+
+    @Override
+    public double getRealTimeRatio() {
+        final long nanos = runNanos;
+        return nanos == 0 ? 0 : cycles / (nanos * GameBoy.CYCLES_PER_NANOSECOND);
+    }
+
+    @Override
+    public synchronized long getCpuNanos() {
+        final long sampling = clockSampled + timerSampled + cartridgeSampled;
+        return Math.max(0, runNanos - sampling - getLcdTimingNanos() - getLcdCompositionNanos()
+                - getDmaNanos() - getTimerNanos() - getCartridgeNanos());
+    }
+
+    @Override
+    public long getLcdTimingNanos() {
+        return timingNanos - timingReset;
+    }
+
+    @Override
+    public long getLcdCompositionNanos() {
+        return compositionNanos - compositionReset;
+    }
+
+    @Override
+    public synchronized long getTimerNanos() {
+        return timerNanos + estimate(timerSampled);
+    }
+
+    @Override
+    public synchronized long getCartridgeNanos() {
+        return estimate(cartridgeSampled);
+    }
+
+    @Override
+    public long getDmaNanos() {
+        return dmaNanos - dmaReset;
+    }
+
+    @Override
+    public double getAllocatedBytesPerFrame() {
+        final long bytes = allocatedBytes;
+        final long c = cycles;
+        if (bytes < 0) {
+            return -1;
+        }
+        return c == 0 ? 0 : (double) bytes * GameBoy.CYCLES_PER_FRAME / c;
+    }
+
+    @Override
+    public synchronized void reset() {
+        cycles = runNanos = timerNanos = 0;
+        allocatedBytes = THREADS != null ? 0 : -1;
+        samples = clockSampled = timerSampled = cartridgeSampled = 0;
+        imagesReset = images;
+        timingReset = timingNanos;
+        compositionReset = compositionNanos;
+        dmaReset = dmaNanos;
+    }
+
+    // Estimates the time spent in all the cycles of a component from the time of its batches,
+    // the cost of System.nanoTime being removed from their sum only.
+    private synchronized long estimate(long batches) {
+        if (samples == 0) {
+            return 0;
+        }
+        final double perCycle = (double) (batches - clockSampled) / (samples * SAMPLE_BATCH);
+        return Math.max(0, (long) (perCycle * cycles));
+    }
+}
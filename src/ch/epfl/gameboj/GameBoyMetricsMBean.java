@@ -0,0 +1,91 @@
+package ch.epfl.gameboj;
+
+/**
+ * The management interface of the metrics of a GameBoy, through which they
+ * are read with JMX. All times are those of the host, measured since the
+ * metrics were enabled.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public interface GameBoyMetricsMBean {
+
+    /**
+     * Gets the number of cycles emulated.
+     * @return the number of cycles emulated.
+     */
+    long getCycles();
+
+    /**
+     * Gets the number of images completed by the screen.
+     * @return the number of images completed.
+     */
+    long getFrames();
+
+    /**
+     * Gets the time spent running the GameBoy.
+     * @return the time spent, in nanoseconds.
+     */
+    long getRunNanos();
+
+    /**
+     * Gets the ratio between the emulated time and the time spent running the
+     * GameBoy, i.e. how many times faster than a real Game Boy it runs. When
+     * the emulation is paced, this is the headroom left.
+     * @return the ratio, or 0 if the GameBoy did not run.
+     */
+    double getRealTimeRatio();
+
+    /**
+     * Gets the estimated time spent in the cpu, including its accesses to the
+     * other components and the cycles during which the lcd controller has
+     * nothing to do.
+     * @return the time spent, in nanoseconds.
+     */
+    long getCpuNanos();
+
+    /**
+     * Gets the time spent by the lcd controller following the timing of the
+     * screen, excluding the composition of the lines and the DMA.
+     * @return the time spent, in nanoseconds.
+     */
+    long getLcdTimingNanos();
+
+    /**
+     * Gets the time spent by the lcd controller composing the lines.
+     * @return the time spent, in nanoseconds.
+     */
+    long getLcdCompositionNanos();
+
+    /**
+     * Gets the time spent in the timer, measured when TIMA overflows and
+     * estimated for its other cycles.
+     * @return the time spent, in nanoseconds.
+     */
+    long getTimerNanos();
+
+    /**
+     * Gets the estimated time spent in the cycles of the cartridge, whose work
+     * is mostly done when the cpu accesses it, and counted in the cpu.
+     * @return the time spent, in nanoseconds.
+     */
+    long getCartridgeNanos();
+
+    /**
+     * Gets the time spent copying the object memory (DMA).
+     * @return the time spent, in nanoseconds.
+     */
+    long getDmaNanos();
+
+    /**
+     * Gets the number of bytes allocated by the thread running the GameBoy
+     * while it runs, per frame of emulated time.
+     * @return the bytes allocated per frame, or -1 if they cannot be measured.
+     */
+    double getAllocatedBytesPerFrame();
+
+    /**
+     * Forgets all the measures taken so far.
+     */
+    void reset();
+}
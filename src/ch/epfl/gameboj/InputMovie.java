@@ -0,0 +1,406 @@
+package ch.epfl.gameboj;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Objects;
+
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.lcd.LcdController.Rendering;
+
+/**
+ * A recording of the inputs given to a GameBoy from its start, which can be
+ * replayed to reproduce exactly the same run.
+ *
+ * Each key pressed or released is stored with the cycle at which it was
+ * applied. The 64 bits hash of the image displayed at the end of each frame
+ * (every CYCLES_PER_FRAME cycles, see LcdImage.hash64) is stored too, so that
+ * a replay can check that it never diverged from the recording. Since the
+ * pipelined rendering delivers its images late, it cannot be used to record
+ * or replay a movie.
+ *
+ * In a file, a movie is made of the magic number "GBJM", the version of the
+ * format, the checksums of the rom, the length of the movie in cycles, the
+ * number of events and the events, followed by the hashes of the frames. The
+ * numbers are stored on as few bytes as possible, 7 bits per byte, and each
+ * event as the number of cycles since the previous one, the key and whether
+ * it was pressed.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public final class InputMovie {
+
+    /**
+     * The version of the format of the files, changed each time it changes.
+     */
+    public static final int VERSION = 2;
+
+    // The first bytes of a file, "GBJM".
+    private static final int MAGIC = 0x47424A4D;
+    // The address of the checksums in the header of the rom.
+    private static final int ROM_CHECKSUMS = 0x14D;
+
+    // An event is stored as its cycle, followed by a bit telling whether the key is pressed, and the key.
+    private static final int EVENT_CYCLE_SHIFT = 4;
+    private static final int EVENT_PRESSED = 1 << 3;
+    private static final int EVENT_KEY_MASK = EVENT_PRESSED - 1;
+    private static final Key[] KEYS = Key.values();
+
+    private final int romChecksums;
+    private final long length;
+    private final long[] events;
+    private final long[] frameHashes;
+
+    private InputMovie(int romChecksums, long length, long[] events, long[] frameHashes) {
+        this.romChecksums = romChecksums;
+        this.length = length;
+        this.events = events;
+        this.frameHashes = frameHashes;
+    }
+
+    /**
+     * Gets the number of cycles recorded.
+     * @return the length of the movie, in cycles.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Gets the number of whole frames recorded, i.e. the number of hashes.
+     * @return the number of frames of the movie.
+     */
+    public int frameCount() {
+        return frameHashes.length;
+    }
+
+    /**
+     * Gets the number of keys pressed or released during the movie.
+     * @return the number of events of the movie.
+     */
+    public int eventCount() {
+        return events.length;
+    }
+
+    /**
+     * Gets the hash of the image displayed at the end of the given frame.
+     * @param frame : the index of the frame.
+     * @return the hash of the image (see LcdImage.hash64).
+     * @throws IndexOutOfBoundsException if the index is invalid.
+     */
+    public long frameHash(int frame) {
+        return frameHashes[Objects.checkIndex(frame, frameHashes.length)];
+    }
+
+    /**
+     * Replays the movie on the given GameBoy, as fast as possible, checking
+     * the hash of each frame. The replay stops at the first frame whose hash
+     * differs from the recorded one, the GameBoy being then left at the end of
+     * that frame.
+     * @param gameBoy : a GameBoy which has not run yet, with the cartridge of the recording.
+     * @return the index of the first frame which differs from the recording,
+     * or -1 if the whole movie was replayed identically.
+     * @throws IllegalArgumentException if the GameBoy has already run, has
+     * another cartridge or uses the pipelined rendering.
+     */
+    public int replay(GameBoy gameBoy) {
+        final Player player = player(gameBoy);
+        player.runUntil(length);
+        return player.divergence();
+    }
+
+    /**
+     * Writes the movie in the given stream.
+     * @param stream : the stream in which to write.
+     * @throws IOException if the stream cannot be written.
+     */
+    public void write(OutputStream stream) throws IOException {
+        final DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(romChecksums >> 16);
+        out.writeShort(romChecksums);
+        writeNumber(out, length);
+        writeNumber(out, events.length);
+        long previous = 0;
+        for (long event : events) {
+            final long cycle = event >>> EVENT_CYCLE_SHIFT;
+            writeNumber(out, (cycle - previous) << EVENT_CYCLE_SHIFT | (event & ~(-1L << EVENT_CYCLE_SHIFT)));
+            previous = cycle;
+        }
+        for (long hash : frameHashes) {
+            out.writeLong(hash);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a movie written by write from the given stream.
+     * @param stream : the stream from which to read.
+     * @return the movie read.
+     * @throws IOException if the stream cannot be read, or ends before the movie.
+     * @throws IllegalArgumentException if the stream does not contain a movie of this version.
+     */
+    public static InputMovie read(InputStream stream) throws IOException {
+        final DataInputStream in = new DataInputStream(stream);
+        Preconditions.checkArgument(in.readInt() == MAGIC && in.readUnsignedByte() == VERSION);
+        final int romChecksums = in.readUnsignedByte() << 16 | in.readUnsignedShort();
+        final long length = readNumber(in);
+        final long eventCount = readNumber(in);
+        Preconditions.checkArgument(length >= 0 && eventCount >= 0 && eventCount <= Integer.MAX_VALUE
+                && length / GameBoy.CYCLES_PER_FRAME <= Integer.MAX_VALUE);
+        final long[] events = new long[(int) eventCount];
+        long cycle = 0;
+        for (int i = 0; i < events.length; ++i) {
+            final long event = readNumber(in);
+            cycle += event >>> EVENT_CYCLE_SHIFT;
+            Preconditions.checkArgument((event & EVENT_KEY_MASK) < KEYS.length && cycle <= length);
+            events[i] = cycle << EVENT_CYCLE_SHIFT | (event & ~(-1L << EVENT_CYCLE_SHIFT));
+        }
+        final long[] frameHashes = new long[(int) (length / GameBoy.CYCLES_PER_FRAME)];
+        for (int i = 0; i < frameHashes.length; ++i) {
+            frameHashes[i] = in.readLong();
+        }
+        return new InputMovie(romChecksums, length, events, frameHashes);
+    }
+
+    /**
+     * Saves the movie in the given file.
+     * @param file : the file in which to save the movie, replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(File file) throws IOException {
+        try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(file))) {
+            write(stream);
+        }
+    }
+
+    /**
+     * Loads a movie saved in the given file.
+     * @param file : the file containing the movie.
+     * @return the movie read.
+     * @throws IOException if the file cannot be read, or is truncated.
+     * @throws IllegalArgumentException if the file does not contain a movie of this version.
+     */
+    public static InputMovie load(File file) throws IOException {
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+            return read(stream);
+        }
+    }
+
+    private static void writeNumber(DataOutputStream out, long n) throws IOException {
+        while ((n & ~0x7FL) != 0) {
+            out.writeByte((int) (n | 0x80));
+            n >>>= 7;
+        }
+        out.writeByte((int) n);
+    }
+
+    private static long readNumber(DataInputStream in) throws IOException {
+        long n = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            final int b = in.readUnsignedByte();
+            n |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return n;
+            }
+        }
+        throw new IllegalArgumentException("number too long");
+    }
+
+    private static void checkUnstarted(GameBoy gameBoy) {
+        Preconditions.checkArgument(gameBoy.cycles() == 0
+                && gameBoy.lcdController().rendering() != Rendering.PIPELINED);
+    }
+
+    private static int romChecksums(GameBoy gameBoy) {
+        final Bus bus = gameBoy.bus();
+        return bus.read(ROM_CHECKSUMS) << 16 | bus.read(ROM_CHECKSUMS + 1) << 8
+                | bus.read(ROM_CHECKSUMS + 2);
+    }
+
+    private static long frameHash(GameBoy gameBoy) {
+        return gameBoy.lcdController().currentImage().hash64();
+    }
+
+    /**
+     * Creates a player replaying the movie progressively on the given GameBoy.
+     * @param gameBoy : a GameBoy which has not run yet, with the cartridge of the recording.
+     * @return a player of the movie.
+     * @throws IllegalArgumentException if the GameBoy has already run, has
+     * another cartridge or uses the pipelined rendering.
+     */
+    public Player player(GameBoy gameBoy) {
+        return new Player(gameBoy);
+    }
+
+    /**
+     * Replays the movie on a GameBoy progressively, as the GameBoy is run
+     * through the player, checking the hash of each frame. The replay stops at
+     * the first frame whose hash differs from the recorded one. After the end
+     * of the movie, the GameBoy runs without any input.
+     *
+     * @author Adrien Laydu, Michael Tasev
+     *
+     */
+    public final class Player {
+        private final GameBoy gameBoy;
+
+        private int nextEvent;
+        private int nextFrame;
+        private int divergence = -1;
+
+        private Player(GameBoy gameBoy) {
+            checkUnstarted(gameBoy);
+            Preconditions.checkArgument(romChecksums(gameBoy) == romChecksums);
+            this.gameBoy = gameBoy;
+        }
+
+        /**
+         * Runs the GameBoy until the given cycle (excluded), pressing and
+         * releasing the keys as recorded. If a frame differs from the
+         * recording, the GameBoy is left at the end of that frame.
+         * @param cycle : the cycle until which the GameBoy is to be run.
+         * @return false if the replay diverged from the recording, now or before.
+         * @throws IllegalArgumentException if the given cycle has already been processed.
+         */
+        public boolean runUntil(long cycle) {
+            Preconditions.checkArgument(gameBoy.cycles() <= cycle);
+            if (divergence >= 0) {
+                return false;
+            }
+            while (nextEvent < events.length && events[nextEvent] >>> EVENT_CYCLE_SHIFT <= cycle) {
+                final long event = events[nextEvent];
+                if (!runChecking(event >>> EVENT_CYCLE_SHIFT)) {
+                    return false;
+                }
+                final Key key = KEYS[(int) event & EVENT_KEY_MASK];
+                if ((event & EVENT_PRESSED) != 0) {
+                    gameBoy.joypad().keyPressed(key);
+                } else {
+                    gameBoy.joypad().keyReleased(key);
+                }
+                nextEvent += 1;
+            }
+            return runChecking(cycle);
+        }
+
+        /**
+         * Gets the first frame which differed from the recording.
+         * @return the index of the frame, or -1 if the replay did not diverge yet.
+         */
+        public int divergence() {
+            return divergence;
+        }
+
+        // Runs the GameBoy until the given cycle, checking the frames ending on the way.
+        private boolean runChecking(long cycle) {
+            long frameEnd = (nextFrame + 1) * GameBoy.CYCLES_PER_FRAME;
+            while (nextFrame < frameHashes.length && frameEnd <= cycle) {
+                gameBoy.runUntil(frameEnd);
+                if (frameHash(gameBoy) != frameHashes[nextFrame]) {
+                    divergence = nextFrame;
+                    return false;
+                }
+                nextFrame += 1;
+                frameEnd += GameBoy.CYCLES_PER_FRAME;
+            }
+            gameBoy.runUntil(cycle);
+            return true;
+        }
+    }
+
+    /**
+     * Records the inputs given to a GameBoy, which must be run and given its
+     * inputs only through the recorder.
+     *
+     * @author Adrien Laydu, Michael Tasev
+     *
+     */
+    public static final class Recorder {
+        private final GameBoy gameBoy;
+        private final int romChecksums;
+
+        private long[] events = new long[64];
+        private int eventCount;
+        private long[] frameHashes = new long[64];
+        private int frameCount;
+
+        /**
+         * Creates a recorder for the given GameBoy.
+         * @param gameBoy : a GameBoy which has not run yet.
+         * @throws IllegalArgumentException if the GameBoy has already run, or
+         * uses the pipelined rendering.
+         */
+        public Recorder(GameBoy gameBoy) {
+            checkUnstarted(gameBoy);
+            this.gameBoy = gameBoy;
+            this.romChecksums = InputMovie.romChecksums(gameBoy);
+        }
+
+        /**
+         * Presses the given key, and records it.
+         * @param k : the key pressed.
+         */
+        public void keyPressed(Key k) {
+            record(k, true);
+            gameBoy.joypad().keyPressed(k);
+        }
+
+        /**
+         * Releases the given key, and records it.
+         * @param k : the key released.
+         */
+        public void keyReleased(Key k) {
+            record(k, false);
+            gameBoy.joypad().keyReleased(k);
+        }
+
+        /**
+         * Runs the GameBoy until the given cycle (excluded), recording the
+         * hashes of the frames ending on the way.
+         * @param cycle : the cycle until which the GameBoy is to be run.
+         * @throws IllegalArgumentException if the given cycle has already been processed.
+         */
+        public void runUntil(long cycle) {
+            Preconditions.checkArgument(gameBoy.cycles() <= cycle);
+            long frameEnd = (frameCount + 1) * GameBoy.CYCLES_PER_FRAME;
+            while (frameEnd <= cycle) {
+                gameBoy.runUntil(frameEnd);
+                if (frameCount == frameHashes.length) {
+                    frameHashes = Arrays.copyOf(frameHashes, 2 * frameCount);
+                }
+                frameHashes[frameCount++] = frameHash(gameBoy);
+                frameEnd += GameBoy.CYCLES_PER_FRAME;
+            }
+            gameBoy.runUntil(cycle);
+        }
+
+        /**
+         * Gets the movie recorded so far, which ends at the current cycle of
+         * the GameBoy.
+         * @return the movie recorded.
+         */
+        public InputMovie movie() {
+            return new InputMovie(romChecksums, gameBoy.cycles(),
+                    Arrays.copyOf(events, eventCount), Arrays.copyOf(frameHashes, frameCount));
+        }
+
+        private void record(Key k, boolean pressed) {
+            if (eventCount == events.length) {
+                events = Arrays.copyOf(events, 2 * eventCount);
+            }
+            events[eventCount++] = gameBoy.cycles() << EVENT_CYCLE_SHIFT
+                    | (pressed ? EVENT_PRESSED : 0) | k.ordinal();
+        }
+    }
+}
@@ -8,6 +8,16 @@ package ch.epfl.gameboj;
  */
 public interface Preconditions {
 
+    /**
+     * Whether the checks of the internal paths are made ("strict" mode) or not
+     * ("fast" mode). The bus always checks the addresses and the data given to it,
+     * but then the components, the memories and the cpu only check them again in
+     * strict mode, the checks being skipped millions of times per second otherwise.
+     * The mode is given by the system property gameboj.checks, "strict" or "fast",
+     * and is strict by default when the assertions are enabled, like in the tests.
+     */
+    public static final boolean STRICT = strictChecks();
+
     /**
      * Checks if an expression is true
      * @param b , the expression to check
@@ -55,4 +65,16 @@ public interface Preconditions {
             return index;
         }
     }
+
+    // Reads the mode of the checks, once.
+    private static boolean strictChecks() {
+        final String mode = System.getProperty("gameboj.checks");
+        if (mode == null) {
+            boolean assertions = false;
+            assert assertions = true;
+            return assertions;
+        }
+        checkArgument(mode.equals("strict") || mode.equals("fast"));
+        return mode.equals("strict");
+    }
 }
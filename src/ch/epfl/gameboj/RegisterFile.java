@@ -2,8 +2,11 @@ package ch.epfl.gameboj;
 
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 
+import java.nio.ByteBuffer;
+
 import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.Stateful;
 
 /**
  * A file of Registers, each storing an 8-bit value.
@@ -11,7 +14,7 @@ import ch.epfl.gameboj.bits.Bits;
  *
  * @param <E> : The Register type to use.
  */
-public final class RegisterFile<E extends Register> {
+public final class RegisterFile<E extends Register> implements Stateful {
     
     private final byte[] registerValues;
     
@@ -65,5 +68,38 @@ public final class RegisterFile<E extends Register> {
     public void setBit(E reg, Bit bit, boolean newValue) {
         set(reg,Bits.set(get(reg), bit.index(), newValue));
     }
-  
+
+    /**
+     * Copies the values of the registers of another file in this one.
+     * @param other : the file to copy.
+     * @throws IllegalArgumentException if the other file does not have the same size.
+     */
+    public void copyFrom(RegisterFile<E> other) {
+        Preconditions.checkArgument(other.registerValues.length == registerValues.length);
+        System.arraycopy(other.registerValues, 0, registerValues, 0, registerValues.length);
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return registerValues.length;
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put(registerValues);
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        buffer.get(registerValues);
+    }
 }
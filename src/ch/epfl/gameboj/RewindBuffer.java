@@ -0,0 +1,306 @@
+package ch.epfl.gameboj;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * A history of the states of a GameBoy, which can be rewound.
+ *
+ * A snapshot of the GameBoy is taken every given number of frames. Only the
+ * last one is kept whole; each previous one is stored as the difference
+ * (exclusive or) between it and the next one, in which the runs of identical
+ * bytes are not stored at all. Those differences are kept in a ring buffer,
+ * the oldest being forgotten when the memory budget is exceeded.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public final class RewindBuffer {
+
+    // The number of identical bytes that end a run of different ones.
+    private static final int MIN_GAP = 4;
+    private static final int INITIAL_RECORDS = 64;
+
+    private final GameBoy gameBoy;
+    private final long interval;
+    private final int stateSize;
+
+    // The last state taken, and the scratch arrays used to take a new one.
+    private byte[] last, current;
+    private ByteBuffer lastBuffer, currentBuffer;
+    private final byte[] encoded;
+    private boolean hasLast;
+    private long nextCapture;
+
+    // The differences between the states, from the oldest to the newest.
+    private final byte[] ring;
+    private int ringStart, ringUsed;
+    private int[] recordLengths = new int[INITIAL_RECORDS];
+    private int firstRecord, recordCount;
+
+    private long captures, captureNanos, deltas, deltaBytes;
+
+    /**
+     * Creates a rewind buffer for the given GameBoy.
+     * @param gameBoy : the GameBoy whose states are kept.
+     * @param framesPerState : the number of frames between two states.
+     * @param memoryBudget : the maximal number of bytes used by the buffer.
+     * @throws NullPointerException if the GameBoy is null.
+     * @throws IllegalArgumentException if the number of frames is not positive, or the
+     * budget is too small to hold a few states.
+     */
+    public RewindBuffer(GameBoy gameBoy, int framesPerState, long memoryBudget) {
+        this.gameBoy = Objects.requireNonNull(gameBoy);
+        Preconditions.checkArgument(framesPerState > 0);
+        this.interval = framesPerState * GameBoy.CYCLES_PER_FRAME;
+        this.stateSize = gameBoy.snapshotSize();
+        this.last = new byte[stateSize];
+        this.current = new byte[stateSize];
+        this.lastBuffer = ByteBuffer.wrap(last);
+        this.currentBuffer = ByteBuffer.wrap(current);
+        this.encoded = new byte[2 * stateSize + 16];
+
+        final long ringSize = memoryBudget - 4L * stateSize;
+        Preconditions.checkArgument(ringSize >= stateSize && ringSize <= Integer.MAX_VALUE);
+        this.ring = new byte[(int) ringSize];
+        this.nextCapture = gameBoy.cycles();
+    }
+
+    /**
+     * Takes a state of the GameBoy if enough frames were simulated since the
+     * last one. To be called regularly, for example after each frame.
+     * @return true if a state was taken.
+     */
+    public boolean update() {
+        if (gameBoy.cycles() < nextCapture) {
+            return false;
+        }
+        capture();
+        return true;
+    }
+
+    /**
+     * Takes a state of the GameBoy now.
+     */
+    public void capture() {
+        final long start = System.nanoTime();
+        currentBuffer.clear();
+        gameBoy.snapshot(currentBuffer);
+        if (hasLast) {
+            final int length = encode(current, last, encoded);
+            store(length);
+            deltas += 1;
+            deltaBytes += length;
+        }
+        swap();
+        hasLast = true;
+        nextCapture = gameBoy.cycles() + interval;
+        captures += 1;
+        captureNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Restores the GameBoy in the last state taken, and forgets it, so that
+     * the next call restores the one before it.
+     * @return false if there was no state left to restore.
+     */
+    public boolean rewind() {
+        if (!hasLast) {
+            return false;
+        }
+        lastBuffer.clear();
+        gameBoy.restore(lastBuffer);
+        if (recordCount > 0) {
+            final int length = removeNewest();
+            decode(encoded, length, last);
+        } else {
+            hasLast = false;
+        }
+        nextCapture = gameBoy.cycles() + interval;
+        return true;
+    }
+
+    /**
+     * Gets the number of states that can be restored.
+     * @return the number of states kept.
+     */
+    public int size() {
+        return hasLast ? recordCount + 1 : 0;
+    }
+
+    /**
+     * Gets the number of bytes used by the states kept.
+     * @return the memory used, in bytes.
+     */
+    public long memoryUsed() {
+        return ringUsed + (hasLast ? stateSize : 0);
+    }
+
+    /**
+     * Gets the average number of bytes needed to keep one minute of emulated
+     * time, according to the states taken so far.
+     * @return the memory needed per minute of history, in bytes.
+     */
+    public long bytesPerMinute() {
+        if (deltas == 0) {
+            return 0;
+        }
+        final double statesPerMinute = 60.0 * GameBoy.CYCLES_PER_SECOND / interval;
+        return (long) (statesPerMinute * deltaBytes / deltas);
+    }
+
+    /**
+     * Gets the average time needed to take a state, in nanoseconds.
+     * @return the average duration of capture().
+     */
+    public double averageCaptureNanos() {
+        return captures == 0 ? 0 : (double) captureNanos / captures;
+    }
+
+    /**
+     * Gets the average time spent taking states per emulated frame, in nanoseconds.
+     * @return the cost of the buffer per frame.
+     */
+    public double captureNanosPerFrame() {
+        return averageCaptureNanos() * GameBoy.CYCLES_PER_FRAME / interval;
+    }
+
+    private void swap() {
+        final byte[] a = last;
+        last = current;
+        current = a;
+        final ByteBuffer b = lastBuffer;
+        lastBuffer = currentBuffer;
+        currentBuffer = b;
+    }
+
+    /*
+     * Encodes the exclusive or of the two states as a sequence of runs, each
+     * made of the number of identical bytes to skip, the number of different
+     * bytes and their exclusive or. Both numbers are stored on as few bytes as
+     * possible, 7 bits per byte.
+     */
+    private static int encode(byte[] a, byte[] b, byte[] out) {
+        final int n = a.length;
+        int i = 0;
+        int o = 0;
+        while (i < n) {
+            final int skipStart = i;
+            while (i < n && a[i] == b[i]) {
+                i++;
+            }
+            if (i == n) {
+                break;
+            }
+            final int diffStart = i;
+            int diffEnd = i;
+            int gap = 0;
+            while (i < n && gap < MIN_GAP) {
+                if (a[i] == b[i]) {
+                    gap++;
+                } else {
+                    gap = 0;
+                    diffEnd = i + 1;
+                }
+                i++;
+            }
+            i = diffEnd;
+            o = putLength(out, o, diffStart - skipStart);
+            o = putLength(out, o, diffEnd - diffStart);
+            for (int k = diffStart; k < diffEnd; k++) {
+                out[o++] = (byte) (a[k] ^ b[k]);
+            }
+        }
+        return o;
+    }
+
+    private static int putLength(byte[] out, int o, int length) {
+        while (length >= 0x80) {
+            out[o++] = (byte) (length | 0x80);
+            length >>>= 7;
+        }
+        out[o++] = (byte) length;
+        return o;
+    }
+
+    /*
+     * Applies an encoded exclusive or to the given state.
+     */
+    private static void decode(byte[] in, int length, byte[] state) {
+        int p = 0;
+        int i = 0;
+        while (p < length) {
+            int skip = 0;
+            for (int shift = 0;; shift += 7) {
+                final int b = in[p++];
+                skip |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+            int diff = 0;
+            for (int shift = 0;; shift += 7) {
+                final int b = in[p++];
+                diff |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+            i += skip;
+            for (final int end = i + diff; i < end; i++) {
+                state[i] ^= in[p++];
+            }
+        }
+    }
+
+    private void store(int length) {
+        if (length > ring.length) {
+            //The history cannot go further back than the last state.
+            ringUsed = 0;
+            recordCount = 0;
+            return;
+        }
+        while (ring.length - ringUsed < length) {
+            removeOldest();
+        }
+        final int end = (ringStart + ringUsed) % ring.length;
+        final int first = Math.min(length, ring.length - end);
+        System.arraycopy(encoded, 0, ring, end, first);
+        System.arraycopy(encoded, first, ring, 0, length - first);
+        ringUsed += length;
+
+        if (recordCount == recordLengths.length) {
+            final int[] lengths = new int[2 * recordCount];
+            for (int r = 0; r < recordCount; r++) {
+                lengths[r] = recordLengths[(firstRecord + r) % recordCount];
+            }
+            recordLengths = lengths;
+            firstRecord = 0;
+        }
+        recordLengths[(firstRecord + recordCount) % recordLengths.length] = length;
+        recordCount++;
+    }
+
+    private void removeOldest() {
+        final int length = recordLengths[firstRecord];
+        firstRecord = (firstRecord + 1) % recordLengths.length;
+        recordCount--;
+        ringStart = (ringStart + length) % ring.length;
+        ringUsed -= length;
+    }
+
+    private int removeNewest() {
+        recordCount--;
+        final int length = recordLengths[(firstRecord + recordCount) % recordLengths.length];
+        ringUsed -= length;
+        final int start = (ringStart + ringUsed) % ring.length;
+        final int first = Math.min(length, ring.length - start);
+        System.arraycopy(ring, start, encoded, 0, first);
+        System.arraycopy(ring, 0, encoded, first, length - first);
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RewindBuffer[%d states, %d bytes, %d bytes/min, %.1f us/capture]",
+                size(), memoryUsed(), bytesPerMinute(), averageCaptureNanos() / 1e3);
+    }
+}
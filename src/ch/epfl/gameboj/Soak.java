@@ -0,0 +1,314 @@
+package ch.epfl.gameboj;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.Component;
+
+/**
+ * A long run of a GameBoy, as fast as possible, checking that it could run
+ * for days : the heap does not grow, the timer and the lcd controller stay
+ * consistent with the cycles elapsed, and the speed of the emulation is
+ * stable.
+ *
+ * The run is cut in windows of emulated time, a minute by default, checked
+ * one after the other. The timeline of the GameBoy starts a minute before
+ * 2^31 cycles, so that the run goes over the cycles which do not fit in an
+ * int after a minute, and over those which do not fit in an unsigned int
+ * after about 34 minutes, instead of after half an hour and an hour of
+ * emulated time.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public final class Soak implements AddressMap {
+
+    /**
+     * The cycle at which the timeline of the GameBoy starts, a minute before 2^31.
+     */
+    public static final long START_CYCLE = (1L << 31) - 60 * GameBoy.CYCLES_PER_SECOND;
+
+    /**
+     * The default duration of a window, an emulated minute.
+     */
+    public static final long DEFAULT_WINDOW = 60 * GameBoy.CYCLES_PER_SECOND;
+
+    /**
+     * The default growth of the heap allowed, 16 MiB.
+     */
+    public static final long DEFAULT_MAX_HEAP_GROWTH = 16L << 20;
+
+    // The number of cycles after which the divider of the timer comes back to the same value.
+    private static final long DIV_PERIOD = 1L << 14;
+    // The bit of LCDC telling whether the screen is on, and the mode of STAT during the vertical blank.
+    private static final int LCD_ON_BIT = 7;
+    private static final int VBLANK_MODE = 1;
+    // The first line of the vertical blank, and the number of lines.
+    private static final int VBLANK_LY = 144, LINES = 154;
+    // The registers of the lcd controller checked.
+    private static final int REG_LCDC = REGS_LCDC_START, REG_STAT = REGS_LCDC_START + 1,
+            REG_LY = REGS_LCDC_START + 4;
+    // The minimum speed of a window, relative to the median of the windows before it.
+    private static final double MIN_RELATIVE_SPEED = 0.5;
+
+    /**
+     * A window of the run, and what was measured during it.
+     */
+    public static final class Window {
+        private final int index;
+        private final long cycles, endCycle, images, nanos, usedHeap;
+
+        private Window(int index, long cycles, long endCycle, long images, long nanos,
+                long usedHeap) {
+            this.index = index;
+            this.cycles = cycles;
+            this.endCycle = endCycle;
+            this.images = images;
+            this.nanos = nanos;
+            this.usedHeap = usedHeap;
+        }
+
+        /**
+         * Gets the index of the window in the run, starting at 0.
+         * @return the index of the window.
+         */
+        public int index() {
+            return index;
+        }
+
+        /**
+         * Gets the cycle at which the window ended.
+         * @return the cycles of the GameBoy at the end of the window.
+         */
+        public long endCycle() {
+            return endCycle;
+        }
+
+        /**
+         * Gets the number of images completed by the lcd controller during the window.
+         * @return the number of images.
+         */
+        public long images() {
+            return images;
+        }
+
+        /**
+         * Gets the real time taken to emulate the window.
+         * @return the time, in nanoseconds.
+         */
+        public long nanos() {
+            return nanos;
+        }
+
+        /**
+         * Gets the heap used after the window, once the garbage collected.
+         * @return the heap used, in bytes.
+         */
+        public long usedHeap() {
+            return usedHeap;
+        }
+
+        /**
+         * Gets the speed of the emulation during the window.
+         * @return the number of frames emulated per second.
+         */
+        public double framesPerSecond() {
+            return cycles * 1e9 / GameBoy.CYCLES_PER_FRAME / nanos;
+        }
+    }
+
+    private final GameBoy gameBoy;
+    private final long window;
+    private final long maxHeapGrowth;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final List<Window> windows = new ArrayList<>();
+    private final List<String> problems = new ArrayList<>();
+    private boolean divWritten;
+
+    // The component noting the writes to DIV, which reset it, attached while running.
+    private final Component divWatch = new Component() {
+        @Override
+        public int read(int address) {
+            return NO_DATA;
+        }
+
+        @Override
+        public void write(int address, int data) {
+            if (address == REG_DIV)
+                divWritten = true;
+        }
+    };
+
+    /**
+     * Creates a soak run of the given GameBoy, which has not run yet, in windows
+     * of the given number of cycles. Its timeline is moved to START_CYCLE.
+     * @param gameBoy : the GameBoy.
+     * @param window : the number of cycles of a window, a multiple of 2^14.
+     * @param maxHeapGrowth : the growth of the heap used allowed since the first
+     * window, in bytes.
+     * @throws NullPointerException if the GameBoy is null.
+     * @throws IllegalArgumentException if the GameBoy has already run, if the window
+     * is not a positive multiple of 2^14, or if the growth allowed is negative.
+     */
+    public Soak(GameBoy gameBoy, long window, long maxHeapGrowth) {
+        Preconditions.checkArgument(window > 0 && window % DIV_PERIOD == 0 && maxHeapGrowth >= 0);
+        this.gameBoy = Objects.requireNonNull(gameBoy);
+        this.window = window;
+        this.maxHeapGrowth = maxHeapGrowth;
+        gameBoy.startAt(START_CYCLE);
+    }
+
+    /**
+     * Creates a soak run of the given GameBoy, which has not run yet, in windows
+     * of an emulated minute, allowing the heap to grow by 16 MiB.
+     * @param gameBoy : the GameBoy.
+     * @throws NullPointerException if the GameBoy is null.
+     * @throws IllegalArgumentException if the GameBoy has already run.
+     */
+    public Soak(GameBoy gameBoy) {
+        this(gameBoy, DEFAULT_WINDOW, DEFAULT_MAX_HEAP_GROWTH);
+    }
+
+    /**
+     * Runs the GameBoy for the given number of windows, checking each of them.
+     * @param count : the number of windows.
+     * @return true if no problem was found since the start of the soak run.
+     * @throws IllegalArgumentException if the count is negative.
+     */
+    public boolean run(int count) {
+        Preconditions.checkArgument(count >= 0);
+        final Bus bus = gameBoy.bus();
+        bus.attachFirst(divWatch);
+        try {
+            for (int i = 0; i < count; ++i)
+                runWindow(bus);
+        } finally {
+            bus.detach(divWatch);
+        }
+        return problems.isEmpty();
+    }
+
+    private void runWindow(Bus bus) {
+        final int index = windows.size();
+        final long end = gameBoy.cycles() + window;
+        final long images = gameBoy.lcdController().imageCount();
+        final int div = bus.read(REG_DIV);
+        divWritten = false;
+
+        final long start = System.nanoTime();
+        gameBoy.runUntil(end);
+        final long nanos = System.nanoTime() - start;
+
+        System.gc();
+        final Window w = new Window(index, window, gameBoy.cycles(),
+                gameBoy.lcdController().imageCount() - images, nanos,
+                memory.getHeapMemoryUsage().getUsed());
+        check(w, bus, div);
+        windows.add(w);
+    }
+
+    // Checks the state of the GameBoy after the given window.
+    private void check(Window w, Bus bus, int div) {
+        if (w.endCycle != START_CYCLE + (w.index + 1) * window)
+            problem(w, "ended at cycle %d", w.endCycle);
+
+        // The window being a multiple of the period of the divider, it comes back to the same value.
+        if (!divWritten && bus.read(REG_DIV) != div)
+            problem(w, "DIV is %02X instead of %02X", bus.read(REG_DIV), div);
+        final long overflow = gameBoy.timer().nextOverflowCycle();
+        if (overflow < w.endCycle)
+            problem(w, "the timer overflows at past cycle %d", overflow);
+
+        final long maxImages = window / GameBoy.CYCLES_PER_FRAME + 1;
+        if (w.images > maxImages)
+            problem(w, "%d images completed, at most %d expected", w.images, maxImages);
+        if (Bits.test(bus.read(REG_LCDC), LCD_ON_BIT)) {
+            final int ly = bus.read(REG_LY);
+            final int mode = Bits.clip(2, bus.read(REG_STAT));
+            if (w.images == 0)
+                problem(w, "no image completed while the screen is on");
+            if (ly >= LINES || (ly >= VBLANK_LY) != (mode == VBLANK_MODE))
+                problem(w, "LY is %d in mode %d", ly, mode);
+        }
+
+        // The first window warms the code and the caches up.
+        if (w.index > 0 && w.usedHeap - windows.get(0).usedHeap > maxHeapGrowth)
+            problem(w, "the heap grew by %d bytes", w.usedHeap - windows.get(0).usedHeap);
+        if (w.index > 2) {
+            final double median = medianFramesPerSecond(windows.subList(1, windows.size()));
+            if (w.framesPerSecond() < MIN_RELATIVE_SPEED * median)
+                problem(w, "%.1f frames/s, the median being %.1f", w.framesPerSecond(), median);
+        }
+    }
+
+    private void problem(Window w, String format, Object... args) {
+        problems.add(String.format(Locale.ROOT, "window %d : ", w.index)
+                + String.format(Locale.ROOT, format, args));
+    }
+
+    private double medianFramesPerSecond(List<Window> ws) {
+        final double[] speeds = new double[ws.size()];
+        for (int i = 0; i < speeds.length; ++i)
+            speeds[i] = ws.get(i).framesPerSecond();
+        Arrays.sort(speeds);
+        return speeds[speeds.length / 2];
+    }
+
+    /**
+     * Gets the windows run so far.
+     * @return the windows, in the order they were run.
+     */
+    public List<Window> windows() {
+        return Collections.unmodifiableList(windows);
+    }
+
+    /**
+     * Gets the problems found so far.
+     * @return the descriptions of the problems, in the order they were found.
+     */
+    public List<String> problems() {
+        return Collections.unmodifiableList(problems);
+    }
+
+    /**
+     * Writes a report of the run : the emulated time, the speed, the heap and the
+     * problems found.
+     * @param out : where to write the report.
+     * @throws IOException if the report cannot be written.
+     */
+    public void writeReport(Appendable out) throws IOException {
+        final long cycles = windows.size() * window;
+        long nanos = 0, minHeap = Long.MAX_VALUE, maxHeap = 0;
+        double minSpeed = Double.POSITIVE_INFINITY, maxSpeed = 0;
+        for (Window w : windows) {
+            nanos += w.nanos;
+            minHeap = Math.min(minHeap, w.usedHeap);
+            maxHeap = Math.max(maxHeap, w.usedHeap);
+            minSpeed = Math.min(minSpeed, w.framesPerSecond());
+            maxSpeed = Math.max(maxSpeed, w.framesPerSecond());
+        }
+        out.append(String.format(Locale.ROOT, "emulated    : %.2f h in %d windows, up to cycle %d%n",
+                (double) cycles / GameBoy.CYCLES_PER_SECOND / 3600, windows.size(),
+                gameBoy.cycles()));
+        out.append(String.format(Locale.ROOT, "time        : %.1f s, %.1fx real time%n",
+                nanos / 1e9, nanos == 0 ? 0 : cycles * 1e9 / GameBoy.CYCLES_PER_SECOND / nanos));
+        if (!windows.isEmpty()) {
+            out.append(String.format(Locale.ROOT,
+                    "speed       : %.1f to %.1f frames/s, median %.1f%n", minSpeed, maxSpeed,
+                    medianFramesPerSecond(windows)));
+            out.append(String.format(Locale.ROOT, "heap        : %.1f to %.1f MiB%n",
+                    minHeap / 1048576.0, maxHeap / 1048576.0));
+        }
+        out.append(String.format(Locale.ROOT, "problems    : %d%n", problems.size()));
+        for (String p : problems)
+            out.append(String.format(Locale.ROOT, "  %s%n", p));
+    }
+}
@@ -1,6 +1,7 @@
 package ch.epfl.gameboj.bits;
 
 import java.util.Arrays;
+import java.util.Objects;
 
 import ch.epfl.gameboj.Preconditions;
 
@@ -14,6 +15,8 @@ public final class BitVector {
 
     private final int[] elements;
     private final static int INT_SIZE = Integer.SIZE;
+    // The odd multiplier of hash64, the golden ratio in 64 bits.
+    private final static long HASH_MULTIPLIER = 0x9E37_79B9_7F4A_7C15L;
 
     private BitVector(int[] elements) {
         this.elements = elements;
@@ -59,6 +62,17 @@ public final class BitVector {
         return elements.length * INT_SIZE;
     }
 
+    /**
+     * Gets the integer at the given index of the bit vector, made of its bits
+     * 32 * index (the least significant bit) to 32 * index + 31.
+     * @param index : the index of the integer.
+     * @return the integer at the given index.
+     * @throws IndexOutOfBoundsException if the index is not smaller than the number of integers composing the bit vector.
+     */
+    public int getInt(int index) {
+        return elements[Objects.checkIndex(index, elements.length)];
+    }
+
     /**
      * Tests the value of a given bit in the bit vector.
      * @param index : the bit to test.
@@ -235,6 +249,19 @@ public final class BitVector {
         return Arrays.hashCode(elements);
     }
 
+    /**
+     * Mixes the bits of the vector into the given 64-bit hash, without
+     * allocating any memory. The result is only well distributed in its high
+     * bits, and should be finalised by the caller once all the data is mixed.
+     * @param hash : the hash of the data preceding the vector.
+     * @return the hash of the data preceding the vector, followed by the vector.
+     */
+    public long hash64(long hash) {
+        for (int e : elements)
+            hash = (hash ^ Integer.toUnsignedLong(e)) * HASH_MULTIPLIER;
+        return hash;
+    }
+
     /**
      * A bit vector builder.
      * 
@@ -14,4 +14,13 @@ public interface Clocked {
      * Note that the first cycle has index 0.
      */
     public void cycle(long cycle);
+
+    /**
+     * Moves the clock of the component to the given cycle, the cycles before it
+     * not being simulated. To be called before the component runs, for example
+     * to start a GameBoy late in its timeline. Does nothing by default.
+     * @param cycle : the next cycle at which the method cycle will be called.
+     */
+    public default void startAt(long cycle) {
+    }
 }
@@ -16,17 +16,21 @@ public interface Component {
     
     /**
      * Reads the byte of data at the given address in the component, or NO_DATA if nothing is stored at the address.
+     * The address is checked by the bus, and again by the component only in strict mode.
      * @param address , the 16-bit address at which to read.
      * @return the byte of data stored, or NO_DATA if there is nothing to read.
-     * @throws IllegalArgumentException if the address is not a 16-bit number.
+     * @throws IllegalArgumentException in strict mode, if the address is not a 16-bit number.
+     * @see ch.epfl.gameboj.Preconditions#STRICT
      */
     public abstract int read(int address);
     
     /**
      * Stores the given byte of data at the given address in the component. Does nothing if the address is outside of the component.
+     * The address and the data are checked by the bus, and again by the component only in strict mode.
      * @param address , the 16-bit address at which to store the byte of data.
      * @param data , the byte to store.
-     * @throws IllegalArgumentException if the address is not a 16-bit number or if data is not an 8-bit number.
+     * @throws IllegalArgumentException in strict mode, if the address is not a 16-bit number or if data is not an 8-bit number.
+     * @see ch.epfl.gameboj.Preconditions#STRICT
      */
     public abstract void write(int address,int data);
     
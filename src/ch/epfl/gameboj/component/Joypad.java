@@ -1,5 +1,7 @@
 package ch.epfl.gameboj.component;
 
+import java.nio.ByteBuffer;
+
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.bits.Bit;
@@ -13,7 +15,7 @@ import ch.epfl.gameboj.bits.Bits;
  * @author Adrien Laydu, Michael Tasev
  *
  */
-public class Joypad implements Component {
+public class Joypad implements Component, Stateful {
 
     private int line0;
     private int line1;
@@ -75,7 +77,8 @@ public class Joypad implements Component {
      */
     @Override
     public int read(int address) {
-        Preconditions.checkBits16(address);
+        if (Preconditions.STRICT)
+            Preconditions.checkBits16(address);
         if (address == AddressMap.REG_P1) {
             return Bits.complement8(P1());
         }
@@ -89,8 +92,10 @@ public class Joypad implements Component {
     @Override
     public void write(int address, int data) {
         
-        Preconditions.checkBits16(address);
-        Preconditions.checkBits8(data);
+        if (Preconditions.STRICT) {
+            Preconditions.checkBits16(address);
+            Preconditions.checkBits8(data);
+        }
         
         if (address == AddressMap.REG_P1) {
             
@@ -100,6 +105,33 @@ public class Joypad implements Component {
         }
 
     }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return 3;
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) line0).put((byte) line1).put((byte) strongBitsP1);
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        line0 = Byte.toUnsignedInt(buffer.get());
+        line1 = Byte.toUnsignedInt(buffer.get());
+        strongBitsP1 = Byte.toUnsignedInt(buffer.get());
+    }
+
     private int P1() {
         int line0IfActive = (Bits.test(strongBitsP1, 0) ? line0 : 0);
         int line1IfActive = (Bits.test(strongBitsP1, 1) ? line1 : 0);
@@ -0,0 +1,37 @@
+package ch.epfl.gameboj.component;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An entity whose state can be saved into a buffer, and restored from it.
+ *
+ * The state is written and read at the position of the buffer, which is
+ * advanced by exactly stateSize() bytes. Neither operation allocates memory,
+ * so that states can be saved and restored very often.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public interface Stateful {
+
+    /**
+     * Gets the number of bytes of the state.
+     * @return the size of the state, in bytes.
+     */
+    public int stateSize();
+
+    /**
+     * Writes the state in the given buffer.
+     * @param buffer : the buffer in which to write the state.
+     * @throws java.nio.BufferOverflowException if the buffer has not enough space left.
+     */
+    public void saveState(ByteBuffer buffer);
+
+    /**
+     * Replaces the state by the one read from the given buffer, which must
+     * have been written by saveState.
+     * @param buffer : the buffer from which to read the state.
+     * @throws java.nio.BufferUnderflowException if the buffer has not enough bytes left.
+     */
+    public void loadState(ByteBuffer buffer);
+}
@@ -1,9 +1,11 @@
 package ch.epfl.gameboj.component;
 
+import static ch.epfl.gameboj.Preconditions.STRICT;
 import static ch.epfl.gameboj.Preconditions.checkBits16;
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 import static ch.epfl.gameboj.bits.Bits.*;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import ch.epfl.gameboj.AddressMap;
@@ -13,19 +15,32 @@ import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
 
 /**
  * The timing unit of a Gameboy, that handles the clock, and request Timer interruptions of the CPU.
+ *
+ * The timer is lazy : instead of being updated at every cycle, it remembers the cycle at which
+ * it was last synchronised, and computes its registers from the number of cycles elapsed since
+ * then when they are needed. It is only synchronised when one of its registers is accessed, and
+ * at the cycle at which TIMA overflows, which it computes in advance.
+ *
  * @author Adrien Laydu, Michael Tasev
  *
  */
-public final class Timer implements Component, Clocked {
+public final class Timer implements Component, Clocked, Stateful {
+
+    private static final int CLOCK_TICKS_PER_CYCLE = 4;
+    private static final int TIMA_OVERFLOW = 0x100;
 
     private final Cpu cpu;
-    
-    private int clock; //The main clock of the Gameboy
-    private int TIMA; //The secondary timer
+
+    private int clock; //The main clock of the Gameboy, at the last synchronisation
+    private int TIMA; //The secondary timer, at the last synchronisation
 
     private int TMA; // The register containing the base value of the secondary timer
     private int TAC; //The register containing conditions for the secondary timer
-   
+
+    private long elapsedCycles; //The number of cycles elapsed so far
+    private long syncedCycles; //The number of cycles elapsed at the last synchronisation
+    private long overflowCycle = Long.MAX_VALUE; //The cycle at which TIMA next overflows
+
     /**
      * Creates a new Timer, linked to a given cpu.
      * @param cpu : the cpu linked to the Timer.
@@ -36,16 +51,19 @@ public final class Timer implements Component, Clocked {
         this.cpu = cpu;
     }
 
-    
+
     /* (non-Javadoc)
      * @see ch.epfl.gameboj.component.Component#read(int)
      */
     public int read(int address) {
-        checkBits16(address);
+        if (STRICT)
+            checkBits16(address);
         switch (address) {
         case AddressMap.REG_DIV:
+            sync();
             return Bits.extract(clock, 8, 8);
         case AddressMap.REG_TIMA:
+            sync();
             return TIMA;
         case AddressMap.REG_TMA:
             return TMA;
@@ -60,23 +78,29 @@ public final class Timer implements Component, Clocked {
      * @see ch.epfl.gameboj.component.Component#write(int, int)
      */
     public void write(int address, int data) {
-        checkBits16(address);
-        checkBits8(data);
+        if (STRICT) {
+            checkBits16(address);
+            checkBits8(data);
+        }
         //each time the clock or TAC is changed, we must check if TIMA must be incremented
         switch (address) {
         case AddressMap.REG_DIV: {
+            sync();
             boolean state0 = state();
             clock = 0;
             incIfChange(state0);
         }
             break;
         case AddressMap.REG_TIMA:
+            sync();
             TIMA = data;
             break;
         case AddressMap.REG_TMA:
+            sync();
             TMA = data;
             break;
         case AddressMap.REG_TAC:
+            sync();
             boolean state0 = state();
             TAC = data;
             incIfChange(state0);
@@ -84,21 +108,71 @@ public final class Timer implements Component, Clocked {
         default:
             return;
         }
+        scheduleOverflow();
     }
 
     /* (non-Javadoc)
      * @see ch.epfl.gameboj.component.Clocked#cycle(long)
      */
     public void cycle(long cycle) {
-        //we save the current state.
-        boolean state0 = state();
-        //NOTE : the incrementation is 4 by 4, because each cycle represents 4 ticks.
-        clock += 4;
-        if (clock > 0xFFFF) //Handling overflows.
-            clock = 0;
-        //The secondary timer must be incremented if the state has changed (see incIfChange)
-        incIfChange(state0);
+        //NOTE : nothing is computed here, unless TIMA overflows during this cycle.
+        elapsedCycles = cycle + 1;
+        if (cycle >= overflowCycle) {
+            sync();
+            scheduleOverflow();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Clocked#startAt(long)
+     */
+    @Override
+    public void startAt(long cycle) {
+        sync();
+        elapsedCycles = cycle;
+        syncedCycles = cycle;
+        scheduleOverflow();
+    }
+
+    /**
+     * Gets the cycle during which TIMA will next overflow, and the timer interruption be
+     * requested, if the registers of the timer are not written before.
+     * @return the cycle of the next overflow, or Long.MAX_VALUE if the secondary timer is disabled.
+     */
+    public long nextOverflowCycle() {
+        return overflowCycle;
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return Short.BYTES + 3 + 3 * Long.BYTES;
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putShort((short) clock);
+        buffer.put((byte) TIMA).put((byte) TMA).put((byte) TAC);
+        buffer.putLong(elapsedCycles).putLong(syncedCycles).putLong(overflowCycle);
+    }
 
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        clock = Short.toUnsignedInt(buffer.getShort());
+        TIMA = Byte.toUnsignedInt(buffer.get());
+        TMA = Byte.toUnsignedInt(buffer.get());
+        TAC = Byte.toUnsignedInt(buffer.get());
+        elapsedCycles = buffer.getLong();
+        syncedCycles = buffer.getLong();
+        overflowCycle = buffer.getLong();
     }
 
     private int getIndex() {
@@ -117,23 +191,74 @@ public final class Timer implements Component, Clocked {
             return 0;
         }
     }
+
+    private boolean enabled() {
+        return Bits.test(TAC, 2);
+    }
+
     /**
      * Gets the state of the timer, eg if the second timer is activated and the bit stored in TAC are both 1.
      * @return a boolean, the conjunction stated above.
      */
     private boolean state() {
-        return Bits.test(TAC, 2) && Bits.test(clock, getIndex());
+        return enabled() && Bits.test(clock, getIndex());
     }
 
     private void incIfChange(boolean previousState) {
         if (previousState && !state()) {
-            if (TIMA == 0xFF) { //if TIMA is about to overflow its behavior is special.
-                cpu.requestInterrupt(Interrupt.TIMER);
-                TIMA = TMA;
-            } else { //Otherwise we can just increment it.
-                TIMA += 1;
+            incrementTima(1);
+        }
+
+    }
+
+    /**
+     * Brings the main clock and the secondary timer up to date with the cycles elapsed since
+     * the last synchronisation. The secondary timer is incremented once per falling edge of
+     * the bit of the clock selected by TAC, which happen each time the clock (considered
+     * without overflow) goes over a multiple of twice the weight of that bit.
+     */
+    private void sync() {
+        final long ticks = (elapsedCycles - syncedCycles) * CLOCK_TICKS_PER_CYCLE;
+        if (ticks == 0) {
+            return;
+        }
+        if (enabled()) {
+            final int edgeShift = getIndex() + 1;
+            incrementTima(((clock + ticks) >> edgeShift) - (clock >> edgeShift));
+        }
+        clock = (int) ((clock + ticks) & 0xFFFF);
+        syncedCycles = elapsedCycles;
+    }
+
+    private void incrementTima(long count) {
+        while (count > 0) {
+            final int beforeOverflow = TIMA_OVERFLOW - TIMA;
+            if (count < beforeOverflow) { //We can just increment it.
+                TIMA += (int) count;
+                return;
             }
+            //if TIMA is about to overflow its behavior is special.
+            count -= beforeOverflow;
+            cpu.requestInterrupt(Interrupt.TIMER);
+            TIMA = TMA;
         }
+    }
 
+    /**
+     * Computes the cycle during which TIMA will next overflow, from the state of the timer at
+     * the last synchronisation.
+     */
+    private void scheduleOverflow() {
+        if (!enabled()) {
+            overflowCycle = Long.MAX_VALUE;
+            return;
+        }
+        final long edgePeriod = 1L << (getIndex() + 1);
+        final long firstEdge = (clock / edgePeriod + 1) * edgePeriod;
+        final long overflowEdge = firstEdge + (TIMA_OVERFLOW - TIMA - 1) * edgePeriod;
+        final long cyclesToOverflow = (overflowEdge - clock + CLOCK_TICKS_PER_CYCLE - 1)
+                / CLOCK_TICKS_PER_CYCLE;
+        //The cycles elapsed are counted from 1, the cycles themselves from 0.
+        overflowCycle = syncedCycles + cyclesToOverflow - 1;
     }
 }
@@ -0,0 +1,40 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
+
+/**
+ * A memory bank controller of a cartridge.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+interface BankController extends Component, Stateful, Closeable {
+
+    /**
+     * Creates a controller of the same rom, in the same state as this one. Its
+     * ram is shared copy-on-write with this one (see Ram.shareFrom), and is
+     * never saved in a file.
+     * @return a fork of this controller.
+     */
+    BankController fork();
+
+    /**
+     * Gets the rom bank currently mapped at the given address of the rom.
+     * @param address : an address between 0 (included) and 0x8000 (excluded).
+     * @return the index of the rom bank mapped at the address.
+     */
+    int romBank(int address);
+
+    /**
+     * Closes the file in which the ram of the controller is saved, if any. By
+     * default, does nothing.
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
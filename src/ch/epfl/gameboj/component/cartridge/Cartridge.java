@@ -1,17 +1,19 @@
 package ch.epfl.gameboj.component.cartridge;
 
+import static ch.epfl.gameboj.Preconditions.STRICT;
 import static ch.epfl.gameboj.Preconditions.checkBits16;
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 
-import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
 
-import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.memory.Rom;
+import ch.epfl.gameboj.component.memory.SaveFile;
 
 /**
  * Represents a Cartridge.
@@ -20,16 +22,17 @@ import ch.epfl.gameboj.component.memory.Rom;
  *
  */
 
-public final class Cartridge implements Component {
+public final class Cartridge implements Component, Clocked, Stateful, Closeable {
 
-    private final Component mbController;
+    private final BankController mbController;
+    private final Clocked clockedController;
 
     private static final int MBC_TYPE_ADDRESS = 0x147;
     private static final int MBC_RAM_SIZE = 0x149;
-    private static final int[] MBC_RAM_SIZE_VALUE = { 0, 2048, 8192, 32768 };
 
-    private Cartridge(Component mbc) {
+    private Cartridge(BankController mbc) {
         mbController = mbc;
+        clockedController = mbc instanceof Clocked ? (Clocked) mbc : null;
     }
 
     /**
@@ -43,31 +46,131 @@ public final class Cartridge implements Component {
      * @throws IOException
      *             if there is an error with the inputStream/outputStream.
      * @throws IllegalArgumentException
-     *             if the given File does not contain 0 at the MBC_TYPE_ADDRESS
-     *             (0x147)
+     *             if the given File does not contain a valid cartridge type at
+     *             the MBC_TYPE_ADDRESS (0x147)
      */
 
     public static Cartridge ofFile(File romFile) throws IOException {
-        try(InputStream stream = new BufferedInputStream(new FileInputStream(romFile))) {
-            byte[] data = stream.readAllBytes();
-            
-            int cartridgeType = data[MBC_TYPE_ADDRESS];
-            Preconditions.checkArgument(cartridgeType >= 0 && cartridgeType < 4);
-            Component bc;
-            if (cartridgeType > 0) {
-                int ramSize = 0;
-                if (cartridgeType == 3) {
-                    int ramType = data[MBC_RAM_SIZE];
-                    Preconditions.checkArgument(ramType >= 0 && ramType < 4);
-                    ramSize = MBC_RAM_SIZE_VALUE[ramType];
-                }
-                bc = new MBC1(new Rom(data), ramSize);
-            }
-            else {
-                bc = new MBC0(new Rom(data));
-            }
-            return new Cartridge(bc);
+        return ofRom(Rom.ofFile(romFile));
+    }
+
+    /**
+     * Creates a Cartridge whose rom is shared with all the other cartridges
+     * created by this method for the same File (see Rom.shared). This avoids
+     * loading the same file once per cartridge when many of them are used.
+     * 
+     * @param romFile
+     *            , a file of bytes which are inserted in the rom of the
+     *            Cartridge.
+     * @return a Cartridge whose rom contains the bytes of the given File.
+     * @throws IOException
+     *             if the file cannot be read.
+     * @throws IllegalArgumentException
+     *             if the given File does not contain a valid cartridge type at
+     *             the MBC_TYPE_ADDRESS (0x147)
+     */
+
+    public static Cartridge ofSharedFile(File romFile) throws IOException {
+        return ofRom(Rom.shared(romFile));
+    }
+
+    /**
+     * Creates a Cartridge with the given rom, whose memory bank controller is
+     * chosen according to the type given in its header.
+     * 
+     * @param rom
+     *            , the rom of the Cartridge.
+     * @return a Cartridge whose rom is the given rom.
+     * @throws IllegalArgumentException
+     *             if the given rom does not contain a valid cartridge type at
+     *             the MBC_TYPE_ADDRESS (0x147)
+     */
+
+    public static Cartridge ofRom(Rom rom) {
+        CartridgeType type = CartridgeType.ofCode(rom.read(MBC_TYPE_ADDRESS));
+        return create(rom, type, type.ramSize(rom.read(MBC_RAM_SIZE)), null);
+    }
+
+    /**
+     * Creates a Cartridge with the bytes contained in the given File in its
+     * rom, whose ram is saved in the given save File if it is battery-backed.
+     * 
+     * @param romFile
+     *            , a file of bytes which are inserted in the rom of the
+     *            Cartridge.
+     * @param saveFile
+     *            , the file in which the ram is saved, created if it does not
+     *            exist.
+     * @return a Cartridge whose rom contains the bytes of the given File.
+     * @throws IOException
+     *             if one of the files cannot be read or written.
+     * @throws IllegalArgumentException
+     *             if the given File does not contain a valid cartridge type at
+     *             the MBC_TYPE_ADDRESS (0x147)
+     */
+
+    public static Cartridge ofFile(File romFile, File saveFile) throws IOException {
+        return ofRom(Rom.ofFile(romFile), saveFile);
+    }
+
+    /**
+     * Creates a Cartridge with the given rom, whose ram and real time clock
+     * are saved in the given save File if they are battery-backed. The save
+     * File is mapped in memory (see SaveFile), so that the ram is saved as it
+     * is written, and the clock when it is accessed or closed.
+     * 
+     * @param rom
+     *            , the rom of the Cartridge.
+     * @param saveFile
+     *            , the file in which the ram is saved, created if it does not
+     *            exist.
+     * @return a Cartridge whose rom is the given rom.
+     * @throws IOException
+     *             if the save file cannot be opened.
+     * @throws IllegalArgumentException
+     *             if the given rom does not contain a valid cartridge type at
+     *             the MBC_TYPE_ADDRESS (0x147)
+     */
+
+    public static Cartridge ofRom(Rom rom, File saveFile) throws IOException {
+        CartridgeType type = CartridgeType.ofCode(rom.read(MBC_TYPE_ADDRESS));
+        int ramSize = type.ramSize(rom.read(MBC_RAM_SIZE));
+        // The battery keeps the ram and the real time clock, saved after the ram.
+        SaveFile save = type.hasBattery() && (ramSize > 0 || type.hasTimer())
+                ? SaveFile.open(saveFile, ramSize + (type.hasTimer() ? MBC3.CLOCK_SAVE_SIZE : 0))
+                : null;
+        return create(rom, type, ramSize, save);
+    }
+
+    private static Cartridge create(Rom rom, CartridgeType type, int ramSize, SaveFile save) {
+        BankController bc;
+        switch (type.controller()) {
+        case 1:
+            bc = new MBC1(rom, ramSize, save);
+            break;
+        case 3:
+            bc = new MBC3(rom, ramSize, type.hasTimer(), save);
+            break;
+        case 5:
+            bc = new MBC5(rom, ramSize, save);
+            break;
+        default:
+            bc = new MBC0(rom);
+            break;
         }
+        return new Cartridge(bc);
+    }
+
+    /**
+     * Creates a Cartridge with the same rom, in the same state as this one.
+     * Its ram is shared copy-on-write with this one, so that forking a
+     * Cartridge does not copy it, and is never saved in a file.
+     * 
+     * @return a fork of this Cartridge.
+     */
+
+    public Cartridge fork() {
+        return new Cartridge(mbController.fork());
     }
 
     /**
@@ -79,14 +182,16 @@ public final class Cartridge implements Component {
      * @param data
      *            , the byte to store.
      * @throws IllegalArgumentException
-     *             if the address is not a 16-bit number or if data is not an
-     *             8-bit number.
+     *             in strict mode, if the address is not a 16-bit number or if
+     *             data is not an 8-bit number.
      */
 
     @Override
     public void write(int address, int data) {
-        checkBits16(address);
-        checkBits8(data);
+        if (STRICT) {
+            checkBits16(address);
+            checkBits8(data);
+        }
         mbController.write(address, data);
     }
 
@@ -98,12 +203,109 @@ public final class Cartridge implements Component {
      *            , the 16-bit address at which to read.
      * @return the byte of data stored, or NO_DATA if there is nothing to read.
      * @throws IllegalArgumentException
-     *             if the address is not a 16-bit number.
+     *             in strict mode, if the address is not a 16-bit number.
      */
 
     @Override
     public int read(int address) {
-        checkBits16(address);
+        if (STRICT)
+            checkBits16(address);
         return mbController.read(address);
     }
+
+    /**
+     * Gets the rom bank currently mapped at the given address, telling which
+     * code runs there.
+     * 
+     * @param address
+     *            , the 16-bit address.
+     * @return the index of the rom bank mapped at the address, or -1 if the
+     *         address is not in the rom.
+     * @throws IllegalArgumentException
+     *             if the address is not a 16-bit number.
+     */
+
+    public int romBank(int address) {
+        checkBits16(address);
+        return address < 0x8000 ? mbController.romBank(address) : -1;
+    }
+
+    /**
+     * Advances the real time clock of the cartridge, if it has one.
+     * 
+     * @param cycle
+     *            , the cycle being simulated.
+     */
+
+    @Override
+    public void cycle(long cycle) {
+        if (clockedController != null)
+            clockedController.cycle(cycle);
+    }
+
+    /**
+     * Moves the real time clock of the cartridge, if it has one, to the given
+     * cycle, without counting the cycles before it.
+     * 
+     * @param cycle
+     *            , the next cycle simulated.
+     */
+
+    @Override
+    public void startAt(long cycle) {
+        if (clockedController != null)
+            clockedController.startAt(cycle);
+    }
+
+    /**
+     * Gets the size of the state of the memory bank controller, including its
+     * ram.
+     * 
+     * @return the size of the state, in bytes.
+     */
+
+    @Override
+    public int stateSize() {
+        return mbController.stateSize();
+    }
+
+    /**
+     * Writes the state of the memory bank controller, including its ram, in
+     * the given buffer.
+     * 
+     * @param buffer
+     *            , the buffer in which to write the state.
+     */
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        mbController.saveState(buffer);
+    }
+
+    /**
+     * Restores the state of the memory bank controller, including its ram, from
+     * the given buffer. A battery-backed ram is also written in its save file.
+     * 
+     * @param buffer
+     *            , the buffer from which to read the state.
+     */
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        mbController.loadState(buffer);
+    }
+
+    /**
+     * Closes the file in which the ram of the cartridge is saved, if any. The
+     * Cartridge should not be used afterwards : writing its saved ram throws
+     * an IllegalStateException.
+     * 
+     * @throws IOException
+     *             if the save file cannot be closed.
+     */
+
+    @Override
+    public void close() throws IOException {
+        mbController.close();
+    }
 }
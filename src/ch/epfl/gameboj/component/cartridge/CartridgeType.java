@@ -0,0 +1,93 @@
+package ch.epfl.gameboj.component.cartridge;
+
+/**
+ * The types of cartridges that can be emulated, as given by the byte at address
+ * 0x147 of their header.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+enum CartridgeType {
+    ROM_ONLY(0x00, 0, false, false, false),
+    MBC1(0x01, 1, false, false, false),
+    MBC1_RAM(0x02, 1, true, false, false),
+    MBC1_RAM_BATTERY(0x03, 1, true, true, false),
+    MBC3_TIMER_BATTERY(0x0F, 3, false, true, true),
+    MBC3_TIMER_RAM_BATTERY(0x10, 3, true, true, true),
+    MBC3(0x11, 3, false, false, false),
+    MBC3_RAM(0x12, 3, true, false, false),
+    MBC3_RAM_BATTERY(0x13, 3, true, true, false),
+    MBC5(0x19, 5, false, false, false),
+    MBC5_RAM(0x1A, 5, true, false, false),
+    MBC5_RAM_BATTERY(0x1B, 5, true, true, false),
+    MBC5_RUMBLE(0x1C, 5, false, false, false),
+    MBC5_RUMBLE_RAM(0x1D, 5, true, false, false),
+    MBC5_RUMBLE_RAM_BATTERY(0x1E, 5, true, true, false);
+
+    // The sizes of the ram, indexed by the byte at address 0x149 of the header.
+    private static final int[] RAM_SIZES = { 0, 2048, 8192, 32768, 131072, 65536 };
+
+    private final int code;
+    private final int controller;
+    private final boolean ram, battery, timer;
+
+    private CartridgeType(int code, int controller, boolean ram, boolean battery, boolean timer) {
+        this.code = code;
+        this.controller = controller;
+        this.ram = ram;
+        this.battery = battery;
+        this.timer = timer;
+    }
+
+    /**
+     * Gets the type of cartridge with the given code.
+     * @param code : the byte at address 0x147 of the header.
+     * @return the type of cartridge with that code.
+     * @throws IllegalArgumentException if no emulated type has that code.
+     */
+    static CartridgeType ofCode(int code) {
+        for (CartridgeType t : values()) {
+            if (t.code == code)
+                return t;
+        }
+        throw new IllegalArgumentException("unsupported cartridge type: " + code);
+    }
+
+    /**
+     * Gets the size of the ram of a cartridge of this type.
+     * @param ramSizeCode : the byte at address 0x149 of the header.
+     * @return the size of the ram, 0 if this type has no ram.
+     * @throws IllegalArgumentException if this type has a ram whose size code is invalid.
+     */
+    int ramSize(int ramSizeCode) {
+        if (!ram)
+            return 0;
+        if (ramSizeCode < 0 || ramSizeCode >= RAM_SIZES.length)
+            throw new IllegalArgumentException("invalid ram size: " + ramSizeCode);
+        return RAM_SIZES[ramSizeCode];
+    }
+
+    /**
+     * Gets the number of the memory bank controller of this type (0, 1, 3 or 5).
+     * @return the number of the controller.
+     */
+    int controller() {
+        return controller;
+    }
+
+    /**
+     * Tells if the ram of a cartridge of this type is kept when it is unplugged.
+     * @return true if the cartridge has a battery.
+     */
+    boolean hasBattery() {
+        return battery;
+    }
+
+    /**
+     * Tells if a cartridge of this type contains a real time clock.
+     * @return true if the cartridge has a real time clock.
+     */
+    boolean hasTimer() {
+        return timer;
+    }
+}
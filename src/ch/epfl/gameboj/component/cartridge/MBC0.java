@@ -1,7 +1,8 @@
 package ch.epfl.gameboj.component.cartridge;
 
+import java.nio.ByteBuffer;
+
 import ch.epfl.gameboj.Preconditions;
-import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.memory.Rom;
 
 /**
@@ -10,7 +11,7 @@ import ch.epfl.gameboj.component.memory.Rom;
  *
  */
 
-public final class MBC0 implements Component {
+public final class MBC0 implements BankController {
    private final Rom rom;
     
    private static final int ROM_SIZE = 0x8000;
@@ -41,8 +42,52 @@ public final class MBC0 implements Component {
      */
     
     public int read(int address) {
-        Preconditions.checkBits16(address);
+        if (Preconditions.STRICT)
+            Preconditions.checkBits16(address);
         if(address >= rom.size())return NO_DATA;
         return rom.read(address);
     }
+
+    /**
+     * Returns this controller, which has no state and can thus be shared by
+     * its forks.
+     */
+
+    public MBC0 fork() {
+        return this;
+    }
+
+    /**
+     * A 0-type controller maps the banks 0 and 1 of the rom, always.
+     */
+
+    public int romBank(int address) {
+        return address < 0x4000 ? 0 : 1;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        // A 0-type controller has no state.
+        return 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+    }
 }
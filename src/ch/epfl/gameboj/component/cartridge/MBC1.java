@@ -1,12 +1,18 @@
 package ch.epfl.gameboj.component.cartridge;
 
+import static ch.epfl.gameboj.Preconditions.STRICT;
 import static ch.epfl.gameboj.Preconditions.checkBits16;
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.bits.Bits;
-import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.Rom;
+import ch.epfl.gameboj.component.memory.SaveFile;
+import ch.epfl.gameboj.jfr.BankSwitchEvent;
 
 /**
  * Represents a 1-type memory controller.
@@ -14,18 +20,23 @@ import ch.epfl.gameboj.component.memory.Rom;
  * @author Adrien Laydu, Michael Tasev
  *
  */
-public final class MBC1 implements Component {
+public final class MBC1 implements BankController {
     private static final int RAM_ENABLE = 0xA;
 
     private enum Mode { MODE_0, MODE_1 };
 
     private final Rom rom;
     private final Ram ram;
+    private final SaveFile save;
 
     private boolean ramEnabled;
     private Mode mode;
     private int romLsb5, ramRom2;
     private final int romMask, ramMask;
+    private final int romOffsetMask, ramOffsetMask;
+
+    // The offsets of the banks currently selected, updated when a register is written.
+    private int romBase0, romBase1, ramBase;
 
     /**
      * Creates a 1-type memory controller for the given rom.
@@ -33,8 +44,24 @@ public final class MBC1 implements Component {
      * @param ramSize : the size of the ram.
      */
     public MBC1(Rom rom, int ramSize) {
+        this(rom, ramSize, null);
+    }
+
+    /**
+     * Creates a 1-type memory controller for the given rom.
+     * @param rom : the memory to control.
+     * @param ramSize : the size of the ram.
+     * @param save : the file in which the ram is saved, or null if it is not saved.
+     * @throws IllegalArgumentException if the save file and the ram have different sizes.
+     */
+    public MBC1(Rom rom, int ramSize, SaveFile save) {
         this.rom = rom;
         this.ram = new Ram(ramSize);
+        this.save = save;
+        if (save != null) {
+            Preconditions.checkArgument(save.size() == ramSize);
+            save.loadInto(ram);
+        }
 
         this.ramEnabled = false;
         this.mode = Mode.MODE_0;
@@ -43,6 +70,9 @@ public final class MBC1 implements Component {
 
         this.romMask = rom.size() - 1;
         this.ramMask = ramSize - 1;
+        this.romOffsetMask = Bits.clip(14, -1) & romMask;
+        this.ramOffsetMask = Bits.clip(13, -1) & ramMask;
+        updateBases();
     }
 
     /*
@@ -51,13 +81,15 @@ public final class MBC1 implements Component {
      */
     @Override
     public int read(int address) {
-        switch (Bits.extract(checkBits16(address), 13, 3)) {
+        if (STRICT)
+            checkBits16(address);
+        switch (Bits.extract(address, 13, 3)) {
         case 0: case 1:
-            return rom.read(romAddress(msb2(), 0, address));
+            return rom.read(romBase0 + (address & romOffsetMask));
         case 2: case 3:
-            return rom.read(romAddress(ramRom2, romLsb5, address));
+            return rom.read(romBase1 + (address & romOffsetMask));
         case 5:
-            return ramEnabled ? ram.read(ramAddress(address)) : 0xFF;
+            return ramEnabled && ram.size() > 0 ? ram.read(ramBase + (address & ramOffsetMask)) : 0xFF;
         default:
             return NO_DATA;
         }
@@ -69,27 +101,114 @@ public final class MBC1 implements Component {
      */
     @Override
     public void write(int address, int data) {
-        checkBits8(data);
-        switch (Bits.extract(checkBits16(address), 13, 3)) {
+        if (STRICT) {
+            checkBits16(address);
+            checkBits8(data);
+        }
+        switch (Bits.extract(address, 13, 3)) {
         case 0:
             ramEnabled = Bits.clip(4, data) == RAM_ENABLE;
             break;
         case 1:
             romLsb5 = Math.max(1, Bits.clip(5, data));
+            updateBases();
             break;
         case 2:
             ramRom2 = Bits.clip(2, data);
+            updateBases();
             break;
         case 3:
             mode = Bits.test(data, 0) ? Mode.MODE_1 : Mode.MODE_0;
+            updateBases();
             break;
         case 5:
-            if (ramEnabled)
-                ram.write(ramAddress(address), data);
+            if (ramEnabled && ram.size() > 0)
+                writeRam(ramBase + (address & ramOffsetMask), data);
             break;
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cartridge.BankController#fork()
+     */
+    @Override
+    public MBC1 fork() {
+        final MBC1 fork = new MBC1(rom, ram.size());
+        fork.ram.shareFrom(ram);
+        fork.ramEnabled = ramEnabled;
+        fork.mode = mode;
+        fork.romLsb5 = romLsb5;
+        fork.ramRom2 = ramRom2;
+        fork.updateBases();
+        return fork;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cartridge.BankController#romBank(int)
+     */
+    @Override
+    public int romBank(int address) {
+        return (address < 0x4000 ? romBase0 : romBase1) >>> 14;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return 4 + ram.stateSize();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) (ramEnabled ? 1 : 0)).put((byte) mode.ordinal());
+        buffer.put((byte) romLsb5).put((byte) ramRom2);
+        ram.saveState(buffer);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        ramEnabled = buffer.get() != 0;
+        mode = buffer.get() == 0 ? Mode.MODE_0 : Mode.MODE_1;
+        romLsb5 = buffer.get();
+        ramRom2 = buffer.get();
+        ram.loadState(buffer);
+        updateBases();
+        saveRam();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cartridge.BankController#close()
+     */
+    @Override
+    public void close() throws IOException {
+        if (save != null)
+            save.close();
+    }
+
+    private void writeRam(int index, int data) {
+        ram.write(index, data);
+        if (save != null)
+            save.write(index, data);
+    }
+
+    private void saveRam() {
+        if (save != null)
+            save.storeFrom(ram);
+    }
+
     private int msb2() {
         switch (mode) {
         case MODE_0: return 0;
@@ -98,11 +217,18 @@ public final class MBC1 implements Component {
         }
     }
 
-    private int romAddress(int b_20_19, int b_18_14, int b_13_0) {
-        return ((b_20_19 << 19) | (b_18_14 << 14) | Bits.clip(14, b_13_0)) & romMask;
-    }
-
-    private int ramAddress(int b_12_0) {
-        return ((msb2() << 13) | Bits.clip(13, b_12_0)) & ramMask;
+    /**
+     * Computes the offsets of the banks selected by the registers, so that an
+     * address in a bank is its offset plus the 14 (rom) or 13 (ram) lsb of the
+     * address, both masked by the size of the memory.
+     */
+    private void updateBases() {
+        final int oldRomBase1 = romBase1, oldRamBase = ramBase;
+        romBase0 = (msb2() << 19) & romMask;
+        romBase1 = ((ramRom2 << 19) | (romLsb5 << 14)) & romMask;
+        ramBase = (msb2() << 13) & ramMask;
+        if (romBase1 != oldRomBase1 || ramBase != oldRamBase) {
+            BankSwitchEvent.emit("MBC1", romBase1 >>> 14, ramBase >>> 13);
+        }
     }
 }
@@ -0,0 +1,380 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import static ch.epfl.gameboj.Preconditions.STRICT;
+import static ch.epfl.gameboj.Preconditions.checkBits16;
+import static ch.epfl.gameboj.Preconditions.checkBits8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.Clocked;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.Rom;
+import ch.epfl.gameboj.component.memory.SaveFile;
+import ch.epfl.gameboj.jfr.BankSwitchEvent;
+
+/**
+ * Represents a 3-type memory controller, which can address up to 128 rom banks
+ * and 4 ram banks, and may contain a real time clock.
+ *
+ * The clock counts the time emulated, not the real time, so that the emulation
+ * stays deterministic. Like the timer, it is lazy : its registers are only
+ * computed from the cycles elapsed when they are latched or written. With a
+ * battery, the clock is saved after the ram in the save file each time it is
+ * latched or written, and when the controller is closed, so that it goes on
+ * from where it was on the next run.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public final class MBC3 implements BankController, Clocked {
+    private static final int RAM_ENABLE = 0xA;
+
+    // The values written in the ram bank register to select a register of the clock.
+    private static final int RTC_FIRST = 0x08, RTC_LAST = 0x0C;
+    private static final int RTC_S = 0, RTC_M = 1, RTC_H = 2, RTC_DL = 3, RTC_DH = 4;
+    private static final int DH_DAY_MSB = 0, DH_HALT = 6, DH_CARRY = 7;
+
+    private static final long CYCLES_PER_SECOND = 1L << 20;
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final long DAYS = 512;
+
+    /**
+     * The number of bytes of the clock saved after the ram : the time counted,
+     * the halt and carry flags, the value last written in the latch register
+     * and the latched registers.
+     */
+    static final int CLOCK_SAVE_SIZE = Long.BYTES + 2 + (RTC_LAST - RTC_FIRST + 1);
+
+    private final Rom rom;
+    private final Ram ram;
+    private final SaveFile save;
+    private final boolean hasClock;
+
+    private boolean ramEnabled;
+    private int romBank, ramBank;
+    private final int romMask, ramMask;
+    private final int romOffsetMask, ramOffsetMask;
+
+    // The offsets of the banks currently selected, updated when a register is written.
+    private int romBase1, ramBase;
+
+    private long elapsedCycles; //The number of cycles elapsed so far
+    private long syncedCycles; //The number of cycles elapsed at the last synchronisation
+    private long clockCycles; //The time counted by the clock at the last synchronisation, in cycles
+    private boolean halted, dayCarry;
+    private int latch = 0xFF;
+    private final int[] latched = new int[RTC_LAST - RTC_FIRST + 1];
+
+    /**
+     * Creates a 3-type memory controller for the given rom.
+     * @param rom : the memory to control.
+     * @param ramSize : the size of the ram.
+     * @param hasClock : true if the controller contains a real time clock.
+     * @throws NullPointerException if the rom is null.
+     * @throws IllegalArgumentException if the size of the ram is negative.
+     */
+    public MBC3(Rom rom, int ramSize, boolean hasClock) {
+        this(rom, ramSize, hasClock, null);
+    }
+
+    /**
+     * Creates a 3-type memory controller for the given rom.
+     * @param rom : the memory to control.
+     * @param ramSize : the size of the ram.
+     * @param hasClock : true if the controller contains a real time clock.
+     * @param save : the file in which the ram, then the clock if there is one,
+     * are saved, or null if they are not saved.
+     * @throws NullPointerException if the rom is null.
+     * @throws IllegalArgumentException if the size of the ram is negative, or if the
+     * size of the save file differs from the size of the ram, plus CLOCK_SAVE_SIZE
+     * if there is a clock.
+     */
+    public MBC3(Rom rom, int ramSize, boolean hasClock, SaveFile save) {
+        this.rom = Objects.requireNonNull(rom);
+        this.ram = new Ram(ramSize);
+        this.save = save;
+        this.hasClock = hasClock;
+        if (save != null) {
+            Preconditions.checkArgument(save.size() == ramSize + (hasClock ? CLOCK_SAVE_SIZE : 0));
+            save.loadInto(ram);
+            if (hasClock)
+                loadClock();
+        }
+
+        this.ramEnabled = false;
+        this.romBank = 1;
+        this.ramBank = 0;
+
+        this.romMask = rom.size() - 1;
+        this.ramMask = ramSize - 1;
+        this.romOffsetMask = Bits.clip(14, -1) & romMask;
+        this.ramOffsetMask = Bits.clip(13, -1) & ramMask;
+        updateBases();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Component#read(int)
+     */
+    @Override
+    public int read(int address) {
+        if (STRICT)
+            checkBits16(address);
+        switch (Bits.extract(address, 13, 3)) {
+        case 0: case 1:
+            return rom.read(address & romOffsetMask);
+        case 2: case 3:
+            return rom.read(romBase1 + (address & romOffsetMask));
+        case 5:
+            if (!ramEnabled)
+                return 0xFF;
+            if (ramBank >= RTC_FIRST)
+                return hasClock && ramBank <= RTC_LAST ? latched[ramBank - RTC_FIRST] : 0xFF;
+            return ram.size() > 0 ? ram.read(ramBase + (address & ramOffsetMask)) : 0xFF;
+        default:
+            return NO_DATA;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Component#write(int, int)
+     */
+    @Override
+    public void write(int address, int data) {
+        if (STRICT) {
+            checkBits16(address);
+            checkBits8(data);
+        }
+        switch (Bits.extract(address, 13, 3)) {
+        case 0:
+            ramEnabled = Bits.clip(4, data) == RAM_ENABLE;
+            break;
+        case 1:
+            romBank = Math.max(1, Bits.clip(7, data));
+            updateBases();
+            break;
+        case 2:
+            ramBank = Bits.clip(4, data);
+            updateBases();
+            break;
+        case 3:
+            //The clock is latched when 0 then 1 are written.
+            if (hasClock && latch == 0 && data == 1)
+                latchClock();
+            latch = data;
+            break;
+        case 5:
+            if (!ramEnabled)
+                break;
+            if (ramBank >= RTC_FIRST) {
+                if (hasClock && ramBank <= RTC_LAST)
+                    writeClock(ramBank - RTC_FIRST, data);
+            } else if (ram.size() > 0) {
+                writeRam(ramBase + (address & ramOffsetMask), data);
+            }
+            break;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Clocked#cycle(long)
+     */
+    @Override
+    public void cycle(long cycle) {
+        //NOTE : nothing is computed here, the clock is only updated when it is accessed.
+        elapsedCycles = cycle + 1;
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Clocked#startAt(long)
+     */
+    @Override
+    public void startAt(long cycle) {
+        syncClock();
+        elapsedCycles = cycle;
+        syncedCycles = cycle;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cartridge.BankController#fork()
+     */
+    @Override
+    public MBC3 fork() {
+        final MBC3 fork = new MBC3(rom, ram.size(), hasClock);
+        fork.ram.shareFrom(ram);
+        fork.ramEnabled = ramEnabled;
+        fork.romBank = romBank;
+        fork.ramBank = ramBank;
+        fork.latch = latch;
+        fork.elapsedCycles = elapsedCycles;
+        fork.syncedCycles = syncedCycles;
+        fork.clockCycles = clockCycles;
+        fork.halted = halted;
+        fork.dayCarry = dayCarry;
+        System.arraycopy(latched, 0, fork.latched, 0, latched.length);
+        fork.updateBases();
+        return fork;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cartridge.BankController#romBank(int)
+     */
+    @Override
+    public int romBank(int address) {
+        return address < 0x4000 ? 0 : romBase1 >>> 14;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return 4 + 3 * Long.BYTES + 2 + latched.length + ram.stateSize();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) (ramEnabled ? 1 : 0)).put((byte) romBank).put((byte) ramBank);
+        buffer.put((byte) latch);
+        buffer.putLong(elapsedCycles).putLong(syncedCycles).putLong(clockCycles);
+        buffer.put((byte) (halted ? 1 : 0)).put((byte) (dayCarry ? 1 : 0));
+        for (int r : latched)
+            buffer.put((byte) r);
+        ram.saveState(buffer);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        ramEnabled = buffer.get() != 0;
+        romBank = buffer.get();
+        ramBank = buffer.get();
+        latch = Byte.toUnsignedInt(buffer.get());
+        elapsedCycles = buffer.getLong();
+        syncedCycles = buffer.getLong();
+        clockCycles = buffer.getLong();
+        halted = buffer.get() != 0;
+        dayCarry = buffer.get() != 0;
+        for (int i = 0; i < latched.length; ++i)
+            latched[i] = Byte.toUnsignedInt(buffer.get());
+        ram.loadState(buffer);
+        updateBases();
+        saveRam();
+        saveClock();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cartridge.BankController#close()
+     */
+    @Override
+    public void close() throws IOException {
+        if (save != null && !save.isClosed()) {
+            //The time counted since the clock was last accessed is saved too.
+            syncClock();
+            saveClock();
+            save.close();
+        }
+    }
+
+    private void writeRam(int index, int data) {
+        ram.write(index, data);
+        if (save != null)
+            save.write(index, data);
+    }
+
+    private void saveRam() {
+        if (save != null)
+            save.storeFrom(ram);
+    }
+
+    private void saveClock() {
+        if (save != null && hasClock) {
+            final int start = ram.size();
+            for (int i = 0; i < Long.BYTES; ++i)
+                save.update(start + i, (int) (clockCycles >>> (Byte.SIZE * i)) & 0xFF);
+            save.update(start + Long.BYTES, (halted ? 1 << DH_HALT : 0) | (dayCarry ? 1 << DH_CARRY : 0));
+            save.update(start + Long.BYTES + 1, latch);
+            for (int r = 0; r < latched.length; ++r)
+                save.update(start + Long.BYTES + 2 + r, latched[r]);
+        }
+    }
+
+    private void loadClock() {
+        final int start = ram.size();
+        long cycles = 0;
+        for (int i = 0; i < Long.BYTES; ++i)
+            cycles |= (long) save.read(start + i) << (Byte.SIZE * i);
+        clockCycles = Math.floorMod(cycles, DAYS * SECONDS_PER_DAY * CYCLES_PER_SECOND);
+        final int flags = save.read(start + Long.BYTES);
+        halted = Bits.test(flags, DH_HALT);
+        dayCarry = Bits.test(flags, DH_CARRY);
+        latch = save.read(start + Long.BYTES + 1);
+        for (int r = 0; r < latched.length; ++r)
+            latched[r] = save.read(start + Long.BYTES + 2 + r);
+    }
+
+    private void updateBases() {
+        final int oldRomBase1 = romBase1, oldRamBase = ramBase;
+        romBase1 = (romBank << 14) & romMask;
+        ramBase = (Bits.clip(2, ramBank) << 13) & ramMask;
+        if (romBase1 != oldRomBase1 || ramBase != oldRamBase) {
+            BankSwitchEvent.emit("MBC3", romBase1 >>> 14, ramBase >>> 13);
+        }
+    }
+
+    private void syncClock() {
+        if (!halted) {
+            clockCycles += elapsedCycles - syncedCycles;
+            final long max = DAYS * SECONDS_PER_DAY * CYCLES_PER_SECOND;
+            if (clockCycles >= max) {
+                dayCarry = true;
+                clockCycles %= max;
+            }
+        }
+        syncedCycles = elapsedCycles;
+    }
+
+    private void latchClock() {
+        syncClock();
+        final long seconds = clockCycles / CYCLES_PER_SECOND;
+        final long days = seconds / SECONDS_PER_DAY;
+        latched[RTC_S] = (int) (seconds % 60);
+        latched[RTC_M] = (int) (seconds / 60 % 60);
+        latched[RTC_H] = (int) (seconds / 3600 % 24);
+        latched[RTC_DL] = Bits.clip(8, (int) days);
+        latched[RTC_DH] = (Bits.test((int) days, 8) ? 1 << DH_DAY_MSB : 0)
+                | (halted ? 1 << DH_HALT : 0)
+                | (dayCarry ? 1 << DH_CARRY : 0);
+        saveClock();
+    }
+
+    private void writeClock(int register, int data) {
+        latchClock();
+        latched[register] = data;
+        halted = Bits.test(latched[RTC_DH], DH_HALT);
+        dayCarry = Bits.test(latched[RTC_DH], DH_CARRY);
+        final long days = latched[RTC_DL] | (latched[RTC_DH] & 1 << DH_DAY_MSB) << 8;
+        final long seconds = ((days * 24 + Bits.clip(5, latched[RTC_H])) * 60
+                + Bits.clip(6, latched[RTC_M])) * 60 + Bits.clip(6, latched[RTC_S]);
+        //Writing the seconds resets the count of the current second.
+        final long subSecond = register == RTC_S ? 0 : clockCycles % CYCLES_PER_SECOND;
+        clockCycles = seconds * CYCLES_PER_SECOND + subSecond;
+        saveClock();
+    }
+}
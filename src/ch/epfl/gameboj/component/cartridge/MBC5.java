@@ -0,0 +1,219 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import static ch.epfl.gameboj.Preconditions.STRICT;
+import static ch.epfl.gameboj.Preconditions.checkBits16;
+import static ch.epfl.gameboj.Preconditions.checkBits8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.Rom;
+import ch.epfl.gameboj.component.memory.SaveFile;
+import ch.epfl.gameboj.jfr.BankSwitchEvent;
+
+/**
+ * Represents a 5-type memory controller, which can address up to 512 rom banks
+ * and 16 ram banks.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public final class MBC5 implements BankController {
+    private static final int RAM_ENABLE = 0xA;
+
+    private final Rom rom;
+    private final Ram ram;
+    private final SaveFile save;
+
+    private boolean ramEnabled;
+    private int romBank, ramBank;
+    private final int romMask, ramMask;
+    private final int romOffsetMask, ramOffsetMask;
+
+    // The offsets of the banks currently selected, updated when a register is written.
+    private int romBase1, ramBase;
+
+    /**
+     * Creates a 5-type memory controller for the given rom.
+     * @param rom : the memory to control.
+     * @param ramSize : the size of the ram.
+     * @throws NullPointerException if the rom is null.
+     * @throws IllegalArgumentException if the size of the ram is negative.
+     */
+    public MBC5(Rom rom, int ramSize) {
+        this(rom, ramSize, null);
+    }
+
+    /**
+     * Creates a 5-type memory controller for the given rom.
+     * @param rom : the memory to control.
+     * @param ramSize : the size of the ram.
+     * @param save : the file in which the ram is saved, or null if it is not saved.
+     * @throws NullPointerException if the rom is null.
+     * @throws IllegalArgumentException if the size of the ram is negative, or differs from the size of the save file.
+     */
+    public MBC5(Rom rom, int ramSize, SaveFile save) {
+        this.rom = Objects.requireNonNull(rom);
+        this.ram = new Ram(ramSize);
+        this.save = save;
+        if (save != null) {
+            Preconditions.checkArgument(save.size() == ramSize);
+            save.loadInto(ram);
+        }
+
+        this.ramEnabled = false;
+        this.romBank = 1;
+        this.ramBank = 0;
+
+        this.romMask = rom.size() - 1;
+        this.ramMask = ramSize - 1;
+        this.romOffsetMask = Bits.clip(14, -1) & romMask;
+        this.ramOffsetMask = Bits.clip(13, -1) & ramMask;
+        updateBases();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Component#read(int)
+     */
+    @Override
+    public int read(int address) {
+        if (STRICT)
+            checkBits16(address);
+        switch (Bits.extract(address, 13, 3)) {
+        case 0: case 1:
+            return rom.read(address & romOffsetMask);
+        case 2: case 3:
+            return rom.read(romBase1 + (address & romOffsetMask));
+        case 5:
+            return ramEnabled && ram.size() > 0 ? ram.read(ramBase + (address & ramOffsetMask)) : 0xFF;
+        default:
+            return NO_DATA;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Component#write(int, int)
+     */
+    @Override
+    public void write(int address, int data) {
+        if (STRICT) {
+            checkBits16(address);
+            checkBits8(data);
+        }
+        switch (Bits.extract(address, 12, 4)) {
+        case 0x0: case 0x1:
+            ramEnabled = Bits.clip(4, data) == RAM_ENABLE;
+            break;
+        case 0x2:
+            romBank = (romBank & ~0xFF) | data;
+            updateBases();
+            break;
+        case 0x3:
+            romBank = Bits.set(romBank, 8, Bits.test(data, 0));
+            updateBases();
+            break;
+        case 0x4: case 0x5:
+            ramBank = Bits.clip(4, data);
+            updateBases();
+            break;
+        case 0xA: case 0xB:
+            if (ramEnabled && ram.size() > 0)
+                writeRam(ramBase + (address & ramOffsetMask), data);
+            break;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cartridge.BankController#fork()
+     */
+    @Override
+    public MBC5 fork() {
+        final MBC5 fork = new MBC5(rom, ram.size());
+        fork.ram.shareFrom(ram);
+        fork.ramEnabled = ramEnabled;
+        fork.romBank = romBank;
+        fork.ramBank = ramBank;
+        fork.updateBases();
+        return fork;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cartridge.BankController#romBank(int)
+     */
+    @Override
+    public int romBank(int address) {
+        return address < 0x4000 ? 0 : romBase1 >>> 14;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return 1 + Short.BYTES + 1 + ram.stateSize();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) (ramEnabled ? 1 : 0));
+        buffer.putShort((short) romBank).put((byte) ramBank);
+        ram.saveState(buffer);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        ramEnabled = buffer.get() != 0;
+        romBank = buffer.getShort();
+        ramBank = buffer.get();
+        ram.loadState(buffer);
+        updateBases();
+        saveRam();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cartridge.BankController#close()
+     */
+    @Override
+    public void close() throws IOException {
+        if (save != null)
+            save.close();
+    }
+
+    private void writeRam(int index, int data) {
+        ram.write(index, data);
+        if (save != null)
+            save.write(index, data);
+    }
+
+    private void saveRam() {
+        if (save != null)
+            save.storeFrom(ram);
+    }
+
+    private void updateBases() {
+        final int oldRomBase1 = romBase1, oldRamBase = ramBase;
+        romBase1 = (romBank << 14) & romMask;
+        ramBase = (ramBank << 13) & ramMask;
+        if (romBase1 != oldRomBase1 || ramBase != oldRamBase) {
+            BankSwitchEvent.emit("MBC5", romBase1 >>> 14, ramBase >>> 13);
+        }
+    }
+}
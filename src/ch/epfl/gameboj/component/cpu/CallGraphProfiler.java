@@ -0,0 +1,326 @@
+package ch.epfl.gameboj.component.cpu;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Objects;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
+
+/**
+ * A profiler of the cpu attributing the cycles to the routines of a game,
+ * through a shadow call stack: a routine is entered by a call (CALL or RST) or
+ * by an interrupt, and left by the return (RET or RETI) to the address pushed
+ * when it was entered. It observes the cpu once set as its observer (see
+ * Cpu.setObserver).
+ *
+ * The routines are identified by the rom bank and the address of their entry,
+ * and named from a symbol table if one is given. Each path of calls from the
+ * top of the program forms a node of a call tree, which counts its calls and
+ * the cycles spent in it, excluding its callees (exclusive cycles) or not
+ * (inclusive cycles). The tree can be written indented, or in the collapsed
+ * stack format read by flame graph tools.
+ *
+ * Games sometimes leave a routine by a jump after removing the return address
+ * from the stack, or jump with a RET: a return to an address pushed by none of
+ * the routines of the shadow stack is ignored, and a return to one pushed by
+ * an older routine leaves all the newer ones. A call deeper than MAX_DEPTH
+ * restarts the stack from the top.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public final class CallGraphProfiler implements CpuObserver {
+
+    /**
+     * The maximum depth of the shadow call stack.
+     */
+    public static final int MAX_DEPTH = 256;
+
+    // The name of the code run outside of any routine.
+    private static final String TOP = "top";
+
+    private final Cartridge cartridge;
+    private final SymbolTable symbols;
+
+    private Node root = new Node(null, -1, -1, null);
+    // The nodes of the routines being run, and the addresses they return to.
+    private final Node[] stack = new Node[MAX_DEPTH];
+    private final int[] returnAddresses = new int[MAX_DEPTH];
+    private int depth;
+    private long cycles;
+
+    // A routine called through a path of calls.
+    private static final class Node {
+        final Node parent;
+        final int bank, address;
+        final Interrupt interrupt;
+        long calls, exclusiveCycles;
+        Node[] children = new Node[0];
+        int childCount;
+
+        Node(Node parent, int bank, int address, Interrupt interrupt) {
+            this.parent = parent;
+            this.bank = bank;
+            this.address = address;
+            this.interrupt = interrupt;
+        }
+
+        // Gets the child for the given routine, creating it the first time.
+        Node child(int bank, int address, Interrupt interrupt) {
+            for (int i = 0; i < childCount; ++i) {
+                final Node c = children[i];
+                if (c.address == address && c.bank == bank && c.interrupt == interrupt)
+                    return c;
+            }
+            if (childCount == children.length)
+                children = Arrays.copyOf(children, Math.max(4, 2 * childCount));
+            return children[childCount++] = new Node(this, bank, address, interrupt);
+        }
+
+        long inclusiveCycles() {
+            long c = exclusiveCycles;
+            for (int i = 0; i < childCount; ++i)
+                c += children[i].inclusiveCycles();
+            return c;
+        }
+
+        boolean isRoutine(int bank, int address) {
+            return parent != null && this.bank == bank && this.address == address;
+        }
+
+        // Tells whether an ancestor of this node is the same routine.
+        boolean isRecursive() {
+            for (Node n = parent; n != null; n = n.parent) {
+                if (n.isRoutine(bank, address))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Creates a profiler of a cpu running the given cartridge, naming the
+     * routines with the given symbols.
+     * @param cartridge : the cartridge, telling the rom bank of the routines.
+     * @param symbols : the names of the routines.
+     * @throws NullPointerException if the cartridge or the symbols are null.
+     */
+    public CallGraphProfiler(Cartridge cartridge, SymbolTable symbols) {
+        this.cartridge = Objects.requireNonNull(cartridge);
+        this.symbols = Objects.requireNonNull(symbols);
+        stack[0] = root;
+    }
+
+    /**
+     * Creates a profiler of a cpu running the given cartridge, naming the
+     * routines by their location.
+     * @param cartridge : the cartridge, telling the rom bank of the routines.
+     * @throws NullPointerException if the cartridge is null.
+     */
+    public CallGraphProfiler(Cartridge cartridge) {
+        this(cartridge, SymbolTable.EMPTY);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cpu.CpuObserver#instructionExecuted(int, ch.epfl.gameboj.component.cpu.Opcode, int)
+     */
+    @Override
+    public void instructionExecuted(int pc, Opcode opcode, int cycles) {
+        stack[depth].exclusiveCycles += cycles;
+        this.cycles += cycles;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cpu.CpuObserver#called(int, int, int)
+     */
+    @Override
+    public void called(int pc, int target, int returnAddress) {
+        enter(cartridge.romBank(target), target, null, returnAddress);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cpu.CpuObserver#interrupted(ch.epfl.gameboj.component.cpu.Cpu.Interrupt, int, int, int)
+     */
+    @Override
+    public void interrupted(Interrupt interrupt, int pc, int handler, int cycles) {
+        enter(cartridge.romBank(handler), handler, interrupt, pc);
+        stack[depth].exclusiveCycles += cycles;
+        this.cycles += cycles;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cpu.CpuObserver#returned(int, int)
+     */
+    @Override
+    public void returned(int pc, int target) {
+        for (int d = depth; d > 0; --d) {
+            if (returnAddresses[d] == target) {
+                depth = d - 1;
+                return;
+            }
+        }
+    }
+
+    private void enter(int bank, int address, Interrupt interrupt, int returnAddress) {
+        if (depth == MAX_DEPTH - 1)
+            depth = 0;
+        final Node node = stack[depth].child(bank, address, interrupt);
+        ++node.calls;
+        stack[++depth] = node;
+        returnAddresses[depth] = returnAddress;
+    }
+
+    /**
+     * Gets the number of cycles spent executing instructions and entering
+     * interrupts, which excludes the cycles spent halted.
+     * @return the number of cycles.
+     */
+    public long cycles() {
+        return cycles;
+    }
+
+    /**
+     * Gets the current depth of the shadow call stack.
+     * @return the number of routines being run.
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Gets the number of times the given routine was entered.
+     * @param bank : the rom bank of the routine, or -1 if it is not in the rom.
+     * @param address : the address of the routine.
+     * @return the number of calls of the routine.
+     */
+    public long calls(int bank, int address) {
+        return sum(root, bank, address, false, false);
+    }
+
+    /**
+     * Gets the number of cycles spent in the given routine, excluding its
+     * callees.
+     * @param bank : the rom bank of the routine, or -1 if it is not in the rom.
+     * @param address : the address of the routine.
+     * @return the exclusive cycles of the routine.
+     */
+    public long exclusiveCycles(int bank, int address) {
+        return sum(root, bank, address, true, false);
+    }
+
+    /**
+     * Gets the number of cycles spent in the given routine, including its
+     * callees. The cycles of a recursive call are counted once.
+     * @param bank : the rom bank of the routine, or -1 if it is not in the rom.
+     * @param address : the address of the routine.
+     * @return the inclusive cycles of the routine.
+     */
+    public long inclusiveCycles(int bank, int address) {
+        return sum(root, bank, address, true, true);
+    }
+
+    // Sums the calls or the cycles of the nodes of the given routine below the given node.
+    private static long sum(Node node, int bank, int address, boolean cycles, boolean inclusive) {
+        if (node.isRoutine(bank, address)) {
+            if (!cycles)
+                return node.calls + sumChildren(node, bank, address, cycles, inclusive);
+            if (inclusive)
+                return node.isRecursive() ? 0 : node.inclusiveCycles();
+            return node.exclusiveCycles + sumChildren(node, bank, address, cycles, inclusive);
+        }
+        return sumChildren(node, bank, address, cycles, inclusive);
+    }
+
+    private static long sumChildren(Node node, int bank, int address, boolean cycles, boolean inclusive) {
+        long s = 0;
+        for (int i = 0; i < node.childCount; ++i)
+            s += sum(node.children[i], bank, address, cycles, inclusive);
+        return s;
+    }
+
+    /**
+     * Forgets the call tree. The shadow stack is kept, so that the routines
+     * being run are still left properly.
+     */
+    public void reset() {
+        final Node[] path = new Node[depth + 1];
+        path[0] = root = new Node(null, -1, -1, null);
+        for (int d = 1; d <= depth; ++d)
+            path[d] = path[d - 1].child(stack[d].bank, stack[d].address, stack[d].interrupt);
+        System.arraycopy(path, 0, stack, 0, depth + 1);
+        cycles = 0;
+    }
+
+    /**
+     * Writes the call tree, indented, with the inclusive and exclusive cycles
+     * and the calls of each node. The nodes in which less than the given
+     * percentage of the cycles were spent are omitted.
+     * @param out : where to write the tree.
+     * @param minPercent : the minimum percentage of the cycles of a node written.
+     * @throws IOException if the tree cannot be written.
+     * @throws IllegalArgumentException if the percentage is negative.
+     */
+    public void writeCallTree(Appendable out, double minPercent) throws IOException {
+        Preconditions.checkArgument(minPercent >= 0);
+        out.append(String.format(Locale.ROOT, "%12s %7s %12s %10s  %s%n",
+                "inclusive", "", "exclusive", "calls", "routine"));
+        writeNode(out, root, 0, minPercent * cycles / 100);
+    }
+
+    private void writeNode(Appendable out, Node node, int indent, double minCycles) throws IOException {
+        final long inclusive = node.inclusiveCycles();
+        out.append(String.format(Locale.ROOT, "%12d %6.2f%% %12d %10d  %s%s%n",
+                inclusive, cycles == 0 ? 0 : 100.0 * inclusive / cycles,
+                node.exclusiveCycles, node.calls, "  ".repeat(indent), name(node)));
+        for (Node child : sortedChildren(node)) {
+            if (child.inclusiveCycles() >= minCycles && child.inclusiveCycles() > 0)
+                writeNode(out, child, indent + 1, minCycles);
+        }
+    }
+
+    private static Node[] sortedChildren(Node node) {
+        final Node[] children = Arrays.copyOf(node.children, node.childCount);
+        Arrays.sort(children, Comparator.comparingLong(Node::inclusiveCycles).reversed());
+        return children;
+    }
+
+    /**
+     * Writes the exclusive cycles of each node of the call tree in the
+     * collapsed stack format, each line listing the routines from the top of
+     * the program, like "top;VBLANK@00:0040;00:2A1B 1234".
+     * @param out : where to write the profile.
+     * @throws IOException if the profile cannot be written.
+     */
+    public void writeCollapsed(Appendable out) throws IOException {
+        writeCollapsed(out, root, new StringBuilder());
+    }
+
+    private void writeCollapsed(Appendable out, Node node, StringBuilder path) throws IOException {
+        final int length = path.length();
+        if (length > 0)
+            path.append(';');
+        path.append(name(node));
+        if (node.exclusiveCycles > 0)
+            out.append(path).append(' ').append(Long.toString(node.exclusiveCycles)).append('\n');
+        for (Node child : sortedChildren(node))
+            writeCollapsed(out, child, path);
+        path.setLength(length);
+    }
+
+    // Gets the name of the routine of a node: its symbol, or its location.
+    private String name(Node node) {
+        if (node.parent == null)
+            return TOP;
+        final String symbol = symbols.name(node.bank, node.address);
+        final String name = symbol != null ? symbol : CpuProfiler.location(node.bank, node.address);
+        return node.interrupt != null && symbol == null ? node.interrupt + "@" + name : name;
+    }
+}
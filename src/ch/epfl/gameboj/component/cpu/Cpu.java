@@ -26,6 +26,8 @@ import static ch.epfl.gameboj.component.cpu.Alu.unpackFlags;
 import static ch.epfl.gameboj.component.cpu.Alu.unpackValue;
 import static ch.epfl.gameboj.component.cpu.Alu.xor;
 
+import java.nio.ByteBuffer;
+
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Register;
@@ -34,9 +36,12 @@ import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.cpu.Alu.Flag;
 import ch.epfl.gameboj.component.cpu.Alu.RotDir;
 import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.jfr.HaltEvent;
+import ch.epfl.gameboj.jfr.InterruptEvent;
 
 /**
  * The computing unit of the Gameboy.
@@ -44,7 +49,7 @@ import ch.epfl.gameboj.component.memory.Ram;
  * @author Adrien Laydu, Michael Tasev
  *
  */
-public final class Cpu implements Component, Clocked {
+public final class Cpu implements Component, Clocked, Stateful {
     /**
      * The next cycle during which the CPU will execute the next instruction.
      */
@@ -64,8 +69,20 @@ public final class Cpu implements Component, Clocked {
     private int IF = 0;
 
     private boolean IME;
+
+    // The cycle being run, and the events of the interrupts requested and of the HALT.
+    private long currentCycle;
+    private final InterruptEvent[] interruptEvents = new InterruptEvent[Interrupt.values().length];
+    private HaltEvent haltEvent;
+
+    // The observer of the instructions, or null.
+    private CpuObserver observer;
     
     private final static int PREFIX = 0xCB; 
+    private final static Interrupt[] INTERRUPTS = Interrupt.values();
+    // The registers, values() cloning its array at each call.
+    private final static Reg[] REGS = Reg.values();
+    private final static Reg16[] REGS16 = Reg16.values();
 
     private final Ram highRam = new Ram(AddressMap.HIGH_RAM_SIZE);
 
@@ -109,7 +126,12 @@ public final class Cpu implements Component, Clocked {
      * @see ch.epfl.gameboj.component.Clocked#cycle(long)
      */
     public void cycle(long cycle) {
+        currentCycle = cycle;
         if (nextNonIdleCycle == Long.MAX_VALUE && interruptionWaiting()) {
+            if (haltEvent != null) {
+                haltEvent.finish(cycle);
+                haltEvent = null;
+            }
             nextNonIdleCycle = cycle;
             reallyCycle(nextNonIdleCycle);
         }
@@ -119,6 +141,17 @@ public final class Cpu implements Component, Clocked {
         
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Clocked#startAt(long)
+     */
+    @Override
+    public void startAt(long cycle) {
+        if (nextNonIdleCycle != Long.MAX_VALUE)
+            nextNonIdleCycle = cycle;
+    }
+
     /**
      * Runs for one cycle.
      * 
@@ -130,10 +163,18 @@ public final class Cpu implements Component, Clocked {
             nextNonIdleCycle += 5;
             IME = false;
             final int index = getInterruption();
-            bus.write(AddressMap.REG_IF,
-                    set(bus.read(AddressMap.REG_IF), index, false));
+            if (interruptEvents[index] != null) {
+                interruptEvents[index].finish(cycle);
+                interruptEvents[index] = null;
+            }
+            bus.writeUnchecked(AddressMap.REG_IF,
+                    set(bus.readUnchecked(AddressMap.REG_IF), index, false));
+            final int pc = PC;
             push16(PC);
             PC = AddressMap.INTERRUPTS[index];
+            if (observer != null) {
+                observer.interrupted(INTERRUPTS[index], pc, PC, 5);
+            }
 
         } else {
             Opcode opcode;
@@ -146,10 +187,119 @@ public final class Cpu implements Component, Clocked {
             } else {
                 opcode = DIRECT_OPCODE_TABLE[opcodeEncoding];
             }
-            dispatch(opcode);
+            if (observer == null) {
+                dispatch(opcode);
+            } else {
+                final int pc = PC;
+                final long start = nextNonIdleCycle;
+                dispatch(opcode);
+                final int cycles = nextNonIdleCycle == Long.MAX_VALUE
+                        ? opcode.cycles
+                        : (int) (nextNonIdleCycle - start);
+                observer.instructionExecuted(pc, opcode, cycles);
+                observeCallOrReturn(pc, opcode, cycles);
+            }
         }
     }
 
+    /**
+     * Tells the observer about the call or the return done by the instruction
+     * just executed, if any. A conditional one is done only if it took its
+     * additional cycles.
+     * 
+     * @param pc
+     *            : the address of the instruction.
+     * @param opcode
+     *            : the opcode of the instruction.
+     * @param cycles
+     *            : the number of cycles the instruction took.
+     */
+    private void observeCallOrReturn(int pc, Opcode opcode, int cycles) {
+        // A conditional call or return whose condition did not hold takes no additional cycles.
+        if ((opcode.family == Opcode.Family.CALL_CC_N16 || opcode.family == Opcode.Family.RET_CC)
+                && cycles == opcode.cycles)
+            return;
+        switch (opcode.family) {
+        case CALL_CC_N16:
+        case CALL_N16:
+        case RST_U3:
+            observer.called(pc, PC, clip(16, pc + opcode.totalBytes));
+            break;
+        case RET_CC:
+        case RET:
+        case RETI:
+            observer.returned(pc, PC);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Sets the observer of the instructions executed.
+     * 
+     * @param observer
+     *            : the observer, or null to stop observing.
+     */
+    public void setObserver(CpuObserver observer) {
+        this.observer = observer;
+    }
+
+    /**
+     * Gets the observer of the instructions executed.
+     * 
+     * @return the observer, or null if there is none.
+     */
+    public CpuObserver observer() {
+        return observer;
+    }
+
+    /**
+     * Gets the Program Counter, the address of the next instruction.
+     * 
+     * @return the 16-bit Program Counter.
+     */
+    public int pc() {
+        return PC;
+    }
+
+    /**
+     * Gets the cycle being run, for the trace recorder.
+     * 
+     * @return the cycle given to the last call to cycle.
+     */
+    long currentCycle() {
+        return currentCycle;
+    }
+
+    /**
+     * Writes the registers at the given index of the buffer, for the trace
+     * recorder: A, F, B, C, D, E, H, L, then SP on two bytes, IE, IF, and 1
+     * if the interrupts are enabled or 0.
+     * 
+     * @param buffer
+     *            : the buffer.
+     * @param index
+     *            : the index of the first byte written.
+     */
+    void traceRegisters(ByteBuffer buffer, int index) {
+        buffer.position(index);
+        bits8registerFile.saveState(buffer);
+        buffer.putShort((short) SP).put((byte) IE).put((byte) IF)
+                .put((byte) (IME ? 1 : 0));
+    }
+
+    /**
+     * Reads the byte at the given address of the bus, for the trace recorder.
+     * 
+     * @param address
+     *            : the address.
+     * @return the byte read.
+     */
+    int peek(int address) {
+        return bus.read(address);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -168,7 +318,8 @@ public final class Cpu implements Component, Clocked {
      */
     @Override
     public int read(int address) {
-        checkBits16(address);
+        if (STRICT)
+            checkBits16(address);
         if (address == AddressMap.REG_IE)
             return IE;
         else if (address == AddressMap.REG_IF)
@@ -187,13 +338,21 @@ public final class Cpu implements Component, Clocked {
      */
     @Override
     public void write(int address, int data) {
-        checkBits16(address);
-        checkBits8(data);
+        if (STRICT) {
+            checkBits16(address);
+            checkBits8(data);
+        }
         if (address == AddressMap.REG_IE) {
             IE = data;
         }
         else if (address == AddressMap.REG_IF) {
             IF = data;
+            // The interrupts cancelled are not handled.
+            for (int i = 0; i < interruptEvents.length; ++i) {
+                if (!Bits.test(IF, i)) {
+                    interruptEvents[i] = null;
+                }
+            }
         }
         else if (address >= AddressMap.HIGH_RAM_START
                 && address < AddressMap.HIGH_RAM_END) {
@@ -208,9 +367,54 @@ public final class Cpu implements Component, Clocked {
      *            : the interruption to raise.
      */
     public void requestInterrupt(Interrupt i) {
+        if (!Bits.test(IF, i.index())) {
+            interruptEvents[i.index()] = InterruptEvent.start(i, currentCycle);
+        }
         IF = Bits.set(IF, i.index(), true);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return bits8registerFile.stateSize() + 2 * Short.BYTES + 3
+                + Long.BYTES + highRam.stateSize();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        bits8registerFile.saveState(buffer);
+        buffer.putShort((short) SP).putShort((short) PC);
+        buffer.put((byte) IE).put((byte) IF).put((byte) (IME ? 1 : 0));
+        buffer.putLong(nextNonIdleCycle);
+        highRam.saveState(buffer);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        bits8registerFile.loadState(buffer);
+        SP = Short.toUnsignedInt(buffer.getShort());
+        PC = Short.toUnsignedInt(buffer.getShort());
+        IE = Byte.toUnsignedInt(buffer.get());
+        IF = Byte.toUnsignedInt(buffer.get());
+        IME = buffer.get() != 0;
+        nextNonIdleCycle = buffer.getLong();
+        highRam.loadState(buffer);
+    }
+
     /**
      * Creates an array to test all registers' value
      * 
@@ -817,6 +1021,7 @@ public final class Cpu implements Component, Clocked {
 
         // Misc control
         case HALT: {
+            haltEvent = HaltEvent.start(currentCycle);
             nextNonIdleCycle = Long.MAX_VALUE;
         }
             break;
@@ -837,7 +1042,7 @@ public final class Cpu implements Component, Clocked {
      */
     private void increment(Opcode o, boolean b) {
         if (b) {
-            PC += o.totalBytes;
+            PC = clip(16, PC + o.totalBytes);
         }
         nextNonIdleCycle += o.cycles;
     }
@@ -850,7 +1055,7 @@ public final class Cpu implements Component, Clocked {
      * @return the unsigned 8-bit value stored at the address.
      */
     private int read8(int address) {
-        return bus.read(address);
+        return bus.readUnchecked(address);
     }
 
     /**
@@ -859,7 +1064,7 @@ public final class Cpu implements Component, Clocked {
      * @return the unsigned 8-bit value stored at the HL address.
      */
     private int read8AtHl() {
-        return bus.read(reg16(Reg16.HL));
+        return bus.readUnchecked(reg16(Reg16.HL));
     }
 
     /**
@@ -870,28 +1075,28 @@ public final class Cpu implements Component, Clocked {
      *         Counter.
      */
     private int read8AfterOpcode() {
-        return bus.read(PC + 1);
+        return bus.readUnchecked(clip(16, PC + 1));
     }
 
     private int read16(int address) {
-        return make16(bus.read(address + 1), bus.read(address));
+        return make16(bus.readUnchecked(clip(16, address + 1)), bus.readUnchecked(address));
     }
 
     private int read16AfterOpcode() {
-        return read16(PC + 1);
+        return read16(clip(16, PC + 1));
     }
 
     private void write8(int address, int v) {
-        bus.write(address, v);
+        bus.writeUnchecked(address, v);
     }
 
     private void write16(int address, int v) {
-        bus.write(address, Bits.clip(8, v));
-        bus.write(address + 1, Bits.extract(v, 8, 8));
+        bus.writeUnchecked(address, Bits.clip(8, v));
+        bus.writeUnchecked(clip(16, address + 1), Bits.extract(v, 8, 8));
     }
 
     private void write8AtHl(int v) {
-        bus.write(reg16(Reg16.HL), v);
+        bus.writeUnchecked(reg16(Reg16.HL), v);
     }
 
     private void push16(int v) {
@@ -921,7 +1126,7 @@ public final class Cpu implements Component, Clocked {
             return Reg.A;
         if (registerCode == 0b110)
             return null;
-        return Reg.values()[registerCode + 2];
+        return REGS[registerCode + 2];
     }
 
     /**
@@ -936,7 +1141,7 @@ public final class Cpu implements Component, Clocked {
         final int registerCode = extract(opcode.encoding, 4, 2);
         if (registerCode == 0b11)
             return Reg16.AF;
-        return Reg16.values()[registerCode + 1];
+        return REGS16[registerCode + 1];
     }
 
     /**
@@ -1016,8 +1221,8 @@ public final class Cpu implements Component, Clocked {
      *         components put next to another.
      */
     private int reg16(Reg16 r) {
-        final int strongBits = getReg(Reg.values()[2 * r.index()]);
-        final int weakBits = getReg(Reg.values()[2 * r.index() + 1]);
+        final int strongBits = getReg(REGS[2 * r.index()]);
+        final int weakBits = getReg(REGS[2 * r.index() + 1]);
         return make16(strongBits, weakBits);
     }
 
@@ -1030,16 +1235,18 @@ public final class Cpu implements Component, Clocked {
      *            : a 16-bit value to be stored in the register pair.
      */
     private void setReg16(Reg16 r, int newV) {
-        checkBits16(newV);
+        if (STRICT)
+            checkBits16(newV);
         final int strongBits = extract(newV, 8, 8);
         final int weakBits = (r == Reg16.AF ? extract(newV, 4, 4) << 4
                 : clip(8, newV));
-        setReg(Reg.values()[2 * r.index()], strongBits);
-        setReg(Reg.values()[2 * r.index() + 1], weakBits);
+        setReg(REGS[2 * r.index()], strongBits);
+        setReg(REGS[2 * r.index() + 1], weakBits);
     }
 
     private void setReg16SP(Reg16 r, int newV) {
-        checkBits16(newV);
+        if (STRICT)
+            checkBits16(newV);
         if (r == Reg16.AF) {
             SP = newV;
         } else {
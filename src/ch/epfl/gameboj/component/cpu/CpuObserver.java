@@ -0,0 +1,89 @@
+package ch.epfl.gameboj.component.cpu;
+
+import java.util.Objects;
+
+/**
+ * An observer of the instructions executed by a cpu, and of its calls, returns
+ * and interrupts, such as a profiler. The cpu calls it only when one is set
+ * (see Cpu.setObserver), so that observing costs nothing otherwise.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public interface CpuObserver {
+
+    /**
+     * Called after the cpu executed an instruction.
+     * @param pc : the address of the instruction.
+     * @param opcode : the opcode of the instruction.
+     * @param cycles : the number of cycles the instruction took, including
+     * those of a branch taken.
+     */
+    void instructionExecuted(int pc, Opcode opcode, int cycles);
+
+    /**
+     * Called after the cpu executed a call (CALL or RST), right after
+     * instructionExecuted. Does nothing by default.
+     * @param pc : the address of the call.
+     * @param target : the address called.
+     * @param returnAddress : the address pushed on the stack, to which the
+     * routine called should return.
+     */
+    default void called(int pc, int target, int returnAddress) {}
+
+    /**
+     * Called after the cpu executed a return (RET or RETI), right after
+     * instructionExecuted. Does nothing by default.
+     * @param pc : the address of the return.
+     * @param target : the address returned to.
+     */
+    default void returned(int pc, int target) {}
+
+    /**
+     * Called after the cpu entered the handler of an interrupt. Does nothing
+     * by default.
+     * @param interrupt : the interrupt handled.
+     * @param pc : the address interrupted, to which the handler should return.
+     * @param handler : the address of the handler.
+     * @param cycles : the number of cycles spent entering the handler.
+     */
+    default void interrupted(Cpu.Interrupt interrupt, int pc, int handler, int cycles) {}
+
+    /**
+     * Gets an observer telling everything to both given observers, the first
+     * one first, so that a cpu can be observed by both.
+     * @param first : the first observer.
+     * @param second : the second observer.
+     * @return the observer of both.
+     * @throws NullPointerException if one of the observers is null.
+     */
+    static CpuObserver both(CpuObserver first, CpuObserver second) {
+        Objects.requireNonNull(first);
+        Objects.requireNonNull(second);
+        return new CpuObserver() {
+            @Override
+            public void instructionExecuted(int pc, Opcode opcode, int cycles) {
+                first.instructionExecuted(pc, opcode, cycles);
+                second.instructionExecuted(pc, opcode, cycles);
+            }
+
+            @Override
+            public void called(int pc, int target, int returnAddress) {
+                first.called(pc, target, returnAddress);
+                second.called(pc, target, returnAddress);
+            }
+
+            @Override
+            public void returned(int pc, int target) {
+                first.returned(pc, target);
+                second.returned(pc, target);
+            }
+
+            @Override
+            public void interrupted(Cpu.Interrupt interrupt, int pc, int handler, int cycles) {
+                first.interrupted(interrupt, pc, handler, cycles);
+                second.interrupted(interrupt, pc, handler, cycles);
+            }
+        };
+    }
+}
@@ -0,0 +1,367 @@
+package ch.epfl.gameboj.component.cpu;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+/**
+ * A profiler of the cpu, counting the executions and the cycles of each
+ * opcode and of each instruction, identified by its rom bank and its address.
+ * It tells which routines of a game dominate, and which opcodes are worth
+ * optimising. It observes the cpu once set as its observer (see
+ * Cpu.setObserver).
+ *
+ * In the exact mode, every instruction is counted. In the sampling mode, only
+ * one instruction every SAMPLE_INTERVAL instructions (on average) is, and
+ * weighted by the number of instructions since the previous sample, which
+ * costs less but gives estimates. The interval between two samples varies
+ * randomly, so that the samples do not follow the loops of the game. The
+ * total numbers of instructions and cycles are always exact.
+ *
+ * The profile can be written as a report of the hot spots, or in the
+ * collapsed stack format read by flame graph tools, in which each line is a
+ * list of frames separated by semicolons followed by a number of cycles.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public final class CpuProfiler implements CpuObserver {
+
+    /**
+     * The ways of counting the instructions.
+     */
+    public enum Mode {
+        EXACT, SAMPLING
+    }
+
+    /**
+     * The mean number of instructions between two samples in the sampling
+     * mode, a power of two.
+     */
+    public static final int SAMPLE_INTERVAL = 64;
+
+    private static final Opcode[] OPCODES = Opcode.values();
+    private static final int BANK_SIZE = 0x4000;
+    private static final int ROM_END = 0x8000;
+
+    private final Cartridge cartridge;
+    private final Mode mode;
+
+    private long instructions, cycles;
+    private final long[] opcodeExecutions = new long[OPCODES.length];
+    private final long[] opcodeCycles = new long[OPCODES.length];
+    // The counts of the rom banks, at index 2 * bank for those mapped at 0
+    // and 2 * bank + 1 for those mapped at 0x4000, and of the addresses after the rom.
+    private Counts[] banks = new Counts[0];
+    private final Counts ram = new Counts(0x10000 - ROM_END);
+
+    private int random = 0x2545F491;
+    private int untilSample, weight;
+
+    // The counts of the addresses of a part of the memory.
+    private static final class Counts {
+        final long[] executions, cycles;
+        // The ordinal of the opcode last executed at each address.
+        final short[] opcodes;
+
+        Counts(int size) {
+            executions = new long[size];
+            cycles = new long[size];
+            opcodes = new short[size];
+        }
+    }
+
+    /**
+     * A hot spot: an instruction, and its counts.
+     */
+    public static final class HotSpot {
+        private final int bank, address;
+        private final Opcode opcode;
+        private final long executions, cycles;
+
+        private HotSpot(int bank, int address, Opcode opcode, long executions, long cycles) {
+            this.bank = bank;
+            this.address = address;
+            this.opcode = opcode;
+            this.executions = executions;
+            this.cycles = cycles;
+        }
+
+        /**
+         * Gets the rom bank of the instruction.
+         * @return the rom bank, or -1 if the instruction is not in the rom.
+         */
+        public int bank() {
+            return bank;
+        }
+
+        /**
+         * Gets the address of the instruction.
+         * @return the 16-bit address of the instruction.
+         */
+        public int address() {
+            return address;
+        }
+
+        /**
+         * Gets the opcode last executed at the address.
+         * @return the opcode.
+         */
+        public Opcode opcode() {
+            return opcode;
+        }
+
+        /**
+         * Gets the number of executions of the instruction.
+         * @return the number of executions.
+         */
+        public long executions() {
+            return executions;
+        }
+
+        /**
+         * Gets the number of cycles spent in the instruction.
+         * @return the number of cycles.
+         */
+        public long cycles() {
+            return cycles;
+        }
+
+        /**
+         * Gets the location of the instruction, as bank:address for the rom,
+         * like "03:4A2F", and as --:address for the other addresses.
+         */
+        @Override
+        public String toString() {
+            return location(bank, address);
+        }
+    }
+
+    /**
+     * Creates a profiler of a cpu running the given cartridge.
+     * @param cartridge : the cartridge, telling the rom bank of the instructions.
+     * @param mode : the way of counting the instructions.
+     * @throws NullPointerException if the cartridge or the mode is null.
+     */
+    public CpuProfiler(Cartridge cartridge, Mode mode) {
+        this.cartridge = Objects.requireNonNull(cartridge);
+        this.mode = Objects.requireNonNull(mode);
+        untilSample = weight = mode == Mode.EXACT ? 1 : nextSampleDistance();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cpu.CpuObserver#instructionExecuted(int, ch.epfl.gameboj.component.cpu.Opcode, int)
+     */
+    @Override
+    public void instructionExecuted(int pc, Opcode opcode, int cycles) {
+        ++instructions;
+        this.cycles += cycles;
+        if (--untilSample > 0)
+            return;
+
+        final long w = weight;
+        if (mode == Mode.SAMPLING)
+            untilSample = weight = nextSampleDistance();
+        else
+            untilSample = 1;
+
+        final int o = opcode.ordinal();
+        opcodeExecutions[o] += w;
+        opcodeCycles[o] += w * cycles;
+        final Counts counts;
+        final int index;
+        if (pc < ROM_END) {
+            counts = bank(2 * cartridge.romBank(pc) + (pc >>> 14));
+            index = pc & (BANK_SIZE - 1);
+        } else {
+            counts = ram;
+            index = pc - ROM_END;
+        }
+        counts.executions[index] += w;
+        counts.cycles[index] += w * cycles;
+        counts.opcodes[index] = (short) o;
+    }
+
+    // Gets the counts at the given index of banks, creating them the first time.
+    private Counts bank(int index) {
+        if (index >= banks.length)
+            banks = Arrays.copyOf(banks, index + 1);
+        if (banks[index] == null)
+            banks[index] = new Counts(BANK_SIZE);
+        return banks[index];
+    }
+
+    // Gets the number of instructions until the next sample, between half and
+    // one and a half SAMPLE_INTERVAL.
+    private int nextSampleDistance() {
+        random ^= random << 13;
+        random ^= random >>> 17;
+        random ^= random << 5;
+        return SAMPLE_INTERVAL / 2 + (random & (SAMPLE_INTERVAL - 1));
+    }
+
+    /**
+     * Gets the way of counting the instructions.
+     * @return the mode of the profiler.
+     */
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Gets the number of instructions executed.
+     * @return the exact number of instructions.
+     */
+    public long instructions() {
+        return instructions;
+    }
+
+    /**
+     * Gets the number of cycles spent executing instructions, which excludes
+     * the cycles spent halted and entering interrupts.
+     * @return the exact number of cycles.
+     */
+    public long cycles() {
+        return cycles;
+    }
+
+    /**
+     * Gets the number of executions of the given opcode.
+     * @param opcode : the opcode.
+     * @return the number of executions, estimated in the sampling mode.
+     */
+    public long executions(Opcode opcode) {
+        return opcodeExecutions[opcode.ordinal()];
+    }
+
+    /**
+     * Gets the number of cycles spent executing the given opcode.
+     * @param opcode : the opcode.
+     * @return the number of cycles, estimated in the sampling mode.
+     */
+    public long cycles(Opcode opcode) {
+        return opcodeCycles[opcode.ordinal()];
+    }
+
+    /**
+     * Gets the instructions in which the most cycles were spent.
+     * @param n : the maximum number of instructions.
+     * @return the instructions, by decreasing number of cycles.
+     * @throws IllegalArgumentException if n is negative.
+     */
+    public List<HotSpot> hotSpots(int n) {
+        Preconditions.checkArgument(n >= 0);
+        final List<HotSpot> spots = new ArrayList<>();
+        for (int i = 0; i < banks.length; ++i) {
+            if (banks[i] != null)
+                addSpots(spots, banks[i], i / 2, (i % 2) * BANK_SIZE);
+        }
+        addSpots(spots, ram, -1, ROM_END);
+        spots.sort(Comparator.comparingLong(HotSpot::cycles).reversed());
+        return spots.subList(0, Math.min(n, spots.size()));
+    }
+
+    private static void addSpots(List<HotSpot> spots, Counts counts, int bank, int start) {
+        for (int i = 0; i < counts.executions.length; ++i) {
+            if (counts.executions[i] > 0)
+                spots.add(new HotSpot(bank, start + i, OPCODES[counts.opcodes[i]],
+                        counts.executions[i], counts.cycles[i]));
+        }
+    }
+
+    /**
+     * Forgets all the counts.
+     */
+    public void reset() {
+        instructions = cycles = 0;
+        Arrays.fill(opcodeExecutions, 0);
+        Arrays.fill(opcodeCycles, 0);
+        banks = new Counts[0];
+        Arrays.fill(ram.executions, 0);
+        Arrays.fill(ram.cycles, 0);
+    }
+
+    /**
+     * Writes a report of the n instructions and the n opcodes in which the
+     * most cycles were spent, with their numbers of executions and cycles.
+     * @param out : where to write the report.
+     * @param n : the number of instructions and opcodes reported.
+     * @throws IOException if the report cannot be written.
+     * @throws IllegalArgumentException if n is negative.
+     */
+    public void writeReport(Appendable out, int n) throws IOException {
+        out.append(String.format(Locale.ROOT, "%d instructions, %d cycles (%s)%n",
+                instructions, cycles, mode == Mode.EXACT ? "exact" : "sampled"));
+
+        out.append(String.format(Locale.ROOT, "%nhot spots%n"));
+        for (HotSpot spot : hotSpots(n)) {
+            out.append(String.format(Locale.ROOT, "  %s  %-12s %12d %12d %6.2f %%%n",
+                    spot, spot.opcode(), spot.executions(), spot.cycles(),
+                    percent(spot.cycles())));
+        }
+
+        out.append(String.format(Locale.ROOT, "%nopcodes%n"));
+        final Integer[] ordinals = new Integer[OPCODES.length];
+        for (int i = 0; i < ordinals.length; ++i)
+            ordinals[i] = i;
+        Arrays.sort(ordinals, Comparator.comparingLong((Integer o) -> opcodeCycles[o]).reversed());
+        for (int i = 0; i < Math.min(n, ordinals.length) && opcodeExecutions[ordinals[i]] > 0; ++i) {
+            final int o = ordinals[i];
+            out.append(String.format(Locale.ROOT, "  %-12s %12d %12d %6.2f %%%n",
+                    OPCODES[o], opcodeExecutions[o], opcodeCycles[o], percent(opcodeCycles[o])));
+        }
+    }
+
+    private double percent(long c) {
+        return cycles == 0 ? 0 : 100.0 * c / cycles;
+    }
+
+    /**
+     * Writes the cycles spent in each instruction in the collapsed stack
+     * format, each line having the frames memory region;location;opcode, for
+     * example "rom_03;03:4A2F;LD_A_HLR 1234".
+     * @param out : where to write the profile.
+     * @throws IOException if the profile cannot be written.
+     */
+    public void writeCollapsed(Appendable out) throws IOException {
+        for (HotSpot spot : hotSpots(Integer.MAX_VALUE)) {
+            final String region = spot.bank() >= 0
+                    ? String.format(Locale.ROOT, "rom_%02X", spot.bank())
+                    : region(spot.address());
+            out.append(region).append(';').append(spot.toString()).append(';')
+                    .append(spot.opcode().name()).append(' ')
+                    .append(Long.toString(spot.cycles())).append('\n');
+        }
+    }
+
+    // Gets the name of the region of memory of an address outside of the rom.
+    private static String region(int address) {
+        if (address < 0xA000)
+            return "video_ram";
+        if (address < 0xC000)
+            return "cartridge_ram";
+        if (address < 0xFE00)
+            return "work_ram";
+        return "high_ram";
+    }
+
+    /**
+     * Formats the location of an instruction, as bank:address for the rom,
+     * like "03:4A2F", and as --:address for the other addresses.
+     * @param bank : the rom bank, or -1 if the address is not in the rom.
+     * @param address : the address.
+     * @return the location.
+     */
+    static String location(int bank, int address) {
+        return bank >= 0 ? String.format(Locale.ROOT, "%02X:%04X", bank, address)
+                : String.format(Locale.ROOT, "--:%04X", address);
+    }
+}
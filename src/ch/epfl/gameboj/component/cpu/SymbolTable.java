@@ -0,0 +1,119 @@
+package ch.epfl.gameboj.component.cpu;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The names of the addresses of a game, read from a symbol file (.sym) as
+ * written by assemblers like RGBDS and read by debuggers like BGB. Each line
+ * of such a file gives a rom bank, an address and a name, like
+ * "03:4A2F UpdateSprites"; the comments start with a semicolon.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public final class SymbolTable {
+
+    /**
+     * The table without any name.
+     */
+    public static final SymbolTable EMPTY = new SymbolTable(Collections.emptyMap());
+
+    private static final Pattern SYMBOL = Pattern
+            .compile("\\s*([0-9A-Fa-f]{1,3}):([0-9A-Fa-f]{1,4})\\s+([^\\s;]+).*");
+
+    private final Map<Integer, String> names;
+    private final Map<String, Integer> locations = new HashMap<>();
+
+    private SymbolTable(Map<Integer, String> names) {
+        this.names = names;
+        for (Map.Entry<Integer, String> e : names.entrySet())
+            locations.merge(e.getValue(), e.getKey(), Math::min);
+    }
+
+    /**
+     * Reads the symbols of the given file.
+     * @param file : the symbol file.
+     * @return the table of the symbols of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    public static SymbolTable ofFile(File file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file.toPath(),
+                StandardCharsets.ISO_8859_1)) {
+            return ofReader(reader);
+        }
+    }
+
+    /**
+     * Reads symbols from the given reader, ignoring the lines which are not
+     * symbols. When a bank and an address have several names, the first one
+     * is kept.
+     * @param reader : the reader of the symbols.
+     * @return the table of the symbols read.
+     * @throws IOException if the symbols cannot be read.
+     */
+    public static SymbolTable ofReader(Reader reader) throws IOException {
+        final Map<Integer, String> names = new HashMap<>();
+        final BufferedReader lines = new BufferedReader(reader);
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            final Matcher m = SYMBOL.matcher(line);
+            if (m.matches()) {
+                names.putIfAbsent(key(Integer.parseInt(m.group(1), 16),
+                        Integer.parseInt(m.group(2), 16)), m.group(3));
+            }
+        }
+        return new SymbolTable(names);
+    }
+
+    private static int key(int bank, int address) {
+        return bank << 16 | address;
+    }
+
+    /**
+     * Gets the name of the given address of the given rom bank. The addresses
+     * outside of the rom are looked up in the bank 0.
+     * @param bank : the rom bank, or -1 if the address is not in the rom.
+     * @param address : the 16-bit address.
+     * @return the name of the address, or null if it has none.
+     */
+    public String name(int bank, int address) {
+        return names.get(key(Math.max(bank, 0), address));
+    }
+
+    /**
+     * Gets the rom bank of the given name.
+     * @param name : the name.
+     * @return the rom bank of the name, or -1 if no address has this name.
+     */
+    public int bank(String name) {
+        final Integer location = locations.get(name);
+        return location != null ? location >>> 16 : -1;
+    }
+
+    /**
+     * Gets the address of the given name.
+     * @param name : the name.
+     * @return the 16-bit address of the name, or -1 if no address has this name.
+     */
+    public int address(String name) {
+        final Integer location = locations.get(name);
+        return location != null ? location & 0xFFFF : -1;
+    }
+
+    /**
+     * Gets the number of symbols of the table.
+     * @return the number of symbols.
+     */
+    public int size() {
+        return names.size();
+    }
+}
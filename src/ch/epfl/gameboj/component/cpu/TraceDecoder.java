@@ -0,0 +1,275 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static ch.epfl.gameboj.component.cpu.TraceRecorder.BANK;
+import static ch.epfl.gameboj.component.cpu.TraceRecorder.BYTES;
+import static ch.epfl.gameboj.component.cpu.TraceRecorder.CYCLE;
+import static ch.epfl.gameboj.component.cpu.TraceRecorder.CYCLES;
+import static ch.epfl.gameboj.component.cpu.TraceRecorder.LENGTH;
+import static ch.epfl.gameboj.component.cpu.TraceRecorder.PC;
+import static ch.epfl.gameboj.component.cpu.TraceRecorder.REGISTERS;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
+
+/**
+ * The decoder of the traces dumped by TraceRecorder, and a main program
+ * printing them as text, one instruction per line.
+ *
+ * Usage: TraceDecoder trace [other-trace]
+ *
+ * With one trace, all its instructions are printed. With two traces, for
+ * example of two runs which should be identical, the first instruction at
+ * which they differ is printed, preceded by a few common ones. They are
+ * compared from the first cycle recorded by both.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public final class TraceDecoder {
+
+    // The number of common instructions printed before a difference.
+    private static final int CONTEXT = 8;
+
+    private static final Opcode[] DIRECT = new Opcode[0x100];
+    private static final Opcode[] PREFIXED = new Opcode[0x100];
+    static {
+        for (Opcode o : Opcode.values())
+            (o.kind == Opcode.Kind.DIRECT ? DIRECT : PREFIXED)[o.encoding] = o;
+    }
+
+    private TraceDecoder() {}
+
+    /**
+     * An instruction of a trace, or the entry of an interrupt handler.
+     */
+    public static final class Entry {
+        private final byte[] record;
+        private final ByteBuffer fields;
+
+        private Entry(byte[] record) {
+            this.record = record;
+            this.fields = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * Gets the cycle at which the instruction started.
+         * @return the cycle.
+         */
+        public long cycle() {
+            return fields.getLong(CYCLE);
+        }
+
+        /**
+         * Gets the rom bank of the instruction.
+         * @return the rom bank, or -1 if the instruction is not in the rom.
+         */
+        public int bank() {
+            return fields.getShort(BANK);
+        }
+
+        /**
+         * Gets the address of the instruction, or of the interrupt handler.
+         * @return the 16-bit address.
+         */
+        public int pc() {
+            return Short.toUnsignedInt(fields.getShort(PC));
+        }
+
+        /**
+         * Gets the interrupt whose handler was entered.
+         * @return the interrupt, or null if the entry is an instruction.
+         */
+        public Interrupt interrupt() {
+            return record[LENGTH] == 0 ? Interrupt.values()[record[BYTES]] : null;
+        }
+
+        /**
+         * Gets the bytes of the instruction, including the prefix.
+         * @return the bytes, none for the entry of an interrupt handler.
+         */
+        public int[] bytes() {
+            final int[] bytes = new int[record[LENGTH]];
+            for (int i = 0; i < bytes.length; ++i)
+                bytes[i] = Byte.toUnsignedInt(record[BYTES + i]);
+            return bytes;
+        }
+
+        /**
+         * Gets the opcode of the instruction.
+         * @return the opcode, or null for the entry of an interrupt handler.
+         */
+        public Opcode opcode() {
+            final int[] bytes = bytes();
+            if (bytes.length == 0)
+                return null;
+            return bytes[0] == 0xCB && bytes.length == 2 ? PREFIXED[bytes[1]] : DIRECT[bytes[0]];
+        }
+
+        /**
+         * Gets the registers after the instruction.
+         * @return the registers A, F, B, C, D, E, H, L, then SP, IE, IF, and
+         * 1 if the interrupts are enabled or 0.
+         */
+        public int[] registers() {
+            final int[] registers = new int[12];
+            for (int i = 0; i < 8; ++i)
+                registers[i] = Byte.toUnsignedInt(record[REGISTERS + i]);
+            registers[8] = Short.toUnsignedInt(fields.getShort(REGISTERS + 8));
+            for (int i = 9; i < 12; ++i)
+                registers[i] = Byte.toUnsignedInt(record[REGISTERS + i + 1]);
+            return registers;
+        }
+
+        /**
+         * Gets the number of cycles the instruction took.
+         * @return the number of cycles.
+         */
+        public int cycles() {
+            return record[CYCLES];
+        }
+
+        @Override
+        public boolean equals(Object that) {
+            return that instanceof Entry && Arrays.equals(record, ((Entry) that).record);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(record);
+        }
+
+        /**
+         * Formats the entry as one line of text.
+         */
+        @Override
+        public String toString() {
+            final StringBuilder b = new StringBuilder();
+            b.append(String.format(Locale.ROOT, "%12d %s  ", cycle(), CpuProfiler.location(bank(), pc())));
+            final StringBuilder hex = new StringBuilder();
+            for (int x : bytes())
+                hex.append(String.format(Locale.ROOT, "%02X ", x));
+            final Interrupt interrupt = interrupt();
+            b.append(String.format(Locale.ROOT, "%-9s %-12s", hex,
+                    interrupt != null ? "<" + interrupt + ">" : opcode()));
+            final int[] r = registers();
+            b.append(String.format(Locale.ROOT,
+                    " A=%02X F=%02X B=%02X C=%02X D=%02X E=%02X H=%02X L=%02X SP=%04X IE=%02X IF=%02X IME=%d +%d",
+                    r[0], r[1], r[2], r[3], r[4], r[5], r[6], r[7], r[8], r[9], r[10], r[11], cycles()));
+            return b.toString();
+        }
+    }
+
+    /**
+     * Reads the given dump of a trace.
+     * @param file : the dump.
+     * @return the instructions of the trace, from the oldest to the newest.
+     * @throws IOException if the file cannot be read, or is not a dump of a
+     * trace in the current format.
+     */
+    public static List<Entry> read(File file) throws IOException {
+        return decode(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    /**
+     * Decodes the given dump of a trace.
+     * @param dump : the dump, from its position.
+     * @return the instructions of the trace, from the oldest to the newest.
+     * @throws IOException if the dump is not a trace in the current format.
+     */
+    public static List<Entry> decode(ByteBuffer dump) throws IOException {
+        final ByteBuffer b = dump.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (b.remaining() < TraceRecorder.HEADER_SIZE || b.getInt() != TraceRecorder.MAGIC)
+            throw new IOException("not a trace");
+        final int version = b.getShort(), size = b.getShort();
+        if (version != TraceRecorder.VERSION || size != TraceRecorder.RECORD_SIZE)
+            throw new IOException("unsupported version of trace: " + version);
+        b.getLong();
+        final int count = b.getInt();
+        if (count < 0 || b.remaining() < (long) count * size)
+            throw new IOException("truncated trace");
+
+        final List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            final byte[] record = new byte[size];
+            b.get(record);
+            entries.add(new Entry(record));
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Gets the end of a trace, from its first instruction started at or after
+     * the given cycle. Two traces dumped at the same cycle of two runs start
+     * at different instructions when they diverged: they can be compared from
+     * the first cycle of the most recent one.
+     * @param trace : the trace.
+     * @param cycle : the cycle.
+     * @return the instructions of the trace started at or after the cycle.
+     */
+    public static List<Entry> from(List<Entry> trace, long cycle) {
+        int i = 0;
+        while (i < trace.size() && trace.get(i).cycle() < cycle)
+            ++i;
+        return trace.subList(i, trace.size());
+    }
+
+    /**
+     * Gets the index of the first instruction at which two traces differ,
+     * comparing them from their first instructions.
+     * @param a : a trace.
+     * @param b : another trace.
+     * @return the index of the first difference, or -1 if the traces are
+     * equal, or one is the beginning of the other.
+     */
+    public static int firstDifference(List<Entry> a, List<Entry> b) {
+        final int n = Math.min(a.size(), b.size());
+        for (int i = 0; i < n; ++i) {
+            if (!a.get(i).equals(b.get(i)))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Prints a trace, or the first difference between two traces.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: TraceDecoder trace [other-trace]");
+            System.exit(2);
+        }
+        List<Entry> trace = read(new File(args[0]));
+        if (args.length == 1) {
+            for (Entry e : trace)
+                System.out.println(e);
+            return;
+        }
+
+        List<Entry> other = read(new File(args[1]));
+        if (!trace.isEmpty() && !other.isEmpty()) {
+            final long start = Math.max(trace.get(0).cycle(), other.get(0).cycle());
+            trace = from(trace, start);
+            other = from(other, start);
+        }
+        final int d = firstDifference(trace, other);
+        if (d < 0) {
+            System.out.printf("no difference in %d instructions%n", Math.min(trace.size(), other.size()));
+            return;
+        }
+        for (int i = Math.max(0, d - CONTEXT); i < d; ++i)
+            System.out.println("  " + trace.get(i));
+        System.out.println("< " + trace.get(d));
+        System.out.println("> " + other.get(d));
+        System.exit(1);
+    }
+}
@@ -0,0 +1,201 @@
+package ch.epfl.gameboj.component.cpu;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
+
+/**
+ * A recorder of the last instructions executed by a cpu, in a ring buffer of
+ * fixed size allocated outside of the heap, to find out what led to a bug or
+ * to a divergence between two runs. It records once set as the observer of
+ * the cpu (see Cpu.setObserver), and costs nothing otherwise. The trace can
+ * be dumped in a file at any time, for example when the emulation fails, and
+ * read back by TraceDecoder.
+ *
+ * Each instruction is recorded in RECORD_SIZE bytes, in little-endian order:
+ * the cycle at which it started (8 bytes), the rom bank (2 bytes, -1 outside
+ * of the rom), the address (2 bytes), the number of bytes of the instruction
+ * and these bytes (4 bytes), the registers A, F, B, C, D, E, H and L after
+ * the instruction, SP (2 bytes), IE, IF, 1 if the interrupts are enabled or
+ * 0, and the number of cycles the instruction took, then two unused bytes. An
+ * entry of an interrupt handler is recorded the same way, with no bytes of
+ * instruction and the index of the interrupt as first byte.
+ *
+ * A dump starts with a header of HEADER_SIZE bytes: the magic number "GBJT",
+ * the version of the format and the size of a record (2 bytes each), the
+ * number of instructions recorded since the creation of the recorder (8
+ * bytes) and the number of records of the dump (4 bytes). The records follow,
+ * from the oldest to the newest.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public final class TraceRecorder implements CpuObserver {
+
+    /**
+     * The size of a record, in bytes.
+     */
+    public static final int RECORD_SIZE = 32;
+
+    /**
+     * The size of the header of a dump, in bytes.
+     */
+    public static final int HEADER_SIZE = 20;
+
+    /**
+     * The version of the format of the dumps.
+     */
+    public static final int VERSION = 1;
+
+    // The first bytes of a dump, "GBJT".
+    static final int MAGIC = 0x47424A54;
+
+    // The offsets of the fields of a record.
+    static final int CYCLE = 0, BANK = 8, PC = 10, LENGTH = 12, BYTES = 13,
+            REGISTERS = 16, CYCLES = 29;
+
+    private static final int ROM_END = 0x8000;
+
+    private final Cpu cpu;
+    private final Cartridge cartridge;
+    private final int capacity;
+    private final ByteBuffer buffer;
+
+    // The number of records so far, and the index of the next one in the buffer.
+    private long recorded;
+    private int next;
+
+    /**
+     * Creates a recorder of the given number of last instructions of the
+     * given cpu, running the given cartridge. It still has to be set as the
+     * observer of the cpu.
+     * @param cpu : the cpu.
+     * @param cartridge : the cartridge, telling the rom bank of the instructions.
+     * @param capacity : the number of instructions kept.
+     * @throws NullPointerException if the cpu or the cartridge is null.
+     * @throws IllegalArgumentException if the capacity is not positive, or
+     * too large for the buffer.
+     */
+    public TraceRecorder(Cpu cpu, Cartridge cartridge, int capacity) {
+        Preconditions.checkArgument(capacity > 0 && capacity <= Integer.MAX_VALUE / RECORD_SIZE);
+        this.cpu = Objects.requireNonNull(cpu);
+        this.cartridge = Objects.requireNonNull(cartridge);
+        this.capacity = capacity;
+        buffer = ByteBuffer.allocateDirect(capacity * RECORD_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cpu.CpuObserver#instructionExecuted(int, ch.epfl.gameboj.component.cpu.Opcode, int)
+     */
+    @Override
+    public void instructionExecuted(int pc, Opcode opcode, int cycles) {
+        final int i = record(pc, cycles);
+        // The length and the bytes, written at once.
+        final int length = opcode.totalBytes;
+        int bytes;
+        if (opcode.kind == Opcode.Kind.PREFIXED) {
+            bytes = 0xCB << 8 | opcode.encoding << 16;
+        } else {
+            bytes = opcode.encoding << 8;
+            if (length > 1)
+                bytes |= operand(pc + 1) << 16;
+            if (length > 2)
+                bytes |= operand(pc + 2) << 24;
+        }
+        buffer.putInt(i + LENGTH, bytes | length);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see ch.epfl.gameboj.component.cpu.CpuObserver#interrupted(ch.epfl.gameboj.component.cpu.Cpu.Interrupt, int, int, int)
+     */
+    @Override
+    public void interrupted(Interrupt interrupt, int pc, int handler, int cycles) {
+        final int i = record(handler, cycles);
+        buffer.putInt(i + LENGTH, interrupt.index() << 8);
+    }
+
+    // Reads a byte of an instruction, directly from the cartridge in the rom,
+    // which is much faster than from the bus.
+    private int operand(int address) {
+        return address < ROM_END ? cartridge.read(address) : cpu.peek(Bits.clip(16, address));
+    }
+
+    // Writes the fields common to all records, and returns the index of the record.
+    private int record(int pc, int cycles) {
+        final int i = next * RECORD_SIZE;
+        if (++next == capacity)
+            next = 0;
+        ++recorded;
+        buffer.putLong(i + CYCLE, cpu.currentCycle());
+        buffer.putShort(i + BANK, (short) cartridge.romBank(pc));
+        buffer.putShort(i + PC, (short) pc);
+        cpu.traceRegisters(buffer, i + REGISTERS);
+        buffer.put(i + CYCLES, (byte) cycles);
+        return i;
+    }
+
+    /**
+     * Gets the number of instructions recorded since the creation of the
+     * recorder, including those no longer kept.
+     * @return the number of instructions recorded.
+     */
+    public long recorded() {
+        return recorded;
+    }
+
+    /**
+     * Gets the number of instructions kept.
+     * @return the capacity of the recorder.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Writes the instructions kept in the given channel, with a header.
+     * @param channel : the channel.
+     * @throws IOException if the channel cannot be written.
+     */
+    public void dump(WritableByteChannel channel) throws IOException {
+        final int records = (int) Math.min(recorded, capacity);
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putShort((short) VERSION).putShort((short) RECORD_SIZE)
+                .putLong(recorded).putInt(records).flip();
+        writeFully(channel, header);
+
+        // The oldest records follow the newest one, once the buffer is full.
+        final ByteBuffer all = buffer.duplicate();
+        if (records == capacity)
+            writeFully(channel, all.position(next * RECORD_SIZE));
+        writeFully(channel, all.position(0).limit(next * RECORD_SIZE));
+    }
+
+    /**
+     * Writes the instructions kept in the given file, with a header.
+     * @param file : the file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void dump(File file) throws IOException {
+        try (FileChannel channel = new FileOutputStream(file).getChannel()) {
+            dump(channel);
+        }
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer b) throws IOException {
+        while (b.hasRemaining())
+            channel.write(b);
+    }
+}
@@ -0,0 +1,159 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_HEIGHT;
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_WIDTH;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * Composes all the lines of an image at once, in parallel.
+ *
+ * Each time a line is drawn, the composer records a snapshot of the registers
+ * and, if they changed since the previous line, a copy of the video memories.
+ * When the image is complete, its lines are composed in parallel on a fork/join
+ * pool, each one with the memories and registers it was drawn with.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+final class FrameComposer {
+
+    // The number of lines under which a task composes its lines itself.
+    private static final int LINES_PER_TASK = 8;
+
+    private final Ram videoRam;
+    private final Ram objectRam;
+    private final ForkJoinPool pool;
+
+    // The copies of the memories taken during the current image.
+    private final List<LineRenderer> states = new ArrayList<>();
+    private final List<Ram[]> stateMemories = new ArrayList<>();
+    private int stateCount;
+    private boolean memoryChanged = true;
+
+    // The lines drawn during the current image.
+    private final boolean[] drawn = new boolean[LCD_HEIGHT];
+    private final int[] lineWinY = new int[LCD_HEIGHT];
+    private final long[] lineRegs = new long[LCD_HEIGHT];
+    private final int[] lineState = new int[LCD_HEIGHT];
+    private final LcdImageLine[] lines = new LcdImageLine[LCD_HEIGHT];
+
+    private LcdImage.Builder imageBuilder = new LcdImage.Builder(LCD_WIDTH,
+            LCD_HEIGHT);
+
+    /**
+     * Creates a composer for the given video memories.
+     * @param videoRam : the video ram of the controller.
+     * @param objectRam : the object attribute memory of the controller.
+     * @param pool : the pool on which the lines are composed.
+     * @throws NullPointerException if the pool is null.
+     */
+    FrameComposer(Ram videoRam, Ram objectRam, ForkJoinPool pool) {
+        this.videoRam = videoRam;
+        this.objectRam = objectRam;
+        this.pool = Objects.requireNonNull(pool);
+    }
+
+    /**
+     * Signals that one of the video memories has been written.
+     */
+    void memoryChanged() {
+        memoryChanged = true;
+    }
+
+    /**
+     * Records that a line must be drawn.
+     * @param index : the index of the line.
+     * @param winY : the index of the line of the window to draw.
+     * @param regs : a snapshot of the registers.
+     */
+    void line(int index, int winY, long regs) {
+        if (memoryChanged) {
+            copyMemories();
+            memoryChanged = false;
+        }
+        drawn[index] = true;
+        lineWinY[index] = winY;
+        lineRegs[index] = regs;
+        lineState[index] = stateCount - 1;
+    }
+
+    /**
+     * Records that a new image is started.
+     */
+    void newImage() {
+        imageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+        clear();
+    }
+
+    /**
+     * Composes the lines drawn since the previous image in parallel.
+     * @return the complete image.
+     */
+    LcdImage endImage() {
+        pool.invoke(new ComposeTask(0, LCD_HEIGHT));
+        for (int i = 0; i < LCD_HEIGHT; i++) {
+            if (drawn[i]) {
+                imageBuilder.setLine(i, lines[i]);
+            }
+        }
+        clear();
+        return imageBuilder.build();
+    }
+
+    private void clear() {
+        for (int i = 0; i < LCD_HEIGHT; i++) {
+            drawn[i] = false;
+            lines[i] = null;
+        }
+        stateCount = 0;
+        memoryChanged = true;
+    }
+
+    private void copyMemories() {
+        if (stateCount == states.size()) {
+            final Ram video = new Ram(videoRam.size());
+            final Ram object = new Ram(objectRam.size());
+            stateMemories.add(new Ram[] { video, object });
+            states.add(new LineRenderer(video, object));
+        }
+        final Ram[] memories = stateMemories.get(stateCount);
+        memories[0].copyFrom(videoRam);
+        memories[1].copyFrom(objectRam);
+        stateCount++;
+    }
+
+    private final class ComposeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        ComposeTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LINES_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    if (drawn[i]) {
+                        lines[i] = states.get(lineState[i]).computeLine(i,
+                                lineWinY[i], lineRegs[i]);
+                    }
+                }
+            } else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new ComposeTask(from, middle),
+                        new ComposeTask(middle, to));
+            }
+        }
+    }
+}
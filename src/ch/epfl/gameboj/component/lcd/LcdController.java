@@ -1,7 +1,10 @@
 package ch.epfl.gameboj.component.lcd;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
 
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Bus;
@@ -9,13 +12,15 @@ import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.Register;
 import ch.epfl.gameboj.RegisterFile;
 import ch.epfl.gameboj.bits.Bit;
-import ch.epfl.gameboj.bits.BitVector;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
 import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.jfr.DmaEvent;
+import ch.epfl.gameboj.jfr.FrameEvent;
     
     /**
      * A component that controls the screen.
@@ -23,7 +28,7 @@ import ch.epfl.gameboj.component.memory.Ram;
      * @author Adrien Laydu, Michael Tasev
      *
      */
-    public final class LcdController implements Component, Clocked {
+    public final class LcdController implements Component, Clocked, Stateful {
     /*
      * The dimensions of the visible screen.
      */
@@ -33,29 +38,23 @@ import ch.epfl.gameboj.component.memory.Ram;
     private static final int MAX_LY = LCD_HEIGHT + 9;
     private static final int[] CYCLES_IN_MODE = {51,114,20,43};
     
-    private static final int TILE_SIDE_PIXELS = 8;
-    private static final int TILES_PER_IMAGE_SIDE = 32;
-    private static final int IMAGE_SIDE_PIXELS = TILE_SIDE_PIXELS * TILES_PER_IMAGE_SIDE;
-    
-    private static final int  ADDRESSES_PER_TILE = 2 * TILE_SIDE_PIXELS;
-    
-    private static final int SHIFT_IN_X_VALUES = 8;
-    private static final int SHIFT_IN_Y_VALUES = 16;
-    
-    private static final int TILES_INDEX_SECOND_AREA_START = 0x80;
-    private static final int BG_DISPLAY_DATA_THIRD_AREA_START = 0x9000;
+    private static final int IMAGE_SIDE_PIXELS = 256;
+    // The registers and the bits of STAT, values() cloning its array at each call.
+    private static final LcdReg[] LCD_REGS = LcdReg.values();
+    private static final STAT[] STAT_BITS = STAT.values();
 
-    private static final LcdImageLine EMPTY_LINE = new LcdImageLine(
-    new BitVector(LCD_WIDTH, false), new BitVector(LCD_WIDTH, false),
-    new BitVector(LCD_WIDTH, false));
     private Bus bus;
 
     private int winY;
     private long nextNonIdleCycle = Long.MAX_VALUE;
     private Cpu cpu;
 
-    private LcdImage.Builder nextImageBuilder = new LcdImage.Builder(LCD_WIDTH,
-            LCD_HEIGHT);;
+    // With the synchronous rendering, the image being drawn and the last
+    // image completed, allocated when the first line is drawn.
+    private Frame nextFrame, lastFrame;
+    private LineRenderer.LineBuffer lineBuffer;
+    // Whether lastFrame was completed, and the last image, created only when asked for.
+    private boolean imageCompleted;
     private LcdImage currentImage;
 
     private int copySource;
@@ -67,13 +66,49 @@ import ch.epfl.gameboj.component.memory.Ram;
 
     private int copyDest = objectRam.size();
 
-    private final RegisterFile<LcdReg> file = new RegisterFile<LcdReg>(LcdReg.values());
+    private final RegisterFile<LcdReg> file = new RegisterFile<LcdReg>(LCD_REGS);
 
-    private enum LcdReg implements Register {
+    private final Rendering rendering;
+    private final LineRenderer renderer = new LineRenderer(videoRam, objectRam);
+    private final RenderPipeline pipeline;
+    private final FrameComposer composer;
+
+    // The measures of the controller, the times being only taken when measured.
+    private boolean measured;
+    private long imageCount, compositionNanos, dmaNanos, timingNanos;
+    // The events of the image being drawn and of the copy in progress, if recorded.
+    private FrameEvent frameEvent;
+    private DmaEvent dmaEvent;
+
+    /**
+     * The different ways the lines of the screen can be composed.
+     * 
+     * @author Adrien Laydu, Michael Tasev
+     *
+     */
+    public enum Rendering {
+        /**
+         * The lines are composed by the controller, as soon as they are drawn.
+         */
+        SYNCHRONOUS,
+        /**
+         * The lines are composed on a separate thread, while the emulation
+         * goes on. The images are the same as the synchronous ones.
+         */
+        PIPELINED,
+        /**
+         * The lines of an image are all composed at the end of the image, in
+         * parallel on the common fork/join pool. The images are the same as
+         * the synchronous ones.
+         */
+        PARALLEL
+    }
+
+    enum LcdReg implements Register {
         LCDC, STAT, SCY, SCX, LY, LYC, DMA, BGP, OBP0, OBP1, WY, WX
     }
 
-    private enum LCDC implements Bit {
+    enum LCDC implements Bit {
         BG, OBJ, OBJ_SIZE, BG_AREA, TILE_SOURCE, WIN, WIN_AREA, LCD_STATUS
     }
 
@@ -81,7 +116,7 @@ import ch.epfl.gameboj.component.memory.Ram;
         MODE0, MODE1, LYC_EQ_LY, INT_MODE0, INT_MODE1, INT_MODE2, INT_LYC, UNUSED
     }
 
-    private enum Sprite implements Bit {
+    enum Sprite implements Bit {
         UNUSED0, UNUSED1, UNUSED2, UNUSED3, PALETTE, FLIP_H, FLIP_V, BEHIND_BG
     }
 
@@ -90,7 +125,23 @@ import ch.epfl.gameboj.component.memory.Ram;
      * @param cpu : the cpu linked to the LcdController.
      */
     public LcdController(Cpu cpu) {
+        this(cpu, Rendering.SYNCHRONOUS);
+    }
+
+    /**
+     * Creates an LcdController linked to a given cpu, composing its lines in
+     * the given way.
+     * @param cpu : the cpu linked to the LcdController.
+     * @param rendering : the way the lines are composed.
+     * @throws NullPointerException if the rendering is null.
+     */
+    public LcdController(Cpu cpu, Rendering rendering) {
         this.cpu = cpu;
+        this.rendering = Objects.requireNonNull(rendering);
+        pipeline = (rendering == Rendering.PIPELINED ? new RenderPipeline(videoRam, objectRam) : null);
+        composer = (rendering == Rendering.PARALLEL
+                ? new FrameComposer(videoRam, objectRam, ForkJoinPool.commonPool())
+                : null);
     }
 
     /*
@@ -104,17 +155,36 @@ import ch.epfl.gameboj.component.memory.Ram;
         bus.attach(this);
     }
 
+    /**
+     * Gets the way the lines of the screen are composed.
+     * @return the rendering of the controller.
+     */
+    public Rendering rendering() {
+        return rendering;
+    }
+
     /*
      * Returns the current image if it exists, or an image filled with empty
-     * lines if the current image does not exist.
+     * lines if the current image does not exist. With the synchronous
+     * rendering, the image is only created when this method is first called
+     * after it is completed, so that drawing images allocates no memory.
      */
     public LcdImage currentImage() {
+        if (pipeline != null) {
+            final LcdImage image = pipeline.collect();
+            if (image != null) {
+                currentImage = image;
+            }
+        }
+        if (currentImage == null && imageCompleted) {
+            currentImage = lastFrame.toImage();
+        }
         if (currentImage != null) {
             return currentImage;
         }
         ArrayList<LcdImageLine> lines = new ArrayList<LcdImageLine>(LCD_HEIGHT);
         for (int i = 0; i < LCD_HEIGHT; i++) {
-            lines.add(EMPTY_LINE);
+            lines.add(LineRenderer.EMPTY_LINE);
         }
         return new LcdImage(LCD_WIDTH, LCD_HEIGHT, lines);
     }
@@ -126,11 +196,12 @@ import ch.epfl.gameboj.component.memory.Ram;
      * @see ch.epfl.gameboj.component.Component#read(int)
      */
     public int read(int address) {
-        Preconditions.checkBits16(address);
+        if (Preconditions.STRICT)
+            Preconditions.checkBits16(address);
         if (address < AddressMap.REGS_LCDC_END
                 && address >= AddressMap.REGS_LCDC_START) {
             int index = address - AddressMap.REGS_LCDC_START;
-            return file.get(LcdReg.values()[index]);
+            return file.get(LCD_REGS[index]);
         }
         if (address >= AddressMap.VIDEO_RAM_START
                 && address < AddressMap.VIDEO_RAM_END) {
@@ -149,12 +220,14 @@ import ch.epfl.gameboj.component.memory.Ram;
      * @see ch.epfl.gameboj.component.Component#write(int, int)
      */
     public void write(int address, int data) {
-        Preconditions.checkBits16(address);
-        Preconditions.checkBits8(data);
+        if (Preconditions.STRICT) {
+            Preconditions.checkBits16(address);
+            Preconditions.checkBits8(data);
+        }
         if (address >= AddressMap.REGS_LCDC_START
                 && address < AddressMap.REGS_LCDC_END) {
             int index = address - AddressMap.REGS_LCDC_START;
-            LcdReg reg = LcdReg.values()[index];
+            LcdReg reg = LCD_REGS[index];
             switch (reg) {
             case LCDC:
                 if (!Bits.test(data, LCDC.LCD_STATUS)) {
@@ -183,6 +256,7 @@ import ch.epfl.gameboj.component.memory.Ram;
                 file.set(reg, data);
                 copySource = Bits.make16(data, 0);
                 copyDest = 0;
+                dmaEvent = DmaEvent.start(copySource);
                 break;
             default:
                 file.set(reg, data);
@@ -193,9 +267,11 @@ import ch.epfl.gameboj.component.memory.Ram;
         } else if (address >= AddressMap.VIDEO_RAM_START
                 && address < AddressMap.VIDEO_RAM_END) {
             videoRam.write(address - AddressMap.VIDEO_RAM_START, data);
+            videoMemoryWritten(address, data);
         } else if (address >= AddressMap.OAM_START
                 && address < AddressMap.OAM_END) {
             objectRam.write(address - AddressMap.OAM_START, data);
+            videoMemoryWritten(address, data);
         }
     }
 
@@ -207,16 +283,26 @@ import ch.epfl.gameboj.component.memory.Ram;
     public void cycle(long cycle) {
         //Copy mechanics
         if (copyDest != objectRam.size()) {
-            objectRam.write(copyDest, bus.read(copySource));
+            final long start = measured ? System.nanoTime() : 0;
+            final int data = bus.readUnchecked(copySource);
+            objectRam.write(copyDest, data);
+            videoMemoryWritten(AddressMap.OAM_START + copyDest, data);
             copyDest++;
             copySource++;
+            if (measured) {
+                dmaNanos += System.nanoTime() - start;
+            }
+            if (dmaEvent != null && copyDest == objectRam.size()) {
+                dmaEvent.finish();
+                dmaEvent = null;
+            }
         }
 
         //Turning on the LCD screen.
         if (nextNonIdleCycle == Long.MAX_VALUE
                 && testInReg(LcdReg.LCDC, LCDC.LCD_STATUS)) {
             nextNonIdleCycle = cycle;
-            reallyCycle(cycle);
+            timedCycle(cycle);
             return;
         }
 
@@ -227,7 +313,142 @@ import ch.epfl.gameboj.component.memory.Ram;
             return;
         }
         //The actual simulation can now take place.
+        timedCycle(cycle);
+    }
+
+    // Simulates the cycle, timing it without the composition of the lines when measured.
+    private void timedCycle(long cycle) {
+        if (!measured) {
+            reallyCycle(cycle);
+            return;
+        }
+        final long start = System.nanoTime();
+        final long composition = compositionNanos;
         reallyCycle(cycle);
+        timingNanos += System.nanoTime() - start - (compositionNanos - composition);
+    }
+
+    /**
+     * Starts or stops measuring the time spent following the timing of the
+     * screen, composing the lines and copying the object memory (DMA). The
+     * cycles during which the controller has nothing to do are not measured.
+     * The time of composition is the time
+     * spent by the controller itself, which only hands the lines over to
+     * another thread with the pipelined rendering.
+     * @param measured : true to measure the times.
+     */
+    public void setMeasured(boolean measured) {
+        this.measured = measured;
+    }
+
+    /**
+     * Gets the number of images completed by the controller since its creation.
+     * @return the number of images completed.
+     */
+    public long imageCount() {
+        return imageCount;
+    }
+
+    /**
+     * Gets the time spent composing lines while measured.
+     * @return the time spent, in nanoseconds.
+     */
+    public long compositionNanos() {
+        return compositionNanos;
+    }
+
+    /**
+     * Gets the time spent following the timing of the screen while measured,
+     * that is changing of mode and of line, excluding the composition of the
+     * lines.
+     * @return the time spent, in nanoseconds.
+     */
+    public long timingNanos() {
+        return timingNanos;
+    }
+
+    /**
+     * Gets the time spent copying the object memory while measured.
+     * @return the time spent, in nanoseconds.
+     */
+    public long dmaNanos() {
+        return dmaNanos;
+    }
+
+    /*
+     * The images are not part of the state : after a restoration, the lines
+     * drawn before it in the image being built are kept.
+     * 
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return file.stateSize() + 1 + Long.BYTES + 2 * Short.BYTES + 1
+                + videoRam.stateSize() + objectRam.stateSize();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        file.saveState(buffer);
+        buffer.put((byte) winY);
+        buffer.putLong(nextNonIdleCycle);
+        buffer.putShort((short) copySource).putShort((short) copyDest);
+        buffer.put((byte) (firstImage ? 1 : 0));
+        videoRam.saveState(buffer);
+        objectRam.saveState(buffer);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        file.loadState(buffer);
+        winY = Byte.toUnsignedInt(buffer.get());
+        nextNonIdleCycle = buffer.getLong();
+        copySource = Short.toUnsignedInt(buffer.getShort());
+        copyDest = Short.toUnsignedInt(buffer.getShort());
+        firstImage = buffer.get() != 0;
+        videoRam.loadState(buffer);
+        objectRam.loadState(buffer);
+        memoriesReplaced();
+    }
+
+    /**
+     * Makes the state of this controller the same as the one of another
+     * controller, whose memories are shared copy-on-write instead of being
+     * copied (see Ram.shareFrom). As with loadState, the image being built is
+     * not copied, but the current image is.
+     * @param other : the controller whose state is copied.
+     */
+    public void copyStateFrom(LcdController other) {
+        file.copyFrom(other.file);
+        winY = other.winY;
+        nextNonIdleCycle = other.nextNonIdleCycle;
+        copySource = other.copySource;
+        copyDest = other.copyDest;
+        firstImage = other.firstImage;
+        currentImage = other.lastImage();
+        imageCompleted = false;
+        videoRam.shareFrom(other.videoRam);
+        objectRam.shareFrom(other.objectRam);
+        memoriesReplaced();
+    }
+
+    private void memoriesReplaced() {
+        if (pipeline != null) {
+            //The worker must see the whole new content of the memories.
+            pipeline.memoriesReplaced();
+        } else if (composer != null) {
+            composer.memoryChanged();
+        }
     }
 
     private void reallyCycle(long cycle) {
@@ -236,7 +457,14 @@ import ch.epfl.gameboj.component.memory.Ram;
         case 1:
             //Checks whether the current image is finished
             if (file.get(LcdReg.LY) == MAX_LY) {
-                nextImageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+                if (pipeline != null) {
+                    pipeline.newImage();
+                } else if (composer != null) {
+                    composer.newImage();
+                } else if (nextFrame != null) {
+                    nextFrame.clear();
+                }
+                frameEvent = FrameEvent.start();
                 winY = 0;
                 modifyLYLYC(LcdReg.LY, 0);
                 setMode(2);
@@ -250,7 +478,13 @@ import ch.epfl.gameboj.component.memory.Ram;
             
             setMode(3);
             //Draws a line.
-            nextImageBuilder.setLine(file.get(LcdReg.LY), computeLine(file.get(LcdReg.LY)));
+            if (measured || frameEvent != null) {
+                final long start = System.nanoTime();
+                drawLine(file.get(LcdReg.LY));
+                composed(System.nanoTime() - start);
+            } else {
+                drawLine(file.get(LcdReg.LY));
+            }
 
             break;
         case 3:
@@ -267,7 +501,31 @@ import ch.epfl.gameboj.component.memory.Ram;
             } else {
 
                 setMode(1);
-                currentImage = nextImageBuilder.build();
+                // The frame events count the lines changed since the previous image.
+                final LcdImage previousImage = frameEvent != null ? lastImage() : null;
+                final long start = measured || frameEvent != null ? System.nanoTime() : 0;
+                if (pipeline != null) {
+                    final LcdImage previous = pipeline.endImage();
+                    if (previous != null) {
+                        currentImage = previous;
+                    }
+                } else if (composer != null) {
+                    currentImage = composer.endImage();
+                } else {
+                    allocateFrames();
+                    lastFrame.copyFrom(nextFrame);
+                    imageCompleted = true;
+                    currentImage = null;
+                }
+                if (measured || frameEvent != null) {
+                    //The parallel rendering composes the lines now.
+                    composed(System.nanoTime() - start);
+                }
+                if (frameEvent != null) {
+                    frameEvent.finish(imageCount, lastImage().changedLines(previousImage));
+                    frameEvent = null;
+                }
+                imageCount += 1;
                 addLY();
             }
             
@@ -278,6 +536,95 @@ import ch.epfl.gameboj.component.memory.Ram;
 
     }
     
+    // Gets the last image completed, or null if there is none.
+    private LcdImage lastImage() {
+        return currentImage == null && imageCompleted ? currentImage() : currentImage;
+    }
+
+    // Counts the given time as spent composing the image.
+    private void composed(long nanos) {
+        if (measured) {
+            compositionNanos += nanos;
+        }
+        if (frameEvent != null) {
+            frameEvent.addComposition(nanos);
+        }
+    }
+
+    private void drawLine(int index) {
+        final long regs = LineRenderer.snapshot(file);
+        final int lineWinY = winY;
+        if (LineRenderer.windowVisible(index, regs)) {
+            winY = (winY + 1) % IMAGE_SIDE_PIXELS;
+        }
+        if (pipeline != null) {
+            pipeline.line(index, lineWinY, regs);
+        } else if (composer != null) {
+            composer.line(index, lineWinY, regs);
+        } else {
+            allocateFrames();
+            renderer.computeLine(index, lineWinY, regs, lineBuffer);
+            nextFrame.setLine(index, lineBuffer.line);
+        }
+    }
+
+    // Allocates the memory of the synchronous rendering, once for all, so
+    // that the controllers of forks allocate it only if they run.
+    private void allocateFrames() {
+        if (nextFrame == null) {
+            nextFrame = new Frame();
+            lastFrame = new Frame();
+            lineBuffer = new LineRenderer.LineBuffer();
+        }
+    }
+
+    /*
+     * The lines of an image drawn by the synchronous rendering, reused from
+     * one image to the next.
+     */
+    private static final class Frame {
+        private static final int INTS = LCD_HEIGHT * LineRenderer.LINE_INTS;
+
+        private final int[] msb = new int[INTS];
+        private final int[] lsb = new int[INTS];
+        private final int[] opacity = new int[INTS];
+
+        void clear() {
+            Arrays.fill(msb, 0);
+            Arrays.fill(lsb, 0);
+            Arrays.fill(opacity, 0);
+        }
+
+        void copyFrom(Frame that) {
+            System.arraycopy(that.msb, 0, msb, 0, INTS);
+            System.arraycopy(that.lsb, 0, lsb, 0, INTS);
+            System.arraycopy(that.opacity, 0, opacity, 0, INTS);
+        }
+
+        void setLine(int index, LineRenderer.Layer line) {
+            final int offset = index * LineRenderer.LINE_INTS;
+            System.arraycopy(line.msb, 0, msb, offset, LineRenderer.LINE_INTS);
+            System.arraycopy(line.lsb, 0, lsb, offset, LineRenderer.LINE_INTS);
+            System.arraycopy(line.opacity, 0, opacity, offset, LineRenderer.LINE_INTS);
+        }
+
+        LcdImage toImage() {
+            final ArrayList<LcdImageLine> lines = new ArrayList<LcdImageLine>(LCD_HEIGHT);
+            for (int i = 0; i < LCD_HEIGHT; i++) {
+                lines.add(LineRenderer.line(msb, lsb, opacity, i * LineRenderer.LINE_INTS));
+            }
+            return new LcdImage(LCD_WIDTH, LCD_HEIGHT, lines);
+        }
+    }
+
+    private void videoMemoryWritten(int address, int data) {
+        if (pipeline != null) {
+            pipeline.write(address, data);
+        } else if (composer != null) {
+            composer.memoryChanged();
+        }
+    }
+
     // Modifying the LY and LYC registers methods
 
     private void addLY() {
@@ -313,7 +660,7 @@ import ch.epfl.gameboj.component.memory.Ram;
         if (mode == 1) {
             cpu.requestInterrupt(Interrupt.VBLANK);
         }
-        STAT s = (STAT.values()[STAT.INT_MODE0.index() + mode]);
+        STAT s = STAT_BITS[STAT.INT_MODE0.index() + mode];
         if (testInReg(LcdReg.STAT, s)&& mode != 3) {
             cpu.requestInterrupt(Interrupt.LCD_STAT);
         }
@@ -330,182 +677,5 @@ import ch.epfl.gameboj.component.memory.Ram;
         final int weakBit = testInReg(LcdReg.STAT, STAT.MODE0) ? 1 : 0;
         return strongBit << 1 | weakBit;
     }
-    
-    //Computing lines methods
-    
-    private LcdImageLine computeLine(int index) {
-        //At the beginning the line consists only of the background (which may be empty)
-        LcdImageLine currentLine = computeBGLine(index);
-        int wx = file.get(LcdReg.WX) - 7;
-        
-        //A window may be added.
-        if (index >= file.get(LcdReg.WY) && wx < 160
-                && testInReg(LcdReg.LCDC, LCDC.WIN)) {
-            if (wx<0) wx = 0;
-            final LcdImageLine winLine = computeWinLine(winY);
-            currentLine = currentLine.join(winLine, wx);
-        }
-        //Sprites may be added in front of or behind the line.
-        if (testInReg(LcdReg.LCDC, LCDC.OBJ)) {
-            final LcdImageLine spritesFrontLine = computeSpritesLine(index,
-                    true);
-            final LcdImageLine spritesBackLine = computeSpritesLine(index,
-                    false);
-
-            if (spritesBackLine != null) {
-                currentLine = spritesBackLine.below(currentLine,(currentLine.opacity().not().and(spritesBackLine.opacity())).not());
-            }
-            if (spritesFrontLine != null) {
-                currentLine = currentLine.below(spritesFrontLine);
-            }
-
-        }
-        return currentLine;
-
-    }
-
-    private LcdImageLine computeWinOrBGLine(int index, int dataStart,
-            int shiftX, int shiftY) {
-        LcdImageLine.Builder lineBuilder = new LcdImageLine.Builder(IMAGE_SIDE_PIXELS);
-
-        //Getting the first tile of the line to compute
-        final int startTileLine = (((index + shiftY)%IMAGE_SIDE_PIXELS) / TILE_SIDE_PIXELS);
-        final int startTile = startTileLine * TILES_PER_IMAGE_SIDE;
-        //The number of the line within the tile
-        final int lineIndex = (index + shiftY) % TILE_SIDE_PIXELS;
-        
-        //Computing the line.
-        for (int i = 0; i < TILES_PER_IMAGE_SIDE; i++) {
-            int tileIndex = read((i + startTile) + dataStart);
-            boolean tileSource = testInReg(LcdReg.LCDC, LCDC.TILE_SOURCE);
-            int strongBits = getLineFromTile(tileIndex, lineIndex, tileSource,
-                    true);
-            int weakBits = getLineFromTile(tileIndex, lineIndex, tileSource,
-                    false);
-            lineBuilder.setBytes(i, strongBits, weakBits);
-        }
-        LcdImageLine l = lineBuilder.build().extractWrapped(shiftX, LCD_WIDTH).mapColors(file.get(LcdReg.BGP));
-
-        return l;
-    }
-
-    
-    private LcdImageLine computeBGLine(int index) {
-        final int shiftX = file.get(LcdReg.SCX);
-        if (!testInReg(LcdReg.LCDC, LCDC.BG))
-            return EMPTY_LINE;
-        final int dataStart = (testInReg(LcdReg.LCDC, LCDC.BG_AREA)
-                ? AddressMap.BG_DISPLAY_DATA[1]
-                : AddressMap.BG_DISPLAY_DATA[0]);
-        final int shiftY = file.get(LcdReg.SCY);
-        return computeWinOrBGLine(index, dataStart, shiftX, shiftY);
-    }
-
-    private LcdImageLine computeWinLine(int index) {
-        final int wx = file.get(LcdReg.WX) - 7;
-
-        final int dataStart = (testInReg(LcdReg.LCDC, LCDC.WIN_AREA)
-                ? AddressMap.BG_DISPLAY_DATA[1]
-                : AddressMap.BG_DISPLAY_DATA[0]);
-        winY = (winY + 1) % IMAGE_SIDE_PIXELS;
-        return computeWinOrBGLine(index, dataStart, -wx, 0);
-
-    }
-
-    private LcdImageLine computeSpritesLine(int index, boolean front) {
-        int[] spritesOnLine = spritesIntersectingLine(index);
-        if (spritesOnLine == null)
-            return null;
-        int[] spritesLine = new int[spritesOnLine.length];
-        int count = 0;
-        for (int i : spritesOnLine) {
-            if (Bits.test(objectRam.read(i + 3), Sprite.BEHIND_BG) == !front) {
-                spritesLine[count] = i;
-                count++;
-            }
-        }
-        if (count == 0) return null;
-        int[] spritesToUse = Arrays.copyOf(spritesLine, count);
-        LcdImageLine line = EMPTY_LINE;
-        LcdImageLine individualLine = EMPTY_LINE;
-        for (int i = 0; i < spritesToUse.length; i++) {
-            individualLine = individualSpriteLine(spritesToUse[i],
-                    (index - objectRam.read(spritesToUse[i]) + SHIFT_IN_Y_VALUES));
-            line = individualLine.below(line);
-        }
-        
-        return line;
-    }
-
-    private int[] spritesIntersectingLine(int index) {
-        final int[] tiles = new int[10];
-        int count = 0;
-        int tileIndex = 0;
-        while (count < 10 && tileIndex < AddressMap.OAM_RAM_SIZE - 3) {
-            int yCoord = objectRam.read(tileIndex);
-    
-            if (yCoord - SHIFT_IN_Y_VALUES <= index
-                    && index < (testInReg(LcdReg.LCDC, LCDC.OBJ_SIZE) ? yCoord
-                            : yCoord - TILE_SIDE_PIXELS)) {
-                tiles[count] =  Bits.make16(objectRam.read(tileIndex+1), tileIndex);
-                count++;
-    
-            }
-            tileIndex += 4;
-        }
-        if (count == 0) {
-            return null;
-        }
-        Arrays.sort(tiles, 0, count);
-        final int[] tilesIndexes = new int[count];
-    
-        for (int i = 0; i < count; i++) {
-            tilesIndexes[i] = Bits.clip(TILE_SIDE_PIXELS, tiles[i]);
-        }
-        return tilesIndexes;
-    }
-
-    private LcdImageLine individualSpriteLine(int tileNumber, int lineIndex) {
-        
-        final LcdImageLine.Builder builder = new LcdImageLine.Builder(LCD_WIDTH);
-        final int colors = file.get(Bits.test(objectRam.read(tileNumber + 3), Sprite.PALETTE)
-                        ? LcdReg.OBP1
-                        : LcdReg.OBP0);
-        
-        final int tile = objectRam.read(tileNumber + 2);
-        final int oppositeLine = testInReg(LcdReg.LCDC, LCDC.OBJ_SIZE)
-                ? 15 - lineIndex
-                : 7 - lineIndex;
-        final int bitsTileLineIndex = Bits.test(objectRam.read(tileNumber + 3),
-                Sprite.FLIP_V) ? oppositeLine : lineIndex;
-        int weakBits = getLineFromTile(tile, bitsTileLineIndex, true, false);
-        int strongBits = getLineFromTile(tile, bitsTileLineIndex, true, true);
-        if (Bits.test(objectRam.read(tileNumber + 3), Sprite.FLIP_H)) {
-            weakBits = Bits.reverse8(weakBits);
-            strongBits = Bits.reverse8(strongBits);
-        }
-        builder.setBytes(0, strongBits, weakBits);
-        return (builder.build().shift(objectRam.read(tileNumber + 1) - SHIFT_IN_X_VALUES)).mapColors(colors);
-    }
-
-    private int getLineFromTile(int tileIndex, int lineIndex,
-            boolean secondArea, boolean strongBits) {
-        int address;
-        Preconditions.checkBits8(tileIndex);
-        if (secondArea) {
-
-            address = AddressMap.TILE_SOURCE[1] + tileIndex * ADDRESSES_PER_TILE;
-        } else {
-            if (tileIndex >= TILES_INDEX_SECOND_AREA_START) {
-                address = AddressMap.TILE_SOURCE[1] + tileIndex * ADDRESSES_PER_TILE;
-            } else {
-                address = BG_DISPLAY_DATA_THIRD_AREA_START + tileIndex * ADDRESSES_PER_TILE;
-            }
-
-        }
-
-        return strongBits ? Bits.reverse8(read(address + 2 * lineIndex + 1))
-                : Bits.reverse8(read(address + 2 * lineIndex));
-    }
 
-}
\ No newline at end of file
+}
@@ -68,6 +68,45 @@ public final class LcdImage {
         return Objects.hash(lhc,width,height);
     }
 
+    /**
+     * Gets a 64-bit hash of the colours of the image, cheap enough to be
+     * computed at each frame and to identify an image among all those drawn
+     * by a game. Two images with the same colours have the same hash, even if
+     * the opacity of their lines differs.
+     * @return a 64-bit hash of the image.
+     */
+    public long hash64() {
+        long h = (long) width << 32 | height;
+        for (LcdImageLine l : lines)
+            h = l.hash64(h);
+        // The final mix of MurmurHash3, spreading the high bits to the low ones.
+        h ^= h >>> 33;
+        h *= 0xFF51_AFD7_ED55_8CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CE_B9FE_1A85_EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Counts the lines of this image which differ from those of the given one.
+     * @param other : the image to compare with, or null.
+     * @return the number of lines which differ, all of them if the other
+     * image is null or has other dimensions.
+     */
+    int changedLines(LcdImage other) {
+        if (other == null || other.width != width || other.height != height) {
+            return height;
+        }
+        int changed = 0;
+        for (int i = 0; i < height; ++i) {
+            if (!lines.get(i).equals(other.lines.get(i))) {
+                changed += 1;
+            }
+        }
+        return changed;
+    }
+
     /**
      * Gets the colour of the pixel at the given coordinates.
      * @param x : the horizontal coordinate of the pixel.
@@ -75,13 +114,7 @@ public final class LcdImage {
      * @return the colour of the pixel.
      */
     public int get(int x, int y) {
-        final LcdImageLine line = lines.get(y);
-        final BitVector msb = line.msb();
-        final BitVector lsb = line.lsb();
-        final int strongBit = (msb.testBit(x) ? 1 : 0);
-        final int weakBit = (lsb.testBit(x) ? 1 : 0);
-
-        return strongBit << 1 | weakBit;
+        return lines.get(y).get(x);
     }
 
     /**
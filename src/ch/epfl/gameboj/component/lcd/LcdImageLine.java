@@ -64,6 +64,19 @@ public final class LcdImageLine {
         return new BitVector(opacity);
     }
 
+    /**
+     * Gets the colour of the pixel at the given index, without copying the
+     * bit vectors like msb and lsb.
+     * @param index : the index of the pixel.
+     * @return the colour of the pixel.
+     * @throws IndexOutOfBoundsException if the index is not smaller than the size.
+     */
+    int get(int index) {
+        final int strongBit = (msb.testBit(index) ? 1 : 0);
+        final int weakBit = (lsb.testBit(index) ? 1 : 0);
+        return strongBit << 1 | weakBit;
+    }
+
     /**
      * Shifts the line a given distance (positive distance shifts to 
      * the left, negative distance to the right).
@@ -100,33 +113,14 @@ public final class LcdImageLine {
             return this;
         }
 
-        BitVector finalMsb = new BitVector(size());
-        BitVector finalLsb = new BitVector(size());
-
-        //We iterate on colors.
-        for (int i = 0; i < 4; i++) {
-            final int newColor = getColor(i, transformation);
-            final boolean b0 = Bits.test(newColor, 0);
-            final boolean b1 = Bits.test(newColor, 1);
-            final int color = getColor(i, BASE_COLORS);
-            final boolean c0 = Bits.test(color, 0);
-            final boolean c1 = Bits.test(color, 1);
-
-            BitVector msbToCheck = (c1 ? msb : msb.not());
-            BitVector lsbToCheck = (c0 ? lsb : lsb.not());
-
-            BitVector conjunction = msbToCheck.and(lsbToCheck);
-
-            finalMsb = (b1 ? finalMsb.or(conjunction) : finalMsb);
-            finalLsb = (b0 ? finalLsb.or(conjunction) : finalLsb);
-
+        final BitVector.Builder finalMsb = new BitVector.Builder(size());
+        final BitVector.Builder finalLsb = new BitVector.Builder(size());
+        for (int i = 0; i < size() / Integer.SIZE; i++) {
+            final int m = msb.getInt(i), l = lsb.getInt(i);
+            finalMsb.setInt(i, mappedBits(m, l, transformation, 1));
+            finalLsb.setInt(i, mappedBits(m, l, transformation, 0));
         }
-
-        return new LcdImageLine(finalMsb, finalLsb, opacity);
-    }
-
-    private int getColor(int index, int value) {
-        return Bits.extract(value, 2*index, 2);
+        return new LcdImageLine(finalMsb.build(), finalLsb.build(), opacity);
     }
 
     /**
@@ -151,13 +145,17 @@ public final class LcdImageLine {
      * @throws IllegalArgumentException if the size of the two lines are not equal.
      */
     public LcdImageLine below(LcdImageLine other, BitVector opacVector) {
-        Preconditions.checkArgument(other.size() == size());
-        final BitVector newMsb = (other.msb.and(opacVector))
-                .or(msb.and(opacVector.not()));
-        final BitVector newLsb = (other.lsb.and(opacVector))
-                .or(lsb.and(opacVector.not()));
-        final BitVector newOpa = opacity.or(opacVector);
-        return new LcdImageLine(newMsb, newLsb, newOpa);
+        Preconditions.checkArgument(other.size() == size() && opacVector.size() == size());
+        final BitVector.Builder newMsb = new BitVector.Builder(size());
+        final BitVector.Builder newLsb = new BitVector.Builder(size());
+        final BitVector.Builder newOpa = new BitVector.Builder(size());
+        for (int i = 0; i < size() / Integer.SIZE; i++) {
+            final int mask = opacVector.getInt(i);
+            newMsb.setInt(i, select(mask, other.msb.getInt(i), msb.getInt(i)));
+            newLsb.setInt(i, select(mask, other.lsb.getInt(i), lsb.getInt(i)));
+            newOpa.setInt(i, opacity.getInt(i) | mask);
+        }
+        return new LcdImageLine(newMsb.build(), newLsb.build(), newOpa.build());
     }
 
     /**
@@ -170,12 +168,63 @@ public final class LcdImageLine {
      */
     public LcdImageLine join(LcdImageLine other, int index) {
         Preconditions.checkArgument(index<other.size()&&index >=0);
-        final BitVector rightMask = (new BitVector(size(), true)).shift(index);
-        final BitVector leftMask = rightMask.not();
-        final BitVector newMsb = (other.msb.and(rightMask)).or(msb.and(leftMask));
-        final BitVector newLsb = (other.lsb.and(rightMask)).or(lsb.and(leftMask));
-        final BitVector newOpa = (other.opacity.and(rightMask)).or(opacity.and(leftMask));
-        return new LcdImageLine(newMsb, newLsb, newOpa);
+        Preconditions.checkArgument(other.size() == size());
+        final BitVector.Builder newMsb = new BitVector.Builder(size());
+        final BitVector.Builder newLsb = new BitVector.Builder(size());
+        final BitVector.Builder newOpa = new BitVector.Builder(size());
+        for (int i = 0; i < size() / Integer.SIZE; i++) {
+            final int mask = maskFrom(index, i);
+            newMsb.setInt(i, select(mask, other.msb.getInt(i), msb.getInt(i)));
+            newLsb.setInt(i, select(mask, other.lsb.getInt(i), lsb.getInt(i)));
+            newOpa.setInt(i, select(mask, other.opacity.getInt(i), opacity.getInt(i)));
+        }
+        return new LcdImageLine(newMsb.build(), newLsb.build(), newOpa.build());
+    }
+
+    // The rules of composition, 32 pixels at a time, also used by LineRenderer.
+
+    /**
+     * Transforms the colours of 32 pixels like mapColors, giving one bit of
+     * their new colours.
+     * @param msb : the most significant bits of the colours of the pixels.
+     * @param lsb : the least significant bits of the colours of the pixels.
+     * @param palette : an encoding giving the new colours.
+     * @param bit : the bit of the new colours to compute, 1 for the most significant one.
+     * @return the given bit of the new colours of the pixels.
+     */
+    static int mappedBits(int msb, int lsb, int palette, int bit) {
+        int bits = 0;
+        for (int color = 0; color < 4; color++) {
+            if (Bits.test(palette, 2 * color + bit)) {
+                bits |= (Bits.test(color, 1) ? msb : ~msb) & (Bits.test(color, 0) ? lsb : ~lsb);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Selects each of 32 bits in one of two integers, like below and join do
+     * with pixels.
+     * @param mask : the bits to take in the first integer.
+     * @param ifSet : the integer whose bits are taken where the mask is set.
+     * @param ifClear : the integer whose bits are taken where the mask is not set.
+     * @return the selected bits.
+     */
+    static int select(int mask, int ifSet, int ifClear) {
+        return ifSet & mask | ifClear & ~mask;
+    }
+
+    /**
+     * Gets the mask of the pixels of an integer of a line whose index is at
+     * least the given one, like the pixels taken from the other line by join.
+     * @param index : the index of the first pixel of the mask, which may be
+     * outside of the integer.
+     * @param i : the index of the integer in the line.
+     * @return the mask of the pixels.
+     */
+    static int maskFrom(int index, int i) {
+        final int start = index - Integer.SIZE * i;
+        return start <= 0 ? -1 : start >= Integer.SIZE ? 0 : -1 << start;
     }
 
     /*
@@ -201,6 +250,17 @@ public final class LcdImageLine {
         return Objects.hash(msb, lsb, opacity);
     }
 
+    /**
+     * Mixes the colours of the line into the given 64-bit hash (see
+     * BitVector.hash64). Unlike hashCode, the opacity is ignored, as it is
+     * not visible once the line is on screen.
+     * @param hash : the hash of the data preceding the line.
+     * @return the hash of the data preceding the line, followed by the line.
+     */
+    public long hash64(long hash) {
+        return lsb.hash64(msb.hash64(hash));
+    }
+
     /**
      * An image line builder.
      * 
@@ -0,0 +1,436 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_WIDTH;
+
+import java.util.Arrays;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.RegisterFile;
+import ch.epfl.gameboj.bits.BitVector;
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.lcd.LcdController.LCDC;
+import ch.epfl.gameboj.component.lcd.LcdController.LcdReg;
+import ch.epfl.gameboj.component.lcd.LcdController.Sprite;
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * Composes the lines of the screen from the video memories and a snapshot of
+ * the registers of the lcd controller. The composition of a line only depends
+ * on those, so that it can be done on any thread.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+final class LineRenderer {
+
+    private static final int TILE_SIDE_PIXELS = 8;
+    private static final int TILES_PER_IMAGE_SIDE = 32;
+    private static final int IMAGE_SIDE_PIXELS = TILE_SIDE_PIXELS * TILES_PER_IMAGE_SIDE;
+
+    private static final int ADDRESSES_PER_TILE = 2 * TILE_SIDE_PIXELS;
+
+    private static final int SHIFT_IN_X_VALUES = 8;
+    private static final int SHIFT_IN_Y_VALUES = 16;
+
+    private static final int TILES_INDEX_SECOND_AREA_START = 0x80;
+    private static final int BG_DISPLAY_DATA_THIRD_AREA_START = 0x9000;
+    private static final int MAX_SPRITES = 10;
+
+    /**
+     * The number of ints of a line of the screen, one bit per pixel.
+     */
+    static final int LINE_INTS = LCD_WIDTH / Integer.SIZE;
+
+    static final LcdImageLine EMPTY_LINE = new LcdImageLine(
+            new BitVector(LCD_WIDTH, false), new BitVector(LCD_WIDTH, false),
+            new BitVector(LCD_WIDTH, false));
+
+    /*
+     * The registers stored in a snapshot, one byte each, the first one being
+     * the least significant byte.
+     */
+    private static final LcdReg[] SNAPSHOT_REGS = { LcdReg.LCDC, LcdReg.SCY,
+            LcdReg.SCX, LcdReg.BGP, LcdReg.OBP0, LcdReg.OBP1, LcdReg.WY,
+            LcdReg.WX };
+    private static final int[] SNAPSHOT_SHIFTS = snapshotShifts();
+
+    private final Ram videoRam;
+    private final Ram objectRam;
+
+    /**
+     * Creates a line renderer reading in the given video memories.
+     * @param videoRam : the video ram.
+     * @param objectRam : the object attribute memory.
+     */
+    LineRenderer(Ram videoRam, Ram objectRam) {
+        this.videoRam = videoRam;
+        this.objectRam = objectRam;
+    }
+
+    /**
+     * Packs the registers used to compose a line into a single long.
+     * @param file : the register file of the lcd controller.
+     * @return a snapshot of the registers used to compose a line.
+     */
+    static long snapshot(RegisterFile<LcdReg> file) {
+        long snapshot = 0;
+        for (int i = 0; i < SNAPSHOT_REGS.length; i++) {
+            snapshot |= (long) file.get(SNAPSHOT_REGS[i]) << (Byte.SIZE * i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Checks whether the window is drawn on a given line.
+     * @param index : the index of the line.
+     * @param regs : a snapshot of the registers.
+     * @return true if the window is drawn on the line, false otherwise.
+     */
+    static boolean windowVisible(int index, long regs) {
+        return index >= get(regs, LcdReg.WY) && get(regs, LcdReg.WX) - 7 < LCD_WIDTH
+                && test(regs, LCDC.WIN);
+    }
+
+    /**
+     * Composes a line of the screen.
+     * @param index : the index of the line.
+     * @param winY : the index of the line of the window to draw, if the window is visible.
+     * @param regs : a snapshot of the registers, taken when the line is drawn.
+     * @return the composed line.
+     */
+    LcdImageLine computeLine(int index, int winY, long regs) {
+        final LineBuffer buffer = new LineBuffer();
+        computeLine(index, winY, regs, buffer);
+        return buffer.line.toLine();
+    }
+
+    /**
+     * Composes a line of the screen in the given buffer, without allocating
+     * any memory.
+     * @param index : the index of the line.
+     * @param winY : the index of the line of the window to draw, if the window is visible.
+     * @param regs : a snapshot of the registers, taken when the line is drawn.
+     * @param buffer : the buffer in which the line is composed, in buffer.line.
+     */
+    void computeLine(int index, int winY, long regs, LineBuffer buffer) {
+        //At the beginning the line consists only of the background (which may be empty)
+        final Layer line = buffer.line;
+        computeBGLine(index, regs, buffer);
+
+        //A window may be added.
+        if (windowVisible(index, regs)) {
+            final int wx = Math.max(0, get(regs, LcdReg.WX) - 7);
+            computeWinLine(winY, regs, buffer);
+            line.join(buffer.window, wx);
+        }
+        //Sprites may be added in front of or behind the line.
+        if (test(regs, LCDC.OBJ)) {
+            final int count = spritesIntersectingLine(index, regs, buffer.sprites);
+            if (computeSpritesLine(index, false, regs, count, buffer, buffer.back)) {
+                line.addBehindBackground(buffer.back);
+            }
+            if (computeSpritesLine(index, true, regs, count, buffer, buffer.front)) {
+                line.addInFront(buffer.front);
+            }
+        }
+    }
+
+    private void computeWinOrBGLine(int index, int dataStart,
+            int shiftX, int shiftY, long regs, LineBuffer buffer, Layer target) {
+        final int[] msb = buffer.planeMsb;
+        final int[] lsb = buffer.planeLsb;
+
+        //Getting the first tile of the line to compute
+        final int startTileLine = (((index + shiftY)%IMAGE_SIDE_PIXELS) / TILE_SIDE_PIXELS);
+        final int startTile = startTileLine * TILES_PER_IMAGE_SIDE;
+        //The number of the line within the tile
+        final int lineIndex = (index + shiftY) % TILE_SIDE_PIXELS;
+        final boolean tileSource = test(regs, LCDC.TILE_SOURCE);
+
+        //Computing the line, four tiles per int.
+        for (int i = 0; i < TILES_PER_IMAGE_SIDE; i++) {
+            int tileIndex = readVideoRam((i + startTile) + dataStart);
+            int strongBits = getLineFromTile(tileIndex, lineIndex, tileSource,
+                    true);
+            int weakBits = getLineFromTile(tileIndex, lineIndex, tileSource,
+                    false);
+            final int shift = Byte.SIZE * (i % 4);
+            if (shift == 0) {
+                msb[i / 4] = 0;
+                lsb[i / 4] = 0;
+            }
+            msb[i / 4] |= strongBits << shift;
+            lsb[i / 4] |= weakBits << shift;
+        }
+        for (int i = 0; i < LINE_INTS; i++) {
+            target.msb[i] = wrappedInt(msb, shiftX + Integer.SIZE * i);
+            target.lsb[i] = wrappedInt(lsb, shiftX + Integer.SIZE * i);
+            target.opacity[i] = target.msb[i] | target.lsb[i];
+        }
+        target.mapColors(get(regs, LcdReg.BGP));
+    }
+
+    // Gets the 32 bits of the wrapped extension of the given bits starting at the given index.
+    private static int wrappedInt(int[] bits, int index) {
+        final int start = Math.floorMod(index, bits.length * Integer.SIZE);
+        final int i = start / Integer.SIZE;
+        final int shift = start % Integer.SIZE;
+        if (shift == 0)
+            return bits[i];
+        return bits[i] >>> shift | bits[(i + 1) % bits.length] << (Integer.SIZE - shift);
+    }
+
+    private void computeBGLine(int index, long regs, LineBuffer buffer) {
+        if (!test(regs, LCDC.BG)) {
+            buffer.line.clear();
+            return;
+        }
+        final int dataStart = (test(regs, LCDC.BG_AREA)
+                ? AddressMap.BG_DISPLAY_DATA[1]
+                : AddressMap.BG_DISPLAY_DATA[0]);
+        computeWinOrBGLine(index, dataStart, get(regs, LcdReg.SCX),
+                get(regs, LcdReg.SCY), regs, buffer, buffer.line);
+    }
+
+    private void computeWinLine(int index, long regs, LineBuffer buffer) {
+        final int wx = get(regs, LcdReg.WX) - 7;
+
+        final int dataStart = (test(regs, LCDC.WIN_AREA)
+                ? AddressMap.BG_DISPLAY_DATA[1]
+                : AddressMap.BG_DISPLAY_DATA[0]);
+        computeWinOrBGLine(index, dataStart, -wx, 0, regs, buffer, buffer.window);
+    }
+
+    // Composes the sprites of the given priority in the target, the first
+    // ones in front. Returns false if there is none.
+    private boolean computeSpritesLine(int index, boolean front, long regs,
+            int count, LineBuffer buffer, Layer target) {
+        boolean found = false;
+        target.clear();
+        for (int i = 0; i < count; i++) {
+            final int sprite = buffer.sprites[i];
+            if (Bits.test(objectRam.read(sprite + 3), Sprite.BEHIND_BG) == !front) {
+                individualSpriteLine(sprite,
+                        (index - objectRam.read(sprite) + SHIFT_IN_Y_VALUES), regs, buffer.sprite);
+                target.addBehind(buffer.sprite);
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    // Puts the indexes in the object memory of the sprites on the line in the
+    // given array, by increasing horizontal coordinate, and returns their number.
+    private int spritesIntersectingLine(int index, long regs, int[] sprites) {
+        int count = 0;
+        int tileIndex = 0;
+        while (count < MAX_SPRITES && tileIndex < AddressMap.OAM_RAM_SIZE - 3) {
+            int yCoord = objectRam.read(tileIndex);
+
+            if (yCoord - SHIFT_IN_Y_VALUES <= index
+                    && index < (test(regs, LCDC.OBJ_SIZE) ? yCoord
+                            : yCoord - TILE_SIDE_PIXELS)) {
+                sprites[count] =  Bits.make16(objectRam.read(tileIndex+1), tileIndex);
+                count++;
+
+            }
+            tileIndex += 4;
+        }
+        Arrays.sort(sprites, 0, count);
+        for (int i = 0; i < count; i++) {
+            sprites[i] = Bits.clip(TILE_SIDE_PIXELS, sprites[i]);
+        }
+        return count;
+    }
+
+    private void individualSpriteLine(int tileNumber, int lineIndex, long regs, Layer target) {
+
+        final int colors = get(regs, Bits.test(objectRam.read(tileNumber + 3), Sprite.PALETTE)
+                        ? LcdReg.OBP1
+                        : LcdReg.OBP0);
+
+        final int tile = objectRam.read(tileNumber + 2);
+        final int oppositeLine = test(regs, LCDC.OBJ_SIZE)
+                ? 15 - lineIndex
+                : 7 - lineIndex;
+        final int bitsTileLineIndex = Bits.test(objectRam.read(tileNumber + 3),
+                Sprite.FLIP_V) ? oppositeLine : lineIndex;
+        int weakBits = getLineFromTile(tile, bitsTileLineIndex, true, false);
+        int strongBits = getLineFromTile(tile, bitsTileLineIndex, true, true);
+        if (Bits.test(objectRam.read(tileNumber + 3), Sprite.FLIP_H)) {
+            weakBits = Bits.reverse8(weakBits);
+            strongBits = Bits.reverse8(strongBits);
+        }
+        target.clear();
+        target.place(objectRam.read(tileNumber + 1) - SHIFT_IN_X_VALUES, strongBits, weakBits);
+        target.mapColors(colors);
+    }
+
+    private int getLineFromTile(int tileIndex, int lineIndex,
+            boolean secondArea, boolean strongBits) {
+        int address;
+        if (Preconditions.STRICT)
+            Preconditions.checkBits8(tileIndex);
+        if (secondArea) {
+
+            address = AddressMap.TILE_SOURCE[1] + tileIndex * ADDRESSES_PER_TILE;
+        } else {
+            if (tileIndex >= TILES_INDEX_SECOND_AREA_START) {
+                address = AddressMap.TILE_SOURCE[1] + tileIndex * ADDRESSES_PER_TILE;
+            } else {
+                address = BG_DISPLAY_DATA_THIRD_AREA_START + tileIndex * ADDRESSES_PER_TILE;
+            }
+
+        }
+
+        return strongBits ? Bits.reverse8(readVideoRam(address + 2 * lineIndex + 1))
+                : Bits.reverse8(readVideoRam(address + 2 * lineIndex));
+    }
+
+    private int readVideoRam(int address) {
+        return videoRam.read(address - AddressMap.VIDEO_RAM_START);
+    }
+
+    /**
+     * A line of the screen being composed: its colours and its opacity, as
+     * in LcdImageLine, but mutable.
+     */
+    static final class Layer {
+        final int[] msb = new int[LINE_INTS];
+        final int[] lsb = new int[LINE_INTS];
+        final int[] opacity = new int[LINE_INTS];
+
+        void clear() {
+            Arrays.fill(msb, 0);
+            Arrays.fill(lsb, 0);
+            Arrays.fill(opacity, 0);
+        }
+
+        // Puts the given 8 pixels, opaque when not of colour 0, at the given
+        // index, which may be partly or totally outside of the line.
+        void place(int index, int strongBits, int weakBits) {
+            if (index < 0) {
+                set(0, strongBits >>> -index, weakBits >>> -index);
+                return;
+            }
+            final int i = index / Integer.SIZE;
+            final int shift = index % Integer.SIZE;
+            if (i < LINE_INTS)
+                set(i, strongBits << shift, weakBits << shift);
+            if (shift > Integer.SIZE - Byte.SIZE && i + 1 < LINE_INTS)
+                set(i + 1, strongBits >>> (Integer.SIZE - shift), weakBits >>> (Integer.SIZE - shift));
+        }
+
+        private void set(int i, int strongBits, int weakBits) {
+            msb[i] |= strongBits;
+            lsb[i] |= weakBits;
+            opacity[i] |= strongBits | weakBits;
+        }
+
+        // Transforms the colours like LcdImageLine.mapColors.
+        void mapColors(int palette) {
+            for (int i = 0; i < LINE_INTS; i++) {
+                final int m = msb[i], l = lsb[i];
+                msb[i] = LcdImageLine.mappedBits(m, l, palette, 1);
+                lsb[i] = LcdImageLine.mappedBits(m, l, palette, 0);
+            }
+        }
+
+        // Puts the opaque pixels of the given line in front of this one, like LcdImageLine.below.
+        void addInFront(Layer other) {
+            for (int i = 0; i < LINE_INTS; i++)
+                mix(i, other, other.opacity[i], opacity[i] | other.opacity[i]);
+        }
+
+        // Puts the given line behind the opaque pixels of this one.
+        void addBehind(Layer other) {
+            for (int i = 0; i < LINE_INTS; i++)
+                mix(i, other, ~opacity[i], opacity[i] | other.opacity[i]);
+        }
+
+        // Puts the given sprites behind the background: they are only visible
+        // where the background is transparent.
+        void addBehindBackground(Layer sprites) {
+            for (int i = 0; i < LINE_INTS; i++) {
+                final int visible = ~opacity[i] & sprites.opacity[i];
+                mix(i, sprites, visible, sprites.opacity[i] | ~visible);
+            }
+        }
+
+        // Replaces the pixels of this line from the given index by those of the given line, like LcdImageLine.join.
+        void join(Layer other, int index) {
+            for (int i = 0; i < LINE_INTS; i++) {
+                final int mask = LcdImageLine.maskFrom(index, i);
+                mix(i, other, mask, LcdImageLine.select(mask, other.opacity[i], opacity[i]));
+            }
+        }
+
+        // Takes the colours of the given line where the mask is set, and sets the opacity.
+        private void mix(int i, Layer other, int mask, int newOpacity) {
+            msb[i] = LcdImageLine.select(mask, other.msb[i], msb[i]);
+            lsb[i] = LcdImageLine.select(mask, other.lsb[i], lsb[i]);
+            opacity[i] = newOpacity;
+        }
+
+        LcdImageLine toLine() {
+            return line(msb, lsb, opacity, 0);
+        }
+    }
+
+    /**
+     * The memory in which lines are composed, reused from one line to the
+     * next so that composing a line allocates nothing. A buffer must only be
+     * used by one thread at a time.
+     */
+    static final class LineBuffer {
+        // The composed line.
+        final Layer line = new Layer();
+        private final Layer window = new Layer();
+        private final Layer front = new Layer();
+        private final Layer back = new Layer();
+        private final Layer sprite = new Layer();
+        // A whole line of the background or of the window, before being scrolled.
+        private final int[] planeMsb = new int[IMAGE_SIDE_PIXELS / Integer.SIZE];
+        private final int[] planeLsb = new int[IMAGE_SIDE_PIXELS / Integer.SIZE];
+        private final int[] sprites = new int[MAX_SPRITES];
+    }
+
+    /**
+     * Creates a line of the image from its colours and its opacity.
+     * @param msb : the most significant bits of the colours, LINE_INTS per line.
+     * @param lsb : the least significant bits of the colours.
+     * @param opacity : the opacity.
+     * @param offset : the index of the first int of the line in the arrays.
+     * @return the line.
+     */
+    static LcdImageLine line(int[] msb, int[] lsb, int[] opacity, int offset) {
+        final BitVector.Builder m = new BitVector.Builder(LCD_WIDTH);
+        final BitVector.Builder l = new BitVector.Builder(LCD_WIDTH);
+        final BitVector.Builder o = new BitVector.Builder(LCD_WIDTH);
+        for (int i = 0; i < LINE_INTS; i++) {
+            m.setInt(i, msb[offset + i]);
+            l.setInt(i, lsb[offset + i]);
+            o.setInt(i, opacity[offset + i]);
+        }
+        return new LcdImageLine(m.build(), l.build(), o.build());
+    }
+
+    // Reading in snapshots methods
+
+    private static int get(long regs, LcdReg reg) {
+        return (int) (regs >>> SNAPSHOT_SHIFTS[reg.index()]) & 0xFF;
+    }
+
+    private static boolean test(long regs, LCDC bit) {
+        return Bits.test(get(regs, LcdReg.LCDC), bit);
+    }
+
+    private static int[] snapshotShifts() {
+        final int[] shifts = new int[LcdReg.values().length];
+        for (int i = 0; i < SNAPSHOT_REGS.length; i++) {
+            shifts[SNAPSHOT_REGS[i].index()] = Byte.SIZE * i;
+        }
+        return shifts;
+    }
+}
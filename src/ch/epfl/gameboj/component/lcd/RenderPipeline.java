@@ -0,0 +1,204 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_HEIGHT;
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_WIDTH;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * Composes the images of an lcd controller on a separate thread.
+ *
+ * The controller records in a log every write to the video memories, and a
+ * snapshot of the registers each time a line must be drawn. Once an image is
+ * complete, the log is handed to a worker thread which replays it on its own
+ * copy of the video memories, so that the lines it composes are exactly the
+ * ones the controller would have composed, while the emulation goes on.
+ *
+ * The writes recorded after the last line only matter through the content of
+ * the memories they leave. When there are too many of them, for example while
+ * the screen is off and no image is handed to the worker, they are replaced by
+ * the current content of the memories, so that the log stays bounded.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+final class RenderPipeline {
+
+    private static final int INITIAL_LOG_SIZE = 1 << 14;
+    private static final long KEEP_ALIVE_SECONDS = 1;
+    // The number of writes after the last line above which they are replaced by the memories.
+    private static final int MAX_PENDING_WRITES = 2
+            * (AddressMap.VIDEO_RAM_SIZE + AddressMap.OAM_RAM_SIZE);
+
+    // The kinds of entries of the log, stored in their two strongest bits.
+    private static final long WRITE = 0L << 62;
+    private static final long LINE = 1L << 62;
+    private static final long NEW_IMAGE = 2L << 62;
+    private static final long KIND_MASK = 3L << 62;
+
+    // The memories of the controller, only accessed by the emulation.
+    private final Ram sourceVideoRam, sourceObjectRam;
+
+    // The worker's copy of the video memories, only accessed by the worker.
+    private final Ram videoRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
+    private final Ram objectRam = new Ram(AddressMap.OAM_RAM_SIZE);
+    private final LineRenderer renderer = new LineRenderer(videoRam, objectRam);
+    private LcdImage.Builder imageBuilder = new LcdImage.Builder(LCD_WIDTH,
+            LCD_HEIGHT);
+
+    /*
+     * At most one thread, which dies when idle so that forgotten controllers
+     * do not keep threads alive. Having a single thread keeps the images in
+     * order.
+     */
+    private final ThreadPoolExecutor worker = new ThreadPoolExecutor(0, 1,
+            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            r -> {
+                final Thread t = new Thread(r, "gameboj-lcd-renderer");
+                t.setDaemon(true);
+                return t;
+            });
+
+    // The log being filled, and the one that may be replayed by the worker.
+    private long[] log = new long[INITIAL_LOG_SIZE];
+    private long[] replayedLog = new long[INITIAL_LOG_SIZE];
+    private int logSize;
+    // The size of the log up to its last line or new image, followed by writes only.
+    private int logBarrier;
+
+    private Future<LcdImage> pendingImage;
+
+    /**
+     * Creates a pipeline for the given memories of a controller, whose content
+     * is only read by the emulation.
+     * @param videoRam : the video ram of the controller.
+     * @param objectRam : the object attribute memory of the controller.
+     */
+    RenderPipeline(Ram videoRam, Ram objectRam) {
+        sourceVideoRam = videoRam;
+        sourceObjectRam = objectRam;
+    }
+
+    /**
+     * Records a write to the video ram or to the object attribute memory.
+     * @param address : the address written.
+     * @param data : the byte written.
+     */
+    void write(int address, int data) {
+        append(WRITE | address << Byte.SIZE | data);
+        if (logSize - logBarrier > MAX_PENDING_WRITES) {
+            memoriesReplaced();
+        }
+    }
+
+    /**
+     * Records that the whole content of the memories may have changed, replacing
+     * the writes recorded since the last line by the current content.
+     */
+    void memoriesReplaced() {
+        logSize = logBarrier;
+        for (int i = 0; i < sourceVideoRam.size(); i++) {
+            append(WRITE | (AddressMap.VIDEO_RAM_START + i) << Byte.SIZE | sourceVideoRam.read(i));
+        }
+        for (int i = 0; i < sourceObjectRam.size(); i++) {
+            append(WRITE | (AddressMap.OAM_START + i) << Byte.SIZE | sourceObjectRam.read(i));
+        }
+    }
+
+    /**
+     * Records that a line must be drawn.
+     * @param index : the index of the line.
+     * @param winY : the index of the line of the window to draw.
+     * @param regs : a snapshot of the registers.
+     */
+    void line(int index, int winY, long regs) {
+        append(LINE | index << Byte.SIZE | winY);
+        append(regs);
+        logBarrier = logSize;
+    }
+
+    /**
+     * Records that a new image is started.
+     */
+    void newImage() {
+        append(NEW_IMAGE);
+        logBarrier = logSize;
+    }
+
+    /**
+     * Hands the recorded log to the worker, which will build an image with it.
+     * @return the image previously built by the worker, or null if it was already collected.
+     */
+    LcdImage endImage() {
+        final LcdImage previous = collect();
+        final long[] toReplay = log;
+        final int size = logSize;
+        log = replayedLog;
+        replayedLog = toReplay;
+        logSize = 0;
+        logBarrier = 0;
+        pendingImage = worker.submit(() -> replay(toReplay, size));
+        return previous;
+    }
+
+    /**
+     * Waits for the image being built by the worker.
+     * @return the image last built by the worker, or null if it was already collected.
+     */
+    LcdImage collect() {
+        if (pendingImage == null) {
+            return null;
+        }
+        try {
+            return pendingImage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pendingImage = null;
+        }
+    }
+
+    // The number of entries of the log being filled, for the tests.
+    int logSize() {
+        return logSize;
+    }
+
+    private void append(long entry) {
+        if (logSize == log.length) {
+            log = Arrays.copyOf(log, 2 * log.length);
+        }
+        log[logSize++] = entry;
+    }
+
+    private LcdImage replay(long[] entries, int size) {
+        for (int i = 0; i < size; i++) {
+            final long entry = entries[i];
+            final int high = (int) (entry >>> Byte.SIZE) & 0xFFFF;
+            final int low = (int) entry & 0xFF;
+            if ((entry & KIND_MASK) == WRITE) {
+                if (high < AddressMap.OAM_START) {
+                    videoRam.write(high - AddressMap.VIDEO_RAM_START, low);
+                } else {
+                    objectRam.write(high - AddressMap.OAM_START, low);
+                }
+            } else if ((entry & KIND_MASK) == LINE) {
+                i++;
+                imageBuilder.setLine(high, renderer.computeLine(high, low, entries[i]));
+            } else {
+                imageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+            }
+        }
+        return imageBuilder.build();
+    }
+}
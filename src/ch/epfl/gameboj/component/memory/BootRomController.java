@@ -1,9 +1,11 @@
 package ch.epfl.gameboj.component.memory;
 
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 import static ch.epfl.gameboj.Preconditions.*;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import ch.epfl.gameboj.AddressMap;
@@ -13,7 +15,7 @@ import ch.epfl.gameboj.AddressMap;
  * @author Adrien Laydu, Michael Tasev
  *
  */
-public final class BootRomController implements Component {
+public final class BootRomController implements Component, Stateful {
 
     private final Cartridge cartridge;
     
@@ -36,8 +38,10 @@ public final class BootRomController implements Component {
      * @see ch.epfl.gameboj.component.Component#write(int, int)
      */
     public void write(int address, int data) {
-        checkBits8(data);
-        checkBits16(address);
+        if (STRICT) {
+            checkBits8(data);
+            checkBits16(address);
+        }
         
         if (!bootRomDeactivated && address == AddressMap.REG_BOOT_ROM_DISABLE) {
             //if something is written at the disable address and the bootRom is still enabled,
@@ -53,7 +57,8 @@ public final class BootRomController implements Component {
      * @see ch.epfl.gameboj.component.Component#read(int)
      */
     public int read(int address) {
-        checkBits16(address);
+        if (STRICT)
+            checkBits16(address);
         if(!bootRomDeactivated && address < AddressMap.BOOT_ROM_END) {
             //if the boot rom is still enabled and the address is contained is the boot rom, then
             //the value is read in the boot rom.
@@ -63,4 +68,28 @@ public final class BootRomController implements Component {
             return cartridge.read(address);
         }
     }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+    @Override
+    public int stateSize() {
+        return 1;
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) (bootRomDeactivated ? 1 : 0));
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        bootRomDeactivated = buffer.get() != 0;
+    }
 }
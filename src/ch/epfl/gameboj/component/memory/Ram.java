@@ -2,19 +2,37 @@ package ch.epfl.gameboj.component.memory;
 
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Objects;
 
-import ch.epfl.gameboj.Preconditions;;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Stateful;
 
 /**
  * A random access memory.
+ *
+ * The content is stored in pages of 256 bytes, which can be shared between
+ * several rams (see shareFrom). A shared page is copied the first time it is
+ * written, so that sharing a ram costs nothing until it is modified.
+ *
  * @author Adrien Laydu, Michael Tasev
  *
  */
 
-public final class Ram {
+public final class Ram implements Stateful {
+
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
 
-    private final byte[] ramData;
+    // The page shared by all the rams until they are written, never modified.
+    private static final byte[] ZERO_PAGE = new byte[PAGE_SIZE];
+
+    private final int size;
+    private final byte[][] pages;
+    // True for the pages which may be shared with another ram, and must be copied before being written.
+    private final boolean[] shared;
 
     /**
      * Creates a ram of the given size.
@@ -24,7 +42,12 @@ public final class Ram {
     
     public Ram(int size) {
         Preconditions.checkArgument(size >=0);
-        ramData = new byte[size];
+        this.size = size;
+        final int pageCount = (size + PAGE_MASK) >>> PAGE_BITS;
+        pages = new byte[pageCount][];
+        Arrays.fill(pages, ZERO_PAGE);
+        shared = new boolean[pageCount];
+        Arrays.fill(shared, true);
         
     }
     
@@ -34,19 +57,21 @@ public final class Ram {
      */
 
     public int size() {
-        return ramData.length;
+        return size;
     }
 
     /**
      * Reads the byte at the given index.
      * @param index , the index at which we read the value.
      * @return an int, the value stored at the given index.
+     * @throws IndexOutOfBoundsException in strict mode, if the index is not valid.
      */
     
     public int read(int index) {
 
-        Objects.checkIndex(index, ramData.length);
-        return Byte.toUnsignedInt(ramData[index]);
+        if (Preconditions.STRICT)
+            Objects.checkIndex(index, size);
+        return Byte.toUnsignedInt(pages[index >>> PAGE_BITS][index & PAGE_MASK]);
 
     }
 
@@ -54,15 +79,109 @@ public final class Ram {
      * Stores the given value at the given index.
      * @param index , the index where we store the given value.
      * @param value , the value we store in the given index.
-     * @throws IllegalArgumentException if the given value is not an 8-bit value.
-     * @throws IndexOutOfBoundsException if index is not valid (namely negative or >= 32).
+     * @throws IllegalArgumentException in strict mode, if the given value is not an 8-bit value.
+     * @throws IndexOutOfBoundsException in strict mode, if index is not valid (namely negative or >= the size).
      */
     
     public void write(int index, int value) {
 
-        checkBits8(value);
-        Objects.checkIndex(index, ramData.length);
-        ramData[index] = (byte) value;
+        if (Preconditions.STRICT) {
+            checkBits8(value);
+            Objects.checkIndex(index, size);
+        }
+        writablePage(index >>> PAGE_BITS)[index & PAGE_MASK] = (byte) value;
+
+    }
+
+    /**
+     * Copies the content of another ram in this one.
+     * @param other , the ram to copy.
+     * @throws IllegalArgumentException if the other ram does not have the same size.
+     */
+
+    public void copyFrom(Ram other) {
+
+        Preconditions.checkArgument(other.size() == size());
+        // A shared page would be replaced by an empty one before being copied.
+        if (other == this)
+            return;
+        for (int p = 0; p < pages.length; ++p) {
+            System.arraycopy(other.pages[p], 0, overwrittenPage(p), 0, PAGE_SIZE);
+        }
+
+    }
+
+    /**
+     * Makes the content of this ram the same as the one of another ram,
+     * without copying it : the pages of the other ram are shared by both rams,
+     * and each of them copies a page only when writing it for the first time.
+     * Sharing a ram with other ones, even running on other threads, is safe
+     * as long as neither ram is accessed during this call.
+     * @param other , the ram whose content is shared.
+     * @throws IllegalArgumentException if the other ram does not have the same size.
+     */
+
+    public void shareFrom(Ram other) {
+
+        Preconditions.checkArgument(other.size() == size());
+        if (other != this) {
+            System.arraycopy(other.pages, 0, pages, 0, pages.length);
+            Arrays.fill(shared, true);
+            Arrays.fill(other.shared, true);
+        }
+
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#stateSize()
+     */
+
+    @Override
+    public int stateSize() {
+        return size;
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#saveState(java.nio.ByteBuffer)
+     */
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        for (int p = 0; p < pages.length; ++p) {
+            buffer.put(pages[p], 0, pageLength(p));
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see ch.epfl.gameboj.component.Stateful#loadState(java.nio.ByteBuffer)
+     */
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        for (int p = 0; p < pages.length; ++p) {
+            buffer.get(overwrittenPage(p), 0, pageLength(p));
+        }
+    }
+
+    private int pageLength(int page) {
+        return Math.min(PAGE_SIZE, size - (page << PAGE_BITS));
+    }
+
+    // Gets the given page, copied first if it is shared.
+    private byte[] writablePage(int page) {
+        if (shared[page]) {
+            pages[page] = pages[page].clone();
+            shared[page] = false;
+        }
+        return pages[page];
+    }
 
+    // Gets the given page, replaced by a new one if it is shared, its content being about to be overwritten.
+    private byte[] overwrittenPage(int page) {
+        if (shared[page]) {
+            pages[page] = new byte[PAGE_SIZE];
+            shared[page] = false;
+        }
+        return pages[page];
     }
 }
@@ -51,7 +51,8 @@ public final class RamController implements Component {
      * @see ch.epfl.gameboj.component.Component#read(int)
      */
     public int read(int address) {
-        checkBits16(address);
+        if (STRICT)
+            checkBits16(address);
         
         if (address < start || address > end) {
             return Component.NO_DATA;
@@ -64,8 +65,10 @@ public final class RamController implements Component {
      * @see ch.epfl.gameboj.component.Component#write(int, int)
      */
     public void write(int address, int data) {
-        checkBits16(address);
-        checkBits8(data);
+        if (STRICT) {
+            checkBits16(address);
+            checkBits8(data);
+        }
         
         if (!(address < start || address > end)) {
             ram.write(address-start, data);
@@ -1,52 +1,157 @@
 package ch.epfl.gameboj.component.memory;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a read-only memory.
+ *
+ * The content of a rom never changes, so a single rom can be shared by any number
+ * of components, even on different threads.
  * @author Adrien Laydu, Michael Tasev
  *
  */
 
 public final class Rom {
 
-    private final byte[] romData;
+    // The roms loaded with shared(), by file. They are freed once no longer used.
+    private static final Map<SharedKey, WeakReference<Rom>> SHARED = new ConcurrentHashMap<>();
+
+    private final ByteBuffer romData;
 
     /**
      * Constructs a rom with the given data array.
      * @param data , the array with which we create the rom.
      * @throws NullPointerException if the array given is null.
      */
-    
+
     public Rom(byte[] data) {
         if (data != null) {
             byte data2[] = Arrays.copyOf(data, data.length);
-            romData = data2;
+            romData = ByteBuffer.wrap(data2);
         } else {
             throw new NullPointerException();
         }
     }
 
+    private Rom(ByteBuffer data) {
+        romData = data;
+    }
+
+    /**
+     * Creates a rom containing the bytes of the given file, loaded in an array.
+     * @param file , the file to load.
+     * @return a rom containing the bytes of the file.
+     * @throws IOException if the file cannot be read.
+     * @throws NullPointerException if the file is null.
+     */
+
+    public static Rom ofFile(File file) throws IOException {
+        return new Rom(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    /**
+     * Creates a rom containing the bytes of the given file, mapped in memory. The
+     * content of the rom is then loaded by the operating system when it is read,
+     * and not copied on the heap. The file must not be modified while the rom is
+     * used.
+     * @param file , the file to map.
+     * @return a rom containing the bytes of the file.
+     * @throws IOException if the file cannot be read or mapped.
+     * @throws NullPointerException if the file is null.
+     */
+
+    public static Rom mapped(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new Rom(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Gets a rom containing the bytes of the given file, which is shared with all
+     * the other users of the same file. The file is mapped in memory if possible,
+     * and loaded in an array otherwise. It is loaded again if it has been modified
+     * since it was last loaded.
+     * @param file , the file to load.
+     * @return a rom containing the bytes of the file, shared with the other users of the file.
+     * @throws IOException if the file cannot be read.
+     * @throws NullPointerException if the file is null.
+     */
+
+    public static synchronized Rom shared(File file) throws IOException {
+        final Path path = file.toPath().toRealPath();
+        final SharedKey key = new SharedKey(path, Files.getLastModifiedTime(path).toMillis(),
+                Files.size(path));
+        final WeakReference<Rom> reference = SHARED.get(key);
+        Rom rom = reference == null ? null : reference.get();
+        if (rom == null) {
+            SHARED.values().removeIf(r -> r.get() == null);
+            try {
+                rom = mapped(path.toFile());
+            } catch (IOException | UnsupportedOperationException e) {
+                rom = ofFile(path.toFile());
+            }
+            SHARED.put(key, new WeakReference<>(rom));
+        }
+        return rom;
+    }
+
     /**
      * Gets the size of the rom.
      * @return the size of the rom.
      */
-    
+
     public int size() {
-        return romData.length;
+        return romData.capacity();
     }
 
     /**
      * Reads the byte at the index of the rom.
      * @param index , the index to read.
      * @return the byte at the given index of the rom.
+     * @throws IndexOutOfBoundsException if the index is not valid.
      */
-    
+
     public int read(int index) {
 
-       Objects.checkIndex(index, size());
-       return Byte.toUnsignedInt(romData[index]);
-        
+       // The buffer checks the index itself.
+       return Byte.toUnsignedInt(romData.get(index));
+
+    }
+
+    private static final class SharedKey {
+        private final Path path;
+        private final long modified;
+        private final long size;
+
+        SharedKey(Path path, long modified, long size) {
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SharedKey))
+                return false;
+            final SharedKey other = (SharedKey) o;
+            return path.equals(other.path) && modified == other.modified && size == other.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, modified, size);
+        }
     }
 }
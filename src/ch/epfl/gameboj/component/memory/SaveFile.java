@@ -0,0 +1,234 @@
+package ch.epfl.gameboj.component.memory;
+
+import static ch.epfl.gameboj.Preconditions.checkBits8;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import ch.epfl.gameboj.Preconditions;
+
+/**
+ * A file in which the content of a battery-backed ram is saved.
+ *
+ * The file is mapped in memory, so that a write only stores the byte in the
+ * page cache of the operating system, which writes it to the disk by itself
+ * even if the program crashes. The pages written are recorded, and only them
+ * are forced to the disk, periodically and when the program exits.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public final class SaveFile implements Closeable {
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final long FLUSH_PERIOD_SECONDS = 5;
+
+    // The save files not closed yet, flushed periodically and at exit.
+    private static final Set<SaveFile> OPEN = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static ScheduledExecutorService flusher;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final AtomicLongArray dirtyPages;
+    private volatile boolean closed;
+
+    private SaveFile(FileChannel channel, int size) throws IOException {
+        this.channel = channel;
+        this.buffer = channel.map(MapMode.READ_WRITE, 0, size);
+        this.dirtyPages = new AtomicLongArray((size + 64 * PAGE_SIZE - 1) / (64 * PAGE_SIZE));
+    }
+
+    /**
+     * Opens the given save file, creating it if it does not exist. A file
+     * shorter than the ram is extended with zeros, and only the beginning of a
+     * longer file is used. The file is then flushed periodically, and when the
+     * program exits, until it is closed.
+     * @param file , the file to open.
+     * @param size , the size of the ram saved in the file.
+     * @return the opened save file.
+     * @throws IOException if the file cannot be opened or mapped.
+     * @throws IllegalArgumentException if the size is negative.
+     * @throws NullPointerException if the file is null.
+     */
+    public static SaveFile open(File file, int size) throws IOException {
+        Preconditions.checkArgument(size >= 0);
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            final SaveFile save = new SaveFile(channel, size);
+            register(save);
+            return save;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the size of the data saved in the file.
+     * @return the size of the data.
+     */
+    public int size() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Copies the beginning of the file into the given ram.
+     * @param ram , the ram to fill.
+     * @throws IllegalArgumentException if the ram is bigger than the file.
+     */
+    public void loadInto(Ram ram) {
+        Preconditions.checkArgument(ram.size() <= size());
+        for (int i = 0; i < ram.size(); ++i) {
+            ram.write(i, Byte.toUnsignedInt(buffer.get(i)));
+        }
+    }
+
+    /**
+     * Copies the content of the given ram at the beginning of the file. Only
+     * the bytes which differ are written, so that the pages left unchanged need
+     * not be forced to the disk again.
+     * @param ram , the ram to save.
+     * @throws IllegalArgumentException if the ram is bigger than the file.
+     * @throws IllegalStateException if the file is closed and the ram differs from it.
+     */
+    public void storeFrom(Ram ram) {
+        Preconditions.checkArgument(ram.size() <= size());
+        for (int i = 0; i < ram.size(); ++i) {
+            update(i, ram.read(i));
+        }
+    }
+
+    /**
+     * Reads the byte at the given index of the file.
+     * @param index , the index at which to read.
+     * @return the byte read.
+     * @throws IndexOutOfBoundsException if the index is invalid.
+     */
+    public int read(int index) {
+        return Byte.toUnsignedInt(buffer.get(Objects.checkIndex(index, size())));
+    }
+
+    /**
+     * Writes the given byte at the given index of the file, only if it differs
+     * from the byte already there.
+     * @param index , the index at which to write.
+     * @param data , the byte to write.
+     * @throws IndexOutOfBoundsException if the index is invalid.
+     * @throws IllegalArgumentException if the data is not an 8-bit value.
+     * @throws IllegalStateException if the file is closed and the byte differs.
+     */
+    public void update(int index, int data) {
+        if (read(index) != checkBits8(data))
+            write(index, data);
+    }
+
+    /**
+     * Tells whether the file is closed.
+     * @return true if the file is closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Writes the given byte at the given index of the file.
+     * @param index , the index at which to write.
+     * @param data , the byte to write.
+     * @throws IndexOutOfBoundsException if the index is invalid.
+     * @throws IllegalArgumentException if the data is not an 8-bit value.
+     * @throws IllegalStateException if the file is closed.
+     */
+    public void write(int index, int data) {
+        if (closed) throw new IllegalStateException();
+        Objects.checkIndex(index, size());
+        buffer.put(index, (byte) checkBits8(data));
+        final int page = index >>> PAGE_BITS;
+        final long bit = 1L << page;
+        //Only the first write to a clean page needs an atomic operation.
+        if ((dirtyPages.get(page >>> 6) & bit) == 0) {
+            dirtyPages.getAndAccumulate(page >>> 6, bit, (a, b) -> a | b);
+        }
+    }
+
+    /**
+     * Forces the pages written since the last flush to the disk.
+     */
+    public void flush() {
+        for (int w = 0; w < dirtyPages.length(); ++w) {
+            long pages = dirtyPages.getAndSet(w, 0);
+            while (pages != 0) {
+                final int page = w * 64 + Long.numberOfTrailingZeros(pages);
+                final int start = page * PAGE_SIZE;
+                buffer.force(start, Math.min(PAGE_SIZE, size() - start));
+                pages &= pages - 1;
+            }
+        }
+    }
+
+    // The number of pages written since the last flush, for the tests.
+    int dirtyPageCount() {
+        int count = 0;
+        for (int w = 0; w < dirtyPages.length(); ++w)
+            count += Long.bitCount(dirtyPages.get(w));
+        return count;
+    }
+
+    // The number of save files not closed yet, for the tests.
+    static int openCount() {
+        return OPEN.size();
+    }
+
+    /**
+     * Flushes the file and closes it. The file can no longer be written.
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            OPEN.remove(this);
+            flush();
+            channel.close();
+        }
+    }
+
+    private static synchronized void register(SaveFile save) {
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread t = new Thread(r, "gameboj-save-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(SaveFile::flushAll, FLUSH_PERIOD_SECONDS,
+                    FLUSH_PERIOD_SECONDS, TimeUnit.SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(SaveFile::flushAll, "gameboj-save-exit"));
+        }
+        OPEN.add(save);
+    }
+
+    private static void flushAll() {
+        for (SaveFile save : OPEN) {
+            try {
+                save.flush();
+            } catch (UncheckedIOException e) {
+                //The other files must still be flushed.
+            }
+        }
+    }
+}
@@ -5,9 +5,14 @@ import static ch.epfl.gameboj.component.lcd.LcdController.LCD_WIDTH;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Map;
 
+import javax.management.JMException;
+
 import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.InputMovie;
+import ch.epfl.gameboj.RewindBuffer;
 import ch.epfl.gameboj.component.Joypad.Key;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 import javafx.animation.AnimationTimer;
@@ -26,6 +31,13 @@ import javafx.stage.Stage;
  */
 public class Main extends Application {
 
+    // Holding this key rewinds the game.
+    private static final KeyCode REWIND_KEY = KeyCode.BACK_SPACE;
+    private static final int REWIND_FRAMES_PER_STATE = 2;
+    private static final long REWIND_MEMORY_BUDGET = 64L << 20;
+
+    private boolean rewinding;
+
     private static Map<String, KeyCode> textToKeyCodeMap  = Map.of(
             "A",KeyCode.A,
             "B",KeyCode.B,
@@ -51,14 +63,28 @@ public class Main extends Application {
     /*
      * Initiates the program creating a Game Boy with a given Cartridge rom file, setting the
      * graphic interface and displaying the image on the screen, and updating the image displayed.
+     * If a second file is given, the inputs are recorded in it as a movie (see InputMovie) when
+     * the window is closed, and the game cannot be rewound.
      * @see javafx.application.Application#start(javafx.stage.Stage)
      */
     public void start(Stage s) throws IOException {
-        if (getParameters().getRaw().size() > 1) {
+        if (getParameters().getRaw().size() > 2) {
             System.exit(1);
         }
         final File romFile = new File(getParameters().getRaw().get(0));
-        final GameBoy gb = new GameBoy(Cartridge.ofFile(romFile));
+        final File saveFile = new File(romFile.getPath().replaceFirst("(\\.gbc?)?$", ".sav"));
+        final GameBoy gb = new GameBoy(Cartridge.ofFile(romFile, saveFile));
+        final InputMovie.Recorder recorder = getParameters().getRaw().size() > 1
+                ? new InputMovie.Recorder(gb)
+                : null;
+        //Publishing the metrics of the emulation with JMX.
+        try {
+            gb.enableMetrics().register(romFile.getName());
+        } catch (JMException e) {
+            System.err.println("The metrics cannot be published : " + e.getMessage());
+        }
+        final RewindBuffer rewindBuffer = new RewindBuffer(gb, REWIND_FRAMES_PER_STATE,
+                REWIND_MEMORY_BUDGET);
         
         final ImageView imageView = new ImageView();
         imageView.setFitWidth(2 * LCD_WIDTH);
@@ -68,31 +94,68 @@ public class Main extends Application {
         
         //Handling key actions.
         imageView.setOnKeyPressed(e -> {
+            if (e.getCode() == REWIND_KEY && recorder == null) {
+                rewinding = true;
+            }
             final KeyCode keycode = textToKeyCodeMap.containsKey(e.getText()) ? textToKeyCodeMap.get(e.getText()) : e.getCode();
             if (keyMap.containsKey(keycode)) {
-                gb.joypad().keyPressed(keyMap.get(e.getCode()));
+                if (recorder != null) {
+                    recorder.keyPressed(keyMap.get(e.getCode()));
+                } else {
+                    gb.joypad().keyPressed(keyMap.get(e.getCode()));
+                }
             }
         });
         imageView.setOnKeyReleased(e -> {
+            if (e.getCode() == REWIND_KEY) {
+                rewinding = false;
+            }
             final KeyCode keycode = textToKeyCodeMap.containsKey(e.getText()) ? textToKeyCodeMap.get(e.getText()) : e.getCode();
             if (keyMap.containsKey(keycode)) {
-                gb.joypad().keyReleased(keyMap.get(e.getCode()));
+                if (recorder != null) {
+                    recorder.keyReleased(keyMap.get(e.getCode()));
+                } else {
+                    gb.joypad().keyReleased(keyMap.get(e.getCode()));
+                }
             }
         });
         
         //Displaying.
         s.setTitle("Gameboj");
         s.setScene(scene);
+        s.setOnCloseRequest(e -> {
+            try {
+                if (recorder != null) {
+                    recorder.movie().save(new File(getParameters().getRaw().get(1)));
+                }
+                //Forcing the saved ram to the disk.
+                gb.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
         s.show();
         imageView.requestFocus();
         
         //Updating the gameboy.
-        long start = System.nanoTime();
         AnimationTimer timer = new AnimationTimer() {
+            private long previous = System.nanoTime();
+
             @Override
             public void handle(long now) {
-                long elapsed = now - start;
-                gb.runUntil((long) (elapsed * GameBoy.CYCLES_PER_NANOSECOND));
+                long elapsed = now - previous;
+                previous = now;
+                if (rewinding) {
+                    //One frame is simulated after the state restored to display it.
+                    if (rewindBuffer.rewind()) {
+                        gb.runUntil(gb.cycles() + GameBoy.CYCLES_PER_FRAME);
+                    }
+                } else if (recorder != null) {
+                    recorder.runUntil(gb.cycles() + (long) (elapsed * GameBoy.CYCLES_PER_NANOSECOND));
+                } else {
+                    gb.runUntil(gb.cycles() + (long) (elapsed * GameBoy.CYCLES_PER_NANOSECOND));
+                    rewindBuffer.update();
+                }
                 imageView.setImage(ImageConverter
                         .convert(gb.lcdController().currentImage()));
 
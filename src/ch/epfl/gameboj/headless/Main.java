@@ -0,0 +1,334 @@
+package ch.epfl.gameboj.headless;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+import ch.epfl.gameboj.BusProfiler;
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.GameBoyMetrics;
+import ch.epfl.gameboj.InputMovie;
+import ch.epfl.gameboj.Soak;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.cpu.CallGraphProfiler;
+import ch.epfl.gameboj.component.cpu.CpuProfiler;
+import ch.epfl.gameboj.component.cpu.SymbolTable;
+import ch.epfl.gameboj.component.cpu.TraceRecorder;
+import ch.epfl.gameboj.component.lcd.LcdController.Rendering;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+
+/**
+ * A main program running the Game Boy without any window, as fast as
+ * possible, and measuring its speed. It needs neither JavaFX nor a display.
+ *
+ * Usage: Main rom [--frames n | --seconds s] [--movie file]
+ * [--rendering synchronous|parallel|pipelined] [--screenshots directory [--every n]]
+ * [--metrics] [--profile exact|sampling|calls [--symbols file] [--collapsed file]]
+ * [--trace file [--trace-length n]] [--bus-profile]
+ * or: Main rom --soak hours [--rendering synchronous|parallel|pipelined]
+ *
+ * The game runs for the given number of frames or emulated seconds, or by
+ * default for the length of the movie, or a minute. The keys recorded in the
+ * movie are pressed and released as recorded, and the replay is checked
+ * against the recording. At the end, the speed of the emulation and the hash
+ * of the last image are printed. The last image, or one image every n frames,
+ * can be saved as PNG files in the given directory. With --metrics, the time
+ * spent in each component is measured and printed too (see GameBoyMetrics).
+ * With --profile, the instructions in which the cpu spends the most cycles are
+ * printed (see CpuProfiler), or with --profile calls the tree of the routines
+ * called, named by the given symbol file (see CallGraphProfiler). The whole
+ * profile can be written in the collapsed stack format read by flame graph
+ * tools. With --trace, the last instructions executed (2^20 by default)
+ * are recorded (see TraceRecorder), and dumped in the given file at the end
+ * or when the emulation fails. With --bus-profile, the reads and writes of each
+ * region of the memory and the addresses accessed the most are printed (see
+ * BusProfiler).
+ *
+ * With --soak, the game runs for the given number of emulated hours, checking
+ * each emulated minute that the heap does not grow, that the timer and the lcd
+ * controller are consistent and that the speed is stable (see Soak).
+ *
+ * The exit status is 1 if the replay of the movie diverged from the
+ * recording, 2 if the arguments are invalid, and 3 if the soak test found a
+ * problem.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+public final class Main {
+
+    // The argument of --profile for the call graph.
+    private static final String CALLS = "CALLS";
+    private static final int DEFAULT_TRACE_LENGTH = 1 << 20;
+    private static final long DEFAULT_CYCLES = 60 * GameBoy.CYCLES_PER_SECOND;
+    // The grey levels of the colours, like those of the window.
+    private static final int[] COLORS = { 0xFF, 0xD3, 0xA9, 0 };
+    // The number of instructions and opcodes printed by --profile, and of addresses by --bus-profile.
+    private static final int PROFILE_LENGTH = 20;
+    // The minimum percentage of the cycles of the routines printed by --profile calls.
+    private static final double CALL_TREE_MIN_PERCENT = 1;
+    // The number of windows of the soak test between two lines of progress, an emulated hour.
+    private static final int SOAK_PROGRESS_WINDOWS = 60;
+
+    private Main() {}
+
+    /**
+     * Runs the simulator.
+     */
+    public static void main(String[] args) throws IOException {
+        File rom = null, movieFile = null, screenshots = null, collapsed = null, symbolFile = null;
+        File traceFile = null;
+        int traceLength = DEFAULT_TRACE_LENGTH;
+        long cycles = -1;
+        double soakHours = -1;
+        int every = 0;
+        boolean measured = false, busProfiled = false;
+        String profiled = null;
+        Rendering rendering = Rendering.SYNCHRONOUS;
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                case "--frames":
+                    cycles = Long.parseLong(args[++i]) * GameBoy.CYCLES_PER_FRAME;
+                    break;
+                case "--seconds":
+                    cycles = (long) (Double.parseDouble(args[++i]) * GameBoy.CYCLES_PER_SECOND);
+                    break;
+                case "--movie":
+                    movieFile = new File(args[++i]);
+                    break;
+                case "--rendering":
+                    rendering = Rendering.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                    break;
+                case "--screenshots":
+                    screenshots = new File(args[++i]);
+                    break;
+                case "--every":
+                    every = Integer.parseInt(args[++i]);
+                    break;
+                case "--metrics":
+                    measured = true;
+                    break;
+                case "--profile":
+                    profiled = args[++i].toUpperCase(Locale.ROOT);
+                    if (!profiled.equals(CALLS))
+                        CpuProfiler.Mode.valueOf(profiled);
+                    break;
+                case "--bus-profile":
+                    busProfiled = true;
+                    break;
+                case "--soak":
+                    soakHours = Double.parseDouble(args[++i]);
+                    if (!(soakHours >= 0))
+                        throw new IllegalArgumentException();
+                    break;
+                case "--trace":
+                    traceFile = new File(args[++i]);
+                    break;
+                case "--trace-length":
+                    traceLength = Integer.parseInt(args[++i]);
+                    break;
+                case "--symbols":
+                    symbolFile = new File(args[++i]);
+                    break;
+                case "--collapsed":
+                    collapsed = new File(args[++i]);
+                    break;
+                default:
+                    if (rom != null || args[i].startsWith("--"))
+                        throw new IllegalArgumentException(args[i]);
+                    rom = new File(args[i]);
+                }
+            }
+            if (rom == null || every < 0 || (every > 0 && screenshots == null)
+                    || (collapsed != null && profiled == null)
+                    || (symbolFile != null && !CALLS.equals(profiled))
+                    || (traceFile != null && profiled != null) || traceLength <= 0
+                    || (soakHours >= 0 && (cycles >= 0 || movieFile != null || screenshots != null
+                            || measured || profiled != null || traceFile != null || busProfiled)))
+                throw new IllegalArgumentException();
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("usage: Main rom [--frames n | --seconds s] [--movie file]"
+                    + " [--rendering synchronous|parallel|pipelined]"
+                    + " [--screenshots directory [--every n]] [--metrics]"
+                    + " [--profile exact|sampling|calls [--symbols file] [--collapsed file]]"
+                    + " [--trace file [--trace-length n]] [--bus-profile]");
+            System.err.println("   or: Main rom --soak hours"
+                    + " [--rendering synchronous|parallel|pipelined]");
+            System.exit(2);
+        }
+
+        if (soakHours >= 0) {
+            System.exit(soak(rom, rendering, soakHours) ? 0 : 3);
+        }
+
+        final GameBoy gb = new GameBoy(Cartridge.ofFile(rom), rendering);
+        final GameBoyMetrics metrics = measured ? gb.enableMetrics() : null;
+        CpuProfiler profiler = null;
+        CallGraphProfiler callGraph = null;
+        if (CALLS.equals(profiled)) {
+            callGraph = new CallGraphProfiler(gb.cartridge(), symbolFile != null
+                    ? SymbolTable.ofFile(symbolFile) : SymbolTable.EMPTY);
+            gb.cpu().setObserver(callGraph);
+        } else if (profiled != null) {
+            profiler = new CpuProfiler(gb.cartridge(), CpuProfiler.Mode.valueOf(profiled));
+            gb.cpu().setObserver(profiler);
+        }
+        final TraceRecorder recorder = traceFile != null
+                ? new TraceRecorder(gb.cpu(), gb.cartridge(), traceLength) : null;
+        if (recorder != null)
+            gb.cpu().setObserver(recorder);
+        final BusProfiler busProfiler = busProfiled ? new BusProfiler(gb.bus()) : null;
+        if (busProfiler != null)
+            busProfiler.setEnabled(true);
+        final InputMovie movie = movieFile != null ? InputMovie.load(movieFile) : null;
+        final InputMovie.Player player = movie != null ? movie.player(gb) : null;
+        if (cycles < 0)
+            cycles = movie != null ? movie.length() : DEFAULT_CYCLES;
+        if (screenshots != null)
+            screenshots.mkdirs();
+
+        // Running frame by frame, to take the screenshots.
+        final String name = rom.getName().replaceFirst("\\.gbc?$", "");
+        final long start = System.nanoTime();
+        long screenshotNanos = 0;
+        try {
+            for (long frame = 1; gb.cycles() < cycles; ++frame) {
+                final long end = Math.min(frame * GameBoy.CYCLES_PER_FRAME, cycles);
+                if (player != null)
+                    player.runUntil(end);
+                else
+                    gb.runUntil(end);
+                if (every > 0 && frame % every == 0 && end == frame * GameBoy.CYCLES_PER_FRAME) {
+                    final long s = System.nanoTime();
+                    save(gb.lcdController().currentImage(), new File(screenshots,
+                            String.format("%s-%06d.png", name, frame)));
+                    screenshotNanos += System.nanoTime() - s;
+                }
+                // The replay stopped at the frame which diverged.
+                if (gb.cycles() < end)
+                    break;
+            }
+        } catch (RuntimeException | Error e) {
+            if (recorder != null) {
+                recorder.dump(traceFile);
+                System.err.println("trace dumped in " + traceFile);
+            }
+            throw e;
+        }
+        final long nanos = System.nanoTime() - start - screenshotNanos;
+
+        final LcdImage image = gb.lcdController().currentImage();
+        if (screenshots != null && every == 0)
+            save(image, new File(screenshots, name + ".png"));
+
+        final double seconds = nanos / 1e9;
+        final double frames = (double) gb.cycles() / GameBoy.CYCLES_PER_FRAME;
+        final double emulatedSeconds = (double) gb.cycles() / GameBoy.CYCLES_PER_SECOND;
+        System.out.printf(Locale.ROOT, "rom         : %s%n", rom);
+        System.out.printf(Locale.ROOT, "emulated    : %.0f frames, %d cycles, %.2f s%n",
+                frames, gb.cycles(), emulatedSeconds);
+        System.out.printf(Locale.ROOT, "time        : %.2f s%n", seconds);
+        System.out.printf(Locale.ROOT, "speed       : %.1f frames/s, %.2f MHz, %.1fx real time%n",
+                frames / seconds, gb.cycles() / seconds / 1e6, emulatedSeconds / seconds);
+        System.out.printf(Locale.ROOT, "final image : %016x%n", image.hash64());
+        if (metrics != null) {
+            printMetrics(metrics);
+        }
+        if (profiled != null) {
+            System.out.println();
+            if (profiler != null)
+                profiler.writeReport(System.out, PROFILE_LENGTH);
+            else
+                callGraph.writeCallTree(System.out, CALL_TREE_MIN_PERCENT);
+            System.out.println();
+        }
+        if (busProfiler != null) {
+            System.out.println();
+            busProfiler.writeReport(System.out, PROFILE_LENGTH);
+            System.out.println();
+        }
+        if (collapsed != null) {
+            try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(collapsed), StandardCharsets.ISO_8859_1))) {
+                if (profiler != null)
+                    profiler.writeCollapsed(w);
+                else
+                    callGraph.writeCollapsed(w);
+            }
+        }
+        if (recorder != null) {
+            recorder.dump(traceFile);
+        }
+        if (player != null) {
+            if (player.divergence() >= 0) {
+                System.out.printf("movie       : diverged at frame %d%n", player.divergence());
+                System.exit(1);
+            }
+            System.out.println("movie       : replayed identically");
+        }
+        System.exit(0);
+    }
+
+    // Runs the soak test of the given rom for the given emulated hours, printing its progress
+    // and its report, and tells whether it found no problem.
+    private static boolean soak(File rom, Rendering rendering, double hours) throws IOException {
+        final Soak soak = new Soak(new GameBoy(Cartridge.ofFile(rom), rendering));
+        final long windows = (long) Math.ceil(hours * 3600 * GameBoy.CYCLES_PER_SECOND
+                / Soak.DEFAULT_WINDOW);
+        System.out.printf(Locale.ROOT, "rom         : %s%n", rom);
+        for (long done = 0; done < windows; ) {
+            final int count = (int) Math.min(SOAK_PROGRESS_WINDOWS, windows - done);
+            soak.run(count);
+            done += count;
+            final Soak.Window last = soak.windows().get(soak.windows().size() - 1);
+            System.out.printf(Locale.ROOT, "%10.2f h  : %.1f frames/s, heap %.1f MiB, %d problems%n",
+                    done * (double) Soak.DEFAULT_WINDOW / GameBoy.CYCLES_PER_SECOND / 3600,
+                    last.framesPerSecond(), last.usedHeap() / 1048576.0, soak.problems().size());
+        }
+        System.out.println();
+        soak.writeReport(System.out);
+        return soak.problems().isEmpty();
+    }
+
+    // Prints the time spent in each component, and the memory allocated.
+    private static void printMetrics(GameBoyMetrics metrics) {
+        final double total = metrics.getRunNanos();
+        final String format = "%-11s : %8.1f ms %5.1f %%%n";
+        System.out.printf(Locale.ROOT, format, "cpu", metrics.getCpuNanos() / 1e6,
+                100 * metrics.getCpuNanos() / total);
+        System.out.printf(Locale.ROOT, format, "lcd timing", metrics.getLcdTimingNanos() / 1e6,
+                100 * metrics.getLcdTimingNanos() / total);
+        System.out.printf(Locale.ROOT, format, "composition", metrics.getLcdCompositionNanos() / 1e6,
+                100 * metrics.getLcdCompositionNanos() / total);
+        System.out.printf(Locale.ROOT, format, "dma", metrics.getDmaNanos() / 1e6,
+                100 * metrics.getDmaNanos() / total);
+        System.out.printf(Locale.ROOT, format, "timer", metrics.getTimerNanos() / 1e6,
+                100 * metrics.getTimerNanos() / total);
+        System.out.printf(Locale.ROOT, format, "cartridge", metrics.getCartridgeNanos() / 1e6,
+                100 * metrics.getCartridgeNanos() / total);
+        System.out.printf(Locale.ROOT, "allocated   : %.0f bytes/frame%n",
+                metrics.getAllocatedBytesPerFrame());
+    }
+
+    // Saves the given image as a PNG file.
+    private static void save(LcdImage image, File file) throws IOException {
+        final BufferedImage png = new BufferedImage(image.width(), image.height(),
+                BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.height(); ++y) {
+            for (int x = 0; x < image.width(); ++x) {
+                final int grey = COLORS[image.get(x, y)];
+                png.setRGB(x, y, grey << 16 | grey << 8 | grey);
+            }
+        }
+        ImageIO.write(png, "png", file);
+    }
+}
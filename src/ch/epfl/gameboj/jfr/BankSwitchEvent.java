@@ -0,0 +1,61 @@
+package ch.epfl.gameboj.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event emitted when a memory bank controller selects other
+ * banks. Since some games switch banks very often, those events are not
+ * recorded unless enabled in the settings of the recording.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+@Name("ch.epfl.gameboj.BankSwitch")
+@Label("Bank Switch")
+@Category("Gameboj")
+@Description("A change of the banks selected by a memory bank controller")
+@Enabled(false)
+public final class BankSwitchEvent extends Event {
+
+    @Label("Controller")
+    String controller;
+
+    @Label("Rom Bank")
+    @Description("The rom bank selected at 0x4000")
+    int romBank;
+
+    @Label("Ram Bank")
+    @Description("The ram bank selected at 0xA000")
+    int ramBank;
+
+    private BankSwitchEvent() {}
+
+    // An event never committed, telling whether the events are recorded
+    // without allocating one each time.
+    private static final BankSwitchEvent PROBE = new BankSwitchEvent();
+
+    /**
+     * Records the selection of banks by a controller, if bank switch events
+     * are recorded.
+     * @param controller : the name of the controller.
+     * @param romBank : the rom bank selected.
+     * @param ramBank : the ram bank selected.
+     */
+    public static void emit(String controller, int romBank, int ramBank) {
+        if (!PROBE.isEnabled()) {
+            return;
+        }
+        final BankSwitchEvent event = new BankSwitchEvent();
+        if (event.shouldCommit()) {
+            event.controller = controller;
+            event.romBank = romBank;
+            event.ramBank = ramBank;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ch.epfl.gameboj.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event emitted for each copy of memory to the object
+ * memory (OAM DMA), lasting from the write of the DMA register to the copy of
+ * the last byte.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+@Name("ch.epfl.gameboj.Dma")
+@Label("OAM DMA")
+@Category("Gameboj")
+@Description("A copy of memory to the object memory")
+public final class DmaEvent extends Event {
+
+    @Label("Source")
+    @Description("The address of the first byte copied")
+    int source;
+
+    private DmaEvent() {}
+
+    // An event never committed, telling whether the events are recorded
+    // without allocating one each time.
+    private static final DmaEvent PROBE = new DmaEvent();
+
+    /**
+     * Starts the event of a copy, if DMA events are recorded.
+     * @param source : the address of the first byte copied.
+     * @return the event started, or null if DMA events are not recorded.
+     */
+    public static DmaEvent start(int source) {
+        if (!PROBE.isEnabled()) {
+            return null;
+        }
+        final DmaEvent event = new DmaEvent();
+        event.source = source;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event of the copy, and records it.
+     */
+    public void finish() {
+        commit();
+    }
+}
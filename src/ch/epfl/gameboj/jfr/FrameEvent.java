@@ -0,0 +1,73 @@
+package ch.epfl.gameboj.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event emitted when the lcd controller completes an image,
+ * lasting from the start of the image to its end.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+@Name("ch.epfl.gameboj.Frame")
+@Label("Frame")
+@Category("Gameboj")
+@Description("An image completed by the screen")
+public final class FrameEvent extends Event {
+
+    @Label("Image")
+    @Description("The number of images completed before this one")
+    long image;
+
+    @Label("Composition")
+    @Description("The time spent composing the lines of the image")
+    @Timespan(Timespan.NANOSECONDS)
+    long composition;
+
+    @Label("Changed Lines")
+    @Description("The number of lines which differ from the previous image")
+    int changedLines;
+
+    private FrameEvent() {}
+
+    // An event never committed, telling whether the events are recorded
+    // without allocating one each time.
+    private static final FrameEvent PROBE = new FrameEvent();
+
+    /**
+     * Starts the event of an image, if frame events are recorded.
+     * @return the event started, or null if frame events are not recorded.
+     */
+    public static FrameEvent start() {
+        if (!PROBE.isEnabled()) {
+            return null;
+        }
+        final FrameEvent event = new FrameEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Adds the given time to the time spent composing the image.
+     * @param nanos : the time spent, in nanoseconds.
+     */
+    public void addComposition(long nanos) {
+        composition += nanos;
+    }
+
+    /**
+     * Ends the event of the image, and records it.
+     * @param image : the number of images completed before this one.
+     * @param changedLines : the number of lines which changed.
+     */
+    public void finish(long image, int changedLines) {
+        this.image = image;
+        this.changedLines = changedLines;
+        commit();
+    }
+}
@@ -0,0 +1,60 @@
+package ch.epfl.gameboj.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event emitted when the cpu wakes up from a HALT, lasting
+ * from the HALT to the interrupt waking it up. Since they are frequent, those
+ * events are not recorded unless enabled in the settings of the recording.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+@Name("ch.epfl.gameboj.Halt")
+@Label("Halt")
+@Category("Gameboj")
+@Description("A period during which the cpu is halted")
+@Enabled(false)
+public final class HaltEvent extends Event {
+
+    @Label("Length")
+    @Description("The number of cycles during which the cpu is halted")
+    long length;
+
+    private transient long haltCycle;
+
+    private HaltEvent() {}
+
+    // An event never committed, telling whether the events are recorded
+    // without allocating one each time.
+    private static final HaltEvent PROBE = new HaltEvent();
+
+    /**
+     * Starts the event of a HALT, if halt events are recorded.
+     * @param cycle : the cycle of the HALT.
+     * @return the event started, or null if halt events are not recorded.
+     */
+    public static HaltEvent start(long cycle) {
+        if (!PROBE.isEnabled()) {
+            return null;
+        }
+        final HaltEvent event = new HaltEvent();
+        event.haltCycle = cycle;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event of the HALT, and records it.
+     * @param cycle : the cycle at which the cpu wakes up.
+     */
+    public void finish(long cycle) {
+        length = cycle - haltCycle;
+        commit();
+    }
+}
@@ -0,0 +1,67 @@
+package ch.epfl.gameboj.jfr;
+
+import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event emitted when the cpu handles an interrupt, lasting
+ * from its request to its handling. Since they are frequent, those events are
+ * not recorded unless enabled in the settings of the recording.
+ *
+ * @author Adrien Laydu, Michael Tasev
+ *
+ */
+@Name("ch.epfl.gameboj.Interrupt")
+@Label("Interrupt")
+@Category("Gameboj")
+@Description("An interrupt handled by the cpu")
+@Enabled(false)
+public final class InterruptEvent extends Event {
+
+    @Label("Interrupt")
+    String interrupt;
+
+    @Label("Latency")
+    @Description("The number of cycles between the request and the handling")
+    long latency;
+
+    private transient long requestCycle;
+
+    private InterruptEvent() {}
+
+    // An event never committed, telling whether the events are recorded
+    // without allocating one each time.
+    private static final InterruptEvent PROBE = new InterruptEvent();
+
+    /**
+     * Starts the event of an interrupt requested, if interrupt events are
+     * recorded.
+     * @param interrupt : the interrupt requested.
+     * @param cycle : the cycle of the request.
+     * @return the event started, or null if interrupt events are not recorded.
+     */
+    public static InterruptEvent start(Interrupt interrupt, long cycle) {
+        if (!PROBE.isEnabled()) {
+            return null;
+        }
+        final InterruptEvent event = new InterruptEvent();
+        event.interrupt = interrupt.name();
+        event.requestCycle = cycle;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event of the interrupt, and records it.
+     * @param cycle : the cycle at which the interrupt is handled.
+     */
+    public void finish(long cycle) {
+        latency = cycle - requestCycle;
+        commit();
+    }
+}
@@ -0,0 +1,101 @@
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.BusProfiler.HotAddress;
+import ch.epfl.gameboj.BusProfiler.Region;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+public final class BusProfilerTest {
+
+    @Test
+    void regionsCoverTheMemory() {
+        assertEquals(Region.ROM0, Region.of(0x0000));
+        assertEquals(Region.ROMX, Region.of(0x7FFF));
+        assertEquals(Region.VRAM, Region.of(0x8000));
+        assertEquals(Region.CART_RAM, Region.of(0xBFFF));
+        assertEquals(Region.WRAM, Region.of(0xC000));
+        assertEquals(Region.ECHO, Region.of(0xFDFF));
+        assertEquals(Region.OAM, Region.of(0xFE9F));
+        assertEquals(Region.UNUSABLE, Region.of(0xFEA0));
+        assertEquals(Region.IO, Region.of(0xFF44));
+        assertEquals(Region.HRAM, Region.of(0xFFFE));
+        assertEquals(Region.IE, Region.of(0xFFFF));
+        assertThrows(IllegalArgumentException.class, () -> Region.of(0x10000));
+
+        int next = 0;
+        for (Region r : Region.values()) {
+            assertEquals(next, r.start());
+            next = r.end();
+        }
+        assertEquals(0x10000, next);
+    }
+
+    @Test
+    void accessesAreCountedOnlyWhileEnabled() {
+        Bus bus = new Bus();
+        new RamController(new Ram(0x2000), AddressMap.WORK_RAM_START).attachTo(bus);
+        BusProfiler profiler = new BusProfiler(bus);
+        bus.write(0xC000, 1);
+        assertFalse(profiler.isEnabled());
+
+        profiler.setEnabled(true);
+        profiler.setEnabled(true);
+        bus.write(0xC000, 2);
+        for (int i = 0; i < 3; ++i)
+            assertEquals(2, bus.read(0xC000));
+        bus.read(0xC001);
+        bus.read(0xFF44);
+        profiler.setEnabled(false);
+        bus.read(0xC000);
+
+        assertEquals(3, profiler.reads(0xC000));
+        assertEquals(1, profiler.writes(0xC000));
+        assertEquals(4, profiler.reads(Region.WRAM));
+        assertEquals(1, profiler.writes(Region.WRAM));
+        assertEquals(1, profiler.reads(Region.IO));
+        assertEquals(0, profiler.reads(Region.ROM0));
+
+        List<HotAddress> hot = profiler.hotAddresses(2);
+        assertEquals(2, hot.size());
+        assertEquals(0xC000, hot.get(0).address());
+        assertEquals(4, hot.get(0).accesses());
+        assertEquals(Region.WRAM, hot.get(0).region());
+        assertEquals(3, profiler.hotAddresses(10).size());
+        assertThrows(IllegalArgumentException.class, () -> profiler.hotAddresses(-1));
+
+        profiler.reset();
+        assertEquals(0, profiler.reads(0xC000));
+        assertTrue(profiler.hotAddresses(10).isEmpty());
+    }
+
+    @Test
+    void profiledGameRunsLikeAnUnprofiledOne() throws IOException {
+        GameBoy reference = new GameBoy(Cartridge.ofFile(new File("tetris.gb")));
+        GameBoy gb = new GameBoy(Cartridge.ofFile(new File("tetris.gb")));
+        BusProfiler profiler = new BusProfiler(gb.bus());
+        profiler.setEnabled(true);
+        long cycles = 200 * GameBoy.CYCLES_PER_FRAME;
+        reference.runUntil(cycles);
+        gb.runUntil(cycles);
+        assertEquals(reference.lcdController().currentImage(), gb.lcdController().currentImage());
+
+        // The game polls the interrupts and its variables of the high RAM.
+        assertTrue(profiler.reads(Region.IO) > 0);
+        assertTrue(profiler.reads(Region.HRAM) > profiler.reads(Region.ROMX));
+        StringBuilder report = new StringBuilder();
+        profiler.writeReport(report, 5);
+        assertTrue(report.toString().contains("hot addresses"));
+    }
+}
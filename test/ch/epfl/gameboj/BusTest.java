@@ -7,6 +7,7 @@ import static ch.epfl.test.TestRandomizer.newRandom;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -117,6 +118,45 @@ class BusTest {
                     () -> b.write(0, d));
         }
     }
+
+    @Test
+    void uncheckedAccessesWorkLikeCheckedOnes() {
+        SimpleComponent[] cs = newComponents(20);
+        Bus b = new Bus();
+        for (Component c: cs)
+            b.attach(c);
+        for (int i = 0; i < cs.length; ++i)
+            b.writeUnchecked(i, (i * 2018) & 0xFF);
+        for (int i = 0; i < cs.length; ++i)
+            assertEquals((i * 2018) & 0xFF, b.readUnchecked(i));
+        assertEquals(0xFF, b.readUnchecked(0xFFFF));
+    }
+
+    @Test
+    void uncheckedAccessesAreCheckedInStrictMode() {
+        // Only in strict mode, the default when the assertions are enabled.
+        assumeTrue(Preconditions.STRICT);
+        Bus b = new Bus();
+        assertThrows(IllegalArgumentException.class,
+                () -> b.readUnchecked(0x10000));
+        assertThrows(IllegalArgumentException.class,
+                () -> b.writeUnchecked(0, 0x100));
+    }
+
+    @Test
+    void detachedComponentIsNoLongerAccessed() {
+        SimpleComponent[] cs = newComponents(2);
+        Bus b = new Bus();
+        b.attach(cs[0]);
+        b.attachFirst(cs[1]);
+        b.detach(cs[1]);
+        b.detach(cs[1]);
+        b.write(1, 42);
+        assertEquals(0, b.read(0));
+        assertEquals(0xFF, b.read(1));
+        assertTrue(cs[0].wasWritten());
+        assertTrue(!cs[1].wasWritten());
+    }
 }
 
 class SimpleComponent implements Component {
@@ -0,0 +1,146 @@
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.Debugger.Access;
+import ch.epfl.gameboj.Debugger.Reason;
+import ch.epfl.gameboj.Debugger.Stop;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.cpu.CpuProfiler;
+import ch.epfl.gameboj.component.cpu.SymbolTable;
+
+public final class DebuggerTest {
+    private static final long FRAMES = 300 * GameBoy.CYCLES_PER_FRAME;
+
+    private static GameBoy newGameBoy() throws IOException {
+        return new GameBoy(Cartridge.ofFile(new File("tetris.gb")));
+    }
+
+    private static byte[] snapshotBytes(GameBoy gb) {
+        ByteBuffer buffer = ByteBuffer.allocate(gb.snapshotSize());
+        gb.snapshot(buffer);
+        return buffer.array();
+    }
+
+    @Test
+    void breakpointStopsBeforeTheInstruction() throws IOException {
+        GameBoy gb = newGameBoy();
+        Debugger debugger = gb.debugger();
+        assertSame(debugger, gb.debugger());
+        // The entry point of the cartridge, right after the boot rom.
+        debugger.addBreakpoint(0x0100);
+        Stop stop = debugger.runUntil(FRAMES);
+        assertEquals(Reason.BREAKPOINT, stop.reason());
+        assertEquals(0x0100, stop.address());
+        assertEquals(0x0100, gb.cpu().pc());
+        assertEquals(gb.cycles(), stop.cycle());
+
+        // Running again goes past the breakpoint.
+        debugger.removeBreakpoint(0x0100);
+        stop = debugger.runUntil(FRAMES);
+        assertEquals(Reason.CYCLE, stop.reason());
+        assertEquals(FRAMES, gb.cycles());
+    }
+
+    @Test
+    void breakpointOfABankOnlyStopsInThatBank() throws IOException {
+        GameBoy gb = newGameBoy();
+        gb.debugger().addBreakpoint(1, 0x0100);
+        assertEquals(Reason.CYCLE, gb.debugger().runUntil(FRAMES).reason());
+
+        GameBoy named = newGameBoy();
+        SymbolTable symbols = SymbolTable.ofReader(new StringReader("00:0100 Start\n"));
+        named.debugger().addBreakpoint(symbols, "Start");
+        assertEquals(Reason.BREAKPOINT, named.debugger().runUntil(FRAMES).reason());
+        assertEquals(0x0100, named.cpu().pc());
+        assertThrows(IllegalArgumentException.class,
+                () -> named.debugger().addBreakpoint(symbols, "Unknown"));
+    }
+
+    @Test
+    void watchpointStopsAtTheAccess() throws IOException {
+        GameBoy gb = newGameBoy();
+        // The control register of the lcd.
+        gb.debugger().addWatchpoint(Access.WRITE, 0xFF40, 0xFF41);
+        Stop stop = gb.debugger().runUntil(FRAMES);
+        assertEquals(Reason.WATCHPOINT, stop.reason());
+        assertEquals(Access.WRITE, stop.access());
+        assertEquals(0xFF40, stop.address());
+        assertEquals(stop.value(), gb.bus().read(0xFF40));
+
+        gb.debugger().clear();
+        gb.debugger().addWatchpoint(Access.READ, 0xFF00, 0xFF01);
+        stop = gb.debugger().runUntil(FRAMES);
+        assertEquals(Reason.WATCHPOINT, stop.reason());
+        assertEquals(Access.READ, stop.access());
+        assertEquals(0xFF00, stop.address());
+    }
+
+    @Test
+    void conditionsStopTheRun() throws IOException {
+        GameBoy gb = newGameBoy();
+        Debugger debugger = gb.debugger();
+        Stop stop = debugger.runUntil(debugger.pcEquals(0x0100), FRAMES);
+        assertEquals(Reason.CONDITION, stop.reason());
+        assertEquals(0x0100, gb.cpu().pc());
+        // A condition which already holds stops at once.
+        assertEquals(stop.cycle(), debugger.runUntil(debugger.pcEquals(0x0100), FRAMES).cycle());
+
+        stop = debugger.runUntilMemory(0xFF40, v -> (v & 0x80) != 0, FRAMES);
+        assertEquals(Reason.CONDITION, stop.reason());
+        assertEquals(0xFF40, stop.address());
+        assertTrue((gb.bus().read(0xFF40) & 0x80) != 0);
+
+        stop = debugger.runUntil(debugger.memoryEquals(0xFF44, 0x90), FRAMES);
+        assertEquals(Reason.CONDITION, stop.reason());
+        assertEquals(0x90, gb.bus().read(0xFF44));
+    }
+
+    @Test
+    void debuggedRunWithoutStopIsLikeAPlainRun() throws IOException {
+        GameBoy reference = newGameBoy();
+        reference.runUntil(FRAMES);
+
+        GameBoy gb = newGameBoy();
+        CpuProfiler profiler = new CpuProfiler(gb.cartridge(), CpuProfiler.Mode.EXACT);
+        gb.cpu().setObserver(profiler);
+        Debugger debugger = gb.debugger();
+        debugger.addBreakpoint(1, 0x0000);
+        // The unusable part of the memory, which tetris only clears.
+        debugger.addWatchpoint(Access.READ, 0xFEA0, 0xFF00);
+        assertEquals(Reason.CYCLE, debugger.runUntil(FRAMES).reason());
+        assertEquals(Reason.CYCLE, debugger.runUntil(() -> false, FRAMES).reason());
+        assertArrayEquals(snapshotBytes(reference), snapshotBytes(gb));
+
+        // The instrumentation is removed after the run.
+        assertSame(profiler, gb.cpu().observer());
+        assertTrue(profiler.hotSpots(1).size() > 0);
+    }
+
+    @Test
+    void debuggerRejectsInvalidArguments() throws IOException {
+        GameBoy gb = newGameBoy();
+        Debugger debugger = gb.debugger();
+        assertThrows(IllegalArgumentException.class, () -> debugger.addBreakpoint(0x10000));
+        assertThrows(IllegalArgumentException.class, () -> debugger.addBreakpoint(-1, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> debugger.addWatchpoint(Access.READ, 0x10, 0x10));
+        assertThrows(NullPointerException.class,
+                () -> debugger.addWatchpoint(null, 0x10, 0x11));
+        gb.runUntil(10);
+        assertThrows(IllegalArgumentException.class, () -> debugger.runUntil(5));
+        assertNull(gb.cpu().observer());
+    }
+}
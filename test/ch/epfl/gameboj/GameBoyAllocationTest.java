@@ -0,0 +1,50 @@
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+
+public final class GameBoyAllocationTest {
+    private static final long FRAME = GameBoy.CYCLES_PER_FRAME;
+
+    @Test
+    void emulationAllocatesNothingOnceWarm() throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        GameBoy gb = new GameBoy(Cartridge.ofFile(new File("tetris.gb")));
+        // Until the code is compiled.
+        gb.runUntil(600 * FRAME);
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        gb.runUntil(900 * FRAME);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        // The images were about 80 KiB per frame; a few objects may still be
+        // allocated when the compiler deoptimises a method.
+        assertTrue(allocated < 16 * 1024, "allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void imagesAreOnlyCreatedWhenAskedFor() throws IOException {
+        GameBoy gb = new GameBoy(Cartridge.ofFile(new File("tetris.gb")));
+        gb.runUntil(300 * FRAME);
+        LcdImage image = gb.lcdController().currentImage();
+        assertTrue(image == gb.lcdController().currentImage());
+
+        gb.runUntil(301 * FRAME);
+        LcdImage next = gb.lcdController().currentImage();
+        assertTrue(image != next);
+        assertEquals(next, gb.lcdController().currentImage());
+        assertEquals(next.hash64(), gb.fork().lcdController().currentImage().hash64());
+    }
+}
@@ -0,0 +1,108 @@
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+
+public final class GameBoyForkTest {
+    private static GameBoy newGameBoy(String romName) throws IOException {
+        return new GameBoy(Cartridge.ofFile(new File(romName)));
+    }
+
+    private static byte[] snapshotBytes(GameBoy gb) {
+        ByteBuffer buffer = ByteBuffer.allocate(gb.snapshotSize());
+        gb.snapshot(buffer);
+        return buffer.array();
+    }
+
+    // Runs the given number of frames, pressing the given key now and then, and returns the images.
+    private static LcdImage[] runFrames(GameBoy gb, int frames, Key key) {
+        LcdImage[] images = new LcdImage[frames];
+        long start = gb.cycles();
+        for (int f = 0; f < frames; ++f) {
+            if (f % 20 == 5)
+                gb.joypad().keyPressed(key);
+            else if (f % 20 == 8)
+                gb.joypad().keyReleased(key);
+            gb.runUntil(start + (f + 1) * GameBoy.CYCLES_PER_FRAME);
+            images[f] = gb.lcdController().currentImage();
+        }
+        return images;
+    }
+
+    private static void assertForkRunsLikeOriginal(String romName) throws IOException {
+        GameBoy reference = newGameBoy(romName);
+        GameBoy gb = newGameBoy(romName);
+        reference.runUntil(300 * GameBoy.CYCLES_PER_FRAME + 77);
+        gb.runUntil(300 * GameBoy.CYCLES_PER_FRAME + 77);
+
+        GameBoy fork = gb.fork();
+        assertEquals(gb.cycles(), fork.cycles());
+        byte[] snapshot = snapshotBytes(gb);
+        assertArrayEquals(snapshot, snapshotBytes(fork));
+
+        // The fork and its parent diverge, without affecting each other.
+        LcdImage[] forkImages = runFrames(fork, 60, Key.START);
+        LcdImage[] images = runFrames(gb, 60, Key.A);
+        LcdImage[] expectedImages = runFrames(reference, 60, Key.A);
+        GameBoy restored = newGameBoy(romName);
+        restored.restore(ByteBuffer.wrap(snapshot));
+        LcdImage[] expectedForkImages = runFrames(restored, 60, Key.START);
+        // The first image of the fork is not copied.
+        for (int f = 1; f < images.length; ++f) {
+            assertEquals(expectedImages[f], images[f], romName + " at frame " + f);
+            assertEquals(expectedForkImages[f], forkImages[f], romName + " at frame " + f);
+        }
+        assertArrayEquals(snapshotBytes(reference), snapshotBytes(gb));
+        assertArrayEquals(snapshotBytes(restored), snapshotBytes(fork));
+    }
+
+    @Test
+    void forkRunsLikeOriginal() throws IOException {
+        assertForkRunsLikeOriginal("tetris.gb");
+        assertForkRunsLikeOriginal("supermarioland.gb");
+        assertForkRunsLikeOriginal("zelda.gb");
+    }
+
+    @Test
+    void forksOfForksAreIndependent() throws IOException {
+        GameBoy gb = newGameBoy("zelda.gb");
+        gb.runUntil(200 * GameBoy.CYCLES_PER_FRAME);
+        byte[] expected = snapshotBytes(gb);
+        GameBoy fork = gb.fork();
+        GameBoy forkOfFork = fork.fork();
+        runFrames(fork, 30, Key.START);
+        runFrames(forkOfFork, 30, Key.A);
+        assertArrayEquals(expected, snapshotBytes(gb));
+        assertArrayEquals(expected, snapshotBytes(gb.fork()));
+    }
+
+    @Test
+    void forkDoesNotCopyMemories() throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        GameBoy gb = newGameBoy("zelda.gb");
+        gb.runUntil(100 * GameBoy.CYCLES_PER_FRAME);
+        for (int i = 0; i < 1000; ++i)
+            gb.fork();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        gb.fork();
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        // The work RAM, video RAM and cartridge RAM alone are 24 KiB.
+        assertTrue(allocated < 16 * 1024, "allocated " + allocated + " bytes");
+    }
+}
@@ -0,0 +1,107 @@
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+public final class GameBoyMetricsTest {
+    private static GameBoy newGameBoy() throws IOException {
+        return new GameBoy(Cartridge.ofFile(new File("supermarioland.gb")));
+    }
+
+    private static byte[] snapshotBytes(GameBoy gb) {
+        ByteBuffer buffer = ByteBuffer.allocate(gb.snapshotSize());
+        gb.snapshot(buffer);
+        return buffer.array();
+    }
+
+    @Test
+    void metricsDoNotChangeEmulation() throws IOException {
+        GameBoy expected = newGameBoy();
+        GameBoy measured = newGameBoy();
+        measured.enableMetrics();
+        for (int f = 1; f <= 300; ++f) {
+            expected.runUntil(f * GameBoy.CYCLES_PER_FRAME);
+            measured.runUntil(f * GameBoy.CYCLES_PER_FRAME);
+        }
+        assertArrayEquals(snapshotBytes(expected), snapshotBytes(measured));
+        assertEquals(expected.lcdController().currentImage(),
+                measured.lcdController().currentImage());
+    }
+
+    @Test
+    void metricsCountCyclesFramesAndTime() throws IOException {
+        GameBoy gb = newGameBoy();
+        gb.runUntil(10 * GameBoy.CYCLES_PER_FRAME);
+        GameBoyMetrics metrics = gb.enableMetrics();
+        assertSame(metrics, gb.enableMetrics());
+        for (int f = 11; f <= 300; ++f)
+            gb.runUntil(f * GameBoy.CYCLES_PER_FRAME);
+
+        assertEquals(290 * GameBoy.CYCLES_PER_FRAME, metrics.getCycles());
+        // The screen is turned off during some frames.
+        assertTrue(metrics.getFrames() >= 250 && metrics.getFrames() <= 290);
+        assertTrue(metrics.getRunNanos() > 0 && metrics.getRealTimeRatio() > 0);
+        assertTrue(metrics.getLcdCompositionNanos() > 0);
+        assertTrue(metrics.getDmaNanos() > 0);
+        long components = metrics.getCpuNanos() + metrics.getLcdTimingNanos()
+                + metrics.getLcdCompositionNanos() + metrics.getDmaNanos()
+                + metrics.getTimerNanos() + metrics.getCartridgeNanos();
+        assertTrue(components <= metrics.getRunNanos() + 1000);
+        assertTrue(metrics.getAllocatedBytesPerFrame() != 0);
+
+        metrics.reset();
+        assertEquals(0, metrics.getCycles());
+        assertEquals(0, metrics.getFrames());
+        assertEquals(0, metrics.getCpuNanos());
+        assertEquals(0, metrics.getLcdCompositionNanos());
+        gb.runUntil(gb.cycles() + GameBoy.CYCLES_PER_FRAME);
+        assertEquals(GameBoy.CYCLES_PER_FRAME, metrics.getCycles());
+        assertEquals(1, metrics.getFrames());
+    }
+
+    @Test
+    void lcdTimingIsMeasuredWhileTheScreenIsOn() throws IOException {
+        GameBoy gb = newGameBoy();
+        GameBoyMetrics metrics = gb.enableMetrics();
+        for (int f = 1; f <= 120; ++f)
+            gb.runUntil(f * GameBoy.CYCLES_PER_FRAME);
+
+        assertTrue(metrics.getFrames() > 0);
+        assertTrue(metrics.getLcdTimingNanos() > 0);
+        assertTrue(metrics.getCpuNanos() > 0);
+        metrics.reset();
+        assertEquals(0, metrics.getLcdTimingNanos());
+        assertEquals(0, metrics.getTimerNanos());
+    }
+
+    @Test
+    void metricsCanBeReadThroughJmx() throws IOException, JMException {
+        GameBoy gb = newGameBoy();
+        GameBoyMetrics metrics = gb.enableMetrics();
+        metrics.register("metrics test");
+        gb.runUntil(60 * GameBoy.CYCLES_PER_FRAME);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("ch.epfl.gameboj:type=GameBoy,name=\"metrics test\"");
+        assertTrue(server.isRegistered(name));
+        assertEquals(60 * GameBoy.CYCLES_PER_FRAME, server.getAttribute(name, "Cycles"));
+        metrics.unregister();
+        assertFalse(server.isRegistered(name));
+    }
+}
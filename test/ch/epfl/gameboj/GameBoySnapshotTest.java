@@ -0,0 +1,134 @@
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+
+public final class GameBoySnapshotTest {
+    private static final long CYCLES_PER_FRAME = 17_556;
+
+    private static GameBoy newGameBoy(String romName) throws IOException {
+        return new GameBoy(Cartridge.ofFile(new File(romName)));
+    }
+
+    private static byte[] snapshotBytes(GameBoy gb) {
+        ByteBuffer buffer = ByteBuffer.allocate(gb.snapshotSize());
+        gb.snapshot(buffer);
+        assertEquals(0, buffer.remaining());
+        return buffer.array();
+    }
+
+    // Runs the given number of frames, pressing A now and then, and returns the images.
+    private static LcdImage[] runFrames(GameBoy gb, int frames) {
+        LcdImage[] images = new LcdImage[frames];
+        long start = gb.cycles();
+        for (int f = 0; f < frames; ++f) {
+            if (f % 20 == 5)
+                gb.joypad().keyPressed(Key.A);
+            else if (f % 20 == 8)
+                gb.joypad().keyReleased(Key.A);
+            gb.runUntil(start + (f + 1) * CYCLES_PER_FRAME);
+            images[f] = gb.lcdController().currentImage();
+        }
+        return images;
+    }
+
+    private static void assertSameRunAfterRestore(String romName) throws IOException {
+        GameBoy gb = newGameBoy(romName);
+        gb.runUntil(300 * CYCLES_PER_FRAME + 123);
+        ByteBuffer snapshot = ByteBuffer.allocateDirect(gb.snapshotSize());
+        gb.snapshot(snapshot);
+        LcdImage[] expectedImages = runFrames(gb, 60);
+        byte[] expectedEnd = snapshotBytes(gb);
+
+        for (GameBoy other : new GameBoy[] { gb, newGameBoy(romName) }) {
+            snapshot.flip();
+            other.restore(snapshot);
+            assertEquals(300 * CYCLES_PER_FRAME + 123, other.cycles());
+            LcdImage[] images = runFrames(other, 60);
+            // The first image may contain lines drawn before the restoration.
+            for (int f = 1; f < images.length; ++f)
+                assertEquals(expectedImages[f], images[f], romName + " at frame " + f);
+            assertArrayEquals(expectedEnd, snapshotBytes(other));
+        }
+    }
+
+    @Test
+    void restoredGameBoyRunsLikeOriginal() throws IOException {
+        assertSameRunAfterRestore("tetris.gb");
+        assertSameRunAfterRestore("supermarioland.gb");
+        assertSameRunAfterRestore("zelda.gb");
+    }
+
+    @Test
+    void snapshotStartsWithHeader() throws IOException {
+        GameBoy gb = newGameBoy("tetris.gb");
+        ByteBuffer buffer = ByteBuffer.wrap(snapshotBytes(gb));
+        assertEquals(0x47424A53, buffer.getInt());
+        assertEquals(GameBoy.SNAPSHOT_VERSION, buffer.getShort());
+        assertEquals(gb.snapshotSize(), buffer.getInt());
+    }
+
+    @Test
+    void restoreFailsWithOtherCartridgeOrCorruptedSnapshot() throws IOException {
+        GameBoy tetris = newGameBoy("tetris.gb");
+        GameBoy flappy = newGameBoy("flappyboy.gb");
+        tetris.runUntil(1000);
+        byte[] snapshot = snapshotBytes(tetris);
+        assertThrows(IllegalArgumentException.class,
+                () -> flappy.restore(ByteBuffer.wrap(snapshot)));
+        snapshot[0] ^= 1;
+        ByteBuffer corrupted = ByteBuffer.wrap(snapshot);
+        assertThrows(IllegalArgumentException.class, () -> tetris.restore(corrupted));
+        assertEquals(0, corrupted.position());
+        assertEquals(1000, tetris.cycles());
+    }
+
+    @Test
+    void snapshotFailsWithTooSmallBuffer() throws IOException {
+        GameBoy gb = newGameBoy("tetris.gb");
+        ByteBuffer buffer = ByteBuffer.allocate(gb.snapshotSize() - 1);
+        assertThrows(BufferOverflowException.class, () -> gb.snapshot(buffer));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void snapshotAndRestoreDoNotAllocate() throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        GameBoy gb = newGameBoy("zelda.gb");
+        gb.runUntil(100 * CYCLES_PER_FRAME);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(gb.snapshotSize());
+        for (int i = 0; i < 20_000; ++i) {
+            buffer.clear();
+            gb.snapshot(buffer);
+            buffer.flip();
+            gb.restore(buffer);
+        }
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 1000; ++i) {
+            buffer.clear();
+            gb.snapshot(buffer);
+            buffer.flip();
+            gb.restore(buffer);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue(allocated < 1000, "allocated " + allocated + " bytes");
+    }
+}
@@ -0,0 +1,140 @@
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+/**
+ * Checks that the games of the repository still draw the same images: each
+ * game is run with the same scripted input, and the 64-bit hashes of its images
+ * at some frames are compared with golden ones, recorded with a version of the
+ * emulator considered correct. This allows optimising the emulation and the
+ * rendering with the certainty that the images are unchanged.
+ *
+ * After a change which is known to modify the images, the golden hashes are
+ * printed again by the main method of this class.
+ */
+public final class GoldenFrameTest {
+    private static final List<String> GAMES = List.of("2048.gb", "bomberman.gb",
+            "donkeykong.gb", "flappyboy.gb", "supermarioland.gb",
+            "supermarioland2.gb", "tasmaniaStory.gb", "tetris.gb", "zelda.gb");
+
+    // The frames whose images are compared.
+    private static final int[] FRAMES = { 200, 300, 450, 600, 750, 900 };
+
+    // The scripted input : the frames at which a key is pressed (+) or released (-).
+    private static final String SCRIPT = "150+START 155-START 250+START 255-START"
+            + " 280+A 285-A 330+RIGHT 390-RIGHT 400+A 420-A 460+LEFT 500-LEFT"
+            + " 520+START 525-START 560+B 565-B 600+DOWN 640-DOWN 700+UP 720-UP"
+            + " 750+A 780-A 800+RIGHT 880-RIGHT";
+
+    // The hashes of the images at FRAMES, printed by main.
+    private static final Map<String, long[]> GOLDEN = Map.of(
+            "2048.gb", new long[] {
+                    0x27E716C3F7707486L, 0x27E716C3F7707486L, 0x5311D720D0673F12L,
+                    0x75CF5E2AE39373FCL, 0xA7A0F917824A0663L, 0x441952B899C2A8ADL },
+            "bomberman.gb", new long[] {
+                    0xBE2FFBE70E1E93EEL, 0xC88A8C9F4CB0BD9AL, 0x73B1F2F5B9573D72L,
+                    0x1BF12908B0802123L, 0x1BF12908B0802123L, 0xECE18D407487DC66L },
+            "donkeykong.gb", new long[] {
+                    0xE456B89C2D7AF2DAL, 0xCB1FD324B41787EAL, 0xCB1FD324B41787EAL,
+                    0xCB1FD324B41787EAL, 0xC45176EA954D7655L, 0x38393D92FB69C9FEL },
+            "flappyboy.gb", new long[] {
+                    0x66F68B2D49FFD685L, 0x3F28DF829037B15DL, 0x6CEA5704BC136B22L,
+                    0x66F68B2D49FFD685L, 0xEA8F2EF27058C86AL, 0x89B176AA6279ED22L },
+            "supermarioland.gb", new long[] {
+                    0xFD46EE3ACDF5ED13L, 0xBEC9B5C6CE0827E9L, 0xBEC9B5C6CE0827E9L,
+                    0xD473E1FE1FAEBD49L, 0xB4D9C4099866DCEBL, 0x0E61719DBE549F9FL },
+            "supermarioland2.gb", new long[] {
+                    0x39AC2309745F1C6FL, 0x6669BF12E088FB04L, 0xA4B2A885F0CDEDA5L,
+                    0x0B7328AEAFF8043BL, 0x7559C4A8DFD56FFAL, 0x5AD1DAC1C0F829B9L },
+            "tasmaniaStory.gb", new long[] {
+                    0xED2E62479DF5B8E2L, 0xFCA6F0DB1A7F28FDL, 0xD6A40EA9420F30B2L,
+                    0xEC0936B9E82E84A0L, 0xEC0936B9E82E84A0L, 0xD6A40EA9420F30B2L },
+            "tetris.gb", new long[] {
+                    0xD980F2F61D496532L, 0xD980F2F61D496532L, 0x7DE55C6A19A5A293L,
+                    0x5E1DED2932F24229L, 0x9ED31BBA2B880806L, 0xFCF035AD09E3C354L },
+            "zelda.gb", new long[] {
+                    0xC845C7421777FF60L, 0x7B4D83BCA19D0B1EL, 0xDDEEB1CC5046ACCAL,
+                    0x68BB8CE65CD3670CL, 0xBE10DCF2DF81E247L, 0x75942CD33BEB28B0L });
+
+    /**
+     * Runs the given game with the scripted input, and hashes its image at
+     * every frame.
+     * @param rom : the game to run.
+     * @return the hashes of the images at the frames compared.
+     * @throws IOException if the game cannot be read.
+     */
+    static long[] frameHashes(File rom) throws IOException {
+        final GameBoy gb = new GameBoy(Cartridge.ofFile(rom));
+        final String[] events = SCRIPT.split(" ");
+        final long[] hashes = new long[FRAMES.length];
+        int event = 0, compared = 0;
+        for (int frame = 1; compared < FRAMES.length; ++frame) {
+            for (; event < events.length && frameOf(events[event]) == frame; ++event)
+                apply(gb, events[event]);
+            gb.runUntil(frame * GameBoy.CYCLES_PER_FRAME);
+
+            // Hashing every frame, like a check of all the images would.
+            final long hash = gb.lcdController().currentImage().hash64();
+            if (frame == FRAMES[compared])
+                hashes[compared++] = hash;
+        }
+        return hashes;
+    }
+
+    // The index of the sign of an event of the script.
+    private static int signIndex(String event) {
+        return event.contains("+") ? event.indexOf('+') : event.indexOf('-');
+    }
+
+    private static int frameOf(String event) {
+        return Integer.parseInt(event.substring(0, signIndex(event)));
+    }
+
+    private static void apply(GameBoy gb, String event) {
+        final int i = signIndex(event);
+        final Key k = Key.valueOf(event.substring(i + 1));
+        if (event.charAt(i) == '+')
+            gb.joypad().keyPressed(k);
+        else
+            gb.joypad().keyReleased(k);
+    }
+
+    @Test
+    void gamesDrawGoldenFrames() throws IOException {
+        for (String game : GAMES) {
+            final long[] expected = GOLDEN.get(game);
+            final long[] actual = frameHashes(new File(game));
+            for (int i = 0; i < FRAMES.length; ++i)
+                assertEquals(expected[i], actual[i],
+                        game + " at frame " + FRAMES[i]);
+        }
+    }
+
+    /**
+     * Prints the golden hashes of the current emulator, in the form of the
+     * entries of GOLDEN.
+     */
+    public static void main(String[] args) throws IOException {
+        for (String game : GAMES) {
+            final long[] hashes = frameHashes(new File(game));
+            final StringBuilder entry = new StringBuilder();
+            entry.append("            \"").append(game).append("\", new long[] {");
+            for (int i = 0; i < hashes.length; ++i) {
+                entry.append(i % 3 == 0 ? "\n                    " : " ");
+                entry.append(String.format("0x%016XL,", hashes[i]));
+            }
+            entry.setLength(entry.length() - 1);
+            System.out.println(entry.append(" },"));
+        }
+    }
+}
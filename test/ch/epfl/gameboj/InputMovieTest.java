@@ -0,0 +1,150 @@
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController.Rendering;
+
+public final class InputMovieTest {
+    private static final Key[] KEYS = { Key.START, Key.A, Key.RIGHT, Key.B, Key.LEFT, Key.DOWN };
+
+    private static GameBoy newGameBoy(String romName) throws IOException {
+        return new GameBoy(Cartridge.ofFile(new File(romName)));
+    }
+
+    private static byte[] snapshotBytes(GameBoy gb) {
+        ByteBuffer buffer = ByteBuffer.allocate(gb.snapshotSize());
+        gb.snapshot(buffer);
+        return buffer.array();
+    }
+
+    // Plays the given number of frames, pressing keys at cycles which are not multiples of a frame.
+    private static InputMovie.Recorder record(GameBoy gb, int frames) {
+        InputMovie.Recorder recorder = new InputMovie.Recorder(gb);
+        for (int f = 0; f < frames; ++f) {
+            long start = f * GameBoy.CYCLES_PER_FRAME;
+            recorder.runUntil(start + 1000 + 37 * (f % 100));
+            Key key = KEYS[(f / 40) % KEYS.length];
+            if (f % 40 == 3)
+                recorder.keyPressed(key);
+            else if (f % 40 == 9)
+                recorder.keyReleased(key);
+            recorder.runUntil(start + GameBoy.CYCLES_PER_FRAME);
+        }
+        recorder.runUntil(frames * GameBoy.CYCLES_PER_FRAME + 1234);
+        return recorder;
+    }
+
+    private static byte[] bytes(InputMovie movie) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        movie.write(out);
+        return out.toByteArray();
+    }
+
+    private static InputMovie movie(byte[] bytes) throws IOException {
+        return InputMovie.read(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    void replayReproducesRecording() throws IOException {
+        for (String rom : new String[] { "tetris.gb", "supermarioland.gb", "zelda.gb" }) {
+            GameBoy gb = newGameBoy(rom);
+            InputMovie recorded = record(gb, 600).movie();
+            assertEquals(600 * GameBoy.CYCLES_PER_FRAME + 1234, recorded.length());
+            assertEquals(600, recorded.frameCount());
+            assertEquals(30, recorded.eventCount());
+            assertEquals(gb.lcdController().currentImage().hash64(), recorded.frameHash(599));
+
+            InputMovie movie = movie(bytes(recorded));
+            GameBoy replayed = newGameBoy(rom);
+            assertEquals(-1, movie.replay(replayed), rom);
+            assertEquals(gb.cycles(), replayed.cycles());
+            assertArrayEquals(snapshotBytes(gb), snapshotBytes(replayed), rom);
+        }
+    }
+
+    @Test
+    void playerReproducesRecordingInPiecesAndGoesOn() throws IOException {
+        GameBoy gb = newGameBoy("tetris.gb");
+        InputMovie movie = record(gb, 300).movie();
+        GameBoy played = newGameBoy("tetris.gb");
+        InputMovie.Player player = movie.player(played);
+        for (long c = 0; c < movie.length(); c += 5_000)
+            assertTrue(player.runUntil(c));
+        assertTrue(player.runUntil(movie.length()));
+        assertArrayEquals(snapshotBytes(gb), snapshotBytes(played));
+
+        gb.runUntil(400 * GameBoy.CYCLES_PER_FRAME);
+        assertTrue(player.runUntil(400 * GameBoy.CYCLES_PER_FRAME));
+        assertEquals(-1, player.divergence());
+        assertArrayEquals(snapshotBytes(gb), snapshotBytes(played));
+    }
+
+    @Test
+    void movieIsCompact() throws IOException {
+        InputMovie movie = record(newGameBoy("tetris.gb"), 600).movie();
+        // The header, 30 events of at most 4 bytes, and the hashes.
+        assertTrue(bytes(movie).length <= 20 + 30 * 4 + 600 * 8);
+    }
+
+    @Test
+    void moviesOfOtherVersionsAreRejected() throws IOException {
+        byte[] bytes = bytes(record(newGameBoy("tetris.gb"), 10).movie());
+        // The version follows the magic number.
+        bytes[4] = (byte) (InputMovie.VERSION - 1);
+        assertThrows(IllegalArgumentException.class, () -> movie(bytes));
+    }
+
+    @Test
+    void replayFindsFirstDivergingFrame() throws IOException {
+        InputMovie movie = record(newGameBoy("tetris.gb"), 300).movie();
+        byte[] bytes = bytes(movie);
+        // The hash of frame 250 is stored 50 hashes before the end.
+        bytes[bytes.length - 50 * 8] ^= 1;
+        GameBoy gb = newGameBoy("tetris.gb");
+        assertEquals(250, movie(bytes).replay(gb));
+        assertEquals(251 * GameBoy.CYCLES_PER_FRAME, gb.cycles());
+
+        InputMovie.Player player = movie(bytes).player(newGameBoy("tetris.gb"));
+        assertFalse(player.runUntil(movie.length()));
+        assertEquals(250, player.divergence());
+        assertFalse(player.runUntil(movie.length()));
+    }
+
+    @Test
+    void replayFailsForOtherOrStartedGameBoy() throws IOException {
+        InputMovie movie = record(newGameBoy("tetris.gb"), 10).movie();
+        assertThrows(IllegalArgumentException.class,
+                () -> movie.replay(newGameBoy("flappyboy.gb")));
+        GameBoy started = newGameBoy("tetris.gb");
+        started.runUntil(1);
+        assertThrows(IllegalArgumentException.class, () -> movie.replay(started));
+        assertThrows(IllegalArgumentException.class, () -> new InputMovie.Recorder(started));
+        GameBoy pipelined = new GameBoy(Cartridge.ofFile(new File("tetris.gb")), Rendering.PIPELINED);
+        assertThrows(IllegalArgumentException.class, () -> movie.replay(pipelined));
+    }
+
+    @Test
+    void readFailsForInvalidOrTruncatedMovie() throws IOException {
+        byte[] bytes = bytes(record(newGameBoy("tetris.gb"), 10).movie());
+        byte[] invalid = bytes.clone();
+        invalid[0] ^= 1;
+        assertThrows(IllegalArgumentException.class, () -> movie(invalid));
+        assertThrows(IOException.class,
+                () -> movie(Arrays.copyOf(bytes, bytes.length - 1)));
+    }
+}
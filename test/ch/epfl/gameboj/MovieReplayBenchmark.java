@@ -0,0 +1,54 @@
+package ch.epfl.gameboj;
+
+import java.io.File;
+import java.io.IOException;
+
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+/**
+ * Replays an input movie as fast as possible, checks that it does not diverge
+ * and reports the emulation speed. If the movie file does not exist, some
+ * scripted play is recorded in it first.
+ *
+ * Usage: MovieReplayBenchmark [rom file] [movie file] [minutes recorded]
+ */
+public final class MovieReplayBenchmark {
+    private static final Key[] KEYS = { Key.START, Key.A, Key.RIGHT, Key.B, Key.LEFT };
+
+    public static void main(String[] args) throws IOException {
+        final File rom = new File(args.length > 0 ? args[0] : "tetris.gb");
+        final File movieFile = new File(args.length > 1 ? args[1] : "tetris.gbm");
+        final int minutes = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        if (!movieFile.exists()) {
+            final InputMovie.Recorder recorder = new InputMovie.Recorder(
+                    new GameBoy(Cartridge.ofFile(rom)));
+            final int frames = minutes * 60 * 60;
+            for (int f = 0; f < frames; ++f) {
+                final Key key = KEYS[(f / 60) % KEYS.length];
+                recorder.runUntil(f * GameBoy.CYCLES_PER_FRAME + 1_000 + f % 7_000);
+                if (f % 60 == 0)
+                    recorder.keyPressed(key);
+                else if (f % 60 == 10)
+                    recorder.keyReleased(key);
+            }
+            recorder.runUntil(frames * GameBoy.CYCLES_PER_FRAME);
+            recorder.movie().save(movieFile);
+            System.out.printf("recorded %d minute(s) in %s (%d bytes)%n", minutes, movieFile,
+                    movieFile.length());
+        }
+
+        final InputMovie movie = InputMovie.load(movieFile);
+        for (int run = 0; run < 3; ++run) {
+            final GameBoy gb = new GameBoy(Cartridge.ofFile(rom));
+            final long start = System.nanoTime();
+            final int diverged = movie.replay(gb);
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d frames, %d events in %.2f s : %.1f MHz, %.1fx real time, %s%n",
+                    movie.frameCount(), movie.eventCount(), seconds, gb.cycles() / seconds / 1e6,
+                    gb.cycles() / (double) GameBoy.CYCLES_PER_SECOND / seconds,
+                    diverged < 0 ? "identical" : "diverged at frame " + diverged);
+        }
+    }
+}
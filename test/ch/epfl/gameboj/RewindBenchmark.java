@@ -0,0 +1,45 @@
+package ch.epfl.gameboj;
+
+import java.io.File;
+import java.io.IOException;
+
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+/**
+ * Measures the memory needed per minute of rewind history, and the time
+ * needed to take the states, while playing some games.
+ *
+ * Usage: RewindBenchmark [frames per state] [minutes] [rom files...]
+ */
+public final class RewindBenchmark {
+    private static final Key[] KEYS = { Key.START, Key.A, Key.RIGHT, Key.B, Key.LEFT };
+
+    public static void main(String[] args) throws IOException {
+        final int framesPerState = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        final int minutes = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        final String[] roms = args.length > 2
+                ? java.util.Arrays.copyOfRange(args, 2, args.length)
+                : new String[] { "tetris.gb", "supermarioland.gb", "zelda.gb", "2048.gb" };
+
+        System.out.printf("%d frame(s) per state, %d minute(s) of play%n", framesPerState, minutes);
+        System.out.println("rom                  state (B)  per minute (KiB)  per capture (us)  per frame (us)");
+        for (String rom : roms) {
+            final GameBoy gb = new GameBoy(Cartridge.ofFile(new File(rom)));
+            final RewindBuffer buffer = new RewindBuffer(gb, framesPerState, 1L << 28);
+            final int frames = minutes * 60 * 60;
+            for (int f = 0; f < frames; ++f) {
+                final Key key = KEYS[(f / 60) % KEYS.length];
+                if (f % 60 == 0)
+                    gb.joypad().keyPressed(key);
+                else if (f % 60 == 10)
+                    gb.joypad().keyReleased(key);
+                gb.runUntil(gb.cycles() + GameBoy.CYCLES_PER_FRAME);
+                buffer.update();
+            }
+            System.out.printf("%-20s %9d  %16.1f  %16.2f  %14.2f%n", rom, gb.snapshotSize(),
+                    buffer.bytesPerMinute() / 1024.0, buffer.averageCaptureNanos() / 1e3,
+                    buffer.captureNanosPerFrame() / 1e3);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+public final class RewindBufferTest {
+
+    private static GameBoy newGameBoy(String romName) throws IOException {
+        return new GameBoy(Cartridge.ofFile(new File(romName)));
+    }
+
+    private static byte[] snapshotBytes(GameBoy gb) {
+        ByteBuffer buffer = ByteBuffer.allocate(gb.snapshotSize());
+        gb.snapshot(buffer);
+        return buffer.array();
+    }
+
+    // Runs the given number of frames, and returns the snapshots taken by the buffer.
+    private static List<byte[]> run(GameBoy gb, RewindBuffer buffer, int frames) {
+        List<byte[]> states = new ArrayList<>();
+        for (int f = 0; f < frames; ++f) {
+            if (f % 30 == 10)
+                gb.joypad().keyPressed(Key.START);
+            else if (f % 30 == 12)
+                gb.joypad().keyReleased(Key.START);
+            if (buffer.update())
+                states.add(snapshotBytes(gb));
+            gb.runUntil(gb.cycles() + GameBoy.CYCLES_PER_FRAME);
+        }
+        return states;
+    }
+
+    @Test
+    void rewindRestoresStatesInReverseOrder() throws IOException {
+        for (String rom : new String[] { "tetris.gb", "zelda.gb" }) {
+            GameBoy gb = newGameBoy(rom);
+            RewindBuffer buffer = new RewindBuffer(gb, 3, 16 << 20);
+            List<byte[]> states = run(gb, buffer, 600);
+            assertEquals(states.size(), buffer.size());
+            for (int i = states.size() - 1; i >= 0; --i) {
+                assertTrue(buffer.rewind());
+                assertArrayEquals(states.get(i), snapshotBytes(gb), rom + " state " + i);
+            }
+            assertFalse(buffer.rewind());
+            assertEquals(0, buffer.size());
+        }
+    }
+
+    @Test
+    void oldestStatesAreForgottenWhenBudgetIsExceeded() throws IOException {
+        GameBoy gb = newGameBoy("supermarioland.gb");
+        long budget = 5 * gb.snapshotSize() + 4096;
+        RewindBuffer buffer = new RewindBuffer(gb, 1, budget);
+        List<byte[]> states = run(gb, buffer, 400);
+        assertTrue(buffer.size() < states.size());
+        assertTrue(buffer.memoryUsed() <= budget);
+        int kept = buffer.size();
+        for (int i = states.size() - 1; i >= states.size() - kept; --i) {
+            assertTrue(buffer.rewind());
+            assertArrayEquals(states.get(i), snapshotBytes(gb));
+        }
+        assertFalse(buffer.rewind());
+    }
+
+    @Test
+    void emulationCanGoOnAfterRewind() throws IOException {
+        GameBoy gb = newGameBoy("flappyboy.gb");
+        RewindBuffer buffer = new RewindBuffer(gb, 2, 8 << 20);
+        List<byte[]> states = run(gb, buffer, 200);
+        for (int i = 0; i < 20; ++i)
+            buffer.rewind();
+        List<byte[]> newStates = run(gb, buffer, 100);
+        for (int i = newStates.size() - 1; i >= 0; --i) {
+            buffer.rewind();
+            assertArrayEquals(newStates.get(i), snapshotBytes(gb));
+        }
+        buffer.rewind();
+        assertArrayEquals(states.get(states.size() - 21), snapshotBytes(gb));
+    }
+
+    @Test
+    void statisticsAreReported() throws IOException {
+        GameBoy gb = newGameBoy("tetris.gb");
+        RewindBuffer buffer = new RewindBuffer(gb, 1, 8 << 20);
+        run(gb, buffer, 120);
+        assertTrue(buffer.bytesPerMinute() > 0);
+        assertTrue(buffer.averageCaptureNanos() > 0);
+        assertTrue(buffer.memoryUsed() > gb.snapshotSize());
+    }
+
+    @Test
+    void constructorFailsWithInvalidArguments() throws IOException {
+        GameBoy gb = newGameBoy("tetris.gb");
+        assertThrows(IllegalArgumentException.class, () -> new RewindBuffer(gb, 0, 1 << 20));
+        assertThrows(IllegalArgumentException.class, () -> new RewindBuffer(gb, 1, 1024));
+        assertThrows(NullPointerException.class, () -> new RewindBuffer(null, 1, 1 << 20));
+    }
+}
@@ -0,0 +1,72 @@
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+public final class SoakTest {
+    private static final long FRAME = GameBoy.CYCLES_PER_FRAME;
+
+    private static GameBoy newGameBoy() throws IOException {
+        return new GameBoy(Cartridge.ofFile(new File("tetris.gb")));
+    }
+
+    @Test
+    void timelineGoesPastTheIntRange() throws IOException {
+        GameBoy reference = newGameBoy();
+        reference.runUntil(600 * FRAME);
+
+        // About 240 frames before 2^31, a multiple of the period of the timer.
+        long start = (1L << 31) - (1L << 22);
+        GameBoy gb = newGameBoy();
+        gb.startAt(start);
+        gb.runUntil(start + 600 * FRAME);
+        assertTrue(gb.cycles() > Integer.MAX_VALUE);
+        assertEquals(start + 600 * FRAME, gb.cycles());
+        assertEquals(reference.lcdController().currentImage(), gb.lcdController().currentImage());
+        for (int a = AddressMap.WORK_RAM_START; a < AddressMap.WORK_RAM_END; ++a)
+            assertEquals(reference.bus().read(a), gb.bus().read(a));
+
+        ByteBuffer snapshot = ByteBuffer.allocate(gb.snapshotSize());
+        gb.snapshot(snapshot);
+        snapshot.flip();
+        GameBoy restored = newGameBoy();
+        restored.restore(snapshot);
+        assertEquals(gb.cycles(), restored.cycles());
+        assertEquals(gb.cycles(), gb.fork().cycles());
+    }
+
+    @Test
+    void soakOfAGameFindsNoProblem() throws IOException {
+        GameBoy gb = newGameBoy();
+        Soak soak = new Soak(gb, 10 * GameBoy.CYCLES_PER_SECOND, Soak.DEFAULT_MAX_HEAP_GROWTH);
+        assertEquals(Soak.START_CYCLE, gb.cycles());
+        assertTrue(soak.run(3), soak.problems().toString());
+        assertEquals(3, soak.windows().size());
+        assertEquals(Soak.START_CYCLE + 30 * GameBoy.CYCLES_PER_SECOND, gb.cycles());
+        for (Soak.Window w : soak.windows())
+            assertTrue(w.images() > 0 && w.framesPerSecond() > 0);
+
+        StringBuilder report = new StringBuilder();
+        soak.writeReport(report);
+        assertTrue(report.toString().contains("problems    : 0"));
+    }
+
+    @Test
+    void soakRejectsInvalidArguments() throws IOException {
+        GameBoy gb = newGameBoy();
+        assertThrows(IllegalArgumentException.class,
+                () -> new Soak(gb, GameBoy.CYCLES_PER_FRAME, 0));
+        assertThrows(NullPointerException.class, () -> new Soak(null));
+        gb.runUntil(10);
+        assertThrows(IllegalArgumentException.class, () -> new Soak(gb));
+    }
+}
@@ -0,0 +1,206 @@
+package ch.epfl.gameboj;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+/**
+ * Runs the test roms of the repository in parallel, each in its own GameBoy,
+ * and reports their results and the emulation speed reached by each.
+ *
+ * The results of blargg's roms are read on the serial port, where they write
+ * "Passed" or "Failed". The other roms only draw their results, which are
+ * checked by comparing the hash of the image at a given frame with the one
+ * of a known good image.
+ *
+ * Usage: TestRomFarm [--threads n] [--min-mhz f] [rom files...]
+ *
+ * The exit status is 1 if a rom did not pass, or ran slower than the given
+ * minimal speed, so that the farm can be used as a regression gate.
+ */
+public final class TestRomFarm {
+    private static final List<String> SERIAL_ROMS = List.of("01-special.gb",
+            "02-interrupts.gb", "03-op sp,hl.gb", "04-op r,imm.gb", "05-op rp.gb",
+            "06-ld r,r.gb", "07-jr,jp,call,ret,rst.gb", "08-misc instrs.gb",
+            "09-op r,r.gb", "10-bit ops.gb", "11-op a,(hl).gb", "instr_timing.gb");
+
+    // The frame at which the result of a rom is drawn, and the hash of the image
+    // it draws with the current emulator, kept to detect regressions.
+    private static final Map<String, long[]> SCREEN_ROMS = Map.of(
+            "sprite_priority.gb", new long[] { 180, 0x79F7_7510_BE14_F546L });
+
+    // The emulated time after which a rom which said nothing has failed.
+    private static final long MAX_CYCLES = 60 * GameBoy.CYCLES_PER_SECOND;
+    // The address of the serial transfer data register.
+    private static final int REG_SB = 0xFF01;
+
+    /**
+     * The possible results of a rom.
+     */
+    public enum Status {
+        PASSED, FAILED, TIMEOUT
+    }
+
+    /**
+     * The result of a rom : its status, what it wrote on the serial port, and
+     * the cycles emulated in the given time.
+     */
+    public static final class Result {
+        public final String rom;
+        public final Status status;
+        public final String output;
+        public final long cycles;
+        public final long nanos;
+
+        private Result(String rom, Status status, String output, long cycles, long nanos) {
+            this.rom = rom;
+            this.status = status;
+            this.output = output;
+            this.cycles = cycles;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Gets the emulation speed reached.
+         * @return the number of emulated cycles per second, in millions.
+         */
+        public double megahertz() {
+            return cycles * 1e3 / nanos;
+        }
+    }
+
+    // Records the bytes written on the serial port.
+    private static final class SerialPort implements Component {
+        private final StringBuilder output = new StringBuilder();
+
+        @Override
+        public int read(int address) {
+            return NO_DATA;
+        }
+
+        @Override
+        public void write(int address, int data) {
+            if (address == REG_SB)
+                output.append((char) data);
+        }
+    }
+
+    /**
+     * Gets the test roms of the given directory.
+     * @param directory : the directory containing the roms.
+     * @return the files of the test roms found.
+     */
+    public static List<File> testRoms(File directory) {
+        final List<File> roms = new ArrayList<>();
+        for (String name : SERIAL_ROMS)
+            roms.add(new File(directory, name));
+        for (String name : SCREEN_ROMS.keySet())
+            roms.add(new File(directory, name));
+        return roms;
+    }
+
+    /**
+     * Runs the given rom until it tells its result, or for too long.
+     * @param rom : the test rom to run.
+     * @return the result of the rom.
+     * @throws IOException if the rom cannot be read.
+     */
+    public static Result run(File rom) throws IOException {
+        final GameBoy gb = new GameBoy(Cartridge.ofFile(rom));
+        final SerialPort serial = new SerialPort();
+        serial.attachTo(gb.bus());
+        final long[] screen = SCREEN_ROMS.get(rom.getName());
+        final long maxCycles = screen != null ? screen[0] * GameBoy.CYCLES_PER_FRAME : MAX_CYCLES;
+
+        final long start = System.nanoTime();
+        Status status = Status.TIMEOUT;
+        while (gb.cycles() < maxCycles && status == Status.TIMEOUT) {
+            gb.runUntil(Math.min(gb.cycles() + GameBoy.CYCLES_PER_FRAME, maxCycles));
+            final String output = serial.output.toString();
+            if (output.contains("Passed"))
+                status = Status.PASSED;
+            else if (output.contains("Failed"))
+                status = Status.FAILED;
+        }
+        if (screen != null) {
+            final long hash = gb.lcdController().currentImage().hash64();
+            status = hash == screen[1] ? Status.PASSED : Status.FAILED;
+        }
+        final long nanos = System.nanoTime() - start;
+        return new Result(rom.getName(), status, serial.output.toString(), gb.cycles(), nanos);
+    }
+
+    /**
+     * Runs the given roms in parallel.
+     * @param roms : the test roms to run.
+     * @param threads : the number of roms run at the same time.
+     * @return the results of the roms, in the same order.
+     * @throws IOException if a rom cannot be read.
+     */
+    public static List<Result> runAll(List<File> roms, int threads) throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Result>> futures = new ArrayList<>();
+            for (File rom : roms)
+                futures.add(executor.submit(() -> run(rom)));
+            final List<Result> results = new ArrayList<>();
+            for (Future<Result> f : futures)
+                results.add(f.get());
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        double minMegahertz = 0;
+        final List<File> roms = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("--threads"))
+                threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--min-mhz"))
+                minMegahertz = Double.parseDouble(args[++i]);
+            else
+                roms.add(new File(args[i]));
+        }
+        if (roms.isEmpty())
+            roms.addAll(testRoms(new File(".")));
+
+        final long start = System.nanoTime();
+        final List<Result> results = runAll(roms, threads);
+        final long nanos = System.nanoTime() - start;
+
+        boolean ok = true;
+        long cycles = 0;
+        System.out.println("rom                          status    cycles (M)  time (s)    MHz");
+        for (Result r : results) {
+            System.out.printf("%-28s %-8s %11.1f %9.2f %6.1f%n", r.rom, r.status,
+                    r.cycles / 1e6, r.nanos / 1e9, r.megahertz());
+            ok &= r.status == Status.PASSED && r.megahertz() >= minMegahertz;
+            cycles += r.cycles;
+        }
+        System.out.printf("%d roms on %d threads in %.2f s : %.1f MHz in total%n",
+                results.size(), threads, nanos / 1e9, cycles * 1e3 / nanos);
+        if (!ok) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+    }
+}
@@ -380,4 +380,13 @@ public class BitVectorTest {
         assertEquals("11111111111111111111111111111111", v6.toString());
         assertEquals("00000000000000000000000000000000", v8.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getIntReturnsTheIntsSet() {
+        BitVector v = new BitVector.Builder(64).setInt(0, 0xCAFE_BABE).setInt(1, 0x1234_5678).build();
+        assertEquals(0xCAFE_BABE, v.getInt(0));
+        assertEquals(0x1234_5678, v.getInt(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> v.getInt(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> v.getInt(-1));
+    }
+}
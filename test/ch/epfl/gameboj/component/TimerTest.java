@@ -158,4 +158,25 @@ public final class TimerTest implements ComponentTest {
             assertEquals(t.read(0xFF05), tma);
         }
     }
+    
+    @Test
+    void nextOverflowCycleIsCycleOfTimerInterrupt() {
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            Cpu cpu = new Cpu();
+            Timer t = new Timer(cpu);
+            assertEquals(Long.MAX_VALUE, t.nextOverflowCycle());
+            t.write(0xFF07, 0b100 | rng.nextInt(4));
+            t.write(0xFF06, rng.nextInt(0x100));
+            t.write(0xFF05, rng.nextInt(0x100));
+            long c = 0;
+            for (int o = 0; o < 3; ++o) {
+                long expected = t.nextOverflowCycle();
+                for (; (cpu.read(0xFF0F) & 0b100) == 0; ++c)
+                    t.cycle(c);
+                assertEquals(expected, c - 1);
+                cpu.write(0xFF0F, 0);
+            }
+        }
+    }
 }
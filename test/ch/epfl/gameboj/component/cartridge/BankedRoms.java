@@ -0,0 +1,26 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import ch.epfl.gameboj.component.memory.Rom;
+
+// Roms telling which bank is mapped, for the tests of the memory bank controllers.
+final class BankedRoms {
+    static final int BANK_SIZE = 0x4000;
+
+    private BankedRoms() {}
+
+    // A rom whose bytes are the index of their bank.
+    static Rom bankedRom(int banks) {
+        byte[] data = new byte[banks * BANK_SIZE];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) (i / BANK_SIZE);
+        return new Rom(data);
+    }
+
+    // A rom whose bytes at even addresses are the 8 lsb of the index of their bank, and at odd ones its msb.
+    static Rom wideBankedRom(int banks) {
+        byte[] data = new byte[banks * BANK_SIZE];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) (i % 2 == 0 ? i / BANK_SIZE : (i / BANK_SIZE) >> 8);
+        return new Rom(data);
+    }
+}
@@ -2,6 +2,8 @@
 
 package ch.epfl.gameboj.component.cartridge;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.File;
@@ -15,6 +17,7 @@ import org.junit.jupiter.api.Test;
 
 import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.ComponentTest;
+import ch.epfl.gameboj.component.memory.Rom;
 
 public final class CartridgeTest implements ComponentTest {
     public static Cartridge cartridgeWithData(byte[] romData) {
@@ -50,4 +53,61 @@ public final class CartridgeTest implements ComponentTest {
             cartridgeWithData(romData);
         });
     }
+
+    @Test
+    void ofFileChoosesControllerFromHeader() {
+        byte[] romData = new byte[0x40000];
+        for (int i = 0; i < romData.length; ++i)
+            romData[i] = (byte) (i / 0x4000);
+        for (int type : new int[] { 0x01, 0x03, 0x0F, 0x13, 0x19, 0x1E }) {
+            romData[0x147] = (byte) type;
+            romData[0x149] = 3;
+            Cartridge c = cartridgeWithData(romData);
+            c.write(0x2000, 5);
+            assertEquals(5, c.read(0x4000));
+            c.write(0x0000, 0xA);
+            c.write(0xA000, 0x42);
+            assertEquals(type == 0x01 || type == 0x0F || type == 0x19 ? 0xFF : 0x42, c.read(0xA000));
+        }
+    }
+
+    @Test
+    void ofFileFailsWithInvalidRamSize() {
+        byte[] romData = new byte[0x8000];
+        romData[0x147] = 0x03;
+        romData[0x149] = 6;
+        assertThrows(IllegalArgumentException.class, () -> {
+            cartridgeWithData(romData);
+        });
+    }
+
+    @Test
+    void batteryBackedRamIsKeptInSaveFile() throws IOException {
+        byte[] romData = new byte[0x8000];
+        romData[0x149] = 2;
+        for (int type : new int[] { 0x03, 0x10, 0x1B }) {
+            romData[0x147] = (byte) type;
+            File saveFile = Files.createTempFile("TestSave_", ".sav").toFile();
+            saveFile.deleteOnExit();
+            Cartridge c = Cartridge.ofRom(new Rom(romData), saveFile);
+            c.write(0x0000, 0xA);
+            c.write(0xA123, 0x42);
+            c.close();
+            assertThrows(IllegalStateException.class, () -> c.write(0xA123, 0x43));
+            Cartridge c2 = Cartridge.ofRom(new Rom(romData), saveFile);
+            c2.write(0x0000, 0xA);
+            assertEquals(0x42, c2.read(0xA123));
+            c2.close();
+        }
+    }
+
+    @Test
+    void saveFileIsIgnoredWithoutBattery() throws IOException {
+        byte[] romData = new byte[0x8000];
+        romData[0x147] = 0x02;
+        romData[0x149] = 2;
+        File saveFile = new File(Files.createTempDirectory("TestSave_").toFile(), "save.sav");
+        Cartridge.ofRom(new Rom(romData), saveFile).write(0xA000, 1);
+        assertFalse(saveFile.exists());
+    }
 }
@@ -0,0 +1,87 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import static ch.epfl.gameboj.component.cartridge.BankedRoms.bankedRom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.Component;
+
+public final class MBC1Test {
+    @Test
+    void bankZeroIsInitiallyMappedThenBankOne() {
+        Component mbc = new MBC1(bankedRom(128), 0);
+        assertEquals(0, mbc.read(0x0000));
+        assertEquals(0, mbc.read(0x3FFF));
+        assertEquals(1, mbc.read(0x4000));
+        assertEquals(1, mbc.read(0x7FFF));
+    }
+
+    @Test
+    void switchableBankCanBeSelected() {
+        Component mbc = new MBC1(bankedRom(128), 0);
+        for (int bank = 0; bank < 128; ++bank) {
+            mbc.write(0x2000, bank & 0x1F);
+            mbc.write(0x4000, bank >> 5);
+            int expected = (bank & 0x1F) == 0 ? bank + 1 : bank;
+            assertEquals(expected, mbc.read(0x4000 + bank));
+            assertEquals(0, mbc.read(bank));
+        }
+    }
+
+    @Test
+    void upperBitsSelectFirstBankInMode1() {
+        Component mbc = new MBC1(bankedRom(128), 0);
+        mbc.write(0x6000, 1);
+        for (int upper = 0; upper < 4; ++upper) {
+            mbc.write(0x4000, upper);
+            assertEquals(upper << 5, mbc.read(0x1234));
+        }
+        mbc.write(0x6000, 0);
+        assertEquals(0, mbc.read(0x1234));
+    }
+
+    @Test
+    void romBankTellsTheBanksMapped() {
+        MBC1 mbc = new MBC1(bankedRom(128), 0);
+        assertEquals(0, mbc.romBank(0x1234));
+        assertEquals(1, mbc.romBank(0x4000));
+        mbc.write(0x2000, 5);
+        mbc.write(0x4000, 2);
+        assertEquals(0, mbc.romBank(0x3FFF));
+        assertEquals(0x45, mbc.romBank(0x7FFF));
+        mbc.write(0x6000, 1);
+        assertEquals(0x40, mbc.romBank(0x0000));
+        assertEquals(0x45, mbc.romBank(0x4000));
+    }
+
+    @Test
+    void bankNumberWrapsAroundForSmallRom() {
+        Component mbc = new MBC1(bankedRom(4), 0);
+        mbc.write(0x2000, 6);
+        assertEquals(2, mbc.read(0x4000));
+        mbc.write(0x2000, 0x1F);
+        assertEquals(3, mbc.read(0x7FFF));
+    }
+
+    @Test
+    void ramBanksCanBeSelectedInMode1() {
+        Component mbc = new MBC1(bankedRom(4), 0x8000);
+        assertEquals(0xFF, mbc.read(0xA000));
+        mbc.write(0x0000, 0xA);
+        mbc.write(0x6000, 1);
+        for (int bank = 0; bank < 4; ++bank) {
+            mbc.write(0x4000, bank);
+            mbc.write(0xA000 + bank, 0x10 + bank);
+        }
+        for (int bank = 0; bank < 4; ++bank) {
+            mbc.write(0x4000, bank);
+            for (int i = 0; i < 4; ++i)
+                assertEquals(i == bank ? 0x10 + bank : 0, mbc.read(0xA000 + i));
+        }
+        mbc.write(0x6000, 0);
+        assertEquals(0x10, mbc.read(0xA000));
+        mbc.write(0x0000, 0);
+        assertEquals(0xFF, mbc.read(0xA000));
+    }
+}
@@ -0,0 +1,128 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import static ch.epfl.gameboj.component.cartridge.BankedRoms.bankedRom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.memory.Rom;
+
+public final class MBC3Test {
+    private static final long CYCLES_PER_SECOND = 1L << 20;
+
+    private static int readClock(MBC3 mbc, int register) {
+        mbc.write(0x4000, register);
+        return mbc.read(0xA000);
+    }
+
+    private static void latch(MBC3 mbc) {
+        mbc.write(0x6000, 0);
+        mbc.write(0x6000, 1);
+    }
+
+    @Test
+    void romBanksCanBeSelected() {
+        MBC3 mbc = new MBC3(bankedRom(128), 0, false);
+        for (int bank = 0; bank < 128; ++bank) {
+            mbc.write(0x2000, bank);
+            assertEquals(Math.max(1, bank), mbc.read(0x4000));
+            assertEquals(0, mbc.read(0x0000));
+        }
+    }
+
+    @Test
+    void ramBanksCanBeSelected() {
+        MBC3 mbc = new MBC3(bankedRom(2), 0x8000, false);
+        mbc.write(0x0000, 0xA);
+        for (int bank = 0; bank < 4; ++bank) {
+            mbc.write(0x4000, bank);
+            mbc.write(0xA010, 0x30 + bank);
+        }
+        for (int bank = 0; bank < 4; ++bank) {
+            mbc.write(0x4000, bank);
+            assertEquals(0x30 + bank, mbc.read(0xA010));
+        }
+    }
+
+    @Test
+    void clockCountsEmulatedTimeWhenLatched() {
+        MBC3 mbc = new MBC3(bankedRom(2), 0, true);
+        mbc.write(0x0000, 0xA);
+        long seconds = ((2L * 24 + 3) * 60 + 4) * 60 + 5;
+        mbc.cycle(seconds * CYCLES_PER_SECOND - 1);
+        assertEquals(0, readClock(mbc, 0x08));
+        latch(mbc);
+        assertEquals(5, readClock(mbc, 0x08));
+        assertEquals(4, readClock(mbc, 0x09));
+        assertEquals(3, readClock(mbc, 0x0A));
+        assertEquals(2, readClock(mbc, 0x0B));
+        assertEquals(0, readClock(mbc, 0x0C));
+    }
+
+    @Test
+    void clockCanBeWrittenAndHalted() {
+        MBC3 mbc = new MBC3(bankedRom(2), 0, true);
+        mbc.write(0x0000, 0xA);
+        mbc.write(0x4000, 0x0C);
+        mbc.write(0xA000, 0b0100_0001);
+        mbc.write(0x4000, 0x0B);
+        mbc.write(0xA000, 0xFF);
+        mbc.cycle(10 * CYCLES_PER_SECOND);
+        latch(mbc);
+        assertEquals(0, readClock(mbc, 0x08));
+        assertEquals(0xFF, readClock(mbc, 0x0B));
+        assertEquals(0b0100_0001, readClock(mbc, 0x0C));
+
+        mbc.write(0x4000, 0x0C);
+        mbc.write(0xA000, 1);
+        mbc.cycle(30 * CYCLES_PER_SECOND);
+        latch(mbc);
+        assertEquals(20, readClock(mbc, 0x08));
+    }
+
+    @Test
+    void dayCounterOverflowSetsCarry() {
+        MBC3 mbc = new MBC3(bankedRom(2), 0, true);
+        mbc.write(0x0000, 0xA);
+        mbc.write(0x4000, 0x0C);
+        mbc.write(0xA000, 1);
+        mbc.write(0x4000, 0x0B);
+        mbc.write(0xA000, 0xFF);
+        mbc.cycle(24 * 60 * 60 * CYCLES_PER_SECOND - 1);
+        latch(mbc);
+        assertEquals(0, readClock(mbc, 0x0B));
+        assertEquals(0b1000_0000, readClock(mbc, 0x0C));
+    }
+
+    @Test
+    void clockIsKeptInSaveFile() throws IOException {
+        byte[] romData = new byte[0x8000];
+        romData[0x149] = 2;
+        for (int type : new int[] { 0x0F, 0x10 }) {
+            romData[0x147] = (byte) type;
+            File saveFile = Files.createTempFile("TestSave_", ".sav").toFile();
+            saveFile.deleteOnExit();
+            Cartridge c = Cartridge.ofRom(new Rom(romData), saveFile);
+            c.write(0x0000, 0xA);
+            c.write(0x4000, 0x09);
+            c.write(0xA000, 42);
+            c.cycle(65 * CYCLES_PER_SECOND - 1);
+            c.close();
+
+            Cartridge c2 = Cartridge.ofRom(new Rom(romData), saveFile);
+            c2.write(0x0000, 0xA);
+            c2.cycle(10 * CYCLES_PER_SECOND - 1);
+            c2.write(0x6000, 0);
+            c2.write(0x6000, 1);
+            c2.write(0x4000, 0x08);
+            assertEquals(15, c2.read(0xA000));
+            c2.write(0x4000, 0x09);
+            assertEquals(43, c2.read(0xA000));
+            c2.close();
+        }
+    }
+}
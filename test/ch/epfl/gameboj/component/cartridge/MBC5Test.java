@@ -0,0 +1,47 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import static ch.epfl.gameboj.component.cartridge.BankedRoms.wideBankedRom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.Component;
+
+public final class MBC5Test {
+    @Test
+    void allRomBanksCanBeSelectedIncludingZero() {
+        Component mbc = new MBC5(wideBankedRom(512), 0);
+        assertEquals(1, mbc.read(0x4000));
+        for (int bank = 0; bank < 512; ++bank) {
+            mbc.write(0x2000, bank & 0xFF);
+            mbc.write(0x3000, bank >> 8);
+            assertEquals(bank & 0xFF, mbc.read(0x4000));
+            assertEquals(bank >> 8, mbc.read(0x7FFF));
+            assertEquals(0, mbc.read(0x3FFE));
+        }
+    }
+
+    @Test
+    void ramBanksCanBeSelected() {
+        Component mbc = new MBC5(wideBankedRom(2), 0x20000);
+        mbc.write(0x0000, 0xA);
+        for (int bank = 0; bank < 16; ++bank) {
+            mbc.write(0x4000, bank);
+            mbc.write(0xBFFF, 0x20 + bank);
+        }
+        for (int bank = 0; bank < 16; ++bank) {
+            mbc.write(0x4000, bank);
+            assertEquals(0x20 + bank, mbc.read(0xBFFF));
+        }
+        mbc.write(0x0000, 0);
+        assertEquals(0xFF, mbc.read(0xBFFF));
+    }
+
+    @Test
+    void readWithoutRamReturnsFF() {
+        Component mbc = new MBC5(wideBankedRom(2), 0);
+        mbc.write(0x0000, 0xA);
+        mbc.write(0xA000, 1);
+        assertEquals(0xFF, mbc.read(0xA000));
+    }
+}
@@ -0,0 +1,125 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.memory.Rom;
+
+public final class CallGraphProfilerTest {
+    private static final String SYMBOLS = "; symbols of the test program\n"
+            + "[labels]\n"
+            + "00:0010 Outer\n"
+            + "00:0020 Inner ; the innermost routine\n"
+            + "00:0020 Duplicate\n";
+
+    // Runs a program which calls Outer, which calls Inner, then calls Inner.
+    private static CallGraphProfiler profileProgram(SymbolTable symbols) {
+        final byte[] rom = new byte[0x8000];
+        final int[] code = {
+                0x31, 0xFE, 0xFF, // 0000 LD SP, 0xFFFE
+                0xCD, 0x10, 0x00, // 0003 CALL Outer
+                0xCD, 0x20, 0x00, // 0006 CALL Inner
+                0x18, 0xFE };     // 0009 JR 0009
+        final int[] outer = { 0xCD, 0x20, 0x00, 0xC9 }; // CALL Inner, RET
+        final int[] inner = { 0x00, 0xC9 };             // NOP, RET
+        copy(code, rom, 0x0000);
+        copy(outer, rom, 0x0010);
+        copy(inner, rom, 0x0020);
+
+        final Cartridge cartridge = Cartridge.ofRom(new Rom(rom));
+        final Bus bus = new Bus();
+        final Cpu cpu = new Cpu();
+        cartridge.attachTo(bus);
+        cpu.attachTo(bus);
+        final CallGraphProfiler profiler = new CallGraphProfiler(cartridge, symbols);
+        cpu.setObserver(profiler);
+        // Until the last RET, before the loop.
+        for (long c = 0; c < 35; ++c)
+            cpu.cycle(c);
+        return profiler;
+    }
+
+    private static void copy(int[] code, byte[] rom, int address) {
+        for (int i = 0; i < code.length; ++i)
+            rom[address + i] = (byte) code[i];
+    }
+
+    @Test
+    void cyclesAreAttributedToTheRoutines() {
+        CallGraphProfiler profiler = profileProgram(SymbolTable.EMPTY);
+        assertEquals(35, profiler.cycles());
+        assertEquals(0, profiler.depth());
+
+        assertEquals(1, profiler.calls(0, 0x10));
+        assertEquals(10, profiler.exclusiveCycles(0, 0x10));
+        assertEquals(15, profiler.inclusiveCycles(0, 0x10));
+
+        assertEquals(2, profiler.calls(0, 0x20));
+        assertEquals(10, profiler.exclusiveCycles(0, 0x20));
+        assertEquals(10, profiler.inclusiveCycles(0, 0x20));
+        assertEquals(0, profiler.calls(0, 0x30));
+    }
+
+    @Test
+    void callTreeAndCollapsedStacksUseTheSymbols() throws IOException {
+        SymbolTable symbols = SymbolTable.ofReader(new StringReader(SYMBOLS));
+        assertEquals(2, symbols.size());
+        assertEquals("Inner", symbols.name(0, 0x20));
+        assertEquals("Outer", symbols.name(-1, 0x10));
+        assertNull(symbols.name(1, 0x10));
+
+        CallGraphProfiler profiler = profileProgram(symbols);
+        StringBuilder collapsed = new StringBuilder();
+        profiler.writeCollapsed(collapsed);
+        assertEquals("top 15\ntop;Outer 10\ntop;Outer;Inner 5\ntop;Inner 5\n",
+                collapsed.toString());
+
+        StringBuilder tree = new StringBuilder();
+        profiler.writeCallTree(tree, 0);
+        String[] lines = tree.toString().split("\\R");
+        assertEquals(5, lines.length);
+        assertTrue(lines[1].trim().startsWith("35 100.00%"));
+        assertTrue(lines[2].endsWith("  Outer") && lines[2].contains(" 15 "));
+        assertTrue(lines[3].endsWith("    Inner"));
+        assertTrue(lines[4].endsWith("  Inner"));
+
+        profiler.reset();
+        assertEquals(0, profiler.cycles());
+        assertEquals(0, profiler.calls(0, 0x20));
+    }
+
+    @Test
+    void gameRoutinesAddUpToTheCycles() throws IOException {
+        GameBoy gb = new GameBoy(Cartridge.ofFile(new File("supermarioland.gb")));
+        CallGraphProfiler profiler = new CallGraphProfiler(gb.cartridge());
+        gb.cpu().setObserver(profiler);
+        gb.runUntil(300 * GameBoy.CYCLES_PER_FRAME);
+
+        StringBuilder collapsed = new StringBuilder();
+        profiler.writeCollapsed(collapsed);
+        long cycles = 0;
+        for (String line : collapsed.toString().split("\n")) {
+            assertTrue(line.startsWith("top"));
+            cycles += Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+        }
+        assertEquals(profiler.cycles(), cycles);
+
+        // The vertical blank handler runs once per frame while the screen is on.
+        int vblank = AddressMap.INTERRUPTS[Cpu.Interrupt.VBLANK.index()];
+        assertTrue(profiler.calls(0, vblank) > 100);
+        assertTrue(profiler.inclusiveCycles(0, vblank) > profiler.exclusiveCycles(0, vblank));
+        assertTrue(collapsed.indexOf("top;VBLANK@00:0040") >= 0);
+        assertTrue(profiler.depth() < CallGraphProfiler.MAX_DEPTH);
+    }
+}
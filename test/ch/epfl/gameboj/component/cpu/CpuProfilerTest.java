@@ -0,0 +1,127 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.cpu.CpuProfiler.HotSpot;
+import ch.epfl.gameboj.component.cpu.CpuProfiler.Mode;
+
+public final class CpuProfilerTest {
+    private static final long FRAMES = 300;
+
+    private static GameBoy newGameBoy() throws IOException {
+        return new GameBoy(Cartridge.ofFile(new File("supermarioland.gb")));
+    }
+
+    private static CpuProfiler profile(GameBoy gb, Mode mode) {
+        final CpuProfiler profiler = new CpuProfiler(gb.cartridge(), mode);
+        gb.cpu().setObserver(profiler);
+        gb.runUntil(FRAMES * GameBoy.CYCLES_PER_FRAME);
+        return profiler;
+    }
+
+    private static byte[] snapshotBytes(GameBoy gb) {
+        ByteBuffer buffer = ByteBuffer.allocate(gb.snapshotSize());
+        gb.snapshot(buffer);
+        return buffer.array();
+    }
+
+    @Test
+    void profilingDoesNotChangeEmulation() throws IOException {
+        GameBoy expected = newGameBoy();
+        expected.runUntil(FRAMES * GameBoy.CYCLES_PER_FRAME);
+        GameBoy profiled = newGameBoy();
+        profile(profiled, Mode.EXACT);
+        assertArrayEquals(snapshotBytes(expected), snapshotBytes(profiled));
+    }
+
+    @Test
+    void exactProfileAccountsForEveryInstruction() throws IOException {
+        CpuProfiler profiler = profile(newGameBoy(), Mode.EXACT);
+        assertTrue(profiler.instructions() > 100_000);
+        // Halted and interrupt entry cycles are not spent in instructions.
+        assertTrue(profiler.cycles() <= FRAMES * GameBoy.CYCLES_PER_FRAME);
+
+        long executions = 0, cycles = 0;
+        for (Opcode o : Opcode.values()) {
+            executions += profiler.executions(o);
+            cycles += profiler.cycles(o);
+        }
+        assertEquals(profiler.instructions(), executions);
+        assertEquals(profiler.cycles(), cycles);
+
+        List<HotSpot> spots = profiler.hotSpots(Integer.MAX_VALUE);
+        executions = cycles = 0;
+        for (int i = 0; i < spots.size(); ++i) {
+            executions += spots.get(i).executions();
+            cycles += spots.get(i).cycles();
+            if (i > 0)
+                assertTrue(spots.get(i - 1).cycles() >= spots.get(i).cycles());
+        }
+        assertEquals(profiler.instructions(), executions);
+        assertEquals(profiler.cycles(), cycles);
+        assertEquals(spots.subList(0, 10).toString(), profiler.hotSpots(10).toString());
+
+        // Super Mario Land switches banks, and copies a routine to high ram.
+        assertTrue(spots.stream().anyMatch(s -> s.bank() > 1));
+        assertTrue(spots.stream().anyMatch(s -> s.bank() < 0 && s.address() >= 0xFF80));
+        for (HotSpot s : spots) {
+            assertEquals(s.bank() >= 0, s.address() < 0x8000);
+            assertEquals(s.bank() == 0 || s.bank() < 0, s.address() < 0x4000 || s.bank() < 0);
+        }
+    }
+
+    @Test
+    void samplingProfileEstimatesTheExactOne() throws IOException {
+        CpuProfiler exact = profile(newGameBoy(), Mode.EXACT);
+        CpuProfiler sampled = profile(newGameBoy(), Mode.SAMPLING);
+        assertEquals(exact.instructions(), sampled.instructions());
+        assertEquals(exact.cycles(), sampled.cycles());
+
+        long executions = 0;
+        for (Opcode o : Opcode.values())
+            executions += sampled.executions(o);
+        assertEquals(exact.instructions(), executions, exact.instructions() / 100.0);
+
+        HotSpot hottest = exact.hotSpots(1).get(0);
+        HotSpot estimated = sampled.hotSpots(Integer.MAX_VALUE).stream()
+                .filter(s -> s.bank() == hottest.bank() && s.address() == hottest.address())
+                .findFirst().get();
+        assertEquals(hottest.cycles(), estimated.cycles(), hottest.cycles() * 0.1);
+    }
+
+    @Test
+    void collapsedProfileSumsToTheCycles() throws IOException {
+        CpuProfiler profiler = profile(newGameBoy(), Mode.EXACT);
+        StringBuilder collapsed = new StringBuilder();
+        profiler.writeCollapsed(collapsed);
+        long cycles = 0;
+        for (String line : collapsed.toString().split("\n")) {
+            String[] frames = line.substring(0, line.lastIndexOf(' ')).split(";");
+            assertEquals(3, frames.length);
+            assertTrue(frames[0].startsWith("rom_") || frames[1].startsWith("--:"));
+            cycles += Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+        }
+        assertEquals(profiler.cycles(), cycles);
+
+        StringBuilder report = new StringBuilder();
+        profiler.writeReport(report, 5);
+        assertTrue(report.toString().contains(profiler.hotSpots(1).get(0).toString()));
+        assertThrows(IllegalArgumentException.class, () -> profiler.hotSpots(-1));
+
+        profiler.reset();
+        assertEquals(0, profiler.instructions());
+        assertTrue(profiler.hotSpots(10).isEmpty());
+    }
+}
@@ -51,6 +51,16 @@ class CpuTest {
         }
     }
 
+    @Test
+    void pcWrapsAroundAfterTheLastAddress() throws IOException {
+        try (ByteArrayOutputStream s = new ByteArrayOutputStream()) {
+            // The register IE at FFFF is 0, a NOP.
+            emitN16(s, JP_N16, 0xFFFF);
+            int[] state = stateAfter(s, JP_N16.cycles + NOP.cycles);
+            assertEquals(0, state[0]);
+        }
+    }
+
     // Loads
 
     @Test
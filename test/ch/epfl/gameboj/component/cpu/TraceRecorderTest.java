@@ -0,0 +1,149 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.cpu.TraceDecoder.Entry;
+import ch.epfl.gameboj.component.memory.Rom;
+
+public final class TraceRecorderTest {
+
+    // Runs a program loading registers then looping, keeping the given number of instructions.
+    private static TraceRecorder traceProgram(int capacity, long cycles) {
+        final byte[] rom = new byte[0x8000];
+        final int[] code = {
+                0x31, 0xFE, 0xFF, // 0000 LD SP, 0xFFFE
+                0x3E, 0x12,       // 0003 LD A, 0x12
+                0x01, 0x34, 0x56, // 0005 LD BC, 0x5634
+                0xCB, 0x37,       // 0008 SWAP A
+                0x3C,             // 000A INC A
+                0x18, 0xFD };     // 000B JR 000A
+        for (int i = 0; i < code.length; ++i)
+            rom[i] = (byte) code[i];
+
+        final Cartridge cartridge = Cartridge.ofRom(new Rom(rom));
+        final Bus bus = new Bus();
+        final Cpu cpu = new Cpu();
+        cartridge.attachTo(bus);
+        cpu.attachTo(bus);
+        final TraceRecorder recorder = new TraceRecorder(cpu, cartridge, capacity);
+        cpu.setObserver(recorder);
+        for (long c = 0; c < cycles; ++c)
+            cpu.cycle(c);
+        return recorder;
+    }
+
+    private static List<Entry> dump(TraceRecorder recorder) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.dump(Channels.newChannel(out));
+        assertEquals(TraceRecorder.HEADER_SIZE
+                + Math.min(recorder.recorded(), recorder.capacity()) * TraceRecorder.RECORD_SIZE,
+                out.size());
+        return TraceDecoder.decode(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    @Test
+    void instructionsAreRecordedWithTheirRegisters() throws IOException {
+        // LD SP, LD A, LD BC and SWAP A run in 3 + 2 + 3 + 2 cycles.
+        TraceRecorder recorder = traceProgram(16, 10);
+        assertEquals(4, recorder.recorded());
+        List<Entry> trace = dump(recorder);
+        assertEquals(4, trace.size());
+
+        Entry ldSp = trace.get(0);
+        assertEquals(0, ldSp.cycle());
+        assertEquals(0, ldSp.bank());
+        assertEquals(0x0000, ldSp.pc());
+        assertArrayEquals(new int[] { 0x31, 0xFE, 0xFF }, ldSp.bytes());
+        assertEquals(Opcode.LD_SP_N16, ldSp.opcode());
+        assertEquals(3, ldSp.cycles());
+        assertNull(ldSp.interrupt());
+        assertEquals(0xFFFE, ldSp.registers()[8]);
+
+        Entry ldBc = trace.get(2);
+        assertEquals(5, ldBc.cycle());
+        assertArrayEquals(new int[] { 0x12, 0, 0x56, 0x34, 0, 0, 0, 0, 0xFFFE, 0, 0, 0 },
+                ldBc.registers());
+
+        Entry swap = trace.get(3);
+        assertEquals(0x0008, swap.pc());
+        assertArrayEquals(new int[] { 0xCB, 0x37 }, swap.bytes());
+        assertEquals(Opcode.SWAP_A, swap.opcode());
+        assertEquals(0x21, swap.registers()[0]);
+        assertTrue(swap.toString().contains("00:0008  CB 37     SWAP_A"));
+    }
+
+    @Test
+    void onlyTheLastInstructionsAreKept() throws IOException {
+        TraceRecorder recorder = traceProgram(5, 1000);
+        assertTrue(recorder.recorded() > 200);
+        List<Entry> trace = dump(recorder);
+        assertEquals(5, trace.size());
+        for (int i = 1; i < trace.size(); ++i) {
+            Entry previous = trace.get(i - 1), e = trace.get(i);
+            assertEquals(previous.cycle() + previous.cycles(), e.cycle());
+            assertEquals(previous.pc() == 0x000A ? 0x000B : 0x000A, e.pc());
+            if (e.opcode() == Opcode.INC_A)
+                assertEquals((previous.registers()[0] + 1) & 0xFF, e.registers()[0]);
+        }
+        assertTrue(trace.get(4).cycle() >= 995);
+    }
+
+    @Test
+    void tracesOfTwoRunsTellWhereTheyDiverge() throws IOException {
+        File a = File.createTempFile("trace", ".bin"), b = File.createTempFile("trace", ".bin");
+        try {
+            traceGame(a, false);
+            traceGame(b, true);
+            List<Entry> same = TraceDecoder.read(a);
+            assertEquals(-1, TraceDecoder.firstDifference(same, same));
+            assertTrue(same.stream().anyMatch(e -> e.interrupt() == Cpu.Interrupt.VBLANK));
+
+            List<Entry> other = TraceDecoder.read(b);
+            long start = Math.max(same.get(0).cycle(), other.get(0).cycle());
+            List<Entry> x = TraceDecoder.from(same, start), y = TraceDecoder.from(other, start);
+            int d = TraceDecoder.firstDifference(x, y);
+            assertTrue(d >= 0);
+            // The key was pressed at frame 199.
+            assertTrue(x.get(d).cycle() >= 199 * GameBoy.CYCLES_PER_FRAME);
+        } finally {
+            a.delete();
+            b.delete();
+        }
+    }
+
+    private static void traceGame(File dump, boolean pressed) throws IOException {
+        GameBoy gb = new GameBoy(Cartridge.ofFile(new File("supermarioland.gb")));
+        gb.runUntil(199 * GameBoy.CYCLES_PER_FRAME);
+        TraceRecorder recorder = new TraceRecorder(gb.cpu(), gb.cartridge(), 1 << 16);
+        gb.cpu().setObserver(recorder);
+        if (pressed)
+            gb.joypad().keyPressed(Key.START);
+        gb.runUntil(200 * GameBoy.CYCLES_PER_FRAME);
+        recorder.dump(dump);
+    }
+
+    @Test
+    void decoderRejectsInvalidDumps() {
+        assertThrows(IOException.class,
+                () -> TraceDecoder.decode(ByteBuffer.wrap(new byte[40])));
+        assertThrows(IllegalArgumentException.class,
+                () -> traceProgram(0, 0));
+    }
+}
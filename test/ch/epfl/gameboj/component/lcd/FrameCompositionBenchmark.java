@@ -0,0 +1,80 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_HEIGHT;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.RegisterFile;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController.LcdReg;
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * Measures the time needed to compose a whole image in parallel, for a growing
+ * number of threads.
+ *
+ * Usage: FrameCompositionBenchmark [rom file] [frames to skip] [max threads]
+ */
+public final class FrameCompositionBenchmark {
+    private static final int WARMUP_ITERATIONS = 500;
+    private static final int ITERATIONS = 2000;
+
+    public static void main(String[] args) throws IOException {
+        final String romName = args.length > 0 ? args[0] : "supermarioland.gb";
+        final int frames = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+
+        final GameBoy gb = new GameBoy(Cartridge.ofFile(new File(romName)));
+        gb.runUntil(frames * 17_556L);
+
+        // Copying the state of the controller at the end of the image.
+        final Bus bus = gb.bus();
+        final Ram videoRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
+        for (int i = 0; i < videoRam.size(); ++i)
+            videoRam.write(i, bus.read(AddressMap.VIDEO_RAM_START + i));
+        final Ram objectRam = new Ram(AddressMap.OAM_RAM_SIZE);
+        for (int i = 0; i < objectRam.size(); ++i)
+            objectRam.write(i, bus.read(AddressMap.OAM_START + i));
+        final RegisterFile<LcdReg> file = new RegisterFile<>(LcdReg.values());
+        for (LcdReg r : LcdReg.values())
+            file.set(r, bus.read(AddressMap.REGS_LCDC_START + r.index()));
+        final long regs = LineRenderer.snapshot(file);
+
+        System.out.printf("%s after %d images, %d cores%n", romName, frames,
+                Runtime.getRuntime().availableProcessors());
+        System.out.println("threads  median (us)  p90 (us)  speedup");
+        double sequential = 0;
+        final int maxThreads = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            final ForkJoinPool pool = new ForkJoinPool(threads);
+            final FrameComposer composer = new FrameComposer(videoRam, objectRam, pool);
+            final long[] times = new long[ITERATIONS];
+            for (int it = 0; it < WARMUP_ITERATIONS + ITERATIONS; ++it) {
+                int winY = 0;
+                composer.newImage();
+                for (int line = 0; line < LCD_HEIGHT; ++line) {
+                    composer.line(line, winY, regs);
+                    if (LineRenderer.windowVisible(line, regs))
+                        winY += 1;
+                }
+                final long start = System.nanoTime();
+                composer.endImage();
+                if (it >= WARMUP_ITERATIONS)
+                    times[it - WARMUP_ITERATIONS] = System.nanoTime() - start;
+            }
+            pool.shutdown();
+            Arrays.sort(times);
+            final double median = times[ITERATIONS / 2] / 1e3;
+            final double p90 = times[ITERATIONS * 9 / 10] / 1e3;
+            if (threads == 1)
+                sequential = median;
+            System.out.printf("%7d  %11.1f  %8.1f  %7.2f%n", threads, median, p90, sequential / median);
+        }
+    }
+}
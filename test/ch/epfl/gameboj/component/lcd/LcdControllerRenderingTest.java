@@ -0,0 +1,63 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController.Rendering;
+
+public final class LcdControllerRenderingTest {
+    private static final long CYCLES_PER_FRAME = 17_556;
+
+    private static void assertSameImages(String romName, Rendering rendering, int frames) throws IOException {
+        File rom = new File(romName);
+        GameBoy expected = new GameBoy(Cartridge.ofFile(rom), Rendering.SYNCHRONOUS);
+        GameBoy actual = new GameBoy(Cartridge.ofFile(rom), rendering);
+        for (int f = 1; f <= frames; ++f) {
+            if (f % 60 == 30) {
+                expected.joypad().keyPressed(Key.START);
+                actual.joypad().keyPressed(Key.START);
+            } else if (f % 60 == 35) {
+                expected.joypad().keyReleased(Key.START);
+                actual.joypad().keyReleased(Key.START);
+            }
+            expected.runUntil(f * CYCLES_PER_FRAME);
+            actual.runUntil(f * CYCLES_PER_FRAME);
+            assertEquals(expected.lcdController().currentImage(),
+                    actual.lcdController().currentImage(), "at frame " + f);
+        }
+    }
+
+    @Test
+    void pipelinedRenderingProducesSameImages() throws IOException {
+        assertSameImages("flappyboy.gb", Rendering.PIPELINED, 300);
+        assertSameImages("supermarioland.gb", Rendering.PIPELINED, 300);
+    }
+
+    @Test
+    void parallelRenderingProducesSameImages() throws IOException {
+        assertSameImages("flappyboy.gb", Rendering.PARALLEL, 300);
+        assertSameImages("supermarioland.gb", Rendering.PARALLEL, 300);
+    }
+
+    @Test
+    void imagesAreSameWhenNotReadEveryFrame() throws IOException {
+        File rom = new File("tetris.gb");
+        GameBoy expected = new GameBoy(Cartridge.ofFile(rom), Rendering.SYNCHRONOUS);
+        GameBoy pipelined = new GameBoy(Cartridge.ofFile(rom), Rendering.PIPELINED);
+        GameBoy parallel = new GameBoy(Cartridge.ofFile(rom), Rendering.PARALLEL);
+        expected.runUntil(200 * CYCLES_PER_FRAME + 1234);
+        pipelined.runUntil(200 * CYCLES_PER_FRAME + 1234);
+        parallel.runUntil(200 * CYCLES_PER_FRAME + 1234);
+        assertEquals(expected.lcdController().currentImage(),
+                pipelined.lcdController().currentImage());
+        assertEquals(expected.lcdController().currentImage(),
+                parallel.lcdController().currentImage());
+    }
+}
@@ -535,6 +535,23 @@ class LcdImageLineTest {
         assertFalse(l7.hashCode() == l0.hashCode());
     }
 
+    @Test
+    public void hash64IgnoresOpacityButNotColors() {
+        LcdImageLine l0 = new LcdImageLine(v3, v4, v3);
+        LcdImageLine l1 = new LcdImageLine(v3, v4, v4);
+        LcdImageLine l2 = new LcdImageLine(v4, v3, v3);
+
+        assertEquals(l0.hash64(0), l1.hash64(0));
+        assertFalse(l0.hash64(0) == l2.hash64(0));
+        assertFalse(l0.hash64(0) == l0.hash64(1));
+
+        LcdImage i0 = new LcdImage.Builder(32, 2).setLine(0, l0).setLine(1, l2).build();
+        LcdImage i1 = new LcdImage.Builder(32, 2).setLine(0, l1).setLine(1, l2).build();
+        LcdImage i2 = new LcdImage.Builder(32, 2).setLine(0, l2).setLine(1, l0).build();
+        assertEquals(i0.hash64(), i1.hash64());
+        assertFalse(i0.hash64() == i2.hash64());
+    }
+
     // TESTS BUILDER
     // Cas normal
     @Test
@@ -0,0 +1,71 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.RegisterFile;
+import ch.epfl.gameboj.component.lcd.LcdController.LcdReg;
+import ch.epfl.gameboj.component.memory.Ram;
+
+class RenderPipelineTest {
+    private static final int MEMORIES_SIZE = AddressMap.VIDEO_RAM_SIZE + AddressMap.OAM_RAM_SIZE;
+
+    private final Ram videoRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
+    private final Ram objectRam = new Ram(AddressMap.OAM_RAM_SIZE);
+    private final RenderPipeline pipeline = new RenderPipeline(videoRam, objectRam);
+
+    private void writeVideoRam(Random rng, int count) {
+        for (int i = 0; i < count; ++i) {
+            int index = rng.nextInt(videoRam.size());
+            int data = rng.nextInt(0x100);
+            videoRam.write(index, data);
+            pipeline.write(AddressMap.VIDEO_RAM_START + index, data);
+        }
+    }
+
+    // Draws an image with the background on, and checks that it is the one drawn from the memories.
+    private void assertImageDrawnFromMemories() {
+        RegisterFile<LcdReg> file = new RegisterFile<>(LcdReg.values());
+        file.set(LcdReg.LCDC, 0b1001_0001);
+        file.set(LcdReg.BGP, 0b1110_0100);
+        long regs = LineRenderer.snapshot(file);
+        pipeline.newImage();
+        LcdImage.Builder expected = new LcdImage.Builder(LcdController.LCD_WIDTH,
+                LcdController.LCD_HEIGHT);
+        LineRenderer renderer = new LineRenderer(videoRam, objectRam);
+        for (int y = 0; y < LcdController.LCD_HEIGHT; ++y) {
+            pipeline.line(y, 0, regs);
+            expected.setLine(y, renderer.computeLine(y, 0, regs));
+        }
+        pipeline.endImage();
+        assertEquals(expected.build(), pipeline.collect());
+    }
+
+    @Test
+    void logStaysBoundedWhileNoImageIsDrawn() {
+        Random rng = newRandom();
+        // Writing the video ram as during 600 frames with the screen off.
+        for (int f = 0; f < 600; ++f) {
+            writeVideoRam(rng, 1000);
+            assertTrue(pipeline.logSize() <= 3 * MEMORIES_SIZE, "at frame " + f);
+        }
+        assertImageDrawnFromMemories();
+    }
+
+    @Test
+    void logStaysBoundedWhenMemoriesAreReplaced() {
+        Random rng = newRandom();
+        for (int i = 0; i < 100; ++i) {
+            writeVideoRam(rng, 100);
+            pipeline.memoriesReplaced();
+            assertTrue(pipeline.logSize() <= 3 * MEMORIES_SIZE);
+        }
+        assertImageDrawnFromMemories();
+    }
+}
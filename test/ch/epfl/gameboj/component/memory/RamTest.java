@@ -87,4 +87,65 @@ class RamTest {
                     () -> ram.write(0, k));
         }
     }
+
+    @Test
+    void copyFromCopiesWholeContent() {
+        Random rng = newRandom();
+        Ram source = new Ram(1000);
+        for (int i = 0; i < source.size(); ++i)
+            source.write(i, rng.nextInt(0x100));
+        Ram copy = new Ram(1000);
+        copy.copyFrom(source);
+        for (int i = 0; i < source.size(); ++i)
+            assertEquals(source.read(i), copy.read(i));
+        source.write(0, source.read(0) ^ 0xFF);
+        assertNotEquals(source.read(0), copy.read(0));
+    }
+
+    @Test
+    void copyFromFailsForDifferentSize() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new Ram(10).copyFrom(new Ram(11)));
+    }
+
+    @Test
+    void copyFromItselfKeepsContent() {
+        Ram r = new Ram(600);
+        for (int i = 0; i < r.size(); ++i)
+            r.write(i, i & 0xFF);
+        // Sharing the pages of the ram makes them copied on the next write.
+        new Ram(600).shareFrom(r);
+        r.copyFrom(r);
+        for (int i = 0; i < r.size(); ++i)
+            assertEquals(i & 0xFF, r.read(i));
+    }
+
+    @Test
+    void shareFromSharesContentUntilWritten() {
+        Random rng = newRandom();
+        Ram source = new Ram(1000);
+        for (int i = 0; i < source.size(); ++i)
+            source.write(i, rng.nextInt(0x100));
+        Ram fork = new Ram(1000);
+        fork.shareFrom(source);
+        for (int i = 0; i < source.size(); ++i)
+            assertEquals(source.read(i), fork.read(i));
+
+        int before = source.read(300);
+        fork.write(300, before ^ 0xFF);
+        assertEquals(before, source.read(300));
+        assertEquals(before ^ 0xFF, fork.read(300));
+
+        source.write(999, source.read(999) ^ 0xFF);
+        assertNotEquals(source.read(999), fork.read(999));
+        for (int i = 0; i < 999; ++i)
+            if (i != 300)
+                assertEquals(source.read(i), fork.read(i));
+    }
+
+    @Test
+    void shareFromFailsForDifferentSize() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new Ram(10).shareFrom(new Ram(11)));
+    }
 }
@@ -5,8 +5,13 @@ package ch.epfl.gameboj.component.memory;
 import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
 import static ch.epfl.test.TestRandomizer.newRandom;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -57,4 +62,39 @@ class RomTest {
                     () -> rom.read(k));
         }
     }
+
+    private static File tempFileWith(byte[] data) throws IOException {
+        File file = Files.createTempFile("TestROM_", ".gb").toFile();
+        file.deleteOnExit();
+        Files.write(file.toPath(), data);
+        return file;
+    }
+
+    @Test
+    void loadedRomsContainBytesOfFile() throws IOException {
+        byte[] a = new byte[0x8000];
+        newRandom().nextBytes(a);
+        File file = tempFileWith(a);
+        for (Rom r : new Rom[] { Rom.ofFile(file), Rom.mapped(file), Rom.shared(file) }) {
+            assertEquals(a.length, r.size());
+            for (int j = 0; j < a.length; ++j)
+                assertEquals(Byte.toUnsignedInt(a[j]), r.read(j));
+        }
+    }
+
+    @Test
+    void sharedRomIsSameForSameFile() throws IOException {
+        File file = tempFileWith(new byte[100]);
+        Rom r = Rom.shared(file);
+        assertSame(r, Rom.shared(file));
+        assertSame(r, Rom.shared(new File(file.getParentFile(), "./" + file.getName())));
+        assertNotSame(r, Rom.shared(tempFileWith(new byte[100])));
+    }
+
+    @Test
+    void mappedRomFailsForInvalidIndex() throws IOException {
+        Rom rom = Rom.mapped(tempFileWith(new byte[10]));
+        assertThrows(IndexOutOfBoundsException.class, () -> rom.read(10));
+        assertThrows(IndexOutOfBoundsException.class, () -> rom.read(-1));
+    }
 }
@@ -0,0 +1,111 @@
+package ch.epfl.gameboj.component.memory;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class SaveFileTest {
+    private static File tempFile() throws IOException {
+        File file = Files.createTempFile("TestSave_", ".sav").toFile();
+        file.deleteOnExit();
+        return file;
+    }
+
+    @Test
+    void openExtendsFileToSizeOfRam() throws IOException {
+        File file = tempFile();
+        try (SaveFile save = SaveFile.open(file, 0x2000)) {
+            assertEquals(0x2000, save.size());
+        }
+        assertEquals(0x2000, file.length());
+    }
+
+    @Test
+    void writesAreInFileAfterClose() throws IOException {
+        File file = tempFile();
+        Random rng = newRandom();
+        byte[] expected = new byte[0x8000];
+        try (SaveFile save = SaveFile.open(file, expected.length)) {
+            for (int i = 0; i < 1000; ++i) {
+                int index = rng.nextInt(expected.length);
+                int data = rng.nextInt(0x100);
+                save.write(index, data);
+                expected[index] = (byte) data;
+            }
+        }
+        assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    void loadIntoReadsContentOfFile() throws IOException {
+        File file = tempFile();
+        byte[] content = new byte[0x2000];
+        newRandom().nextBytes(content);
+        Files.write(file.toPath(), content);
+        Ram ram = new Ram(content.length);
+        try (SaveFile save = SaveFile.open(file, content.length)) {
+            save.loadInto(ram);
+        }
+        for (int i = 0; i < content.length; ++i)
+            assertEquals(Byte.toUnsignedInt(content[i]), ram.read(i));
+    }
+
+    @Test
+    void storeFromOnlyWritesTheBytesWhichDiffer() throws IOException {
+        File file = tempFile();
+        Ram ram = new Ram(0x8000);
+        try (SaveFile save = SaveFile.open(file, ram.size())) {
+            save.storeFrom(ram);
+            assertEquals(0, save.dirtyPageCount());
+
+            ram.write(0x10, 0x12);
+            ram.write(0x7FFF, 0x34);
+            save.storeFrom(ram);
+            assertEquals(2, save.dirtyPageCount());
+            save.flush();
+            save.storeFrom(ram);
+            assertEquals(0, save.dirtyPageCount());
+        }
+        byte[] content = Files.readAllBytes(file.toPath());
+        assertEquals(0x12, content[0x10]);
+        assertEquals(0x34, content[0x7FFF]);
+    }
+
+    @Test
+    void closedFilesAreForgotten() throws IOException {
+        File file = tempFile();
+        int open = SaveFile.openCount();
+        for (int i = 0; i < 1000; ++i) {
+            SaveFile save = SaveFile.open(file, 0x2000);
+            save.write(i, i & 0xFF);
+            save.close();
+        }
+        assertEquals(open, SaveFile.openCount());
+    }
+
+    @Test
+    void writeFailsOnceClosed() throws IOException {
+        SaveFile save = SaveFile.open(tempFile(), 0x800);
+        save.close();
+        save.close();
+        assertThrows(IllegalStateException.class, () -> save.write(0, 0));
+    }
+
+    @Test
+    void writeFailsForInvalidIndexOrData() throws IOException {
+        try (SaveFile save = SaveFile.open(tempFile(), 0x800)) {
+            assertThrows(IndexOutOfBoundsException.class, () -> save.write(0x800, 0));
+            assertThrows(IllegalArgumentException.class, () -> save.write(0, 0x100));
+            assertThrows(IllegalArgumentException.class, () -> save.loadInto(new Ram(0x801)));
+            assertThrows(IllegalArgumentException.class, () -> save.storeFrom(new Ram(0x801)));
+        }
+    }
+}
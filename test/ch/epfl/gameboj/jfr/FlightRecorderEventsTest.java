@@ -0,0 +1,79 @@
+package ch.epfl.gameboj.jfr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public final class FlightRecorderEventsTest {
+    private static final List<String> EVENTS = List.of("ch.epfl.gameboj.Frame",
+            "ch.epfl.gameboj.Dma", "ch.epfl.gameboj.Interrupt",
+            "ch.epfl.gameboj.Halt", "ch.epfl.gameboj.BankSwitch");
+
+    private static List<RecordedEvent> record(String rom, int frames) throws IOException {
+        Path file = Files.createTempFile("gameboj", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String e : EVENTS)
+                recording.enable(e);
+            recording.start();
+            GameBoy gb = new GameBoy(Cartridge.ofFile(new File(rom)));
+            gb.runUntil(frames * GameBoy.CYCLES_PER_FRAME);
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void emulatorEmitsItsEvents() throws IOException {
+        Map<String, Integer> counts = new HashMap<>();
+        List<RecordedEvent> events = record("supermarioland.gb", 300);
+        for (RecordedEvent e : events) {
+            String name = e.getEventType().getName();
+            counts.merge(name, 1, Integer::sum);
+            switch (name) {
+            case "ch.epfl.gameboj.Frame":
+                int changed = e.getInt("changedLines");
+                assertTrue(changed >= 0 && changed <= 144);
+                assertTrue(e.getLong("composition") > 0);
+                break;
+            case "ch.epfl.gameboj.Interrupt":
+                assertTrue(e.getLong("latency") >= 0);
+                break;
+            case "ch.epfl.gameboj.Halt":
+                assertTrue(e.getLong("length") > 0);
+                break;
+            case "ch.epfl.gameboj.Dma":
+                assertEquals(0, e.getInt("source") & 0xFF);
+                break;
+            }
+        }
+        for (String e : EVENTS)
+            assertTrue(counts.getOrDefault(e, 0) > 0, e);
+        // The first image is started when the screen is turned on, without event.
+        assertTrue(counts.get("ch.epfl.gameboj.Frame") < 300);
+    }
+
+    @Test
+    void eventsAreNotEmittedWithoutRecording() throws IOException {
+        assertEquals(null, FrameEvent.start());
+        assertEquals(null, DmaEvent.start(0xC000));
+        assertEquals(null, HaltEvent.start(0));
+    }
+}